@@ -57,6 +57,33 @@ tasks.test {
     }
 }
 
+/* Benchmarks */
+// Throughput and latency comparisons, kept out of the test suite. Run with ./gradlew benchmarks --args="<suites>"
+val benchmarks: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+    // replays the captured packets the tests use
+    resources {
+        srcDir("src/test/resources")
+        include("testpackets/**")
+    }
+}
+
+configurations[benchmarks.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[benchmarks.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+// lets the benchmarks reach internal members, such as the handler routing of SteamClient
+kotlin.target.compilations.named(benchmarks.name) {
+    associateWith(kotlin.target.compilations.getByName("main"))
+}
+
+tasks.register<JavaExec>("benchmarks") {
+    group = "verification"
+    description = "Runs the benchmarks, or only the suites named in --args."
+    classpath = benchmarks.runtimeClasspath
+    mainClass.set("in.dragonbra.javasteam.benchmarks.BenchmarksKt")
+}
+
 /* Test Reporting */
 jacoco.toolVersion = libs.versions.jacoco.get()
 tasks.jacocoTestReport {
@@ -133,7 +133,10 @@ class JavaGen(
                 writer?.writeln("import $imp;")
             }
         } else if (node is EnumNode) {
+            writer?.writeln("import in.dragonbra.javasteam.util.EnumLookup;")
+
             if ("flags" == (node as EnumNode).flags) {
+                writer?.writeln()
                 writer?.writeln("import java.util.EnumSet;")
             }
         }
@@ -678,15 +681,18 @@ class JavaGen(
         writer?.writeln("}")
         writer?.writeln()
 
+        // values() clones the backing array on every call, so cache it once and build the code lookup from it
+        writer?.writeln("private static final ${this.node.name}[] VALUES = values();")
+        writer?.writeln()
+        writer?.writeln(
+            "private static final EnumLookup<${this.node.name}> LOOKUP = " +
+                "new EnumLookup<>(${this.node.name}.class, VALUES, e -> e.code);"
+        )
+        writer?.writeln()
+
         if (flags) {
             writer?.writeln("public static EnumSet<${this.node.name}> from($type code) {")
-            writer?.writeln("    EnumSet<${this.node.name}> set = EnumSet.noneOf(${this.node.name}.class);")
-            writer?.writeln("    for (${this.node.name} e : ${this.node.name}.values()) {")
-            writer?.writeln("        if ((e.code & code) == e.code) {")
-            writer?.writeln("            set.add(e);")
-            writer?.writeln("        }")
-            writer?.writeln("    }")
-            writer?.writeln("    return set;")
+            writer?.writeln("    return LOOKUP.getFlags(code);")
             writer?.writeln("}")
             writer?.writeln()
             writer?.writeln("public static $type code(EnumSet<${this.node.name}> flags) {")
@@ -698,12 +704,7 @@ class JavaGen(
             writer?.writeln("}")
         } else {
             writer?.writeln("public static ${this.node.name} from($type code) {")
-            writer?.writeln("    for (${this.node.name} e : ${this.node.name}.values()) {")
-            writer?.writeln("        if (e.code == code) {")
-            writer?.writeln("            return e;")
-            writer?.writeln("        }")
-            writer?.writeln("    }")
-            writer?.writeln("    return null;")
+            writer?.writeln("    return LOOKUP.get(code);")
             writer?.writeln("}")
         }
     }
@@ -0,0 +1,149 @@
+package `in`.dragonbra.javasteam.depotdownloader
+
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bounded pool of chunk buffers shared by the download, decompress and write stages of [DepotDownloader].
+ *
+ * Every chunk leases a compressed and a decompressed buffer before it enters the pipeline and hands both back once
+ * it has been written to disk. Buffers are grouped into size classes, four per power of two starting at 64 KiB, so a
+ * returned buffer is reused by the next chunk of a similar size instead of being left to the garbage collector.
+ *
+ * At most [maxBytes] may be leased at any time. [acquire] suspends until enough buffers are released, which throttles
+ * the producers queueing chunks. Up to [maxBytes] of idle buffers are kept for reuse, anything beyond that is dropped.
+ *
+ * Buffers live on the heap since the CDN client, [in.dragonbra.javasteam.steam.cdn.DepotChunk] and okio file handles
+ * all operate on byte arrays.
+ *
+ * @param maxBytes Upper bound on the size of all leased buffers, in bytes.
+ */
+internal class ChunkBufferPool(val maxBytes: Long) {
+
+    companion object {
+        private const val UNIT_SHIFT = 16
+
+        private const val MIN_CLASS_SIZE = 1 shl UNIT_SHIFT
+
+        private const val MAX_CLASS_SIZE = 1 shl 30
+
+        /**
+         * Rounds [size] up to its size class.
+         */
+        fun classSize(size: Int): Int {
+            require(size in 0..MAX_CLASS_SIZE) { "Invalid chunk buffer size $size" }
+
+            if (size <= MIN_CLASS_SIZE) {
+                return MIN_CLASS_SIZE
+            }
+
+            val step = Integer.highestOneBit(size - 1) shr 2
+            return ((size - 1) / step + 1) * step
+        }
+    }
+
+    /**
+     * The pair of buffers leased for one chunk. Either buffer may be longer than the chunk it holds.
+     */
+    class ChunkBuffers internal constructor(
+        val compressed: ByteArray,
+        val decompressed: ByteArray,
+        internal val permits: Int,
+    ) {
+        internal val released = AtomicBoolean(false)
+    }
+
+    private val totalPermits: Int = (maxBytes shr UNIT_SHIFT).coerceIn(1L, Int.MAX_VALUE.toLong()).toInt()
+
+    private val permits = Semaphore(totalPermits)
+
+    // Serializes multi-permit acquisition so two waiters can never each hold part of what the other needs.
+    private val acquireLock = Mutex()
+
+    private val free = ConcurrentHashMap<Int, ConcurrentLinkedQueue<ByteArray>>()
+
+    private val retainedBytes = AtomicLong(0)
+
+    /**
+     * Number of bytes currently leased.
+     */
+    val leasedBytes: Long
+        get() = (totalPermits - permits.availablePermits).toLong() shl UNIT_SHIFT
+
+    /**
+     * Leases buffers for a chunk, suspending while the pool is at its cap.
+     * A chunk larger than the whole pool is still served once every other lease has been released.
+     *
+     * @param compressedLength Minimum size of [ChunkBuffers.compressed]
+     * @param uncompressedLength Minimum size of [ChunkBuffers.decompressed]
+     * @return The leased buffers. Must be handed back with [release].
+     */
+    suspend fun acquire(compressedLength: Int, uncompressedLength: Int): ChunkBuffers {
+        val compressedClass = classSize(compressedLength)
+        val decompressedClass = classSize(uncompressedLength)
+
+        // rounded up, quarter step classes are not whole units
+        val needed = ((compressedClass.toLong() + decompressedClass + MIN_CLASS_SIZE - 1) shr UNIT_SHIFT)
+            .coerceAtMost(totalPermits.toLong())
+            .toInt()
+
+        var acquired = 0
+        try {
+            acquireLock.withLock {
+                while (acquired < needed) {
+                    permits.acquire()
+                    acquired++
+                }
+            }
+        } catch (e: Throwable) {
+            repeat(acquired) { permits.release() }
+            throw e
+        }
+
+        return ChunkBuffers(
+            compressed = take(compressedClass),
+            decompressed = take(decompressedClass),
+            permits = needed,
+        )
+    }
+
+    /**
+     * Hands leased buffers back to the pool. Releasing the same lease more than once has no effect.
+     * The buffers must not be used afterward.
+     */
+    fun release(buffers: ChunkBuffers) {
+        if (!buffers.released.compareAndSet(false, true)) {
+            return
+        }
+
+        give(buffers.compressed)
+        give(buffers.decompressed)
+
+        repeat(buffers.permits) { permits.release() }
+    }
+
+    private fun take(classSize: Int): ByteArray {
+        val buffer = free[classSize]?.poll()
+        if (buffer != null) {
+            retainedBytes.addAndGet(-classSize.toLong())
+            return buffer
+        }
+
+        return ByteArray(classSize)
+    }
+
+    private fun give(buffer: ByteArray) {
+        val size = buffer.size.toLong()
+        if (retainedBytes.addAndGet(size) > maxBytes) {
+            retainedBytes.addAndGet(-size)
+            return
+        }
+
+        free.computeIfAbsent(buffer.size) { ConcurrentLinkedQueue() }.offer(buffer)
+    }
+}
@@ -0,0 +1,147 @@
+package `in`.dragonbra.javasteam.depotdownloader
+
+import `in`.dragonbra.javasteam.depotdownloader.data.ChunkMatch
+import `in`.dragonbra.javasteam.types.ChunkData
+import `in`.dragonbra.javasteam.util.Adler32
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.yield
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
+import okio.Path
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Works out which chunks of a changed file can be taken from the installed copy when updating between manifests.
+ *
+ * The chunks of the old file are indexed by chunk ID once, so matching a file with tens of thousands of chunks is
+ * linear instead of quadratic. Matched chunks are verified in parallel slices, each reusing one buffer, and copied
+ * between the files with [FileChannel.transferTo] so the data does not pass through the heap.
+ */
+internal object ChunkDelta {
+
+    /**
+     * Chunks of the new file split by where they come from.
+     *
+     * @property matches Chunks that are also part of the old file, sorted by their offset in the old file.
+     * @property needed Chunks that have to be downloaded.
+     */
+    class Plan(val matches: List<ChunkMatch>, val needed: MutableList<ChunkData>)
+
+    /**
+     * Pairs every chunk of [newChunks] with the first chunk of [oldChunks] that has the same ID.
+     */
+    fun plan(oldChunks: List<ChunkData>, newChunks: List<ChunkData>): Plan {
+        val index = HashMap<ByteString, ChunkData>(oldChunks.size * 2)
+        oldChunks.forEach { chunk ->
+            val id = chunk.chunkID ?: return@forEach
+            index.putIfAbsent(id.toByteString(), chunk)
+        }
+
+        val matches = ArrayList<ChunkMatch>()
+        val needed = ArrayList<ChunkData>()
+
+        newChunks.forEach { chunk ->
+            val oldChunk = chunk.chunkID?.let { index[it.toByteString()] }
+            if (oldChunk != null) {
+                matches.add(ChunkMatch(oldChunk, chunk))
+            } else {
+                needed.add(chunk)
+            }
+        }
+
+        matches.sortBy { it.oldChunk.offset }
+
+        return Plan(matches, needed)
+    }
+
+    /**
+     * Checks the old chunks of [matches] against their checksums in the file at [path].
+     *
+     * @param matches Matches sorted by their offset in the old file, as returned by [plan].
+     * @param parallelism Number of slices verified at the same time.
+     * @return For every match, whether the old chunk is intact.
+     */
+    suspend fun verify(path: Path, matches: List<ChunkMatch>, parallelism: Int): BooleanArray {
+        val results = BooleanArray(matches.size)
+        if (matches.isEmpty()) {
+            return results
+        }
+
+        // contiguous slices, so every worker reads its part of the file front to back
+        val workers = parallelism.coerceIn(1, matches.size)
+        val sliceSize = (matches.size + workers - 1) / workers
+
+        withContext(Dispatchers.IO) {
+            FileChannel.open(path.toNioPath(), StandardOpenOption.READ).use { channel ->
+                coroutineScope {
+                    (matches.indices step sliceSize).map { start ->
+                        val end = (start + sliceSize).coerceAtMost(matches.size)
+                        async {
+                            val buffer = ByteArray((start until end).maxOf { matches[it].oldChunk.uncompressedLength })
+
+                            for (i in start until end) {
+                                yield()
+
+                                val oldChunk = matches[i].oldChunk
+                                val length = oldChunk.uncompressedLength
+                                results[i] = readFully(channel, oldChunk.offset, buffer, length) &&
+                                    Adler32.calculate(0, buffer, 0, length) == oldChunk.checksum
+                            }
+                        }
+                    }.awaitAll()
+                }
+            }
+        }
+
+        return results
+    }
+
+    /**
+     * Copies the old chunk of every match in [matches] from the file at [source] to the offset of the new chunk in
+     * the file at [target].
+     */
+    suspend fun copy(source: Path, target: Path, matches: List<ChunkMatch>) {
+        if (matches.isEmpty()) {
+            return
+        }
+
+        FileChannel.open(source.toNioPath(), StandardOpenOption.READ).use { from ->
+            FileChannel.open(target.toNioPath(), StandardOpenOption.WRITE).use { to ->
+                matches.forEach { match ->
+                    coroutineContext.ensureActive()
+
+                    val length = match.oldChunk.uncompressedLength.toLong()
+                    var copied = 0L
+
+                    to.position(match.newChunk.offset)
+                    while (copied < length) {
+                        val count = from.transferTo(match.oldChunk.offset + copied, length - copied, to)
+                        if (count <= 0) {
+                            throw IOException("Unexpected end of file while copying chunk at ${match.oldChunk.offset}")
+                        }
+                        copied += count
+                    }
+                }
+            }
+        }
+    }
+
+    private fun readFully(channel: FileChannel, position: Long, buffer: ByteArray, length: Int): Boolean {
+        val target = ByteBuffer.wrap(buffer, 0, length)
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                return false
+            }
+        }
+        return true
+    }
+}
@@ -0,0 +1,403 @@
+package `in`.dragonbra.javasteam.depotdownloader
+
+import `in`.dragonbra.javasteam.types.ChunkData
+import `in`.dragonbra.javasteam.util.Adler32
+import `in`.dragonbra.javasteam.util.log.LogManager
+import `in`.dragonbra.javasteam.util.log.Logger
+import okio.ByteString
+import okio.ByteString.Companion.decodeHex
+import okio.ByteString.Companion.toByteString
+import okio.FileSystem
+import okio.IOException
+import okio.Path
+import okio.buffer
+import java.io.Closeable
+import java.io.EOFException
+
+/**
+ * Content addressed store of decompressed depot chunks, shared across files, depots, apps and runs.
+ *
+ * Chunks are keyed by their SHA-1 chunk ID, so a chunk that shows up in several manifests is only downloaded once.
+ * Each chunk is kept in its own file under [directory], and a compact index of chunk IDs and lengths, ordered from
+ * least to most recently used, is written to `index.bin` by [flush] and [close]. Once the stored chunks exceed
+ * [maxBytes], the least recently used ones are deleted.
+ *
+ * Opening a store checks the index against the chunk files, so nothing is lost when the index was not written, for
+ * example after a crash. Chunks stored since the index was last written are added, entries without a file are dropped
+ * and unfinished writes are deleted.
+ *
+ * Chunks are verified against their Adler32 checksum when read, a damaged chunk is dropped and reported as missing.
+ *
+ * A store may be shared by several [DepotDownloader] instances. It is not safe to open the same directory from more
+ * than one store at a time.
+ *
+ * **Kotlin:**
+ * ```kotlin
+ * val store = ChunkStore("chunks".toPath(), maxBytes = 20L * 1024 * 1024 * 1024)
+ * val downloader = DepotDownloader(steamClient, licenses, chunkStore = store)
+ * ```
+ *
+ * @param directory Directory holding the chunks and the index. Created if it does not exist.
+ * @param maxBytes Upper bound on the total size of stored chunks, in bytes.
+ */
+class ChunkStore @JvmOverloads constructor(
+    val directory: Path,
+    val maxBytes: Long = DEFAULT_MAX_BYTES,
+) : Closeable {
+
+    companion object {
+        const val DEFAULT_MAX_BYTES: Long = 10L * 1024 * 1024 * 1024
+
+        private const val INDEX_FILE = "index.bin"
+
+        private const val MAGIC = 0x43484B53 // "CHKS"
+
+        private const val VERSION = 1
+
+        private const val CHUNK_ID_LENGTH = 20
+
+        private const val CHUNK_SUFFIX = ".chunk"
+
+        private const val TEMP_SUFFIX = ".tmp"
+
+        private val logger: Logger = LogManager.getLogger(ChunkStore::class.java)
+    }
+
+    private val filesystem: FileSystem = FileSystem.SYSTEM
+
+    private val lock = Any()
+
+    // Chunk lengths in access order, least recently used first. Guarded by lock.
+    private val entries = LinkedHashMap<ByteString, Int>(16, 0.75f, true)
+
+    // Guarded by lock.
+    private var totalBytes = 0L
+
+    // Whether entries changed since the index was last written. Guarded by lock.
+    private var dirty = false
+
+    // Chunks being written by put, so concurrent puts of one chunk write it only once. Guarded by lock.
+    private val writing = HashSet<ByteString>()
+
+    // Chunks dropped from entries whose file is being deleted, so a put of the same chunk cannot have its new file
+    // deleted. Guarded by lock.
+    private val deleting = HashSet<ByteString>()
+
+    init {
+        require(maxBytes > 0) { "maxBytes must be positive" }
+
+        filesystem.createDirectories(directory)
+        readIndex()
+        reconcile()
+    }
+
+    /**
+     * Number of stored chunks.
+     */
+    val chunkCount: Int
+        get() = synchronized(lock) { entries.size }
+
+    /**
+     * Total size of the stored chunks, in bytes.
+     */
+    val sizeBytes: Long
+        get() = synchronized(lock) { totalBytes }
+
+    /**
+     * Whether a chunk with the given ID is stored. Does not count as a use.
+     */
+    operator fun contains(chunkId: ByteArray): Boolean = synchronized(lock) {
+        chunkId.toByteString() in entries.keys
+    }
+
+    /**
+     * Reads the stored copy of [chunk] into [destination].
+     *
+     * @param chunk The chunk to read. Its ID, uncompressed length and checksum are used.
+     * @param destination Buffer to read into, at least [ChunkData.uncompressedLength] bytes long.
+     * @return Whether the chunk was stored and intact. If not, [destination] may have been partially overwritten.
+     */
+    fun read(chunk: ChunkData, destination: ByteArray): Boolean {
+        val chunkId = chunk.chunkID ?: return false
+        val key = chunkId.toByteString()
+        val length = chunk.uncompressedLength
+
+        synchronized(lock) {
+            if (entries[key] != length) {
+                return false
+            }
+        }
+
+        try {
+            filesystem.read(pathOf(key)) {
+                var offset = 0
+                while (offset < length) {
+                    val count = read(destination, offset, length - offset)
+                    if (count < 0) {
+                        throw EOFException("Stored chunk is shorter than $length bytes")
+                    }
+                    offset += count
+                }
+            }
+        } catch (e: IOException) {
+            logger.debug("Failed to read chunk ${key.hex()}: ${e.message}")
+            remove(key)
+            return false
+        }
+
+        if (Adler32.calculate(0, destination, 0, length) != chunk.checksum) {
+            logger.error("Stored chunk ${key.hex()} failed its checksum, dropping it")
+            remove(key)
+            return false
+        }
+
+        return true
+    }
+
+    /**
+     * Stores the decompressed data of a chunk, evicting the least recently used chunks if needed.
+     * Does nothing if the chunk is already stored, being stored or deleted by another thread, or larger than
+     * [maxBytes].
+     *
+     * @param chunkId The SHA-1 chunk ID.
+     * @param data Buffer holding the decompressed chunk.
+     * @param offset Offset of the chunk in [data].
+     * @param length Length of the chunk.
+     */
+    @Throws(IOException::class)
+    fun put(chunkId: ByteArray, data: ByteArray, offset: Int, length: Int) {
+        require(chunkId.size == CHUNK_ID_LENGTH) { "Chunk ID must be $CHUNK_ID_LENGTH bytes" }
+
+        val key = chunkId.toByteString()
+
+        if (length > maxBytes) {
+            return
+        }
+
+        synchronized(lock) {
+            if (key in entries.keys || key in deleting || !writing.add(key)) {
+                return
+            }
+        }
+
+        try {
+            val path = pathOf(key)
+            val temp = path.parent!! / "${path.name}$TEMP_SUFFIX"
+
+            filesystem.createDirectories(path.parent!!)
+            filesystem.write(temp) {
+                write(data, offset, length)
+            }
+            filesystem.atomicMove(temp, path)
+
+            val evicted = synchronized(lock) {
+                if (entries.put(key, length) == null) {
+                    totalBytes += length
+                }
+                dirty = true
+
+                evict(keep = key)
+            }
+
+            evicted.forEach { delete(it) }
+        } finally {
+            synchronized(lock) { writing.remove(key) }
+        }
+    }
+
+    /**
+     * Writes the index to disk if anything changed since it was last written.
+     */
+    @Throws(IOException::class)
+    fun flush() {
+        val snapshot = synchronized(lock) {
+            if (!dirty) {
+                return
+            }
+            dirty = false
+            entries.entries.map { it.key to it.value }
+        }
+
+        val path = directory / INDEX_FILE
+        val temp = directory / "$INDEX_FILE.tmp"
+
+        try {
+            filesystem.write(temp) {
+                writeInt(MAGIC)
+                writeInt(VERSION)
+                writeInt(snapshot.size)
+                snapshot.forEach { (key, length) ->
+                    write(key)
+                    writeInt(length)
+                }
+            }
+            filesystem.atomicMove(temp, path)
+        } catch (e: IOException) {
+            synchronized(lock) { dirty = true }
+            throw e
+        }
+    }
+
+    /**
+     * Writes the index to disk.
+     */
+    override fun close() {
+        try {
+            flush()
+        } catch (e: IOException) {
+            logger.error("Failed to write chunk store index", e)
+        }
+    }
+
+    private fun readIndex() {
+        val path = directory / INDEX_FILE
+        if (!filesystem.exists(path)) {
+            return
+        }
+
+        try {
+            filesystem.source(path).buffer().use { source ->
+                if (source.readInt() != MAGIC || source.readInt() != VERSION) {
+                    logger.error("Ignoring chunk store index with unknown format at $path")
+                    return
+                }
+
+                repeat(source.readInt()) {
+                    val key = source.readByteString(CHUNK_ID_LENGTH.toLong())
+                    val length = source.readInt()
+                    if (entries.put(key, length) == null) {
+                        totalBytes += length
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            // whatever was read is kept and checked against the chunk files by reconcile
+            logger.error("Failed to read chunk store index at $path", e)
+        }
+    }
+
+    /**
+     * Adds the chunk files missing from the index, drops the entries whose file is gone and deletes unfinished writes.
+     * Only called while the store is opened.
+     */
+    private fun reconcile() {
+        val found = HashSet<ByteString>()
+        var added = 0
+
+        try {
+            filesystem.delete(directory / "$INDEX_FILE$TEMP_SUFFIX")
+
+            filesystem.list(directory).forEach { folder ->
+                if (folder.name.length != 2 || filesystem.metadataOrNull(folder)?.isDirectory != true) {
+                    return@forEach
+                }
+
+                filesystem.list(folder).forEach { file ->
+                    when {
+                        file.name.endsWith(TEMP_SUFFIX) -> filesystem.delete(file)
+                        file.name.endsWith(CHUNK_SUFFIX) -> {
+                            val key = keyOf(file) ?: return@forEach
+                            found.add(key)
+
+                            if (key !in entries.keys) {
+                                val size = filesystem.metadataOrNull(file)?.size ?: return@forEach
+                                if (size <= Int.MAX_VALUE) {
+                                    // stored after the index was written, so among the most recently used
+                                    entries[key] = size.toInt()
+                                    totalBytes += size
+                                    added++
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            // entries are left as read, chunks that turn out to be missing are dropped when read
+            logger.error("Failed to scan chunk store at $directory", e)
+            return
+        }
+
+        val missing = entries.keys.filter { it !in found }
+        missing.forEach { totalBytes -= entries.remove(it)!! }
+
+        if (added > 0 || missing.isNotEmpty()) {
+            logger.debug("Chunk store index was out of date: added $added chunks, dropped ${missing.size}")
+            dirty = true
+        }
+
+        evict(keep = null).forEach { delete(it) }
+    }
+
+    /**
+     * Removes the least recently used entries, other than [keep], until the stored chunks fit in [maxBytes].
+     * Must be called with lock held, the files of the returned chunks are left for the caller to [delete].
+     */
+    private fun evict(keep: ByteString?): List<ByteString> {
+        val evicted = mutableListOf<ByteString>()
+
+        val iterator = entries.entries.iterator()
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            val eldest = iterator.next()
+            if (eldest.key == keep) {
+                continue
+            }
+            iterator.remove()
+            totalBytes -= eldest.value
+            evicted.add(eldest.key)
+            deleting.add(eldest.key)
+        }
+
+        if (evicted.isNotEmpty()) {
+            dirty = true
+        }
+
+        return evicted
+    }
+
+    private fun remove(key: ByteString) {
+        synchronized(lock) {
+            val length = entries.remove(key) ?: return
+            totalBytes -= length
+            dirty = true
+            deleting.add(key)
+        }
+
+        delete(key)
+    }
+
+    /**
+     * Deletes the file of a chunk that was dropped from entries by [remove] or [evict].
+     */
+    private fun delete(key: ByteString) {
+        try {
+            filesystem.delete(pathOf(key))
+        } catch (e: IOException) {
+            logger.debug("Failed to delete chunk ${key.hex()}: ${e.message}")
+        } finally {
+            synchronized(lock) { deleting.remove(key) }
+        }
+    }
+
+    // Spread over 256 directories by the first byte, to keep directory listings short.
+    private fun pathOf(key: ByteString): Path {
+        val hex = key.hex()
+        return directory / hex.substring(0, 2) / "$hex$CHUNK_SUFFIX"
+    }
+
+    // The chunk ID of a chunk file, or null if the file is not where pathOf would put it.
+    private fun keyOf(file: Path): ByteString? {
+        val hex = file.name.removeSuffix(CHUNK_SUFFIX)
+        if (hex.length != CHUNK_ID_LENGTH * 2) {
+            return null
+        }
+
+        val key = try {
+            hex.decodeHex()
+        } catch (e: IllegalArgumentException) {
+            return null
+        }
+
+        return key.takeIf { pathOf(it) == file }
+    }
+}
@@ -2,6 +2,7 @@ package `in`.dragonbra.javasteam.depotdownloader
 
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.SerializationException
+import kotlinx.serialization.Transient
 import kotlinx.serialization.json.Json
 import okio.FileSystem
 import okio.IOException
@@ -14,6 +15,9 @@ import kotlin.IllegalArgumentException
  * re-downloading unchanged content. The configuration is serialized as JSON
  * and must be loaded via [loadFromFile] before use.
  *
+ * Downloads running side by side use [open] instead, which loads a store bound to its own file so items installing to
+ * different directories do not replace each other's store.
+ *
  * @property installedManifestIDs Map of depot IDs to their currently installed manifest IDs
  *
  * @author Lossy
@@ -23,6 +27,27 @@ import kotlin.IllegalArgumentException
 data class DepotConfigStore(
     val installedManifestIDs: MutableMap<Int, Long> = mutableMapOf(),
 ) {
+    @Transient
+    private var storePath: Path? = null
+
+    /**
+     * Gets the installed manifest ID of [depotId], or null if none was recorded.
+     */
+    fun getInstalledManifest(depotId: Int): Long? = synchronized(this) {
+        installedManifestIDs[depotId]
+    }
+
+    /**
+     * Records [manifestId] as installed for [depotId] and writes the store to the file it was opened from.
+     */
+    @Throws(IOException::class, IllegalArgumentException::class)
+    fun setInstalledManifest(depotId: Int, manifestId: Long) {
+        synchronized(this) {
+            installedManifestIDs[depotId] = manifestId
+            write(this, requireNotNull(storePath) { "Store was not opened from a file" })
+        }
+    }
+
     companion object {
         private var instance: DepotConfigStore? = null
 
@@ -30,20 +55,24 @@ data class DepotConfigStore(
 
         private val json = Json { prettyPrint = true }
 
+        /**
+         * Loads the store kept at [path]. Changes recorded through it are written back to [path], so callers working
+         * on the same file at the same time should share one store.
+         */
         @Throws(
             IOException::class,
             SerializationException::class,
             IllegalArgumentException::class,
         )
-        fun loadFromFile(path: Path) {
-            instance = if (FileSystem.SYSTEM.exists(path)) {
-                FileSystem.SYSTEM.read(path) {
-                    json.decodeFromString<DepotConfigStore>(readUtf8())
-                }
-            } else {
-                DepotConfigStore()
-            }
+        fun open(path: Path): DepotConfigStore = read(path).apply { storePath = path }
 
+        @Throws(
+            IOException::class,
+            SerializationException::class,
+            IllegalArgumentException::class,
+        )
+        fun loadFromFile(path: Path) {
+            instance = read(path)
             filePath = path
         }
 
@@ -52,14 +81,26 @@ data class DepotConfigStore(
             val currentInstance = requireNotNull(instance) { "Saved config before loading" }
             val currentPath = requireNotNull(filePath) { "File path not set" }
 
-            currentPath.parent?.let { FileSystem.SYSTEM.createDirectories(it) }
-
-            FileSystem.SYSTEM.write(currentPath) {
-                writeUtf8(json.encodeToString(currentInstance))
-            }
+            write(currentInstance, currentPath)
         }
 
         @Throws(IllegalArgumentException::class)
         fun getInstance(): DepotConfigStore = requireNotNull(instance) { "Config not loaded" }
+
+        private fun read(path: Path): DepotConfigStore = if (FileSystem.SYSTEM.exists(path)) {
+            FileSystem.SYSTEM.read(path) {
+                json.decodeFromString<DepotConfigStore>(readUtf8())
+            }
+        } else {
+            DepotConfigStore()
+        }
+
+        private fun write(store: DepotConfigStore, path: Path) {
+            path.parent?.let { FileSystem.SYSTEM.createDirectories(it) }
+
+            FileSystem.SYSTEM.write(path) {
+                writeUtf8(json.encodeToString(store))
+            }
+        }
     }
 }
@@ -13,7 +13,6 @@ import `in`.dragonbra.javasteam.steam.handlers.steamapps.callback.LicenseListCal
 import `in`.dragonbra.javasteam.steam.handlers.steamcloud.callback.UGCDetailsCallback
 import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
 import `in`.dragonbra.javasteam.types.*
-import `in`.dragonbra.javasteam.util.Adler32
 import `in`.dragonbra.javasteam.util.SteamKitWebRequestException
 import `in`.dragonbra.javasteam.util.Strings
 import `in`.dragonbra.javasteam.util.log.LogManager
@@ -37,15 +36,20 @@ import java.io.IOException
 import java.io.RandomAccessFile
 import java.time.Instant
 import java.time.temporal.ChronoUnit
+import java.util.Collections
+import java.util.IdentityHashMap
 import java.util.concurrent.*
 import java.util.concurrent.atomic.*
 
 /**
  * Downloads games, workshop items, and other Steam content via depot manifests.
  *
- * This class provides a queue-based FIFO download system that processes items sequentially.
- * Items are added via [add] or [addAll] and processed automatically in order. The processing
- * loop starts immediately upon construction and waits for items to be queued.
+ * This class provides a queue-based FIFO download system. Items are added via [add] or [addAll] and
+ * started automatically in order, up to [maxConcurrentItems] at a time. The processing loop starts
+ * immediately upon construction and waits for items to be queued.
+ *
+ * Items running at the same time share the chunk download pipeline. Their chunks are taken in turns,
+ * so a large app does not hold back the small items queued after it.
  *
  * ## Download Process
  * 1. Validates account access and obtains depot keys
@@ -66,6 +70,11 @@ import java.util.concurrent.atomic.*
  * @param maxFileWrites Number of concurrent files being written. Default: 1
  * @param androidEmulation Forces "Windows" as the default OS filter. Used when running Android games in PC emulators that expect Windows builds.
  * @param parentJob Parent job for the downloader. If provided, the downloader will be cancelled when the parent job is cancelled.
+ * @param maxBufferMemory Upper bound, in bytes, on chunk buffers in flight between the download, decompress and write stages.
+ * Queueing further chunks suspends until buffers are released. Default: [DEFAULT_MAX_BUFFER_MEMORY]
+ * @param maxConcurrentItems Number of queued items downloaded at the same time. Each item uses its own settings. Default: 1
+ * @param chunkStore Local store of downloaded chunks. Chunks found in it are copied instead of downloaded, and
+ * every downloaded chunk is added to it. May be shared between downloaders. Default: null
  *
  * @author Oxters
  * @author Lossy
@@ -82,6 +91,9 @@ class DepotDownloader @JvmOverloads constructor(
     private var maxFileWrites: Int = 1,
     private val androidEmulation: Boolean = false,
     private val parentJob: Job? = null,
+    private val maxBufferMemory: Long = DEFAULT_MAX_BUFFER_MEMORY,
+    private val maxConcurrentItems: Int = 1,
+    private val chunkStore: ChunkStore? = null,
 ) : Closeable {
 
     companion object {
@@ -93,8 +105,13 @@ class DepotDownloader @JvmOverloads constructor(
         const val DEFAULT_BRANCH: String = "public"
         const val DEFAULT_DOWNLOAD_DIR: String = "depots"
 
+        const val DEFAULT_MAX_BUFFER_MEMORY: Long = 128L * 1024 * 1024
+
         val STAGING_DIR: Path = CONFIG_DIR.toPath() / "staging"
 
+        // Chunks an item may have waiting for the pipeline before it stops enumerating files.
+        private const val MAX_QUEUED_CHUNKS_PER_ITEM = 256
+
         private val SupportedWorkshopFileTypes: Set<EWorkshopFileType> = setOf(
             EWorkshopFileType.Community,
             EWorkshopFileType.Art,
@@ -117,39 +134,41 @@ class DepotDownloader @JvmOverloads constructor(
 
     private val scope: CoroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob(parentJob))
 
-    private var cdnClientPool: CDNClientPool? = null
-
-    private var config: Config = Config(androidEmulation = androidEmulation)
-
     private var logger: Logger? = null
 
     private var processingChannel = Channel<DownloadItem>(Channel.UNLIMITED)
 
-    // Bounded channel — send() suspends producers when full, creating backpressure through the pipeline.
-    private val networkChunkChannel = Channel<NetworkChunkItem>(64)
+    // Every item queues its chunks in its own lane, and the pipeline takes from the lanes in turns. Chunks lease
+    // their buffers as they enter the pipeline, so downloads suspend in ChunkBufferPool.acquire() once
+    // maxBufferMemory is in flight.
+    private val chunkQueue = FairChunkQueue<ItemContext, NetworkChunkItem>(MAX_QUEUED_CHUNKS_PER_ITEM)
 
-    // Half of available processors, clamped to at least 1. Leaves remaining cores for the OS and app.
-    private val maxDecompress: Int = (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(1)
+    private val chunkBufferPool = ChunkBufferPool(maxBufferMemory)
 
-    private val pendingChunks = AtomicInteger(0)
+    // Depot config stores of the running items, with the number of items using each. Items installing to the same
+    // directory share one store, which is dropped once the last of them finishes so later items read the file again.
+    // Guarded by itself.
+    private val depotConfigStores = HashMap<Path, Pair<DepotConfigStore, Int>>()
 
-    // Completed by processFileWrites when all pending chunks drain, or by the sentinel release in
-    // downloadSteam3DepotFiles. Replaces the 100ms polling loop.
-    @Volatile
-    private var downloadCompletion: CompletableDeferred<Unit>? = null
+    // Half of available processors, clamped to at least 1. Leaves remaining cores for the OS and app.
+    private val maxDecompress: Int = (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(1)
 
     private var chunkProcessingJob: Job? = null
 
     private var steam3: Steam3Session? = null
 
-    private var processingItemsMap = mutableMapOf<Int, DownloadItem>()
+    private val activeItems: MutableSet<ItemContext> = ConcurrentHashMap.newKeySet()
 
     // Lazily built on first accountHasAccess call; all app/depot IDs the account can access.
+    @Volatile
     private var accessibleIds: Set<Int>? = null
 
+    private val accessibleIdsMutex = Mutex()
+
     // region [REGION] Private data classes.
 
     private data class NetworkChunkItem(
+        val context: ItemContext,
         val downloadCounter: GlobalDownloadCounter,
         val depotFilesData: DepotFilesData,
         val fileStreamData: FileStreamData,
@@ -158,19 +177,20 @@ class DepotDownloader @JvmOverloads constructor(
         val totalChunksForFile: Int,
     )
 
-    @Suppress("ArrayInDataClass")
     private data class DecompressItem(
+        val context: ItemContext,
         val depot: DepotDownloadInfo,
         val depotDownloadCounter: DepotDownloadCounter,
         val downloadCounter: GlobalDownloadCounter,
         val file: FileData,
         val fileStreamData: FileStreamData,
         val chunk: ChunkData,
-        val chunkBuffer: ByteArray,
+        val downloaded: Int,
+        val buffers: ChunkBufferPool.ChunkBuffers,
     )
 
-    @Suppress("ArrayInDataClass")
     private data class FileWriteItem(
+        val context: ItemContext,
         val depot: DepotDownloadInfo,
         val depotDownloadCounter: DepotDownloadCounter,
         val downloadCounter: GlobalDownloadCounter,
@@ -178,7 +198,7 @@ class DepotDownloader @JvmOverloads constructor(
         val fileStreamData: FileStreamData,
         val chunk: ChunkData,
         val decompressed: Int,
-        val decompressedBuffer: ByteArray,
+        val buffers: ChunkBufferPool.ChunkBuffers,
     )
 
     private data class DirectoryResult(val success: Boolean, val installDir: Path?)
@@ -200,6 +220,24 @@ class DepotDownloader @JvmOverloads constructor(
         var verifyAll: Boolean = false,
     )
 
+    /**
+     * State of one queued item while it downloads, kept apart from other items running at the same time.
+     */
+    private class ItemContext(val item: DownloadItem, val config: Config) {
+        var cdnClientPool: CDNClientPool? = null
+
+        // Chunks queued but not yet written.
+        val pendingChunks = AtomicInteger(0)
+
+        // Completed by processFileWrites when all pending chunks drain, or by the sentinel release in
+        // downloadSteam3DepotFiles.
+        @Volatile
+        var downloadCompletion: CompletableDeferred<Unit>? = null
+
+        // Depot config files opened through openDepotConfigStore, released when the item finishes.
+        val depotConfigPaths = mutableListOf<Path>()
+    }
+
     // endregion
 
     init {
@@ -222,35 +260,51 @@ class DepotDownloader @JvmOverloads constructor(
         }
     }
 
-    private fun createChunkProcessingFlow() = networkChunkChannel.receiveAsFlow()
+    private fun createChunkProcessingFlow() = chunkQueue.receiveAsFlow()
         .flatMapMerge(concurrency = maxDownloads) { item ->
             flow {
+                val buffers = chunkBufferPool.acquire(item.chunk.compressedLength, item.chunk.uncompressedLength)
                 try {
                     emit(
                         downloadSteam3DepotFileChunk(
+                            context = item.context,
                             downloadCounter = item.downloadCounter,
                             depotFilesData = item.depotFilesData,
                             file = item.fileData,
                             fileStreamData = item.fileStreamData,
-                            chunk = item.chunk
+                            chunk = item.chunk,
+                            buffers = buffers,
                         )
                     )
                 } catch (e: CancellationException) {
-                    throw e
+                    chunkBufferPool.release(buffers)
+                    // A chunk no server could provide cancels only its own download. Other items keep going.
+                    currentCoroutineContext().ensureActive()
+                    chunkFinished(item.context)
+                    logger?.error("Chunk download was cancelled: ${e.message}")
                 } catch (e: Exception) {
+                    chunkBufferPool.release(buffers)
+                    chunkFinished(item.context)
                     logger?.error("Error downloading chunk: ${e.message}", e)
                 }
             }.flowOn(Dispatchers.IO)
         }
         .flatMapMerge(concurrency = maxDecompress) { item ->
             flow {
-                try {
-                    emit(processFileDecompress(item))
+                // Once emitted, the buffers belong to the write stage.
+                val writeItem = try {
+                    processFileDecompress(item)
                 } catch (e: CancellationException) {
+                    chunkBufferPool.release(item.buffers)
+                    chunkFinished(item.context)
                     throw e
                 } catch (e: Exception) {
+                    chunkBufferPool.release(item.buffers)
+                    chunkFinished(item.context)
                     logger?.error("Error decompressing chunk: ${e.message}", e)
+                    return@flow
                 }
+                emit(writeItem)
             }.flowOn(Dispatchers.Default)
         }
         .flatMapMerge(concurrency = maxFileWrites) { item ->
@@ -263,14 +317,39 @@ class DepotDownloader @JvmOverloads constructor(
                 } catch (e: Exception) {
                     logger?.error("Error writing file: ${e.message}", e)
                 }
-                if (pendingChunks.decrementAndGet() == 0) {
-                    downloadCompletion?.complete(Unit)
-                }
+                chunkBufferPool.release(item.buffers)
+                chunkFinished(item.context)
                 rethrow?.let { throw it }
                 emit(Unit)
             }.flowOn(Dispatchers.IO)
         }
 
+    private fun chunkFinished(context: ItemContext) {
+        if (context.pendingChunks.decrementAndGet() == 0) {
+            context.downloadCompletion?.complete(Unit)
+        }
+    }
+
+    private fun openDepotConfigStore(context: ItemContext, path: Path): DepotConfigStore =
+        synchronized(depotConfigStores) {
+            val (store, users) = depotConfigStores[path] ?: (DepotConfigStore.open(path) to 0)
+            depotConfigStores[path] = store to users + 1
+            context.depotConfigPaths.add(path)
+            store
+        }
+
+    private fun closeDepotConfigStores(context: ItemContext) = synchronized(depotConfigStores) {
+        context.depotConfigPaths.forEach { path ->
+            val (store, users) = depotConfigStores[path] ?: return@forEach
+            if (users > 1) {
+                depotConfigStores[path] = store to users - 1
+            } else {
+                depotConfigStores.remove(path)
+            }
+        }
+        context.depotConfigPaths.clear()
+    }
+
     // region [REGION] Downloading Operations
 
     private suspend fun processPublishedFile(
@@ -300,19 +379,20 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     @Throws(IllegalStateException::class)
-    private suspend fun downloadPubFile(appId: Int, publishedFileId: Long) {
+    private suspend fun downloadPubFile(context: ItemContext, appId: Int, publishedFileId: Long) {
         val fileUrls = mutableListOf<Pair<String, String>>()
         val contentFileIds = mutableListOf<Long>()
 
         processPublishedFile(appId, publishedFileId, fileUrls, contentFileIds)
 
         fileUrls.forEach { item ->
-            downloadWebFile(appId, item.first, item.second)
+            downloadWebFile(context, appId, item.first, item.second)
         }
 
         if (contentFileIds.isNotEmpty()) {
             val depotManifestIds = contentFileIds.map { id -> appId to id }
             downloadApp(
+                context = context,
                 appId = appId,
                 depotManifestIds = depotManifestIds,
                 branch = DEFAULT_BRANCH,
@@ -326,6 +406,7 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     private suspend fun downloadUGC(
+        context: ItemContext,
         appId: Int,
         ugcId: Long,
     ) {
@@ -342,9 +423,10 @@ class DepotDownloader @JvmOverloads constructor(
         }
 
         if (!details?.url.isNullOrBlank()) {
-            downloadWebFile(appId = appId, fileName = details.fileName, url = details.url)
+            downloadWebFile(context = context, appId = appId, fileName = details.fileName, url = details.url)
         } else {
             downloadApp(
+                context = context,
                 appId = appId,
                 depotManifestIds = listOf(appId to ugcId),
                 branch = DEFAULT_BRANCH,
@@ -358,8 +440,8 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     @Throws(IllegalStateException::class, IOException::class)
-    private suspend fun downloadWebFile(appId: Int, fileName: String, url: String) {
-        val (success, installDir) = createDirectories(appId, 0, appId)
+    private suspend fun downloadWebFile(context: ItemContext, appId: Int, fileName: String, url: String) {
+        val (success, installDir) = createDirectories(context.config, appId, 0, appId)
 
         if (!success) {
             logger?.error("Error: Unable to create install directories!")
@@ -414,6 +496,7 @@ class DepotDownloader @JvmOverloads constructor(
     // L4D2 (app) supports LV
     @Throws(IllegalStateException::class, DepotDownloaderException::class)
     private suspend fun downloadApp(
+        context: ItemContext,
         appId: Int,
         depotManifestIds: List<Pair<Int, Long>>,
         branch: String,
@@ -426,7 +509,10 @@ class DepotDownloader @JvmOverloads constructor(
         var depotManifestIds = depotManifestIds.toMutableList()
 
         val steamUser = requireNotNull(steam3!!.steamUser)
-        cdnClientPool = CDNClientPool(steam3!!, appId, scope, debug)
+        val config = context.config
+
+        context.cdnClientPool?.close()
+        context.cdnClientPool = CDNClientPool(steam3!!, appId, scope, debug)
 
         // Load our configuration data containing the depots currently installed
         var configPath = config.installPath
@@ -435,7 +521,7 @@ class DepotDownloader @JvmOverloads constructor(
         }
 
         filesystem.createDirectories(configPath)
-        DepotConfigStore.loadFromFile(configPath / CONFIG_DIR / "depot.config")
+        val depotConfigStore = openDepotConfigStore(context, configPath / CONFIG_DIR / "depot.config")
 
         steam3!!.requestAppInfo(appId)
 
@@ -540,17 +626,18 @@ class DepotDownloader @JvmOverloads constructor(
         val infos = mutableListOf<DepotDownloadInfo>()
 
         depotManifestIds.forEach { (depotId, manifestId) ->
-            val info = getDepotInfo(depotId, appId, manifestId, branch)
+            val info = getDepotInfo(config, depotId, appId, manifestId, branch)
             if (info != null) {
                 infos.add(info)
             }
         }
 
-        downloadSteam3(appId, infos)
+        downloadSteam3(context, depotConfigStore, infos)
     }
 
     @Throws(IllegalStateException::class)
     private suspend fun getDepotInfo(
+        config: Config,
         depotId: Int,
         appId: Int,
         manifestId: Long,
@@ -569,12 +656,12 @@ class DepotDownloader @JvmOverloads constructor(
         }
 
         if (manifestId == INVALID_MANIFEST_ID) {
-            manifestId = getSteam3DepotManifest(depotId, appId, branch)
+            manifestId = getSteam3DepotManifest(config, depotId, appId, branch)
 
             if (manifestId == INVALID_MANIFEST_ID && !branch.equals(DEFAULT_BRANCH, true)) {
                 logger?.error("Warning: Depot $depotId does not have branch named \"$branch\". Trying $DEFAULT_BRANCH branch.")
                 branch = DEFAULT_BRANCH
-                manifestId = getSteam3DepotManifest(depotId, appId, branch)
+                manifestId = getSteam3DepotManifest(config, depotId, appId, branch)
             }
 
             if (manifestId == INVALID_MANIFEST_ID) {
@@ -593,7 +680,7 @@ class DepotDownloader @JvmOverloads constructor(
 
         val uVersion = getSteam3AppBuildNumber(appId, branch)
 
-        val (success, installDir) = createDirectories(depotId, uVersion, appId)
+        val (success, installDir) = createDirectories(config, depotId, uVersion, appId)
         if (!success) {
             logger?.error("Error: Unable to create install directories!")
             return null
@@ -620,6 +707,7 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     private suspend fun getSteam3DepotManifest(
+        config: Config,
         depotId: Int,
         appId: Int,
         branch: String,
@@ -644,7 +732,7 @@ class DepotDownloader @JvmOverloads constructor(
 
             steam3!!.requestAppInfo(otherAppId)
 
-            return getSteam3DepotManifest(depotId, otherAppId, branch)
+            return getSteam3DepotManifest(config, depotId, otherAppId, branch)
         }
 
         var manifests = depotChild["manifests"]
@@ -745,7 +833,7 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     @Throws(IllegalStateException::class, IOException::class)
-    private fun createDirectories(depotId: Int, depotVersion: Int, appId: Int = 0): DirectoryResult {
+    private fun createDirectories(config: Config, depotId: Int, depotVersion: Int, appId: Int = 0): DirectoryResult {
         var installDir: Path?
         try {
             if (config.installPath?.toString().isNullOrBlank()) {
@@ -844,26 +932,28 @@ class DepotDownloader @JvmOverloads constructor(
             return false
         }
 
-        if (accessibleIds == null) {
-            val licenseQuery = if (steamID.accountType == EAccountType.AnonUser) {
-                listOf(17906)
-            } else {
-                licenses.map { it.packageID }.distinct()
-            }
+        val ids = accessibleIds ?: accessibleIdsMutex.withLock {
+            accessibleIds ?: run {
+                val licenseQuery = if (steamID.accountType == EAccountType.AnonUser) {
+                    listOf(17906)
+                } else {
+                    licenses.map { it.packageID }.distinct()
+                }
 
-            steam3!!.requestPackageInfo(licenseQuery)
+                steam3!!.requestPackageInfo(licenseQuery)
 
-            accessibleIds = buildSet {
-                licenseQuery.forEach { license ->
-                    steam3!!.packageInfo[license]?.value?.let { pkg ->
-                        pkg.keyValues["appids"].children.forEach { add(it.asInteger()) }
-                        pkg.keyValues["depotids"].children.forEach { add(it.asInteger()) }
+                buildSet {
+                    licenseQuery.forEach { license ->
+                        steam3!!.packageInfo[license]?.value?.let { pkg ->
+                            pkg.keyValues["appids"].children.forEach { add(it.asInteger()) }
+                            pkg.keyValues["depotids"].children.forEach { add(it.asInteger()) }
+                        }
                     }
-                }
+                }.also { accessibleIds = it }
             }
         }
 
-        if (depotId in accessibleIds!!) return true
+        if (depotId in ids) return true
 
         // Check if this app is free to download without a license
         val info = getSteam3AppSection(appId, EAppInfoSection.Common)
@@ -871,8 +961,12 @@ class DepotDownloader @JvmOverloads constructor(
         return info != null && info["FreeToDownload"].asBoolean()
     }
 
-    private suspend fun downloadSteam3(mainAppId: Int, depots: List<DepotDownloadInfo>): Unit = coroutineScope {
-        cdnClientPool?.updateServerList(maxDownloads)
+    private suspend fun downloadSteam3(
+        context: ItemContext,
+        depotConfigStore: DepotConfigStore,
+        depots: List<DepotDownloadInfo>,
+    ): Unit = coroutineScope {
+        context.cdnClientPool?.updateServerList(maxDownloads)
 
         val downloadCounter = GlobalDownloadCounter()
         val depotsToDownload = ArrayList<DepotFilesData>(depots.size)
@@ -880,7 +974,7 @@ class DepotDownloader @JvmOverloads constructor(
 
         // Fetch all depot manifests in parallel for faster startup
         depots.map { depot ->
-            async { processDepotManifestAndFiles(depot, downloadCounter) }
+            async { processDepotManifestAndFiles(context, depotConfigStore, depot, downloadCounter) }
         }.awaitAll().filterNotNull().forEach { depotFileData ->
             depotsToDownload.add(depotFileData)
             allFileNamesAllDepots.addAll(depotFileData.allFileNames)
@@ -888,7 +982,7 @@ class DepotDownloader @JvmOverloads constructor(
 
         // If we're about to write all the files to the same directory, we will need to first de-duplicate any files by path
         // This is in last-depot-wins order, from Steam or the list of depots supplied by the user
-        if (config.installPath != null && depotsToDownload.isNotEmpty()) {
+        if (context.config.installPath != null && depotsToDownload.isNotEmpty()) {
             val claimedFileNames = mutableSetOf<String>()
             for (i in depotsToDownload.indices.reversed()) {
                 // For each depot, remove all files from the list that have been claimed by a later depot
@@ -898,15 +992,16 @@ class DepotDownloader @JvmOverloads constructor(
         }
 
         if (depotsToDownload.isEmpty()) {
-            finishDepotDownload(mainAppId)
+            finishDepotDownload(context)
         } else {
             // Sentinel: keeps pendingChunks ≥ 1 while files are still being enumerated,
             // preventing a premature zero signal before all chunks have been submitted.
-            pendingChunks.set(1)
-            downloadCompletion = CompletableDeferred()
+            context.pendingChunks.set(1)
+            context.downloadCompletion = CompletableDeferred()
             depotsToDownload.forEachIndexed { index, depotFileData ->
                 downloadSteam3DepotFiles(
-                    mainAppId,
+                    context,
+                    depotConfigStore,
                     downloadCounter,
                     depotFileData,
                     allFileNamesAllDepots,
@@ -922,9 +1017,13 @@ class DepotDownloader @JvmOverloads constructor(
     }
 
     private suspend fun processDepotManifestAndFiles(
+        context: ItemContext,
+        depotConfigStore: DepotConfigStore,
         depot: DepotDownloadInfo,
         downloadCounter: GlobalDownloadCounter,
     ): DepotFilesData? = withContext(Dispatchers.IO) {
+        val config = context.config
+        val cdnClientPool = context.cdnClientPool
         val depotCounter = DepotDownloadCounter()
 
         logger?.debug("Processing depot ${depot.depotId}")
@@ -938,11 +1037,10 @@ class DepotDownloader @JvmOverloads constructor(
 
         @Suppress("VariableInitializerIsRedundant")
         var lastManifestId = INVALID_MANIFEST_ID
-        lastManifestId = DepotConfigStore.getInstance().installedManifestIDs[depot.depotId] ?: INVALID_MANIFEST_ID
+        lastManifestId = depotConfigStore.getInstalledManifest(depot.depotId) ?: INVALID_MANIFEST_ID
 
         // In case we have an early exit, this will force equiv of verifyall next run.
-        DepotConfigStore.getInstance().installedManifestIDs[depot.depotId] = INVALID_MANIFEST_ID
-        DepotConfigStore.save()
+        depotConfigStore.setInstalledManifest(depot.depotId, INVALID_MANIFEST_ID)
 
         if (lastManifestId != INVALID_MANIFEST_ID) {
             // We only have to show this warning if the old manifest ID was different
@@ -1083,7 +1181,7 @@ class DepotDownloader @JvmOverloads constructor(
 
         val stagingDir = depot.installDir / STAGING_DIR
 
-        val filesAfterExclusions = newManifest.files.filter { testIsFileIncluded(it.fileName) }
+        val filesAfterExclusions = newManifest.files.filter { testIsFileIncluded(config, it.fileName) }
         val allFileNames = HashSet<String>(filesAfterExclusions.size)
 
         // Pre-process
@@ -1124,7 +1222,8 @@ class DepotDownloader @JvmOverloads constructor(
 
     @OptIn(DelicateCoroutinesApi::class)
     private suspend fun downloadSteam3DepotFiles(
-        mainAppId: Int,
+        context: ItemContext,
+        depotConfigStore: DepotConfigStore,
         downloadCounter: GlobalDownloadCounter,
         depotFilesData: DepotFilesData,
         allFileNamesAllDepots: HashSet<String>,
@@ -1142,6 +1241,7 @@ class DepotDownloader @JvmOverloads constructor(
                 files.map { file ->
                     async {
                         downloadSteam3DepotFile(
+                            context = context,
                             downloadCounter = downloadCounter,
                             depotFilesData = depotFilesData,
                             file = file,
@@ -1151,15 +1251,13 @@ class DepotDownloader @JvmOverloads constructor(
             }
         } finally {
             if (isLastDepot) {
-                logger?.debug("Waiting for ${pendingChunks.get()} pending chunks to complete for depot ${depot.depotId}")
+                logger?.debug("Waiting for ${context.pendingChunks.get()} pending chunks to complete for depot ${depot.depotId}")
 
                 // Release the sentinel. If no chunks are still in flight, signal immediately;
                 // otherwise suspend until the last processFileWrites call signals us.
-                if (pendingChunks.decrementAndGet() == 0) {
-                    downloadCompletion?.complete(Unit)
-                }
-                downloadCompletion?.await()
-                downloadCompletion = null
+                chunkFinished(context)
+                context.downloadCompletion?.await()
+                context.downloadCompletion = null
 
                 logger?.debug("All chunks completed for depot ${depot.depotId}")
             }
@@ -1168,12 +1266,12 @@ class DepotDownloader @JvmOverloads constructor(
         // Check for deleted files if updating the depot.
         if (depotFilesData.previousManifest != null) {
             val previousFilteredFiles = depotFilesData.previousManifest.files
-                .filter { testIsFileIncluded(it.fileName) }
+                .filter { testIsFileIncluded(context.config, it.fileName) }
                 .map { it.fileName }
                 .toHashSet()
 
             // Check if we are writing to a single output directory. If not, each depot folder is managed independently
-            if (config.installPath == null) {
+            if (context.config.installPath == null) {
                 // Of the list of files in the previous manifest, remove any file names that exist in the current set of all file names
                 previousFilteredFiles.removeAll(depotFilesData.allFileNames)
             } else {
@@ -1193,8 +1291,7 @@ class DepotDownloader @JvmOverloads constructor(
             }
         }
 
-        DepotConfigStore.getInstance().installedManifestIDs[depot.depotId] = depot.manifestId
-        DepotConfigStore.save()
+        depotConfigStore.setInstalledManifest(depot.depotId, depot.manifestId)
 
         // Notify depot completion
         notifyListeners { listener ->
@@ -1208,11 +1305,12 @@ class DepotDownloader @JvmOverloads constructor(
         logger?.debug("Depot ${depot.depotId} - Downloaded ${depotCounter.depotBytesCompressed} bytes (${depotCounter.depotBytesUncompressed} bytes uncompressed)")
 
         if (isLastDepot) {
-            finishDepotDownload(mainAppId)
+            finishDepotDownload(context)
         }
     }
 
     private suspend fun downloadSteam3DepotFile(
+        context: ItemContext,
         downloadCounter: GlobalDownloadCounter,
         depotFilesData: DepotFilesData,
         file: FileData,
@@ -1256,50 +1354,28 @@ class DepotDownloader @JvmOverloads constructor(
                 neededChunks = arrayListOf()
 
                 val hashMatches = oldManifestFile.fileHash.contentEquals(file.fileHash)
-                if (config.verifyAll || !hashMatches) {
+                if (context.config.verifyAll || !hashMatches) {
                     // we have a version of this file, but it doesn't fully match what we want
-                    if (config.verifyAll) {
+                    if (context.config.verifyAll) {
                         logger?.debug("Validating: $fileFinalPath")
                     }
 
-                    val matchingChunks = arrayListOf<ChunkMatch>()
-
-                    file.chunks.forEach { chunk ->
-                        yield()
-
-                        val oldChunk = oldManifestFile.chunks.firstOrNull { c ->
-                            c.chunkID.contentEquals(chunk.chunkID)
-                        }
-                        if (oldChunk != null) {
-                            val chunkMatch = ChunkMatch(oldChunk, chunk)
-                            matchingChunks.add(chunkMatch)
-                        } else {
-                            neededChunks.add(chunk)
-                        }
-                    }
+                    val plan = ChunkDelta.plan(oldManifestFile.chunks, file.chunks)
+                    val needed = plan.needed
+                    neededChunks = needed
 
-                    val orderedChunks = matchingChunks.sortedBy { x -> x.oldChunk.offset }
+                    val intact = ChunkDelta.verify(fileFinalPath, plan.matches, maxDecompress)
 
                     val copyChunks = arrayListOf<ChunkMatch>()
-
-                    filesystem.openReadOnly(fileFinalPath).use { handle ->
-                        orderedChunks.forEach { match ->
-                            yield()
-
-                            // Read the chunk data into a byte array
-                            val length = match.oldChunk.uncompressedLength
-                            val buffer = ByteArray(length)
-                            handle.read(match.oldChunk.offset, buffer, 0, length)
-
-                            if (Adler32.calculate(buffer) != match.oldChunk.checksum) {
-                                neededChunks.add(match.newChunk)
-                            } else {
-                                copyChunks.add(match)
-                            }
+                    plan.matches.forEachIndexed { i, match ->
+                        if (intact[i]) {
+                            copyChunks.add(match)
+                        } else {
+                            needed.add(match.newChunk)
                         }
                     }
 
-                    if (!hashMatches || neededChunks.isNotEmpty()) {
+                    if (!hashMatches || needed.isNotEmpty()) {
                         filesystem.atomicMove(fileFinalPath, fileStagingPath)
 
                         try {
@@ -1312,18 +1388,7 @@ class DepotDownloader @JvmOverloads constructor(
                             )
                         }
 
-                        filesystem.openReadOnly(fileStagingPath).use { oldHandle ->
-                            filesystem.openReadWrite(fileFinalPath).use { newHandle ->
-                                // okio resize can OOM for large files on android.
-                                for (match in copyChunks) {
-                                    ensureActive()
-
-                                    val tmp = ByteArray(match.oldChunk.uncompressedLength)
-                                    oldHandle.read(match.oldChunk.offset, tmp, 0, tmp.size)
-                                    newHandle.write(match.newChunk.offset, tmp, 0, tmp.size)
-                                }
-                            }
-                        }
+                        ChunkDelta.copy(fileStagingPath, fileFinalPath, copyChunks)
 
                         filesystem.delete(fileStagingPath)
                     }
@@ -1344,32 +1409,58 @@ class DepotDownloader @JvmOverloads constructor(
                     }
                 }
 
-                filesystem.openReadWrite(fileFinalPath).use { handle ->
-                    logger?.debug("Validating $fileFinalPath")
-                    notifyListeners { it.onStatusUpdate("Validating: ${file.fileName}") }
+                logger?.debug("Validating $fileFinalPath")
+                notifyListeners { it.onStatusUpdate("Validating: ${file.fileName}") }
 
-                    neededChunks = Util.validateSteam3FileChecksums(
-                        handle = handle,
-                        chunkData = file.chunks.sortedBy { it.offset }
-                    ).toMutableList()
-                }
-            }
+                val job = coroutineContext.job
+                val started = System.nanoTime()
+                var gigabytesPerSecond = 0.0
 
-            if (neededChunks!!.isEmpty()) {
-                synchronized(depotDownloadCounter) {
-                    depotDownloadCounter.sizeDownloaded += file.totalSize
+                neededChunks = Util.validateSteam3FileChecksums(
+                    path = fileFinalPath,
+                    chunkData = file.chunks,
+                ) { validatedBytes, totalBytes ->
+                    job.ensureActive()
 
-                    val percentage =
-                        (depotDownloadCounter.sizeDownloaded / depotDownloadCounter.completeDownloadSize.toFloat()) * 100.0f
-                    logger?.debug("%.2f%% %s".format(percentage, fileFinalPath))
-                }
+                    val seconds = (System.nanoTime() - started) / 1e9
+                    gigabytesPerSecond = if (seconds > 0) validatedBytes / seconds / 1e9 else 0.0
+
+                    notifyListeners { listener ->
+                        listener.onValidationProgress(
+                            depotId = depot.depotId,
+                            fileName = file.fileName,
+                            validatedBytes = validatedBytes,
+                            totalBytes = totalBytes,
+                            gigabytesPerSecond = gigabytesPerSecond,
+                        )
+                    }
+                }.toMutableList()
+
+                logger?.debug("Validated $fileFinalPath at %.2f GB/s".format(gigabytesPerSecond))
+            }
+        }
 
-                downloadCounter.completeDownloadSize.addAndGet(-file.totalSize)
+        if (chunkStore != null && neededChunks!!.isNotEmpty()) {
+            restoreChunksFromStore(chunkStore, fileFinalPath, neededChunks!!)
+        }
+
+        // new files still need their executable flag, restored or not
+        if (fileDidExist && neededChunks!!.isEmpty()) {
+            synchronized(depotDownloadCounter) {
+                depotDownloadCounter.sizeDownloaded += file.totalSize
 
-                return@withContext
+                val percentage =
+                    (depotDownloadCounter.sizeDownloaded / depotDownloadCounter.completeDownloadSize.toFloat()) * 100.0f
+                logger?.debug("%.2f%% %s".format(percentage, fileFinalPath))
             }
 
-            val sizeOnDisk = file.totalSize - neededChunks!!.sumOf { it.uncompressedLength }
+            downloadCounter.completeDownloadSize.addAndGet(-file.totalSize)
+
+            return@withContext
+        }
+
+        val sizeOnDisk = file.totalSize - neededChunks!!.sumOf { it.uncompressedLength }
+        if (sizeOnDisk > 0) {
             synchronized(depotDownloadCounter) {
                 depotDownloadCounter.sizeDownloaded += sizeOnDisk
             }
@@ -1396,26 +1487,64 @@ class DepotDownloader @JvmOverloads constructor(
         )
 
         neededChunks!!.forEach { chunk ->
-            pendingChunks.incrementAndGet()
-            networkChunkChannel.send(
-                NetworkChunkItem(
-                    downloadCounter = downloadCounter,
-                    depotFilesData = depotFilesData,
-                    fileStreamData = fileStreamData,
-                    fileData = file,
-                    chunk = chunk,
-                    totalChunksForFile = neededChunks!!.size,
+            context.pendingChunks.incrementAndGet()
+            try {
+                chunkQueue.send(
+                    context,
+                    NetworkChunkItem(
+                        context = context,
+                        downloadCounter = downloadCounter,
+                        depotFilesData = depotFilesData,
+                        fileStreamData = fileStreamData,
+                        fileData = file,
+                        chunk = chunk,
+                        totalChunksForFile = neededChunks!!.size,
+                    )
                 )
-            )
+            } catch (e: Exception) {
+                chunkFinished(context)
+                throw e
+            }
         }
     }
 
+    /**
+     * Copies the chunks of [neededChunks] that [store] holds into the file at [path], and removes them from the list.
+     */
+    private suspend fun restoreChunksFromStore(store: ChunkStore, path: Path, neededChunks: MutableList<ChunkData>) {
+        val stored = neededChunks.filter { chunk -> chunk.chunkID?.let { it in store } == true }
+        if (stored.isEmpty()) {
+            return
+        }
+
+        val buffer = ByteArray(stored.maxOf { it.uncompressedLength })
+        // by identity, a file can hold the same chunk at several offsets
+        val restored = Collections.newSetFromMap(IdentityHashMap<ChunkData, Boolean>())
+
+        filesystem.openReadWrite(path).use { handle ->
+            stored.forEach { chunk ->
+                yield()
+
+                if (store.read(chunk, buffer)) {
+                    handle.write(chunk.offset, buffer, 0, chunk.uncompressedLength)
+                    restored.add(chunk)
+                }
+            }
+        }
+
+        logger?.debug("Restored ${restored.size} of ${neededChunks.size} chunks from the chunk store for $path")
+
+        neededChunks.removeAll { it in restored }
+    }
+
     private suspend fun downloadSteam3DepotFileChunk(
+        context: ItemContext,
         downloadCounter: GlobalDownloadCounter,
         depotFilesData: DepotFilesData,
         file: FileData,
         fileStreamData: FileStreamData,
         chunk: ChunkData,
+        buffers: ChunkBufferPool.ChunkBuffers,
     ): DecompressItem = withContext(Dispatchers.IO) {
         ensureActive()
 
@@ -1425,8 +1554,9 @@ class DepotDownloader @JvmOverloads constructor(
         val chunkIdBytes = requireNotNull(chunk.chunkID) { "Chunk must have a ChunkID." }
         val chunkID = Strings.toHex(chunkIdBytes)
 
+        val cdnClientPool = context.cdnClientPool
+
         var downloaded = 0
-        val chunkBuffer = ByteArray(chunk.compressedLength)
 
         do {
             ensureActive()
@@ -1455,7 +1585,7 @@ class DepotDownloader @JvmOverloads constructor(
                     depotId = depot.depotId,
                     chunk = chunk,
                     server = connection,
-                    destination = chunkBuffer,
+                    destination = buffers.compressed,
                     depotKey = depot.depotKey,
                     proxyServer = cdnClientPool!!.proxyServer,
                     cdnAuthToken = cdnToken,
@@ -1512,17 +1642,19 @@ class DepotDownloader @JvmOverloads constructor(
 
         // Return the decompress item for the next stage in the pipeline
         return@withContext DecompressItem(
+            context = context,
             depot = depot,
             depotDownloadCounter = depotDownloadCounter,
             downloadCounter = downloadCounter,
             file = file,
             fileStreamData = fileStreamData,
             chunk = chunk,
-            chunkBuffer = chunkBuffer,
+            downloaded = downloaded,
+            buffers = buffers,
         )
     }
 
-    private fun testIsFileIncluded(filename: String): Boolean {
+    private fun testIsFileIncluded(config: Config, filename: String): Boolean {
         if (!config.usingFileList) {
             return true
         }
@@ -1542,11 +1674,8 @@ class DepotDownloader @JvmOverloads constructor(
         return false
     }
 
-    private fun finishDepotDownload(mainAppId: Int) {
-        val appItem = processingItemsMap[mainAppId]
-        if (appItem != null) {
-            notifyListeners { it.onDownloadCompleted(appItem) }
-        }
+    private fun finishDepotDownload(context: ItemContext) {
+        notifyListeners { it.onDownloadCompleted(context.item) }
     }
 
     // endregion
@@ -1631,102 +1760,141 @@ class DepotDownloader @JvmOverloads constructor(
             createChunkProcessingFlow().collect()
         }
 
+        val itemSlots = Semaphore(maxConcurrentItems.coerceAtLeast(1))
+
         try {
-            for (item in processingChannel) {
-                try {
+            coroutineScope {
+                for (item in processingChannel) {
                     ensureActive()
 
-                    // Set configuration values
-                    config = config.copy(
-                        downloadManifestOnly = item.downloadManifestOnly,
-                        installPath = item.installDirectory?.toPath(),
-                        installToGameNameDirectory = item.installToGameNameDirectory,
-                        verifyAll = item.verify,
-                    )
+                    itemSlots.acquire()
+                    launch {
+                        try {
+                            processItem(item)
+                        } finally {
+                            itemSlots.release()
+                        }
+                    }
+                }
+            }
+        } finally {
+            completionFuture.complete(null)
+        }
+    }
 
-                    processingItemsMap[item.appId] = item
+    private suspend fun processItem(item: DownloadItem) {
+        // Every item starts from the downloader defaults, so nothing carries over from items before it
+        var config = Config(
+            androidEmulation = androidEmulation,
+            downloadManifestOnly = item.downloadManifestOnly,
+            installPath = item.installDirectory?.toPath(),
+            installToGameNameDirectory = item.installToGameNameDirectory,
+            verifyAll = item.verify,
+        )
 
-                    when (item) {
-                        is PubFileItem -> {
-                            logger?.debug("Downloading PUB File for ${item.appId}")
-                            notifyListeners { it.onDownloadStarted(item) }
-                            downloadPubFile(item.appId, item.pubFile)
-                        }
+        if (item is AppItem) {
+            config = config.copy(
+                betaPassword = item.branchPassword,
+                downloadAllPlatforms = item.downloadAllPlatforms,
+                downloadAllArchs = item.downloadAllArchs,
+                downloadAllLanguages = item.downloadAllLanguages,
+            )
+        }
 
-                        is UgcItem -> {
-                            logger?.debug("Downloading UGC File for ${item.appId}")
-                            notifyListeners { it.onDownloadStarted(item) }
-                            downloadUGC(item.appId, item.ugcId)
-                        }
+        val context = ItemContext(item, config)
+        activeItems.add(context)
 
-                        is AppItem -> {
-                            val branch = item.branch ?: DEFAULT_BRANCH
-                            config = config.copy(betaPassword = item.branchPassword)
+        try {
+            when (item) {
+                is PubFileItem -> {
+                    logger?.debug("Downloading PUB File for ${item.appId}")
+                    notifyListeners { it.onDownloadStarted(item) }
+                    downloadPubFile(context, item.appId, item.pubFile)
+                }
 
-                            if (!config.betaPassword.isNullOrBlank() && branch.isBlank()) {
-                                logger?.error("Error: Cannot specify 'branchpassword' when 'branch' is not specified.")
-                                continue
-                            }
+                is UgcItem -> {
+                    logger?.debug("Downloading UGC File for ${item.appId}")
+                    notifyListeners { it.onDownloadStarted(item) }
+                    downloadUGC(context, item.appId, item.ugcId)
+                }
 
-                            config = config.copy(downloadAllPlatforms = item.downloadAllPlatforms)
-                            val os = item.os
+                is AppItem -> {
+                    val branch = item.branch ?: DEFAULT_BRANCH
 
-                            if (config.downloadAllPlatforms && !os.isNullOrBlank()) {
-                                logger?.error("Error: Cannot specify `os` when `all-platforms` is specified.")
-                                continue
-                            }
+                    if (!config.betaPassword.isNullOrBlank() && branch.isBlank()) {
+                        logger?.error("Error: Cannot specify 'branchpassword' when 'branch' is not specified.")
+                        return
+                    }
 
-                            config = config.copy(downloadAllArchs = item.downloadAllArchs)
-                            val arch = item.osArch
+                    val os = item.os
 
-                            if (config.downloadAllArchs && !arch.isNullOrBlank()) {
-                                logger?.error("Error: Cannot specify `osarch` when `all-archs` is specified.")
-                                continue
-                            }
+                    if (config.downloadAllPlatforms && !os.isNullOrBlank()) {
+                        logger?.error("Error: Cannot specify `os` when `all-platforms` is specified.")
+                        return
+                    }
 
-                            config = config.copy(downloadAllLanguages = item.downloadAllLanguages)
-                            val language = item.language
+                    val arch = item.osArch
 
-                            if (config.downloadAllLanguages && !language.isNullOrBlank()) {
-                                logger?.error("Error: Cannot specify `language` when `all-languages` is specified.")
-                                continue
-                            }
+                    if (config.downloadAllArchs && !arch.isNullOrBlank()) {
+                        logger?.error("Error: Cannot specify `osarch` when `all-archs` is specified.")
+                        return
+                    }
 
-                            val depotManifestIds = mutableListOf<Pair<Int, Long>>()
-                            val depotIdList = item.depot
-                            val manifestIdList = item.manifest
-
-                            if (manifestIdList.isNotEmpty()) {
-                                if (depotIdList.size != manifestIdList.size) {
-                                    logger?.error("Error: `manifest` requires one id for every `depot` specified")
-                                    continue
-                                }
-                                depotManifestIds.addAll(depotIdList.zip(manifestIdList))
-                            } else {
-                                depotManifestIds.addAll(depotIdList.map { it to INVALID_MANIFEST_ID })
-                            }
+                    val language = item.language
 
-                            logger?.debug("Downloading App for ${item.appId}")
-                            notifyListeners { it.onDownloadStarted(item) }
-                            downloadApp(
-                                appId = item.appId,
-                                depotManifestIds = depotManifestIds,
-                                branch = branch,
-                                os = os,
-                                arch = arch,
-                                language = language,
-                                lv = item.lowViolence,
-                                isUgc = false,
-                            )
+                    if (config.downloadAllLanguages && !language.isNullOrBlank()) {
+                        logger?.error("Error: Cannot specify `language` when `all-languages` is specified.")
+                        return
+                    }
+
+                    val depotManifestIds = mutableListOf<Pair<Int, Long>>()
+                    val depotIdList = item.depot
+                    val manifestIdList = item.manifest
+
+                    if (manifestIdList.isNotEmpty()) {
+                        if (depotIdList.size != manifestIdList.size) {
+                            logger?.error("Error: `manifest` requires one id for every `depot` specified")
+                            return
                         }
+                        depotManifestIds.addAll(depotIdList.zip(manifestIdList))
+                    } else {
+                        depotManifestIds.addAll(depotIdList.map { it to INVALID_MANIFEST_ID })
                     }
-                } catch (e: Exception) {
-                    logger?.error("Error downloading item ${item.appId}: ${e.message}", e)
-                    notifyListeners { it.onDownloadFailed(item, e) }
+
+                    logger?.debug("Downloading App for ${item.appId}")
+                    notifyListeners { it.onDownloadStarted(item) }
+                    downloadApp(
+                        context = context,
+                        appId = item.appId,
+                        depotManifestIds = depotManifestIds,
+                        branch = branch,
+                        os = os,
+                        arch = arch,
+                        language = language,
+                        lv = item.lowViolence,
+                        isUgc = false,
+                    )
                 }
             }
+        } catch (e: Exception) {
+            logger?.error("Error downloading item ${item.appId}: ${e.message}", e)
+            notifyListeners { it.onDownloadFailed(item, e) }
         } finally {
-            completionFuture.complete(null)
+            activeItems.remove(context)
+
+            // chunks still queued when the item failed, they would only fail once the CDN pool is closed below
+            chunkQueue.removeOwner(context).forEach { chunkFinished(it.context) }
+
+            closeDepotConfigStores(context)
+
+            context.cdnClientPool?.close()
+            context.cdnClientPool = null
+
+            try {
+                chunkStore?.flush()
+            } catch (e: IOException) {
+                logger?.error("Failed to write the chunk store index: ${e.message}")
+            }
         }
     }
 
@@ -1736,12 +1904,19 @@ class DepotDownloader @JvmOverloads constructor(
 
         val depot = item.depot
         val chunk = item.chunk
-        val chunkBuffer = item.chunkBuffer
-
-        val decompressedBuffer = ByteArray(chunk.uncompressedLength)
-        val written = DepotChunk.process(chunk, chunkBuffer, decompressedBuffer, depot.depotKey)
+        val buffers = item.buffers
+
+        val written = DepotChunk.process(
+            info = chunk,
+            data = buffers.compressed,
+            offset = 0,
+            length = item.downloaded,
+            destination = buffers.decompressed,
+            depotKey = depot.depotKey,
+        )
 
         return@withContext FileWriteItem(
+            context = item.context,
             depot = depot,
             depotDownloadCounter = item.depotDownloadCounter,
             downloadCounter = item.downloadCounter,
@@ -1749,7 +1924,7 @@ class DepotDownloader @JvmOverloads constructor(
             fileStreamData = item.fileStreamData,
             chunk = chunk,
             decompressed = written,
-            decompressedBuffer = decompressedBuffer,
+            buffers = buffers,
         )
     }
 
@@ -1764,7 +1939,7 @@ class DepotDownloader @JvmOverloads constructor(
         val fileStreamData = item.fileStreamData
         val chunk = item.chunk
         val written = item.decompressed
-        val decompressedBuffer = item.decompressedBuffer
+        val decompressedBuffer = item.buffers.decompressed
 
         try {
             fileStreamData.fileLock.lock()
@@ -1779,6 +1954,14 @@ class DepotDownloader @JvmOverloads constructor(
             fileStreamData.fileLock.unlock()
         }
 
+        if (chunkStore != null) {
+            try {
+                chunkStore.put(chunk.chunkID!!, decompressedBuffer, 0, written)
+            } catch (e: IOException) {
+                logger?.error("Failed to add chunk ${Strings.toHex(chunk.chunkID)} to the chunk store: ${e.message}")
+            }
+        }
+
         val remainingChunks = fileStreamData.chunksToDownload.decrementAndGet()
         if (remainingChunks == 0) {
             fileStreamData.fileHandle?.close()
@@ -1855,7 +2038,7 @@ class DepotDownloader @JvmOverloads constructor(
 
     override fun close() {
         processingChannel.close()
-        networkChunkChannel.close()
+        chunkQueue.close()
 
         scope.cancel("DepotDownloader Closing")
 
@@ -1866,8 +2049,13 @@ class DepotDownloader @JvmOverloads constructor(
         steam3?.close()
         steam3 = null
 
-        cdnClientPool?.close()
-        cdnClientPool = null
+        activeItems.forEach { context ->
+            context.cdnClientPool?.close()
+            context.cdnClientPool = null
+        }
+        activeItems.clear()
+
+        synchronized(depotConfigStores) { depotConfigStores.clear() }
 
         logger = null
     }
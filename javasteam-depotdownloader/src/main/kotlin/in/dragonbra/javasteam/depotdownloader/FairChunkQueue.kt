@@ -0,0 +1,123 @@
+package `in`.dragonbra.javasteam.depotdownloader
+
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.sync.Semaphore
+
+/**
+ * Queue that feeds the chunk pipeline of [DepotDownloader] from several download items at once.
+ *
+ * Every owner gets its own lane, and lanes are served in round-robin order, so an item that queues thousands of
+ * chunks only gets its turn like any other instead of pushing the chunks of later items to the back.
+ *
+ * An owner may have at most [laneCapacity] entries waiting in its lane. [send] suspends beyond that, which keeps a
+ * large item from building up an unbounded backlog while it enumerates its files.
+ *
+ * @param K The owner type, used as a hash key.
+ * @param T The element type.
+ * @param laneCapacity Maximum number of entries queued per owner.
+ */
+internal class FairChunkQueue<K : Any, T : Any>(private val laneCapacity: Int) {
+
+    private class Lane<T>(capacity: Int) {
+        val permits = Semaphore(capacity)
+        val entries = ArrayDeque<T>()
+    }
+
+    private val lock = Any()
+
+    private val lanes = HashMap<K, Lane<T>>()
+
+    // Owners with queued entries, in the order they are served next.
+    private val ready = ArrayDeque<K>()
+
+    // One token per queued entry, so receivers suspend until there is something to take.
+    private val available = Channel<Unit>(Channel.UNLIMITED)
+
+    init {
+        require(laneCapacity > 0) { "laneCapacity must be positive" }
+    }
+
+    /**
+     * Queues [element] in the lane of [owner], suspending while that lane is full.
+     */
+    suspend fun send(owner: K, element: T) {
+        val lane = synchronized(lock) { lanes.getOrPut(owner) { Lane(laneCapacity) } }
+
+        lane.permits.acquire()
+
+        synchronized(lock) {
+            if (lane.entries.isEmpty()) {
+                ready.addLast(owner)
+            }
+            lane.entries.addLast(element)
+        }
+
+        if (available.trySend(Unit).isClosed) {
+            throw IllegalStateException("FairChunkQueue is closed")
+        }
+    }
+
+    /**
+     * Drops the lane of [owner] along with whatever is still queued in it. Called once an owner is done sending, it
+     * must not be called while a [send] for [owner] is in progress.
+     *
+     * @return The dropped entries, which are never handed out.
+     */
+    fun removeOwner(owner: K): List<T> {
+        val lane: Lane<T>
+        val dropped: List<T>
+
+        synchronized(lock) {
+            lane = lanes.remove(owner) ?: return emptyList()
+            dropped = lane.entries.toList()
+            lane.entries.clear()
+            ready.remove(owner)
+        }
+
+        // the tokens of the dropped entries stay in available, take skips them
+        repeat(dropped.size) { lane.permits.release() }
+        return dropped
+    }
+
+    /**
+     * Stops handing out entries. Suspended receivers and the flow from [receiveAsFlow] complete.
+     */
+    fun close() {
+        available.close()
+    }
+
+    /**
+     * A hot flow of queued entries in round-robin order across owners. Every entry is delivered to one collector.
+     */
+    fun receiveAsFlow(): Flow<T> = flow {
+        while (true) {
+            if (available.receiveCatching().isClosed) {
+                break
+            }
+            take()?.let { emit(it) }
+        }
+    }
+
+    /**
+     * Takes the next entry, or returns null if the entry of the token that was received belonged to a removed lane.
+     */
+    private fun take(): T? {
+        val lane: Lane<T>
+        val element: T
+
+        synchronized(lock) {
+            val owner = ready.removeFirstOrNull() ?: return null
+            lane = lanes.getValue(owner)
+            element = lane.entries.removeFirst()
+
+            if (lane.entries.isNotEmpty()) {
+                ready.addLast(owner)
+            }
+        }
+
+        lane.permits.release()
+        return element
+    }
+}
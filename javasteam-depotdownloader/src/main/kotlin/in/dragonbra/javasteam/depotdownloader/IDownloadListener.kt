@@ -59,6 +59,23 @@ interface IDownloadListener {
      */
     fun onChunkCompleted(depotId: Int, depotPercentComplete: Float, compressedBytes: Long, uncompressedBytes: Long) {}
 
+    /**
+     * Called while an existing file is validated against the manifest, each time another part of it was checked.
+     *
+     * @param depotId The depot being validated
+     * @param fileName Relative file path
+     * @param validatedBytes Bytes of the file checked so far
+     * @param totalBytes Bytes of the file to check
+     * @param gigabytesPerSecond Validation throughput for this file so far, in GB/s
+     */
+    fun onValidationProgress(
+        depotId: Int,
+        fileName: String,
+        validatedBytes: Long,
+        totalBytes: Long,
+        gigabytesPerSecond: Double,
+    ) {}
+
     /**
      * Called when a depot finishes downloading.
      * Use this for printing summary like "Depot 228990 - Downloaded X bytes (Y bytes uncompressed)"
@@ -14,8 +14,14 @@ import okio.Path.Companion.toPath
 import okio.buffer
 import org.apache.commons.lang3.SystemUtils
 import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 import java.security.MessageDigest
 import java.security.NoSuchAlgorithmException
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
 
 /**
  * @author Lossy
@@ -25,6 +31,29 @@ object Util {
 
     private val logger: Logger = LogManager.getLogger<Util>()
 
+    // Largest region of a file mapped at once while validating.
+    private const val MAX_MAPPED_REGION = 256L * 1024 * 1024
+
+    // Chunks a validation task checks itself instead of splitting further.
+    private const val CHUNKS_PER_TASK = 4
+
+    // Validation gets its own workers, so long files do not hold up the common pool other code shares.
+    private val validationPool: ForkJoinPool by lazy { ForkJoinPool(Runtime.getRuntime().availableProcessors()) }
+
+    // Unsafe.invokeCleaner, which releases a mapping right away instead of whenever it is collected.
+    // Null where it is not available, e.g. on Android, and mappings are then left to the garbage collector.
+    private val invokeCleaner: ((ByteBuffer) -> Unit)? by lazy {
+        try {
+            val unsafeClass = Class.forName("sun.misc.Unsafe")
+            val unsafe = unsafeClass.getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null)
+            val method = unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java)
+            return@lazy { buffer: ByteBuffer -> method.invoke(unsafe, buffer) }
+        } catch (e: Exception) {
+            logger.debug("Mapped regions can not be released early: ${e.message}")
+        }
+        null
+    }
+
     @JvmOverloads
     @JvmStatic
     fun getSteamOS(androidEmulation: Boolean = false): String {
@@ -150,18 +179,21 @@ object Util {
     @Throws(IOException::class)
     fun validateSteam3FileChecksums(handle: FileHandle, chunkData: List<ChunkData>): List<ChunkData> {
         val neededChunks = mutableListOf<ChunkData>()
+        val chunk = ByteArray(chunkData.maxOfOrNull { it.uncompressedLength } ?: 0)
 
         for (data in chunkData) {
-            val chunk = ByteArray(data.uncompressedLength)
             val read = handle.read(data.offset, chunk, 0, data.uncompressedLength)
 
-            val tempChunk = if (read > 0 && read < data.uncompressedLength) {
-                chunk.copyOf(read)
+            val length = if (read > 0 && read < data.uncompressedLength) {
+                read
             } else {
-                chunk
+                if (read <= 0) {
+                    chunk.fill(0, 0, data.uncompressedLength)
+                }
+                data.uncompressedLength
             }
 
-            val adler = Adler32.calculate(tempChunk)
+            val adler = Adler32.calculate(0, chunk, 0, length)
             if (adler != data.checksum) {
                 neededChunks.add(data)
             }
@@ -170,6 +202,126 @@ object Util {
         return neededChunks
     }
 
+    /**
+     * Validate a file against Steam3 Chunk data by memory mapping it and checking the chunks in parallel
+     *
+     * The file is mapped a region of up to 256 MiB at a time, and the chunks of each region are checksummed on [pool]
+     * straight from the mapping. Each region is unmapped once its chunks are checked, where the platform allows it.
+     * Chunks that reach past the end of the file are needed.
+     *
+     * The calling thread waits for every region, so call this from a thread that may block, e.g. one of
+     * [kotlinx.coroutines.Dispatchers.IO].
+     *
+     * @param path File to validate
+     * @param chunkData Array of ChunkData to validate against
+     * @param pool Fork/join pool the chunks are checked on
+     * @param progress Called after every region with the chunk bytes validated so far and in total
+     * @return List of ChunkData that are needed, sorted by offset
+     * @throws IOException If there's an error reading the file
+     */
+    @JvmStatic
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun validateSteam3FileChecksums(
+        path: Path,
+        chunkData: List<ChunkData>,
+        pool: ForkJoinPool = validationPool,
+        progress: ((validatedBytes: Long, totalBytes: Long) -> Unit)? = null,
+    ): List<ChunkData> {
+        val chunks = chunkData.sortedBy { it.offset }
+        val valid = BooleanArray(chunks.size)
+        val totalBytes = chunks.sumOf { it.uncompressedLength.toLong() }
+        var validatedBytes = 0L
+
+        FileChannel.open(path.toNioPath(), StandardOpenOption.READ).use { channel ->
+            val fileSize = channel.size()
+
+            var start = 0
+            while (start < chunks.size) {
+                val regionOffset = chunks[start].offset
+                var regionEnd = regionOffset + chunks[start].uncompressedLength
+                var regionBytes = chunks[start].uncompressedLength.toLong()
+
+                var end = start + 1
+                while (end < chunks.size) {
+                    val chunkEnd = chunks[end].offset + chunks[end].uncompressedLength
+                    if (chunkEnd - regionOffset > MAX_MAPPED_REGION) {
+                        break
+                    }
+                    regionEnd = maxOf(regionEnd, chunkEnd)
+                    regionBytes += chunks[end].uncompressedLength
+                    end++
+                }
+
+                val mappedEnd = minOf(regionEnd, fileSize)
+                if (mappedEnd > regionOffset) {
+                    val region = channel.map(FileChannel.MapMode.READ_ONLY, regionOffset, mappedEnd - regionOffset)
+                    pool.invoke(ValidateChunksTask(region, regionOffset, chunks, valid, start, end))
+                    // only reached once every task is done, nothing reads the region anymore
+                    unmap(region)
+                }
+
+                validatedBytes += regionBytes
+                progress?.invoke(validatedBytes, totalBytes)
+
+                start = end
+            }
+        }
+
+        return chunks.filterIndexed { i, _ -> !valid[i] }
+    }
+
+    private fun unmap(region: MappedByteBuffer) {
+        val cleaner = invokeCleaner ?: return
+        try {
+            cleaner(region)
+        } catch (e: ReflectiveOperationException) {
+            logger.debug("Failed to unmap a validated region: ${e.message}")
+        }
+    }
+
+    /**
+     * Checks the chunks in [from, to) of [chunks] against the part of the file mapped by [region], splitting the
+     * range in halves until only a few chunks are left.
+     */
+    private class ValidateChunksTask(
+        private val region: MappedByteBuffer,
+        private val regionOffset: Long,
+        private val chunks: List<ChunkData>,
+        private val valid: BooleanArray,
+        private val from: Int,
+        private val to: Int,
+    ) : RecursiveAction() {
+        override fun compute() {
+            if (to - from > CHUNKS_PER_TASK) {
+                val middle = (from + to) ushr 1
+                invokeAll(
+                    ValidateChunksTask(region, regionOffset, chunks, valid, from, middle),
+                    ValidateChunksTask(region, regionOffset, chunks, valid, middle, to),
+                )
+                return
+            }
+
+            // every task works on its own view, the position and limit of the mapping are not shared
+            val view: ByteBuffer = region.duplicate()
+
+            for (i in from until to) {
+                val chunk = chunks[i]
+                val start = (chunk.offset - regionOffset).toInt()
+                val end = start + chunk.uncompressedLength
+
+                if (end > view.capacity()) {
+                    continue
+                }
+
+                view.limit(end)
+                view.position(start)
+                valid[i] = Adler32.calculate(0, view) == chunk.checksum
+                view.clear()
+            }
+        }
+    }
+
     @JvmStatic
     @Throws(IOException::class)
     fun dumpManifestToTextFile(depot: DepotDownloadInfo, manifest: DepotManifest) {
@@ -0,0 +1,35 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import kotlin.system.exitProcess
+
+/**
+ * The benchmark suites, by the name they are selected with.
+ */
+private val suites: Map<String, () -> Unit> = linkedMapOf(
+    "routing" to HandlerRoutingBenchmark::run,
+    "tcp" to ConnectionLatencyBenchmark::run,
+    "cipher" to SymmetricCipherBenchmark::run,
+    "keyvalue" to KeyValueBenchmark::run,
+    "text" to KVTextReaderBenchmark::run,
+)
+
+/**
+ * Runs the benchmark suites named in [args], or every suite if none are named.
+ *
+ * Started through the `benchmarks` Gradle task, e.g. `./gradlew benchmarks --args="routing text"`.
+ */
+fun main(args: Array<String>) {
+    val unknown = args.filter { it !in suites }
+    if (unknown.isNotEmpty()) {
+        System.err.println("Unknown benchmarks: ${unknown.joinToString()}, available: ${suites.keys.joinToString()}")
+        exitProcess(1)
+    }
+
+    val selected = if (args.isEmpty()) suites.keys else args.toSet()
+
+    selected.forEach { name ->
+        println("== $name")
+        suites.getValue(name)()
+        println()
+    }
+}
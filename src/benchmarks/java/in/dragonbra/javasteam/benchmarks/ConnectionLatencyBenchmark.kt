@@ -0,0 +1,94 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import `in`.dragonbra.javasteam.networking.steam3.Connection
+import `in`.dragonbra.javasteam.networking.steam3.NioTcpConnection
+import `in`.dragonbra.javasteam.networking.steam3.TcpConnection
+import `in`.dragonbra.javasteam.util.stream.BinaryReader
+import `in`.dragonbra.javasteam.util.stream.BinaryWriter
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+/**
+ * Measures the round trip of a packet through [TcpConnection] and [NioTcpConnection] against a local fake CM that
+ * echoes every framed packet back.
+ */
+internal object ConnectionLatencyBenchmark {
+
+    private const val ROUND_TRIPS = 50
+
+    private const val PAYLOAD_SIZE = 256
+
+    fun run() {
+        ServerSocket(0).use { server ->
+            startEchoServer(server)
+
+            val endPoint = InetSocketAddress("127.0.0.1", server.localPort)
+
+            measure("TcpConnection round trip", TcpConnection(), endPoint)
+            measure("NioTcpConnection round trip", NioTcpConnection(), endPoint)
+        }
+    }
+
+    private fun measure(name: String, connection: Connection, endPoint: InetSocketAddress) {
+        val received = LinkedBlockingQueue<ByteArray>()
+        val connected = CountDownLatch(1)
+
+        connection.netMsgReceived.addEventHandler { _, e -> received.add(e.data) }
+        connection.connected.addEventHandler { _, _ -> connected.countDown() }
+        connection.connect(endPoint)
+
+        check(connected.await(5, TimeUnit.SECONDS)) { "$name: could not connect to the fake CM" }
+
+        val payload = ByteArray(PAYLOAD_SIZE)
+
+        try {
+            Measure.time(name, ROUND_TRIPS) {
+                repeat(ROUND_TRIPS) {
+                    connection.send(payload)
+                    checkNotNull(received.poll(5, TimeUnit.SECONDS)) { "$name: no echo within 5 seconds" }
+                }
+            }
+        } finally {
+            connection.disconnect(true)
+        }
+    }
+
+    private fun startEchoServer(server: ServerSocket) {
+        thread(isDaemon = true, name = "Fake CM") {
+            while (!server.isClosed) {
+                try {
+                    val socket = server.accept()
+
+                    // one thread per connection, so a client left connected does not block the next
+                    thread(isDaemon = true, name = "Fake CM connection") {
+                        socket.use {
+                            it.tcpNoDelay = true
+                            val reader = BinaryReader(it.getInputStream().buffered())
+                            val writer = BinaryWriter(it.getOutputStream().buffered())
+
+                            try {
+                                while (true) {
+                                    val length = reader.readInt()
+                                    val magic = reader.readInt()
+                                    val data = reader.readBytes(length)
+
+                                    writer.writeInt(length)
+                                    writer.writeInt(magic)
+                                    writer.write(data)
+                                    writer.flush()
+                                }
+                            } catch (ignored: IOException) {
+                            }
+                        }
+                    }
+                } catch (ignored: IOException) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import `in`.dragonbra.javasteam.base.ClientMsgProtobuf
+import `in`.dragonbra.javasteam.base.IPacketMsg
+import `in`.dragonbra.javasteam.enums.EMsg
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverLogin.CMsgClientHeartBeat
+import `in`.dragonbra.javasteam.steam.CMClient
+import `in`.dragonbra.javasteam.steam.handlers.ClientMsgHandler
+import `in`.dragonbra.javasteam.steam.handlers.steamapps.SteamApps
+import `in`.dragonbra.javasteam.steam.handlers.steamauthticket.SteamAuthTicket
+import `in`.dragonbra.javasteam.steam.handlers.steamclientcommunication.SteamClientCommunication
+import `in`.dragonbra.javasteam.steam.handlers.steamcloud.SteamCloud
+import `in`.dragonbra.javasteam.steam.handlers.steamcontent.SteamContent
+import `in`.dragonbra.javasteam.steam.handlers.steamfriends.SteamFriends
+import `in`.dragonbra.javasteam.steam.handlers.steamgamecoordinator.SteamGameCoordinator
+import `in`.dragonbra.javasteam.steam.handlers.steamgameserver.SteamGameServer
+import `in`.dragonbra.javasteam.steam.handlers.steammasterserver.SteamMasterServer
+import `in`.dragonbra.javasteam.steam.handlers.steammatchmaking.SteamMatchmaking
+import `in`.dragonbra.javasteam.steam.handlers.steamnetworking.SteamNetworking
+import `in`.dragonbra.javasteam.steam.handlers.steamnotifications.SteamNotifications
+import `in`.dragonbra.javasteam.steam.handlers.steamscreenshots.SteamScreenshots
+import `in`.dragonbra.javasteam.steam.handlers.steamunifiedmessages.SteamUnifiedMessages
+import `in`.dragonbra.javasteam.steam.handlers.steamuser.SteamUser
+import `in`.dragonbra.javasteam.steam.handlers.steamuserstats.SteamUserStats
+import `in`.dragonbra.javasteam.steam.handlers.steamworkshop.SteamWorkshop
+import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
+
+/**
+ * Replays captured CM traffic through the built-in handlers, once by handing every packet to every handler as
+ * before handlers declared their messages, and once through the routing table of [SteamClient].
+ */
+internal object HandlerRoutingBenchmark {
+
+    private const val ROUNDS = 200
+
+    // captured packets of types the built-in handlers consume
+    private val consumed = listOf(
+        EMsg.ClientPersonaState,
+        EMsg.ClientFriendsList,
+        EMsg.ClientClanState,
+        EMsg.ClientLicenseList,
+        EMsg.ClientPICSChangesSinceResponse,
+        EMsg.ClientUpdateGuestPassesList,
+        EMsg.ClientVACBanStatus,
+        EMsg.ClientWalletInfoUpdate,
+        EMsg.ClientGetUserStatsResponse,
+    )
+
+    // traffic no handler consumes, which made up most of what every handler had to look at
+    private val ignored = listOf(
+        EMsg.ClientHeartBeat,
+        EMsg.ClientServersAvailable,
+        EMsg.ClientFriendsGroupsList,
+        EMsg.ClientIsLimitedAccount,
+    )
+
+    fun run() {
+        val replay = (0 until 4).flatMap { ignored.map(::emptyPacket) } +
+            consumed.map { CMClient.getPacketMsg(Measure.resource("testpackets/${it.name}.bin")) }
+
+        val client = SteamClient()
+        val handlers = allHandlers()
+        handlers.forEach { handler ->
+            client.removeHandler(handler)
+            client.addHandler(handler)
+        }
+
+        val operations = ROUNDS * replay.size
+
+        Measure.time("broadcast to ${handlers.size} handlers", operations) {
+            repeat(ROUNDS) {
+                replay.forEach { packet -> handlers.forEach { it.handleMsg(packet) } }
+                drainCallbacks(client)
+            }
+        }
+
+        Measure.time("routed by EMsg", operations) {
+            repeat(ROUNDS) {
+                replay.forEach { packet -> check(client.dispatchToHandlers(packet)) { "A handler threw" } }
+                drainCallbacks(client)
+            }
+        }
+    }
+
+    private fun allHandlers(): List<ClientMsgHandler> = listOf(
+        SteamFriends(),
+        SteamUser(),
+        SteamApps(),
+        SteamGameCoordinator(),
+        SteamGameServer(),
+        SteamUserStats(),
+        SteamMasterServer(),
+        SteamCloud(),
+        SteamWorkshop(),
+        SteamUnifiedMessages(),
+        SteamScreenshots(),
+        SteamMatchmaking(),
+        SteamNetworking(),
+        SteamContent(),
+        SteamAuthTicket(),
+        SteamNotifications(),
+        SteamClientCommunication(),
+    )
+
+    private fun emptyPacket(msgType: EMsg): IPacketMsg {
+        val msg = ClientMsgProtobuf<CMsgClientHeartBeat.Builder>(CMsgClientHeartBeat::class.java, msgType)
+        return CMClient.getPacketMsg(msg.serialize())
+    }
+
+    // the callbacks posted by the handlers would otherwise pile up over the runs
+    private fun drainCallbacks(client: SteamClient): Int {
+        var drained = 0
+        while (client.getCallback() != null) {
+            drained++
+        }
+        return drained
+    }
+}
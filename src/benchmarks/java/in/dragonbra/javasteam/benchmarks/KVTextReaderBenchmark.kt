@@ -0,0 +1,98 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import `in`.dragonbra.javasteam.base.ClientMsgProtobuf
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoResponse
+import `in`.dragonbra.javasteam.steam.CMClient
+import `in`.dragonbra.javasteam.types.KVTextReader
+import `in`.dragonbra.javasteam.types.KeyValue
+import `in`.dragonbra.javasteam.types.KeyValueVisitor
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+/**
+ * Reads the text app info of a captured PICS product info response, and a large generated document, through the
+ * stream and byte array entry points of [KVTextReader].
+ */
+internal object KVTextReaderBenchmark {
+
+    private const val ROUNDS = 200
+
+    private const val LARGE_DOCUMENT_ITEMS = 20_000
+
+    /**
+     * The text KeyValue documents of every app in the captured product info response.
+     */
+    fun appInfoDocuments(): List<ByteArray> {
+        val packet = CMClient.getPacketMsg(Measure.resource("testpackets/ClientPICSProductInfoResponse.bin"))
+        val response = ClientMsgProtobuf<CMsgClientPICSProductInfoResponse.Builder>(
+            CMsgClientPICSProductInfoResponse::class.java,
+            packet
+        )
+
+        // the buffers end with a null byte, which is not part of the document
+        return response.body.appsList
+            .filter { it.hasBuffer() && !it.buffer.isEmpty }
+            .map { it.buffer.substring(0, it.buffer.size() - 1).toByteArray() }
+    }
+
+    fun run() {
+        val appInfo = appInfoDocuments()
+        check(appInfo.isNotEmpty()) { "The captured response holds no app info" }
+
+        measure("app info (${appInfo.sumOf { it.size }} bytes)", ROUNDS, appInfo)
+
+        val large = largeDocument()
+        measure("generated (${large.size} bytes)", 1, listOf(large))
+    }
+
+    private fun measure(name: String, rounds: Int, documents: List<ByteArray>) {
+        val visitor = CountingVisitor()
+
+        Measure.time("$name, stream", rounds) {
+            repeat(rounds) {
+                documents.forEach { KeyValue().readAsText(ByteArrayInputStream(it)) }
+            }
+        }
+
+        Measure.time("$name, byte array", rounds) {
+            repeat(rounds) {
+                documents.forEach { KeyValue().readAsText(it, 0, it.size) }
+            }
+        }
+
+        Measure.time("$name, visitor without a tree", rounds) {
+            repeat(rounds) {
+                documents.forEach { KVTextReader.accept(it, 0, it.size, visitor) }
+            }
+            visitor.entries
+        }
+    }
+
+    private fun largeDocument(): ByteArray {
+        val root = KeyValue("items")
+
+        repeat(LARGE_DOCUMENT_ITEMS) { i ->
+            root.children.add(
+                KeyValue(i.toString()).apply {
+                    children.add(KeyValue("name", "Item \"$i\"\twith an escape"))
+                    children.add(KeyValue("size", (i * 1024L).toString()))
+                    children.add(KeyValue("note", "ünïcödé"))
+                }
+            )
+        }
+
+        return ByteArrayOutputStream().also { root.saveToStream(it, false) }.toByteArray()
+    }
+
+    private class CountingVisitor : KeyValueVisitor {
+        var entries = 0L
+
+        override fun startObject(name: String) {
+            entries++
+        }
+
+        override fun visitString(name: String, value: String) {
+            entries++
+        }
+    }
+}
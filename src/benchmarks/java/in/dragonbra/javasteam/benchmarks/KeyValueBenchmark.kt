@@ -0,0 +1,109 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import `in`.dragonbra.javasteam.types.KeyValue
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads binary KeyValue documents and looks up children by name, over the captured app info saved as binary and over
+ * a generated document of wide nodes holding numbers.
+ */
+internal object KeyValueBenchmark {
+
+    private const val ROUNDS = 200
+
+    private const val WIDE_NODE_CHILDREN = 2000
+
+    // binary entry types
+    private const val TYPE_OBJECT = 0
+    private const val TYPE_STRING = 1
+    private const val TYPE_INT32 = 2
+    private const val TYPE_UINT64 = 7
+    private const val TYPE_END = 8
+
+    fun run() {
+        val appInfo = KVTextReaderBenchmark.appInfoDocuments().map { document ->
+            val tree = KeyValue().apply { readAsText(document, 0, document.size) }
+            ByteArrayOutputStream().also { tree.saveToStream(it, true) }.toByteArray()
+        }
+        check(appInfo.isNotEmpty()) { "The captured response holds no app info" }
+
+        measureReads("app info (${appInfo.sumOf { it.size }} bytes)", ROUNDS, appInfo)
+
+        val wide = wideDocument()
+        measureReads("wide nodes (${wide.size} bytes)", 1, listOf(wide))
+
+        val tree = KeyValue().apply { tryReadAsBinary(ByteBuffer.wrap(wide)) }
+        val names = (0 until WIDE_NODE_CHILDREN).map { it.toString() }
+
+        Measure.time("lookup among $WIDE_NODE_CHILDREN children, asInteger", WIDE_NODE_CHILDREN) {
+            var sum = 0L
+            names.forEach { name -> sum += tree[name]["id"].asInteger() }
+            check(sum == WIDE_NODE_CHILDREN.toLong() * (WIDE_NODE_CHILDREN - 1) / 2) { "Lookups returned $sum" }
+            sum
+        }
+
+        Measure.time("lookup among $WIDE_NODE_CHILDREN children, asLong", WIDE_NODE_CHILDREN) {
+            var sum = 0L
+            names.forEach { name -> sum += tree[name]["gid"].asLong() }
+            sum
+        }
+    }
+
+    private fun measureReads(name: String, rounds: Int, documents: List<ByteArray>) {
+        Measure.time("$name, stream", rounds) {
+            repeat(rounds) {
+                documents.forEach { check(KeyValue().tryReadAsBinary(ByteArrayInputStream(it))) }
+            }
+        }
+
+        Measure.time("$name, ByteBuffer", rounds) {
+            repeat(rounds) {
+                documents.forEach { check(KeyValue().tryReadAsBinary(ByteBuffer.wrap(it))) }
+            }
+        }
+    }
+
+    /**
+     * A binary document whose root holds [WIDE_NODE_CHILDREN] objects, named by their index, each with a few numbers
+     * and a string, like the depots and branches of large app info.
+     */
+    private fun wideDocument(): ByteArray {
+        val out = ByteArrayOutputStream()
+
+        fun entry(type: Int, name: String) {
+            out.write(type)
+            out.write(name.toByteArray(Charsets.UTF_8))
+            out.write(0)
+        }
+
+        fun number(bytes: Int, value: Long) {
+            out.write(ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN).apply {
+                if (bytes == Int.SIZE_BYTES) putInt(value.toInt()) else putLong(value)
+            }.array())
+        }
+
+        entry(TYPE_OBJECT, "appinfo")
+        repeat(WIDE_NODE_CHILDREN) { i ->
+            entry(TYPE_OBJECT, i.toString())
+
+            entry(TYPE_INT32, "id")
+            number(Int.SIZE_BYTES, i.toLong())
+
+            entry(TYPE_UINT64, "gid")
+            number(Long.SIZE_BYTES, 76561197960265728L + i)
+
+            entry(TYPE_STRING, "name")
+            out.write("Depot $i".toByteArray(Charsets.UTF_8))
+            out.write(0)
+
+            out.write(TYPE_END)
+        }
+        out.write(TYPE_END)
+        out.write(TYPE_END)
+
+        return out.toByteArray()
+    }
+}
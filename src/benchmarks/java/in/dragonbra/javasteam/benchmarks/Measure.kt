@@ -0,0 +1,44 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import java.util.Locale
+
+/**
+ * A minimal timing harness: every run of a benchmark is repeated until the JIT had a chance to settle, then timed a
+ * number of times and reported as the median time per operation.
+ */
+internal object Measure {
+
+    private const val WARMUP_RUNS = 10
+
+    private const val TIMED_RUNS = 15
+
+    // Written with every result, so the work of a run can not be optimized away.
+    @Volatile
+    private var sink: Any? = null
+
+    /**
+     * Times [run], which performs [operations] operations per call, and prints the median time per operation.
+     */
+    fun time(name: String, operations: Int, run: () -> Any?) {
+        repeat(WARMUP_RUNS) { sink = run() }
+
+        val samples = LongArray(TIMED_RUNS) {
+            val start = System.nanoTime()
+            sink = run()
+            System.nanoTime() - start
+        }
+        samples.sort()
+
+        val median = samples[TIMED_RUNS / 2].toDouble() / operations
+        val fastest = samples[0].toDouble() / operations
+
+        println(String.format(Locale.ROOT, "%-48s %12.1f ns/op (fastest %.1f)", name, median, fastest))
+    }
+
+    /**
+     * Reads a resource shared with the tests, such as a captured packet.
+     */
+    fun resource(name: String): ByteArray =
+        requireNotNull(Measure::class.java.classLoader.getResourceAsStream(name)) { "Missing resource $name" }
+            .use { it.readBytes() }
+}
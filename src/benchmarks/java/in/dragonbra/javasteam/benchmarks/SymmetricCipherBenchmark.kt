@@ -0,0 +1,53 @@
+package `in`.dragonbra.javasteam.benchmarks
+
+import `in`.dragonbra.javasteam.util.crypto.CryptoHelper
+import `in`.dragonbra.javasteam.util.crypto.SymmetricCipher
+
+/**
+ * Compares an encrypt and decrypt round trip of a channel packet through [CryptoHelper], which looks up and keys new
+ * cipher and MAC instances every call, against a [SymmetricCipher] keyed once per session.
+ */
+internal object SymmetricCipherBenchmark {
+
+    private const val ROUNDS = 500
+
+    // a small message, a typical packet, and a large multi-message
+    private val packetSizes = intArrayOf(64, 1400, 16 * 1024)
+
+    fun run() {
+        val key = CryptoHelper.generateRandomBlock(32)
+        val hmacSecret = CryptoHelper.generateRandomBlock(16)
+        val cipher = SymmetricCipher(key, hmacSecret)
+
+        packetSizes.forEach { size ->
+            val plainText = CryptoHelper.generateRandomBlock(size)
+            val encrypted = ByteArray(SymmetricCipher.getEncryptedLength(size))
+            val decrypted = ByteArray(SymmetricCipher.getMaxDecryptedLength(encrypted.size))
+
+            Measure.time("CryptoHelper, $size bytes", ROUNDS) {
+                repeat(ROUNDS) {
+                    CryptoHelper.symmetricDecryptHMACIV(
+                        CryptoHelper.symmetricEncryptWithHMACIV(plainText, key, hmacSecret),
+                        key,
+                        hmacSecret,
+                    )
+                }
+            }
+
+            Measure.time("SymmetricCipher arrays, $size bytes", ROUNDS) {
+                repeat(ROUNDS) {
+                    cipher.decrypt(cipher.encrypt(plainText))
+                }
+            }
+
+            Measure.time("SymmetricCipher reused buffers, $size bytes", ROUNDS) {
+                var length = 0
+                repeat(ROUNDS) {
+                    val written = cipher.encrypt(plainText, 0, plainText.size, encrypted, 0)
+                    length += cipher.decrypt(encrypted, 0, written, decrypted, 0)
+                }
+                length
+            }
+        }
+    }
+}
@@ -11,7 +11,6 @@ import `in`.dragonbra.javasteam.util.stream.SeekOrigin
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
 import java.io.IOException
-import java.lang.reflect.InvocationTargetException
 
 /**
  * Represents a protobuf backed client message.
@@ -48,7 +47,11 @@ class ClientMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOverl
         if (!msg.isProto) {
             logger.debug("ClientMsgProtobuf<" + clazz.getSimpleName() + "> used for non-proto message!")
         }
-        deserialize(msg.data)
+        if (msg is PacketClientMsgProtobuf) {
+            deserialize(msg)
+        } else {
+            deserialize(msg.data)
+        }
     }
 
     /**
@@ -86,17 +89,7 @@ class ClientMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOverl
     }
 
     init {
-        try {
-            val m = clazz.getMethod("newBuilder")
-            @Suppress("UNCHECKED_CAST")
-            body = m.invoke(null) as BodyType
-        } catch (e: IllegalAccessException) {
-            logger.debug(e)
-        } catch (e: NoSuchMethodException) {
-            logger.debug(e)
-        } catch (e: InvocationTargetException) {
-            logger.debug(e)
-        }
+        body = ProtobufFactory.newBuilder(clazz)
 
         header.setEMsg(eMsg)
     }
@@ -129,20 +122,12 @@ class ClientMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOverl
 
         try {
             header.deserialize(ms)
-            val m = clazz.getMethod("newBuilder")
-            @Suppress("UNCHECKED_CAST")
-            body = m.invoke(null) as BodyType
+            body = ProtobufFactory.newBuilder(clazz)
             body.mergeFrom(ms)
             payload.write(data, ms.position, ms.available())
             payload.seek(0, SeekOrigin.BEGIN)
         } catch (e: IOException) {
             logger.debug(e)
-        } catch (e: IllegalAccessException) {
-            logger.debug(e)
-        } catch (e: NoSuchMethodException) {
-            logger.debug(e)
-        } catch (e: InvocationTargetException) {
-            logger.debug(e)
         }
 
         // TODO can be MemoryStream
@@ -152,4 +137,23 @@ class ClientMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOverl
             logger.error(e)
         }
     }
+
+    /**
+     * Initializes this client message from an already parsed packet.
+     * The header is copied from the packet and the body is parsed in place from the packet data after the header.
+     * @param packet The packet representing a client message.
+     */
+    private fun deserialize(packet: PacketClientMsgProtobuf) {
+        header.setEMsg(packet.msgType)
+        header.proto = packet.header.proto.clone()
+
+        val bodyOffset = packet.bodyOffset.toInt()
+
+        try {
+            body = ProtobufFactory.newBuilder(clazz)
+            body.mergeFrom(packet.buffer, packet.offset + bodyOffset, packet.length - bodyOffset)
+        } catch (e: IOException) {
+            logger.debug(e)
+        }
+    }
 }
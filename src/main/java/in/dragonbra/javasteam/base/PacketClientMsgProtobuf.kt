@@ -8,18 +8,34 @@ import kotlin.jvm.Throws
 
 /**
  * Represents a protobuf backed packet message.
- * @constructor Initializes a new instance of the [PacketClientMsgProtobuf] class.
+ * @constructor Initializes a new instance of the [PacketClientMsgProtobuf] class from a region of a buffer.
+ * The buffer is not copied, so the region must not be changed afterward.
  * @param eMsg The network message type for this packet message.
- * @param data The data.
+ * @param buffer The buffer holding the data.
+ * @param offset The offset of the data in [buffer].
+ * @param length The length of the data.
  */
 class PacketClientMsgProtobuf
 @Throws(IOException::class)
-constructor(
+internal constructor(
     private val eMsg: EMsg,
-    data: ByteArray,
+    internal val buffer: ByteArray,
+    internal val offset: Int,
+    internal val length: Int,
 ) : IPacketMsg {
 
-    private val payload: ByteArray = data
+    /**
+     * Initializes a new instance of the [PacketClientMsgProtobuf] class.
+     * @param eMsg The network message type for this packet message.
+     * @param data The data.
+     */
+    @Throws(IOException::class)
+    constructor(eMsg: EMsg, data: ByteArray) : this(eMsg, data, 0, data.size)
+
+    // only copied out of the buffer if someone asks for it, the body is parsed straight from the buffer
+    private val payload: ByteArray by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        if (offset == 0 && length == buffer.size) buffer else buffer.copyOfRange(offset, offset + length)
+    }
 
     /**
      * Gets the header for this packet message.
@@ -27,7 +43,7 @@ constructor(
     internal val header: MsgHdrProtoBuf = MsgHdrProtoBuf()
 
     /**
-     * Gets the offset in payload to the body after the header.
+     * Gets the offset in the data to the body after the header.
      */
     internal val bodyOffset: Long
 
@@ -64,7 +80,7 @@ constructor(
 
     init {
         // we need to pull out the job ids, so we deserialize the protobuf header
-        MemoryStream(data).use { ms ->
+        MemoryStream(buffer, offset, length).use { ms ->
             header.deserialize(ms)
             bodyOffset = ms.position
         }
@@ -0,0 +1,73 @@
+package `in`.dragonbra.javasteam.base
+
+import com.google.protobuf.Internal
+import com.google.protobuf.InvalidProtocolBufferException
+import com.google.protobuf.Message
+import com.google.protobuf.Parser
+
+/**
+ * Resolves builders and parsers for protobuf body classes.
+ *
+ * The default instance of every body class is looked up once and cached, so creating a builder or parsing a body
+ * afterward is a plain virtual call instead of a reflective `newBuilder` invocation.
+ */
+object ProtobufFactory {
+
+    private val defaultInstances = object : ClassValue<Message>() {
+        override fun computeValue(type: Class<*>): Message {
+            @Suppress("UNCHECKED_CAST")
+            return Internal.getDefaultInstance(type as Class<Message>)
+        }
+    }
+
+    /**
+     * Gets the cached default instance of the given message class.
+     *
+     * @param clazz the message class
+     * @return the default instance
+     */
+    @JvmStatic
+    fun <T : Message> getDefaultInstance(clazz: Class<T>): T {
+        @Suppress("UNCHECKED_CAST")
+        return defaultInstances.get(clazz) as T
+    }
+
+    /**
+     * Creates a new builder for the given message class.
+     *
+     * @param BuilderType the builder type of the message
+     * @param clazz the message class
+     * @return a new, empty builder
+     */
+    @JvmStatic
+    fun <BuilderType : Message.Builder> newBuilder(clazz: Class<out Message>): BuilderType {
+        @Suppress("UNCHECKED_CAST")
+        return defaultInstances.get(clazz).newBuilderForType() as BuilderType
+    }
+
+    /**
+     * Gets the parser for the given message class.
+     *
+     * @param clazz the message class
+     * @return the parser
+     */
+    @JvmStatic
+    fun <T : Message> parser(clazz: Class<T>): Parser<T> {
+        @Suppress("UNCHECKED_CAST")
+        return defaultInstances.get(clazz).parserForType as Parser<T>
+    }
+
+    /**
+     * Parses a message straight from a region of a byte array.
+     *
+     * @param clazz the message class
+     * @param data the data
+     * @param offset the offset of the message in [data]
+     * @param length the length of the message
+     * @return the parsed message
+     */
+    @JvmStatic
+    @Throws(InvalidProtocolBufferException::class)
+    fun <T : Message> parseFrom(clazz: Class<T>, data: ByteArray, offset: Int, length: Int): T =
+        parser(clazz).parseFrom(data, offset, length)
+}
@@ -2,6 +2,7 @@ package `in`.dragonbra.javasteam.base.gc
 
 import com.google.protobuf.AbstractMessage
 import com.google.protobuf.GeneratedMessage
+import `in`.dragonbra.javasteam.base.ProtobufFactory
 import `in`.dragonbra.javasteam.generated.MsgGCHdrProtoBuf
 import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesBase
 import `in`.dragonbra.javasteam.types.JobID
@@ -10,7 +11,6 @@ import `in`.dragonbra.javasteam.util.log.Logger
 import `in`.dragonbra.javasteam.util.stream.MemoryStream
 import `in`.dragonbra.javasteam.util.stream.SeekOrigin
 import java.io.IOException
-import java.lang.reflect.InvocationTargetException
 
 /**
  * Represents a protobuf backed game coordinator message.
@@ -110,17 +110,7 @@ class ClientGCMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOve
     }
 
     init {
-        try {
-            val m = clazz.getMethod("newBuilder")
-            @Suppress("UNCHECKED_CAST")
-            body = m.invoke(null) as BodyType
-        } catch (e: IllegalAccessException) {
-            logger.error(e)
-        } catch (e: NoSuchMethodException) {
-            logger.error(e)
-        } catch (e: InvocationTargetException) {
-            logger.error(e)
-        }
+        body = ProtobufFactory.newBuilder(clazz)
 
         header.setEMsg(eMsg)
     }
@@ -152,21 +142,13 @@ class ClientGCMsgProtobuf<BodyType : GeneratedMessage.Builder<BodyType>> @JvmOve
         try {
             MemoryStream(data).use { ms ->
                 header.deserialize(ms)
-                val m = clazz.getMethod("newBuilder")
-                @Suppress("UNCHECKED_CAST")
-                body = m.invoke(null) as BodyType
+                body = ProtobufFactory.newBuilder(clazz)
                 body.mergeFrom(ms)
                 payload.write(data, ms.position.toInt(), ms.available())
                 payload.seek(0, SeekOrigin.BEGIN)
             }
         } catch (e: IOException) {
             logger.error(e)
-        } catch (e: IllegalAccessException) {
-            logger.error(e)
-        } catch (e: NoSuchMethodException) {
-            logger.error(e)
-        } catch (e: InvocationTargetException) {
-            logger.error(e)
         }
     }
 }
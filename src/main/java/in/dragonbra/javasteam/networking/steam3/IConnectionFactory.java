@@ -22,6 +22,17 @@ public interface IConnectionFactory {
         return null;
     };
 
+    /**
+     * Same as {@link #DEFAULT}, but uses a {@link NioTcpConnection} for TCP so that all clients share the
+     * {@link NioSelectorPool} threads instead of a polling thread per connection.
+     */
+    IConnectionFactory NIO = (configuration, protocol) -> {
+        if (!protocol.contains(ProtocolTypes.WEB_SOCKET) && protocol.contains(ProtocolTypes.TCP)) {
+            return new EnvelopeEncryptedConnection(new NioTcpConnection(), configuration.getUniverse());
+        }
+        return DEFAULT.createConnection(configuration, protocol);
+    };
+
     /**
      * If the final method returns null, an exception will be thrown.
      */
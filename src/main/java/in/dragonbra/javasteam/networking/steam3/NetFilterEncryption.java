@@ -1,7 +1,7 @@
 package in.dragonbra.javasteam.networking.steam3;
 
 import in.dragonbra.javasteam.util.crypto.CryptoException;
-import in.dragonbra.javasteam.util.crypto.CryptoHelper;
+import in.dragonbra.javasteam.util.crypto.SymmetricCipher;
 import in.dragonbra.javasteam.util.log.LogManager;
 import in.dragonbra.javasteam.util.log.Logger;
 
@@ -13,19 +13,23 @@ public class NetFilterEncryption implements INetFilterEncryption {
 
     private static final Logger logger = LogManager.getLogger(NetFilterEncryption.class);
 
-    private final byte[] sessionKey;
+    private final SymmetricCipher cipher;
 
     public NetFilterEncryption(byte[] sessionKey) {
         if (sessionKey.length != 32) {
             logger.debug("AES session key was not 32 bytes!");
         }
-        this.sessionKey = sessionKey;
+        try {
+            this.cipher = new SymmetricCipher(sessionKey);
+        } catch (CryptoException e) {
+            throw new IllegalStateException("Unable to initialize session cipher", e);
+        }
     }
 
     @Override
     public byte[] processIncoming(byte[] data) {
         try {
-            return CryptoHelper.symmetricDecrypt(data, sessionKey);
+            return cipher.decrypt(data);
         } catch (CryptoException e) {
             throw new IllegalStateException("Unable to decrypt incoming packet", e);
         }
@@ -34,7 +38,7 @@ public class NetFilterEncryption implements INetFilterEncryption {
     @Override
     public byte[] processOutgoing(byte[] data) {
         try {
-            return CryptoHelper.symmetricEncrypt(data, sessionKey);
+            return cipher.encrypt(data);
         } catch (CryptoException e) {
             throw new IllegalStateException("Unable to encrypt outgoing packet", e);
         }
@@ -1,7 +1,7 @@
 package in.dragonbra.javasteam.networking.steam3;
 
 import in.dragonbra.javasteam.util.crypto.CryptoException;
-import in.dragonbra.javasteam.util.crypto.CryptoHelper;
+import in.dragonbra.javasteam.util.crypto.SymmetricCipher;
 import in.dragonbra.javasteam.util.log.LogManager;
 import in.dragonbra.javasteam.util.log.Logger;
 
@@ -13,22 +13,25 @@ public class NetFilterEncryptionWithHMAC implements INetFilterEncryption {
 
     private static final Logger logger = LogManager.getLogger(NetFilterEncryptionWithHMAC.class);
 
-    private final byte[] sessionKey;
-    private final byte[] hmacSecret;
+    private final SymmetricCipher cipher;
 
     public NetFilterEncryptionWithHMAC(byte[] sessionKey) {
         if (sessionKey.length != 32) {
             logger.debug("AES session key was not 32 bytes!");
         }
-        this.sessionKey = sessionKey;
-        this.hmacSecret = new byte[16];
+        byte[] hmacSecret = new byte[16];
         System.arraycopy(sessionKey, 0, hmacSecret, 0, hmacSecret.length);
+        try {
+            this.cipher = new SymmetricCipher(sessionKey, hmacSecret);
+        } catch (CryptoException e) {
+            throw new IllegalStateException("Unable to initialize session cipher", e);
+        }
     }
 
     @Override
     public byte[] processIncoming(byte[] data) {
         try {
-            return CryptoHelper.symmetricDecryptHMACIV(data, sessionKey, hmacSecret);
+            return cipher.decrypt(data);
         } catch (CryptoException e) {
             throw new IllegalStateException("Unable to decrypt incoming packet", e);
         }
@@ -37,7 +40,7 @@ public class NetFilterEncryptionWithHMAC implements INetFilterEncryption {
     @Override
     public byte[] processOutgoing(byte[] data) {
         try {
-            return CryptoHelper.symmetricEncryptWithHMACIV(data, sessionKey, hmacSecret);
+            return cipher.encrypt(data);
         } catch (CryptoException e) {
             throw new IllegalStateException("Unable to encrypt outgoing packet", e);
         }
@@ -0,0 +1,151 @@
+package in.dragonbra.javasteam.networking.steam3;
+
+import in.dragonbra.javasteam.util.log.LogManager;
+import in.dragonbra.javasteam.util.log.Logger;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, fixed set of selector threads shared by every {@link NioTcpConnection}.
+ * Channels are assigned to selectors round-robin and stay on the same thread for their whole lifetime.
+ */
+public class NioSelectorPool {
+
+    private static final Logger logger = LogManager.getLogger(NioSelectorPool.class);
+
+    private static volatile NioSelectorPool defaultPool;
+
+    private final SelectorLoop[] loops;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates a new pool with the given amount of selector threads.
+     *
+     * @param threads the amount of selector threads, must be positive.
+     * @throws IOException if a selector could not be opened.
+     */
+    public NioSelectorPool(int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+
+        loops = new SelectorLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new SelectorLoop(Selector.open());
+
+            Thread thread = new Thread(loops[i], "NioSelectorPool Thread " + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Gets the process wide pool, creating it on first use. The pool uses at most 2 threads.
+     *
+     * @return the shared pool.
+     */
+    public static NioSelectorPool getDefault() {
+        NioSelectorPool pool = defaultPool;
+        if (pool == null) {
+            synchronized (NioSelectorPool.class) {
+                pool = defaultPool;
+                if (pool == null) {
+                    try {
+                        pool = new NioSelectorPool(Math.min(2, Runtime.getRuntime().availableProcessors()));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Failed to open selector", e);
+                    }
+                    defaultPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Registers a non-blocking channel with one of the selectors of this pool.
+     * The handler is invoked on the selector thread whenever one of the interested operations is ready.
+     *
+     * @param channel   the channel to register.
+     * @param interestOps the initial interest set.
+     * @param handler   the handler receiving readiness notifications.
+     */
+    void register(SelectableChannel channel, int interestOps, Handler handler) {
+        SelectorLoop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+        loop.submit(() -> {
+            try {
+                handler.registered(channel.register(loop.selector, interestOps, handler));
+            } catch (ClosedChannelException e) {
+                handler.closed(e);
+            }
+        });
+    }
+
+    /**
+     * Callbacks for a registered channel. All methods are called on the selector thread.
+     */
+    interface Handler {
+        void registered(SelectionKey key);
+
+        void ready(SelectionKey key);
+
+        void closed(IOException e);
+    }
+
+    private static class SelectorLoop implements Runnable {
+
+        private final Selector selector;
+
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void submit(Runnable task) {
+            pending.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    logger.debug("Selector exception", e);
+                    continue;
+                }
+
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        handler.ready(key);
+                    } catch (CancelledKeyException ignored) {
+                    } catch (Exception e) {
+                        logger.error("Unhandled exception in selector handler", e);
+                    }
+                }
+            }
+        }
+    }
+}
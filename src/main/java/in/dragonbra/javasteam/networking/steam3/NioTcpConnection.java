@@ -0,0 +1,283 @@
+package in.dragonbra.javasteam.networking.steam3;
+
+import in.dragonbra.javasteam.util.NetHelpers;
+import in.dragonbra.javasteam.util.log.LogManager;
+import in.dragonbra.javasteam.util.log.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non-blocking TCP connection. Instead of a dedicated polling thread per connection, reads are driven by a
+ * {@link NioSelectorPool}, so packets are dispatched as soon as they are fully framed.
+ * <p>
+ * Packet events are raised on the selector thread, handlers should not block for long.
+ */
+public class NioTcpConnection extends Connection implements NioSelectorPool.Handler {
+
+    private static final Logger logger = LogManager.getLogger(NioTcpConnection.class);
+
+    private static final int MAGIC = 0x31305456; // "VT01"
+
+    private static final int HEADER_LENGTH = 8;
+
+    private final NioSelectorPool selectorPool;
+
+    private final Object netLock = new Object();
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private SocketChannel channel;
+
+    private SelectionKey key;
+
+    private ByteBuffer body;
+
+    private InetSocketAddress currentEndPoint;
+
+    public NioTcpConnection() {
+        this(NioSelectorPool.getDefault());
+    }
+
+    public NioTcpConnection(NioSelectorPool selectorPool) {
+        this.selectorPool = selectorPool;
+    }
+
+    @Override
+    public void connect(InetSocketAddress endPoint, int timeout) {
+        synchronized (netLock) {
+            currentEndPoint = endPoint;
+            released.set(false);
+            try {
+                logger.debug("Connecting to " + currentEndPoint + "...");
+                channel = SocketChannel.open();
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().connect(endPoint, timeout);
+                channel.configureBlocking(false);
+
+                currentEndPoint = new InetSocketAddress(channel.socket().getInetAddress(), channel.socket().getPort());
+            } catch (IOException e) {
+                logger.debug("Socket exception while completing connection request to " + currentEndPoint, e);
+                release(false);
+                return;
+            }
+
+            logger.debug("Connected to " + currentEndPoint);
+
+            header.clear();
+            body = null;
+            writeQueue.clear();
+            selectorPool.register(channel, SelectionKey.OP_READ, this);
+        }
+
+        onConnected();
+    }
+
+    @Override
+    public void disconnect(boolean userInitiated) {
+        release(userInitiated);
+    }
+
+    @Override
+    public void send(byte[] data) {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_LENGTH + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        packet.putInt(data.length);
+        packet.putInt(MAGIC);
+        packet.put(data);
+        packet.flip();
+
+        synchronized (netLock) {
+            if (channel == null) {
+                logger.debug("Attempting to send client data when not connected.");
+                return;
+            }
+
+            writeQueue.add(packet);
+
+            // only the thread that found the queue empty writes directly, otherwise we wait for OP_WRITE
+            if (writeQueue.size() > 1) {
+                return;
+            }
+
+            try {
+                flushWriteQueue();
+            } catch (IOException e) {
+                logger.debug("Socket exception while writing data.", e);
+                release(false);
+            }
+        }
+    }
+
+    // must hold netLock
+    private void flushWriteQueue() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = writeQueue.peek()) != null) {
+            channel.write(buffer);
+
+            if (buffer.hasRemaining()) {
+                // socket buffer is full, let the selector tell us when we can continue
+                if (key != null) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    key.selector().wakeup();
+                }
+                return;
+            }
+
+            writeQueue.poll();
+        }
+
+        if (key != null && key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    @Override
+    public void registered(SelectionKey key) {
+        synchronized (netLock) {
+            if (channel == null || key.channel() != channel) {
+                key.cancel();
+                return;
+            }
+
+            this.key = key;
+
+            if (!writeQueue.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    @Override
+    public void ready(SelectionKey key) {
+        try {
+            if (key.isWritable()) {
+                synchronized (netLock) {
+                    if (channel != null) {
+                        flushWriteQueue();
+                    }
+                }
+            }
+
+            if (key.isReadable()) {
+                readPackets((SocketChannel) key.channel());
+            }
+        } catch (IOException e) {
+            logger.debug("Socket exception occurred while reading packet", e);
+            release(false);
+        }
+    }
+
+    @Override
+    public void closed(IOException e) {
+        logger.debug("Channel closed before it could be registered", e);
+        release(false);
+    }
+
+    private void readPackets(SocketChannel socketChannel) throws IOException {
+        while (true) {
+            if (body == null) {
+                if (socketChannel.read(header) < 0) {
+                    throw new IOException("Connection closed by remote host");
+                }
+
+                if (header.hasRemaining()) {
+                    return;
+                }
+
+                header.flip();
+                int packetLen = header.getInt();
+                int packetMagic = header.getInt();
+                header.clear();
+
+                if (packetMagic != MAGIC) {
+                    throw new IOException("Got a packet with invalid magic!");
+                }
+
+                if (packetLen < 0) {
+                    throw new IOException("negative length");
+                }
+
+                body = ByteBuffer.allocate(packetLen);
+            }
+
+            if (body.hasRemaining() && socketChannel.read(body) < 0) {
+                throw new IOException("Connection closed by remote host");
+            }
+
+            if (body.hasRemaining()) {
+                return;
+            }
+
+            byte[] packData = body.array();
+            body = null;
+
+            onNetMsgReceived(new NetMsgEventArgs(packData, currentEndPoint));
+
+            if (released.get()) {
+                return;
+            }
+        }
+    }
+
+    private void release(boolean userRequestedDisconnect) {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+
+        synchronized (netLock) {
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                channel = null;
+            }
+
+            writeQueue.clear();
+        }
+
+        onDisconnected(userRequestedDisconnect);
+    }
+
+    @Override
+    public InetAddress getLocalIP() {
+        synchronized (netLock) {
+            if (channel == null) {
+                return null;
+            }
+
+            try {
+                return NetHelpers.getLocalIP(channel.socket());
+            } catch (Exception e) {
+                logger.debug("Socket exception trying to read bound IP: ", e);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public InetSocketAddress getCurrentEndPoint() {
+        return currentEndPoint;
+    }
+
+    @Override
+    public ProtocolTypes getProtocolTypes() {
+        return ProtocolTypes.TCP;
+    }
+}
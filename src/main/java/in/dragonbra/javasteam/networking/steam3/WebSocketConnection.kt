@@ -18,30 +18,69 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.consumeEach
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import java.net.InetAddress
 import java.net.InetSocketAddress
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
 import kotlin.time.DurationUnit
 import kotlin.time.toDuration
 
+/**
+ * WebSocket connection to a CM server.
+ *
+ * All instances share a single [HttpClient] engine. Outbound frames are queued and written in order by a single
+ * writer per connection, which flushes once per batch of queued frames.
+ */
 class WebSocketConnection : Connection() {
 
     companion object {
         private val logger = LogManager.getLogger<WebSocketConnection>()
         private const val WATCHDOG_TIMEOUT_MS = 30_000L
+        internal const val MAX_SEND_BATCH = 64
         private val PING_INTERVAL = 30.toDuration(DurationUnit.SECONDS)
         private val WATCHDOG_POLL = 5.toDuration(DurationUnit.SECONDS)
+
+        /**
+         * Upper bound on connections of the shared engine, in total and per CM server. Every session keeps its
+         * connection open, so the engine defaults of 1000 and 100 would stall [connect] once that many sessions exist.
+         * The number of sessions is up to the caller instead.
+         */
+        private const val MAX_ENGINE_CONNECTIONS = Int.MAX_VALUE
+
+        /**
+         * The engine shared by every [WebSocketConnection] in the process, it is never closed.
+         */
+        private val sharedClient: HttpClient by lazy {
+            HttpClient(CIO) {
+                engine {
+                    maxConnectionsCount = MAX_ENGINE_CONNECTIONS
+                    endpoint {
+                        maxConnectionsPerRoute = MAX_ENGINE_CONNECTIONS
+                    }
+                }
+                install(WebSockets) {
+                    pingInterval = PING_INTERVAL
+                }
+            }
+        }
     }
 
+    internal class OutgoingFrame(val data: ByteArray, val queuedAt: Long)
+
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private val disconnecting = AtomicBoolean(false)
     private val lastFrameTime = AtomicLong(0L)
 
-    @Volatile private var client: HttpClient? = null
+    private val queueDepth = AtomicInteger(0)
+    private val framesSent = AtomicLong(0L)
+    private val totalSendLatencyNanos = AtomicLong(0L)
+
+    @Volatile private var outgoing: Channel<OutgoingFrame>? = null
 
     @Volatile private var session: WebSocketSession? = null
 
@@ -59,14 +98,7 @@ class WebSocketConnection : Connection() {
             lastFrameTime.set(System.currentTimeMillis())
 
             try {
-                val newClient = HttpClient(CIO) {
-                    install(WebSockets) {
-                        pingInterval = PING_INTERVAL
-                    }
-                }
-                client = newClient
-
-                val newSession = newClient.webSocketSession {
+                val newSession = sharedClient.webSocketSession {
                     url {
                         host = endPoint.hostName
                         port = endPoint.port
@@ -76,10 +108,19 @@ class WebSocketConnection : Connection() {
                 }
                 session = newSession
 
+                val queue = openSendQueue()
+
                 logger.debug("Connected to ${endPoint.hostName}:${endPoint.port}")
                 onConnected()
 
                 launch { runWatchdog() }
+                launch {
+                    runWriter(
+                        queue = queue,
+                        write = { newSession.outgoing.send(Frame.Binary(true, it)) },
+                        flush = { newSession.flush() },
+                    )
+                }
 
                 newSession.incoming.consumeEach { frame ->
                     when (frame) {
@@ -119,21 +160,19 @@ class WebSocketConnection : Connection() {
         scope.launch {
             val currentJob = connectionJob
             val currentSession = session
-            val currentClient = client
+            val currentQueue = outgoing
             connectionJob = null
             session = null
-            client = null
+            outgoing = null
+
+            // frames still queued are handed to the channel's undelivered element handler, which counts them down
+            currentQueue?.cancel()
 
             try {
                 currentSession?.close()
             } catch (e: Exception) {
                 logger.debug("Error closing WebSocket session: ${e.message}")
             }
-            try {
-                currentClient?.close()
-            } catch (e: Exception) {
-                logger.debug("Error closing HTTP client: ${e.message}")
-            }
 
             currentJob?.cancel()
             currentJob?.join()
@@ -163,17 +202,84 @@ class WebSocketConnection : Connection() {
         }
     }
 
-    override fun send(data: ByteArray) {
-        scope.launch {
-            try {
-                session?.send(Frame.Binary(true, data))
-            } catch (e: Exception) {
-                logger.error("An error occurred while sending data", e)
-                doDisconnect(false)
+    /**
+     * Creates the outbound queue of a new session and makes [send] queue into it.
+     */
+    internal fun openSendQueue(): Channel<OutgoingFrame> {
+        // every queued frame is counted down exactly once, either when the writer takes it or when it is dropped
+        val queue = Channel<OutgoingFrame>(Channel.UNLIMITED) { queueDepth.decrementAndGet() }
+        outgoing = queue
+        return queue
+    }
+
+    /**
+     * Drains the outbound queue in order. Frames that are already queued are written together and flushed once.
+     */
+    internal suspend fun runWriter(
+        queue: Channel<OutgoingFrame>,
+        write: suspend (ByteArray) -> Unit,
+        flush: suspend () -> Unit,
+    ) {
+        try {
+            for (first in queue) {
+                var frame: OutgoingFrame? = first
+                var batch = 0
+
+                while (frame != null) {
+                    queueDepth.decrementAndGet()
+                    write(frame.data)
+                    framesSent.incrementAndGet()
+                    totalSendLatencyNanos.addAndGet(System.nanoTime() - frame.queuedAt)
+
+                    frame = if (++batch < MAX_SEND_BATCH) queue.tryReceive().getOrNull() else null
+                }
+
+                flush()
             }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            logger.error("An error occurred while sending data", e)
+            doDisconnect(false)
         }
     }
 
+    override fun send(data: ByteArray) {
+        val queue = outgoing
+        if (queue == null) {
+            logger.debug("Attempting to send client data when not connected.")
+            return
+        }
+
+        // counted before the frame can be taken, so the depth never drops below zero
+        queueDepth.incrementAndGet()
+        if (queue.trySend(OutgoingFrame(data, System.nanoTime())).isFailure) {
+            queueDepth.decrementAndGet()
+            logger.debug("Attempting to send client data on a closed connection.")
+        }
+    }
+
+    /**
+     * The amount of frames waiting to be written to the socket.
+     */
+    val sendQueueDepth: Int
+        get() = queueDepth.get()
+
+    /**
+     * The amount of frames written since this connection was created.
+     */
+    val sentFrameCount: Long
+        get() = framesSent.get()
+
+    /**
+     * The average time in nanoseconds a frame spent between [send] and being written to the socket.
+     */
+    val averageSendLatencyNanos: Long
+        get() {
+            val count = framesSent.get()
+            return if (count == 0L) 0L else totalSendLatencyNanos.get() / count
+        }
+
     override fun getLocalIP(): InetAddress = InetAddress.getLocalHost()
 
     override fun getCurrentEndPoint(): InetSocketAddress? = endpoint
@@ -24,15 +24,13 @@ import in.dragonbra.javasteam.util.event.EventHandler;
 import in.dragonbra.javasteam.util.event.ScheduledFunction;
 import in.dragonbra.javasteam.util.log.LogManager;
 import in.dragonbra.javasteam.util.log.Logger;
-import okio.Buffer;
-import okio.BufferedSource;
-import okio.GzipSource;
-import okio.Okio;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.EnumSet;
 
 /**
@@ -74,6 +72,12 @@ public abstract class CMClient {
 
     private volatile boolean expectDisconnection;
 
+    // System.nanoTime() when the current connection attempt started, used to measure the connect time
+    private volatile long connectStartTime;
+
+    // System.nanoTime() when the last heartbeat was sent, 0 once its reply has been seen
+    private volatile long heartbeatSentTime;
+
     // connection lock around the setup and tear down of the connection task
     private final Object connectionLock = new Object();
 
@@ -85,6 +89,8 @@ public abstract class CMClient {
         logger.debug("EventHandler `connected` called");
 
         getServers().tryMark(connection.getCurrentEndPoint(), connection.getProtocolTypes(), ServerQuality.GOOD);
+        getServers().recordConnectTime(connection.getCurrentEndPoint(), connection.getProtocolTypes(),
+                Duration.ofNanos(System.nanoTime() - connectStartTime));
 
         isConnected = true;
 
@@ -136,6 +142,7 @@ public abstract class CMClient {
             var heartbeat = new ClientMsgProtobuf<CMsgClientHeartBeat.Builder>(
                     CMsgClientHeartBeat.class, EMsg.ClientHeartBeat);
             heartbeat.getBody().setSendReply(true); // Ping Pong
+            heartbeatSentTime = System.nanoTime();
             send(heartbeat);
         }, 5000);
     }
@@ -201,6 +208,8 @@ public abstract class CMClient {
                 connection.getDisconnected().addEventHandler(disconnected);
                 logger.debug(String.format("Connecting to %s with protocol %s, and with connection impl %s",
                         cmServer.getEndpoint(), cmServer.getProtocolTypes(), connection.getClass().getSimpleName()));
+                connectStartTime = System.nanoTime();
+                heartbeatSentTime = 0;
                 connection.connect(cmServer.getEndpoint());
             } catch (Exception e) {
                 logger.debug("Failed to connect to Steam network", e);
@@ -303,6 +312,9 @@ public abstract class CMClient {
             case ClientSessionToken: // am session token
                 handleSessionToken(packetMsg);
                 break;
+            case ClientHeartBeat: // reply to our heartbeat, feeds the server latency score
+                handleHeartBeatReply();
+                break;
         }
 
         return true;
@@ -337,17 +349,26 @@ public abstract class CMClient {
     }
 
     public static IPacketMsg getPacketMsg(byte[] data) {
-        if (data.length < 4) {
-            logger.debug("PacketMsg too small to contain a message, was only " + data.length + " bytes. Message: " + Strings.toHex(data));
+        return getPacketMsg(data, 0, data.length);
+    }
+
+    /**
+     * Parses a packet message from a region of a buffer. Protobuf backed messages are parsed in place, so the region
+     * must not be changed afterward.
+     *
+     * @param data   the buffer holding the message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message
+     * @return the parsed message, or null if it could not be parsed
+     */
+    static IPacketMsg getPacketMsg(byte[] data, int offset, int length) {
+        if (length < 4) {
+            logger.debug("PacketMsg too small to contain a message, was only " + length + " bytes. Message: " +
+                    Strings.toHex(Arrays.copyOfRange(data, offset, offset + length)));
             return null;
         }
 
-        int rawEMsg = 0;
-        try (var buffer = new Buffer().write(data)) {
-             rawEMsg = buffer.readIntLe();
-        } catch (IOException e) {
-            logger.debug("Exception while getting EMsg code", e);
-        }
+        int rawEMsg = readIntLe(data, offset);
         EMsg eMsg = MsgUtil.getMsg(rawEMsg);
 
         switch (eMsg) {
@@ -355,7 +376,7 @@ public abstract class CMClient {
             case ChannelEncryptResponse:
             case ChannelEncryptResult:
                 try {
-                    return new PacketMsg(eMsg, data);
+                    return new PacketMsg(eMsg, copyOfRegion(data, offset, length));
                 } catch (IOException e) {
                     logger.debug("Exception deserializing emsg " + eMsg + " (" + MsgUtil.isProtoBuf(rawEMsg) + ").", e);
                 }
@@ -364,9 +385,9 @@ public abstract class CMClient {
         try {
             if (MsgUtil.isProtoBuf(rawEMsg)) {
                 // if the emsg is flagged, we're a proto message
-                return new PacketClientMsgProtobuf(eMsg, data);
+                return new PacketClientMsgProtobuf(eMsg, data, offset, length);
             } else {
-                return new PacketClientMsg(eMsg, data);
+                return new PacketClientMsg(eMsg, copyOfRegion(data, offset, length));
             }
         } catch (IOException e) {
             logger.debug("Exception deserializing emsg " + eMsg + " (" + MsgUtil.isProtoBuf(rawEMsg) + ").", e);
@@ -374,6 +395,21 @@ public abstract class CMClient {
         }
     }
 
+    private static byte[] copyOfRegion(byte[] data, int offset, int length) {
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    private static int readIntLe(byte[] data, int offset) {
+        return (data[offset] & 0xFF) |
+                (data[offset + 1] & 0xFF) << 8 |
+                (data[offset + 2] & 0xFF) << 16 |
+                (data[offset + 3] & 0xFF) << 24;
+    }
+
     private void handleMulti(IPacketMsg packetMsg) {
         if (!packetMsg.isProto()) {
             logger.debug("HandleMulti got non-proto MsgMulti!!");
@@ -381,30 +417,47 @@ public abstract class CMClient {
         }
 
         var msgMulti = new ClientMsgProtobuf<CMsgMulti.Builder>(CMsgMulti.class, packetMsg);
-        var payload = msgMulti.getBody().getMessageBody().toByteArray();
+        var body = msgMulti.getBody();
 
-        try (var payloadBuffer = new Buffer().write(payload)) {
-            BufferedSource source;
+        // the sub messages are parsed in place and handlers may hold on to them, so each multi gets its own buffer
+        byte[] payload;
+        int payloadLength;
 
-            if (msgMulti.getBody().getSizeUnzipped() > 0) {
-                source = Okio.buffer(new GzipSource(payloadBuffer));
+        try {
+            if (body.getSizeUnzipped() > 0) {
+                payload = new byte[body.getSizeUnzipped()];
+                payloadLength = GzipUtil.decompress(body.getMessageBody().asReadOnlyByteBuffer(), payload);
             } else {
-                source = payloadBuffer;
+                payload = body.getMessageBody().toByteArray();
+                payloadLength = payload.length;
             }
+        } catch (IOException e) {
+            logger.error("error in handleMulti()", e);
+            return;
+        }
 
-            try (source) {
-                do {
-                    var subSize = source.readIntLe();
-                    var subData = source.readByteArray(subSize);
-                    var msg = getPacketMsg(subData);
+        int offset = 0;
 
-                    if (!onClientMsgReceived(msg)) {
-                        break;
-                    }
-                } while (!source.exhausted());
+        while (offset < payloadLength) {
+            if (payloadLength - offset < 4) {
+                logger.error("error in handleMulti(), truncated sub message size at offset " + offset);
+                return;
+            }
+
+            var subSize = readIntLe(payload, offset);
+            offset += 4;
+
+            if (subSize < 0 || subSize > payloadLength - offset) {
+                logger.error("error in handleMulti(), sub message of " + subSize + " bytes does not fit at offset " + offset);
+                return;
+            }
+
+            var msg = getPacketMsg(payload, offset, subSize);
+            offset += subSize;
+
+            if (!onClientMsgReceived(msg)) {
+                break;
             }
-        } catch (IOException e) {
-            logger.error("error in handleMulti()", e);
         }
     }
 
@@ -486,6 +539,19 @@ public abstract class CMClient {
         disconnect(false);
     }
 
+    private void handleHeartBeatReply() {
+        long sentTime = heartbeatSentTime;
+        var conn = connection;
+
+        if (sentTime == 0 || conn == null) {
+            return;
+        }
+
+        heartbeatSentTime = 0;
+        getServers().recordHeartbeatRtt(conn.getCurrentEndPoint(), conn.getProtocolTypes(),
+                Duration.ofNanos(System.nanoTime() - sentTime));
+    }
+
     private void handleSessionToken(IPacketMsg packetMsg) {
         ClientMsgProtobuf<CMsgClientSessionToken.Builder> sessToken = new ClientMsgProtobuf<>(CMsgClientSessionToken.class, packetMsg);
 
@@ -18,9 +18,10 @@ import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.coroutines.executeAsync
-import java.io.ByteArrayInputStream
+import okio.BufferedSource
 import java.io.Closeable
 import java.io.IOException
+import java.nio.ByteBuffer
 import java.util.concurrent.CompletableFuture
 import java.util.zip.ZipInputStream
 
@@ -144,20 +145,16 @@ class Client(steamClient: SteamClient) : Closeable {
             }
 
             return@withContext response.use { resp ->
-                val responseBody = resp.body.bytes()
-
-                if (responseBody.isEmpty()) {
+                if (resp.body.contentLength() == 0L) {
                     throw SteamKitWebRequestException("Response is empty")
                 }
 
-                // Decompress the zipped manifest data
-                ZipInputStream(ByteArrayInputStream(responseBody)).use { zipInputStream ->
+                // Decompress the zipped manifest data as it streams in
+                ZipInputStream(resp.body.byteStream()).use { zipInputStream ->
                     zipInputStream.nextEntry
                         ?: throw SteamKitWebRequestException("Expected the zip to contain at least one file")
 
-                    val manifestData = zipInputStream.readBytes()
-
-                    val depotManifest = DepotManifest.deserialize(ByteArrayInputStream(manifestData))
+                    val depotManifest = DepotManifest.deserialize(zipInputStream)
 
                     if (depotKey != null) {
                         depotManifest.decryptFilenames(depotKey)
@@ -176,6 +173,7 @@ class Client(steamClient: SteamClient) : Closeable {
      * Downloads the specified depot chunk, and optionally processes the chunk and verifies the checksum if the depot decryption key has been provided.
      * This function will also validate the length of the downloaded chunk with the value of [ChunkData.compressedLength],
      * if it has been assigned a value.
+     * The response body is read straight into [destination], without an intermediate copy.
      * @param depotId The id of the depot being accessed.
      * @param chunk A [ChunkData] instance that represents the chunk to download.
      * This value should come from a manifest downloaded with [downloadManifest].
@@ -199,12 +197,142 @@ class Client(steamClient: SteamClient) : Closeable {
         depotKey: ByteArray? = null,
         proxyServer: Server? = null,
         cdnAuthToken: String? = null,
-    ): Int = withContext(Dispatchers.IO) {
-        val chunkIdBytes = requireNotNull(chunk.chunkID) { "Chunk must have a ChunkID." }
+    ): Int {
+        if (destination.size < chunk.compressedLength) {
+            throw IllegalArgumentException("The destination buffer must be at least as long as the chunk CompressedLength (Since we take out decompression step from download")
+        }
+
+        return requestDepotChunk(depotId, chunk, server, proxyServer, cdnAuthToken) { source, contentLength ->
+            if (contentLength > destination.size) {
+                throw SteamKitWebRequestException(
+                    "Depot chunk is larger than the destination buffer! (was $contentLength, but buffer is ${destination.size})"
+                )
+            }
+
+            var read = 0
+            while (read < contentLength) {
+                val count = source.read(destination, read, contentLength - read)
+                if (count < 0) {
+                    break
+                }
+                read += count
+            }
+
+            checkChunkLength(source, read, contentLength)
+
+            contentLength
+        }
+    }
+
+    /**
+     * Downloads the specified depot chunk into a [ByteBuffer].
+     * This function will also validate the length of the downloaded chunk with the value of [ChunkData.compressedLength],
+     * if it has been assigned a value.
+     * The response body is read straight into [destination], starting at its position, without an intermediate copy.
+     * @param depotId The id of the depot being accessed.
+     * @param chunk A [ChunkData] instance that represents the chunk to download.
+     * This value should come from a manifest downloaded with [downloadManifest].
+     * @param server The content server to connect to.
+     * @param destination The buffer to receive the still encrypted and compressed chunk data.
+     * On return its position has been advanced past the chunk.
+     * @param proxyServer Optional content server marked as UseAsProxy which transforms the request.
+     * @param cdnAuthToken CDN auth token for CDN content server endpoints if necessary. Get one with [SteamContent.getCDNAuthToken].
+     * @return The total number of bytes written to [destination].
+     * @exception IllegalArgumentException Thrown if the chunk's [ChunkData.chunkID] was null or if the [destination] buffer is too small.
+     * @exception SteamKitWebRequestException A network error occurred when performing the request.
+     */
+    suspend fun downloadDepotChunk(
+        depotId: Int,
+        chunk: ChunkData,
+        server: Server,
+        destination: ByteBuffer,
+        proxyServer: Server? = null,
+        cdnAuthToken: String? = null,
+    ): Int {
+        if (destination.remaining() < chunk.compressedLength) {
+            throw IllegalArgumentException("The destination buffer must have at least the chunk CompressedLength remaining.")
+        }
+
+        return requestDepotChunk(depotId, chunk, server, proxyServer, cdnAuthToken) { source, contentLength ->
+            if (contentLength > destination.remaining()) {
+                throw SteamKitWebRequestException(
+                    "Depot chunk is larger than the destination buffer! (was $contentLength, but buffer has ${destination.remaining()} remaining)"
+                )
+            }
+
+            val start = destination.position()
+            val limit = destination.limit()
+            destination.limit(start + contentLength)
+
+            try {
+                while (destination.hasRemaining()) {
+                    if (source.read(destination) < 0) {
+                        break
+                    }
+                }
+            } finally {
+                destination.limit(limit)
+            }
+
+            checkChunkLength(source, destination.position() - start, contentLength)
+
+            contentLength
+        }
+    }
+
+    /**
+     * Downloads the specified depot chunk and processes it while it streams in: the body is decrypted as it is read,
+     * then decompressed into [destination] and its checksum verified.
+     * The encrypted chunk is never held in full, which avoids a second chunk sized buffer compared to
+     * [downloadDepotChunk] followed by [DepotChunk.process].
+     * @param depotId The id of the depot being accessed.
+     * @param chunk A [ChunkData] instance that represents the chunk to download.
+     * This value should come from a manifest downloaded with [downloadManifest].
+     * @param server The content server to connect to.
+     * @param destination The buffer to receive the decompressed chunk data.
+     * Allocate or rent a buffer that is equal or longer than [ChunkData.uncompressedLength]
+     * @param depotKey The depot decryption key for the depot that will be downloaded.
+     * @param proxyServer Optional content server marked as UseAsProxy which transforms the request.
+     * @param cdnAuthToken CDN auth token for CDN content server endpoints if necessary. Get one with [SteamContent.getCDNAuthToken].
+     * @return The total number of bytes written to [destination].
+     * @exception IllegalArgumentException Thrown if the chunk's [ChunkData.chunkID] was null or if the [destination] buffer is too small.
+     * @exception IOException Thrown if the processed data does not match the expected checksum.
+     * @exception SteamKitWebRequestException A network error occurred when performing the request.
+     */
+    suspend fun downloadAndProcessDepotChunk(
+        depotId: Int,
+        chunk: ChunkData,
+        server: Server,
+        destination: ByteArray,
+        depotKey: ByteArray,
+        proxyServer: Server? = null,
+        cdnAuthToken: String? = null,
+    ): Int {
+        if (destination.size < chunk.uncompressedLength) {
+            throw IllegalArgumentException("The destination buffer must be longer than the chunk UncompressedLength.")
+        }
+
+        return requestDepotChunk(depotId, chunk, server, proxyServer, cdnAuthToken) { source, contentLength ->
+            val written = DepotChunk.process(chunk, source.inputStream(), contentLength, destination, depotKey)
+
+            checkChunkLength(source, contentLength, contentLength)
 
-        if (destination.size != chunk.compressedLength) {
-            throw IllegalArgumentException("The destination buffer must be the same size as the chunk CompressedLength (Since we take out decompression step from download")
+            written
         }
+    }
+
+    /**
+     * Requests a depot chunk and hands the response body to [read] once its status and length have been validated.
+     */
+    private suspend fun <T> requestDepotChunk(
+        depotId: Int,
+        chunk: ChunkData,
+        server: Server,
+        proxyServer: Server?,
+        cdnAuthToken: String?,
+        read: (source: BufferedSource, contentLength: Int) -> T,
+    ): T = withContext(Dispatchers.IO) {
+        val chunkIdBytes = requireNotNull(chunk.chunkID) { "Chunk must have a ChunkID." }
 
         val chunkID = Strings.toHex(chunkIdBytes)
         val url = "depot/$depotId/chunk/$chunkID"
@@ -249,20 +377,7 @@ class Client(steamClient: SteamClient) : Closeable {
                     )
                 }
 
-                val responseBody = resp.body.bytes()
-
-                if (responseBody.isEmpty()) {
-                    throw SteamKitWebRequestException("Response is empty")
-                }
-
-                if (responseBody.size != contentLength) {
-                    throw SteamKitWebRequestException(
-                        "Length mismatch after downloading depot chunk! (was ${responseBody.size}, but should be $contentLength)"
-                    )
-                }
-
-                System.arraycopy(responseBody, 0, destination, 0, contentLength)
-                return@withContext contentLength
+                return@withContext read(resp.body.source(), contentLength)
             }
         } catch (e: Exception) {
             logger.error("Failed to download a depot chunk ${request.url}: ${e.message}", e)
@@ -270,6 +385,21 @@ class Client(steamClient: SteamClient) : Closeable {
         }
     }
 
+    /**
+     * Validates that exactly [expected] bytes of the chunk were received.
+     */
+    private fun checkChunkLength(source: BufferedSource, read: Int, expected: Int) {
+        if (read == 0) {
+            throw SteamKitWebRequestException("Response is empty")
+        }
+
+        if (read != expected || !source.exhausted()) {
+            throw SteamKitWebRequestException(
+                "Length mismatch after downloading depot chunk! (was ${if (read != expected) read else "more than $read"}, but should be $expected)"
+            )
+        }
+    }
+
     // region Java Compatibility
 
     /**
@@ -354,35 +484,28 @@ class Client(steamClient: SteamClient) : Closeable {
 
         scope.launch {
             try {
-                if (depotKey != null) {
-                    if (destination.size < chunk.compressedLength) {
-                        throw IllegalArgumentException("The destination buffer must be longer than the chunk CompressedLength (since no depot key was provided).")
-                    }
+                val bytesWritten = if (depotKey != null) {
+                    downloadAndProcessDepotChunk(
+                        depotId = depotId,
+                        chunk = chunk,
+                        server = server,
+                        destination = destination,
+                        depotKey = depotKey,
+                        proxyServer = proxyServer,
+                        cdnAuthToken = cdnAuthToken
+                    )
                 } else {
-                    if (destination.size != chunk.compressedLength) {
-                        throw IllegalArgumentException("The destination buffer must be the same size as the chunk UncompressedLength.")
-                    }
+                    downloadDepotChunk(
+                        depotId = depotId,
+                        chunk = chunk,
+                        server = server,
+                        destination = destination,
+                        proxyServer = proxyServer,
+                        cdnAuthToken = cdnAuthToken
+                    )
                 }
 
-                val downloadedBytes = ByteArray(chunk.compressedLength)
-
-                val bytesDownloaded = downloadDepotChunk(
-                    depotId = depotId,
-                    chunk = chunk,
-                    server = server,
-                    destination = downloadedBytes,
-                    depotKey = depotKey,
-                    proxyServer = proxyServer,
-                    cdnAuthToken = cdnAuthToken
-                )
-
-                if (depotKey != null) {
-                    val bytesProcessed = DepotChunk.process(chunk, downloadedBytes, destination, depotKey)
-                    future.complete(bytesProcessed)
-                } else {
-                    System.arraycopy(downloadedBytes, 0, destination, 0, bytesDownloaded)
-                    future.complete(bytesDownloaded)
-                }
+                future.complete(bytesWritten)
             } catch (e: Exception) {
                 future.completeExceptionally(e)
             }
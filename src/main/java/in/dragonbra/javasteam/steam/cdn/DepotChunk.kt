@@ -8,7 +8,9 @@ import `in`.dragonbra.javasteam.util.VZstdUtil
 import `in`.dragonbra.javasteam.util.ZipUtil
 import `in`.dragonbra.javasteam.util.crypto.CryptoHelper
 import `in`.dragonbra.javasteam.util.stream.MemoryStream
+import java.io.EOFException
 import java.io.IOException
+import java.io.InputStream
 import javax.crypto.Cipher
 import javax.crypto.spec.IvParameterSpec
 import javax.crypto.spec.SecretKeySpec
@@ -18,6 +20,54 @@ import javax.crypto.spec.SecretKeySpec
  */
 object DepotChunk {
 
+    /**
+     * Scratch buffers larger than this are not kept around by the processing thread.
+     */
+    private const val MAX_RETAINED_SCRATCH = 4 * 1024 * 1024
+
+    /**
+     * Size of the reads made when decrypting a chunk from a stream.
+     */
+    private const val TRANSFER_SIZE = 64 * 1024
+
+    /**
+     * Cipher instances and a scratch buffer for the decrypted chunk, reused by every chunk processed on a thread.
+     */
+    private class ChunkContext {
+        val ecbCipher: Cipher = Cipher.getInstance("AES/ECB/NoPadding", CryptoHelper.SEC_PROV)
+        val cbcCipher: Cipher = Cipher.getInstance("AES/CBC/PKCS7Padding", CryptoHelper.SEC_PROV)
+        val iv = ByteArray(16)
+        val transfer = ByteArray(TRANSFER_SIZE)
+        var scratch = ByteArray(0)
+
+        fun initCipher(depotKey: ByteArray, data: ByteArray, offset: Int): Cipher {
+            val keySpec = SecretKeySpec(depotKey, "AES")
+            ecbCipher.init(Cipher.DECRYPT_MODE, keySpec)
+
+            val ivBytesRead = ecbCipher.doFinal(data, offset, iv.size, iv)
+
+            require(iv.size == ivBytesRead) { "Failed to decrypt depot chunk iv (${iv.size} != $ivBytesRead)" }
+
+            cbcCipher.init(Cipher.DECRYPT_MODE, keySpec, IvParameterSpec(iv))
+            return cbcCipher
+        }
+
+        fun scratch(size: Int): ByteArray {
+            if (scratch.size < size) {
+                scratch = ByteArray(size)
+            }
+            return scratch
+        }
+
+        fun release() {
+            if (scratch.size > MAX_RETAINED_SCRATCH) {
+                scratch = ByteArray(0)
+            }
+        }
+    }
+
+    private val contexts = ThreadLocal.withInitial { ChunkContext() }
+
     /**
      * Processes the specified depot key by decrypting the data with the given depot encryption key, and then by decompressing the data.
      * If the chunk has already been processed, this function does nothing.
@@ -34,6 +84,29 @@ object DepotChunk {
         data: ByteArray,
         destination: ByteArray,
         depotKey: ByteArray,
+    ): Int = process(info, data, 0, data.size, destination, depotKey)
+
+    /**
+     * Processes the specified depot key by decrypting the data with the given depot encryption key, and then by decompressing the data.
+     * The encrypted chunk is read from a range of [data], and the cipher instances and decryption buffer are reused per thread,
+     * so processing a chunk does not allocate intermediate copies.
+     * @param info The depot chunk data representing.
+     * @param data The buffer holding the encrypted chunk data.
+     * @param offset The offset of the encrypted chunk in [data].
+     * @param length The length of the encrypted chunk.
+     * @param destination The buffer to receive the decrypted chunk data.
+     * @param depotKey The depot decryption key.
+     * @exception IOException Thrown if the processed data does not match the expected checksum given in its chunk information.
+     * @exception IllegalArgumentException Thrown if the destination size is too small or the depot key is not 32 bytes long
+     */
+    @JvmStatic
+    fun process(
+        info: ChunkData,
+        data: ByteArray,
+        offset: Int,
+        length: Int,
+        destination: ByteArray,
+        depotKey: ByteArray,
     ): Int {
         require(destination.size >= info.uncompressedLength) {
             "The destination buffer must be longer than the chunk ${ChunkData::uncompressedLength.name}."
@@ -41,32 +114,104 @@ object DepotChunk {
 
         require(depotKey.size == 32) { "Tried to decrypt depot chunk with non 32 byte key!" }
 
+        require(offset >= 0 && length >= 0 && offset <= data.size - length) {
+            "Range [$offset, ${offset + length}) is out of bounds for length ${data.size}"
+        }
+
+        val context = contexts.get()
+
         // first 16 bytes of input is the ECB encrypted IV
-        val keySpec = SecretKeySpec(depotKey, "AES")
-        val ecbCipher = Cipher.getInstance("AES/ECB/NoPadding", CryptoHelper.SEC_PROV)
-        ecbCipher.init(Cipher.DECRYPT_MODE, keySpec)
+        val aes = context.initCipher(depotKey, data, offset)
 
-        val iv = ByteArray(16)
-        val ivBytesRead = ecbCipher.doFinal(data, 0, iv.size, iv)
+        // With CBC and padding, the decrypted size will always be smaller
+        return decryptAndDecompress(info, context, length - context.iv.size, destination) { buffer ->
+            aes.doFinal(data, offset + context.iv.size, length - context.iv.size, buffer)
+        }
+    }
 
-        require(iv.size == ivBytesRead) { "Failed to decrypt depot chunk iv (${iv.size} != $ivBytesRead)" }
+    /**
+     * Processes the specified depot key by decrypting the data with the given depot encryption key, and then by decompressing the data.
+     * The encrypted chunk is decrypted while it is read from [source], so it never needs to be held in full before processing.
+     * @param info The depot chunk data representing.
+     * @param source The stream to read the encrypted chunk data from. Exactly [length] bytes are consumed.
+     * @param length The length of the encrypted chunk.
+     * @param destination The buffer to receive the decrypted chunk data.
+     * @param depotKey The depot decryption key.
+     * @exception IOException Thrown if [source] ends early or the processed data does not match the expected checksum given in its chunk information.
+     * @exception IllegalArgumentException Thrown if the destination size is too small or the depot key is not 32 bytes long
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun process(
+        info: ChunkData,
+        source: InputStream,
+        length: Int,
+        destination: ByteArray,
+        depotKey: ByteArray,
+    ): Int {
+        require(destination.size >= info.uncompressedLength) {
+            "The destination buffer must be longer than the chunk ${ChunkData::uncompressedLength.name}."
+        }
 
-        val aes = Cipher.getInstance("AES/CBC/PKCS7Padding", CryptoHelper.SEC_PROV)
-        aes.init(Cipher.DECRYPT_MODE, keySpec, IvParameterSpec(iv))
+        require(depotKey.size == 32) { "Tried to decrypt depot chunk with non 32 byte key!" }
 
-        // With CBC and padding, the decrypted size will always be smaller
-        val buffer = ByteArray(data.size - iv.size)
+        val context = contexts.get()
+        val transfer = context.transfer
+
+        if (length < context.iv.size) {
+            throw IOException("Depot chunk is too short to hold an iv (was $length bytes).")
+        }
+
+        readFully(source, transfer, context.iv.size, 0, length)
+
+        val aes = context.initCipher(depotKey, transfer, 0)
+
+        return decryptAndDecompress(info, context, length - context.iv.size, destination) { buffer ->
+            var consumed = context.iv.size
+            var written = 0
+
+            while (consumed < length) {
+                val count = minOf(transfer.size, length - consumed)
+                readFully(source, transfer, count, consumed, length)
+                consumed += count
+
+                written += aes.update(transfer, 0, count, buffer, written)
+            }
+
+            written + aes.doFinal(buffer, written)
+        }
+    }
+
+    private fun readFully(source: InputStream, buffer: ByteArray, count: Int, consumed: Int, length: Int) {
+        var read = 0
+        while (read < count) {
+            val n = source.read(buffer, read, count - read)
+            if (n < 0) {
+                throw EOFException("Depot chunk ended after ${consumed + read} of $length bytes.")
+            }
+            read += n
+        }
+    }
+
+    private inline fun decryptAndDecompress(
+        info: ChunkData,
+        context: ChunkContext,
+        encryptedLength: Int,
+        destination: ByteArray,
+        decrypt: (ByteArray) -> Int,
+    ): Int {
+        val buffer = context.scratch(encryptedLength)
 
         val writtenDecompressed: Int
 
         try {
-            val written = aes.doFinal(data, iv.size, data.size - iv.size, buffer)
+            val written = decrypt(buffer)
 
             // Per SK:
             //  Steam client checks for like 20 bytes for pkzip, and 22 bytes for vzip,
             //  I'm just being safe and checking for a smaller value.
-            if (buffer.size < 16) {
-                throw IOException("Not enough data in the decrypted depot chunk (was ${buffer.size} bytes).")
+            if (written < 16) {
+                throw IOException("Not enough data in the decrypted depot chunk (was $written bytes).")
             }
 
             if (buffer[0] == 'V'.code.toByte() &&
@@ -76,7 +221,9 @@ object DepotChunk {
             ) {
                 // Zstd
                 writtenDecompressed = VZstdUtil.decompress(
-                    buffer = buffer.copyOfRange(0, written),
+                    buffer = buffer,
+                    offset = 0,
+                    length = written,
                     destination = destination,
                     verifyChecksum = false,
                 )
@@ -118,7 +265,8 @@ object DepotChunk {
             val chunkID = info.chunkID?.let { Strings.toHex(it) } ?: "unknown"
             throw IOException("Failed to decompress chunk $chunkID: $e\n${e.stackTraceToString()}")
         } finally {
-            buffer.fill(0)
+            buffer.fill(0, 0, encryptedLength)
+            context.release()
         }
 
         if (info.uncompressedLength != writtenDecompressed) {
@@ -128,7 +276,7 @@ object DepotChunk {
             )
         }
 
-        val dataCrc = Adler32.calculate(destination.sliceArray(0 until writtenDecompressed))
+        val dataCrc = Adler32.calculate(0, destination, 0, writtenDecompressed)
 
         if (dataCrc != info.checksum) {
             throw IOException("Processed data checksum is incorrect ($dataCrc != ${info.checksum})! Downloaded depot chunk is corrupt or invalid/wrong depot key?")
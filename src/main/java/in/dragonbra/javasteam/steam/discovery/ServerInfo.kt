@@ -9,4 +9,30 @@ import java.time.Instant
  */
 class ServerInfo(val record: ServerRecord, val protocol: ProtocolTypes) {
     var lastBadConnectionTimeUtc: Instant? = null
+
+    /**
+     * Smoothed time from starting a connection to the client reporting it connected, in milliseconds.
+     * Null if this server was never connected to.
+     */
+    var connectTimeMillis: Double? = null
+
+    /**
+     * Smoothed round trip time of heartbeats sent on a logged on connection, in milliseconds.
+     * Null if no heartbeat reply was seen from this server.
+     */
+    var heartbeatRttMillis: Double? = null
+
+    /**
+     * Smoothed handshake time measured by [SmartCMServerList.probeServers], in milliseconds.
+     * Null if this server was never probed.
+     */
+    var probeRttMillis: Double? = null
+
+    /**
+     * The latency used to rank this server when [SmartCMServerList.isLatencyScoringEnabled] is set, lower is better.
+     * Round trip measurements are preferred over the connect time, which also includes the encryption handshake.
+     * Null if nothing has been measured yet.
+     */
+    val latencyScore: Double?
+        get() = heartbeatRttMillis ?: probeRttMillis ?: connectTimeMillis
 }
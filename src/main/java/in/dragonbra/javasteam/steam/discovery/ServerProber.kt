@@ -0,0 +1,43 @@
+package `in`.dragonbra.javasteam.steam.discovery
+
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.net.Socket
+import java.time.Duration
+
+/**
+ * Measures how long it takes to reach a CM server, used by [SmartCMServerList.probeServers].
+ */
+fun interface ServerProber {
+
+    /**
+     * Opens and closes a connection to the given server.
+     * @param server The server to probe.
+     * @param timeout How long to wait for the server to answer.
+     * @return The time the handshake took.
+     * @throws IOException if the server could not be reached within [timeout].
+     */
+    @Throws(IOException::class)
+    fun probe(server: ServerRecord, timeout: Duration): Duration
+
+    companion object {
+
+        /**
+         * Times a plain TCP handshake with the server's endpoint. Used for both socket and WebSocket servers, the TLS
+         * and HTTP upgrade of a WebSocket would only add the same number of round trips to every server.
+         * Host name resolution is not included in the measured time.
+         */
+        @JvmField
+        val TCP: ServerProber = ServerProber { server, timeout ->
+            val endpoint = server.endpoint.let {
+                if (it.isUnresolved) InetSocketAddress(it.hostString, it.port) else it
+            }
+
+            Socket().use { socket ->
+                val start = System.nanoTime()
+                socket.connect(endpoint, timeout.toMillis().coerceIn(1, Int.MAX_VALUE.toLong()).toInt())
+                Duration.ofNanos(System.nanoTime() - start)
+            }
+        }
+    }
+}
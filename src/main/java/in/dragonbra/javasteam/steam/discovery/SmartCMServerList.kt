@@ -10,6 +10,10 @@ import java.net.InetSocketAddress
 import java.time.Duration
 import java.time.Instant
 import java.util.EnumSet
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
@@ -38,6 +42,12 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
          */
         @JvmStatic
         var defaultServerNetFilter = "ext1-sea1.steamserver.net:27017"
+
+        private val probeExecutor: ExecutorService by lazy {
+            Executors.newCachedThreadPool { runnable ->
+                Thread(runnable, "SmartCMServerList-probe").apply { isDaemon = true }
+            }
+        }
     }
 
     private val servers: MutableList<ServerInfo> = mutableListOf()
@@ -61,6 +71,48 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
     @Suppress("MemberVisibilityCanBePrivate")
     var badConnectionMemoryTimeSpan: Duration = Duration.ofMinutes(5)
 
+    /**
+     * If true, healthy servers are ordered by their measured latency instead of their position in the list,
+     * and [getNextServerCandidate] periodically probes the top candidates in the background.
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var isLatencyScoringEnabled: Boolean = false
+
+    /**
+     * Weight of a new latency sample in the moving average of a server, between 0 (exclusive) and 1.
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var latencySmoothingFactor: Double = 0.3
+
+    /**
+     * How many candidates [probeServers] measures at once.
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var probeCandidateCount: Int = 8
+
+    /**
+     * How long a probe waits for a server before marking it bad.
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var probeTimeout: Duration = Duration.ofSeconds(3)
+
+    /**
+     * Determines how often [getNextServerCandidate] starts a background probe when latency scoring is enabled.
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var probeInterval: Duration = Duration.ofMinutes(5)
+
+    /**
+     * Measures the handshake time of a server during [probeServers].
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    var prober: ServerProber = ServerProber.TCP
+
+    private val isProbing = AtomicBoolean(false)
+
+    @Volatile
+    private var lastProbe: Instant = Instant.MIN
+
     @Throws(IOException::class)
     private fun startFetchingServers() {
         val (isEmpty, needsRefresh) = listLock.withLock {
@@ -184,9 +236,20 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
         val distinctEndPoints = endpointList.distinct()
 
         listLock.withLock {
+            // Keep the latency history of servers that are still in the list
+            val previous = servers.associateBy { it.record.endpoint to it.protocol }
+
             serversLastRefresh = serversTime ?: Instant.now()
             servers.clear()
             distinctEndPoints.forEach(::addCore)
+
+            servers.forEach { serverInfo ->
+                previous[serverInfo.record.endpoint to serverInfo.protocol]?.let { old ->
+                    serverInfo.connectTimeMillis = old.connectTimeMillis
+                    serverInfo.heartbeatRttMillis = old.heartbeatRttMillis
+                    serverInfo.probeRttMillis = old.probeRttMillis
+                }
+            }
         }
 
         if (writeProvider) {
@@ -250,6 +313,138 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
         }
     }
 
+    /**
+     * Records how long it took to connect to a server, from starting the connection until the client reported it connected.
+     * @param endPoint The endpoint that was connected to.
+     * @param protocolTypes The protocol type of the connection.
+     * @param elapsed The time it took to connect.
+     * @return true if the server was found in the list.
+     */
+    fun recordConnectTime(endPoint: InetSocketAddress?, protocolTypes: ProtocolTypes?, elapsed: Duration): Boolean =
+        recordLatency(endPoint, protocolTypes?.let { EnumSet.of(it) }, elapsed) { serverInfo, sample ->
+            serverInfo.connectTimeMillis = smooth(serverInfo.connectTimeMillis, sample)
+        }
+
+    /**
+     * Records the round trip time of a heartbeat sent to a server.
+     * @param endPoint The endpoint of the connection.
+     * @param protocolTypes The protocol type of the connection.
+     * @param elapsed The time between sending the heartbeat and receiving its reply.
+     * @return true if the server was found in the list.
+     */
+    fun recordHeartbeatRtt(endPoint: InetSocketAddress?, protocolTypes: ProtocolTypes?, elapsed: Duration): Boolean =
+        recordLatency(endPoint, protocolTypes?.let { EnumSet.of(it) }, elapsed) { serverInfo, sample ->
+            serverInfo.heartbeatRttMillis = smooth(serverInfo.heartbeatRttMillis, sample)
+        }
+
+    private inline fun recordLatency(
+        endPoint: InetSocketAddress?,
+        protocolTypes: EnumSet<ProtocolTypes>?,
+        elapsed: Duration,
+        update: (ServerInfo, Double) -> Unit,
+    ): Boolean = listLock.withLock {
+        if (endPoint == null || protocolTypes == null) {
+            return@withLock false
+        }
+
+        val sample = elapsed.toNanos() / 1_000_000.0
+        var found = false
+
+        servers.forEach { serverInfo ->
+            if (serverInfo.record.endpoint == endPoint && protocolTypes.contains(serverInfo.protocol)) {
+                update(serverInfo, sample)
+                found = true
+            }
+        }
+
+        found
+    }
+
+    private fun smooth(average: Double?, sample: Double): Double =
+        average?.let { it + latencySmoothingFactor * (sample - it) } ?: sample
+
+    /**
+     * Probes the top [probeCandidateCount] healthy servers in parallel using [prober] and records their handshake time.
+     * Servers that do not answer within [probeTimeout] are marked as bad. Blocks until every probe finished.
+     * @param supportedProtocolTypes The protocol types of the servers to probe.
+     * @return The number of servers that answered.
+     */
+    fun probeServers(supportedProtocolTypes: EnumSet<ProtocolTypes>): Int {
+        runCatching { startFetchingServers() }.onFailure { error ->
+            logger.error("Error while fetching servers", error)
+            return 0
+        }
+
+        lastProbe = Instant.now()
+
+        val candidates = listLock.withLock {
+            resetOldScores()
+
+            servers
+                .filter { it.lastBadConnectionTimeUtc == null && supportedProtocolTypes.contains(it.protocol) }
+                .map { it.record.endpoint to it.protocol }
+                .distinctBy { it.first }
+                .take(probeCandidateCount)
+        }
+
+        if (candidates.isEmpty()) {
+            return 0
+        }
+
+        val prober = prober
+        val timeout = probeTimeout
+
+        val probes = candidates.map { (endpoint, protocol) ->
+            CompletableFuture.supplyAsync({
+                try {
+                    prober.probe(ServerRecord(endpoint, protocol), timeout)
+                } catch (e: Exception) {
+                    logger.debug("Probing $endpoint failed: ${e.message}")
+                    null
+                }
+            }, probeExecutor)
+        }
+
+        var answered = 0
+
+        probes.forEachIndexed { index, probe ->
+            val endpoint = candidates[index].first
+            val elapsed = probe.join()
+
+            if (elapsed == null || elapsed > timeout) {
+                tryMark(endpoint, supportedProtocolTypes, ServerQuality.BAD)
+            } else {
+                answered++
+                recordLatency(endpoint, supportedProtocolTypes, elapsed) { serverInfo, sample ->
+                    serverInfo.probeRttMillis = smooth(serverInfo.probeRttMillis, sample)
+                }
+            }
+        }
+
+        logger.debug("Probed ${candidates.size} servers, $answered answered")
+
+        return answered
+    }
+
+    /**
+     * Starts [probeServers] in the background.
+     * @param supportedProtocolTypes The protocol types of the servers to probe.
+     * @return A future completing with the number of servers that answered, or 0 if a probe is already running.
+     */
+    fun probeServersAsync(supportedProtocolTypes: EnumSet<ProtocolTypes>): CompletableFuture<Int> {
+        if (!isProbing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(0)
+        }
+
+        return CompletableFuture.supplyAsync({
+            try {
+                probeServers(supportedProtocolTypes)
+            } finally {
+                isProbing.set(false)
+            }
+        }, probeExecutor)
+    }
+
     /**
      * Perform the actual score lookup of the server list and return the candidate.
      * @param supportedProtocolTypes The minimum supported [ProtocolTypes] of the server to return.
@@ -260,16 +455,26 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
     ): ServerRecord? = listLock.withLock {
         resetOldScores()
 
+        val comparator: Comparator<Pair<ServerInfo, Int>> = if (isLatencyScoringEnabled) {
+            compareBy(
+                { it.first.lastBadConnectionTimeUtc ?: Instant.EPOCH },
+                { it.first.latencyScore ?: Double.MAX_VALUE },
+                { it.second }
+            )
+        } else {
+            compareBy({ it.first.lastBadConnectionTimeUtc ?: Instant.EPOCH }, { it.second })
+        }
+
         val result = servers
             .asSequence()
             .filter { supportedProtocolTypes.contains(it.protocol) }
             .mapIndexed { index, server -> server to index }
-            .sortedWith(compareBy({ it.first.lastBadConnectionTimeUtc ?: Instant.EPOCH }, { it.second }))
+            .sortedWith(comparator)
             .map { it.first }
             .firstOrNull()
             ?: return@withLock null
 
-        logger.debug("Next server candidate: ${result.record.endpoint} (${result.protocol})")
+        logger.debug("Next server candidate: ${result.record.endpoint} (${result.protocol}), latency: ${result.latencyScore}")
         ServerRecord(result.record.endpoint, result.protocol)
     }
 
@@ -283,6 +488,11 @@ class SmartCMServerList(private val configuration: SteamConfiguration) {
             startFetchingServers()
         }.fold(
             onSuccess = {
+                if (isLatencyScoringEnabled && Duration.between(lastProbe, Instant.now()) >= probeInterval) {
+                    lastProbe = Instant.now()
+                    probeServersAsync(EnumSet.copyOf(supportedProtocolTypes))
+                }
+
                 getNextServerCandidateInternal(supportedProtocolTypes)
             },
             onFailure = { error ->
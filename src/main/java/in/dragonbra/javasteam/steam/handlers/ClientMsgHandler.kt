@@ -1,6 +1,7 @@
 package `in`.dragonbra.javasteam.steam.handlers
 
 import `in`.dragonbra.javasteam.base.IPacketMsg
+import `in`.dragonbra.javasteam.enums.EMsg
 import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
 import `in`.dragonbra.javasteam.steam.steamclient.callbacks.DisconnectedCallback
 
@@ -31,6 +32,14 @@ abstract class ClientMsgHandler {
             client.isExpectDisconnection = expectDisconnection
         }
 
+    /**
+     * Gets the message types this handler consumes. The [SteamClient] only passes messages of these types to
+     * [handleMsg], or every message if this is null, which is the default.
+     * This is read when the handler is added to the client, so it should not change afterward.
+     */
+    open val handledMessages: Set<EMsg>?
+        get() = null
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
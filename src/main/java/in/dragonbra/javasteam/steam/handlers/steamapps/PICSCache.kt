@@ -0,0 +1,461 @@
+package `in`.dragonbra.javasteam.steam.handlers.steamapps
+
+import com.google.protobuf.UnsafeByteOperations
+import `in`.dragonbra.javasteam.util.JavaSteamAddition
+import `in`.dragonbra.javasteam.util.log.LogManager
+import `in`.dragonbra.javasteam.util.log.Logger
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.future.future
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Disk backed cache of PICS product info that survives restarts.
+ *
+ * The raw app and package buffers are stored one file per id under [directory], next to an index holding the change
+ * number, hash and access token of every entry, plus the last PICS change number the cache was brought up to date with.
+ * Only the index is read when the cache is opened, buffers are loaded when an entry is requested.
+ *
+ * [refresh] asks Steam for the changes since the last seen change number and re-fetches only the cached ids whose
+ * change number moved, in batches of [batchSize]. [startRefreshing] does so periodically in the background.
+ *
+ * @param directory The directory to keep the cache in. Created if it does not exist.
+ * @param steamApps The handler used to talk to PICS.
+ * @param scope The scope background refreshes and the [CompletableFuture] variants run in. [close] only cancels the
+ * coroutines the cache started, a scope passed in stays active.
+ */
+@JavaSteamAddition
+@Suppress("MemberVisibilityCanBePrivate", "unused")
+class PICSCache @JvmOverloads constructor(
+    val directory: Path,
+    private val steamApps: SteamApps,
+    scope: CoroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob()),
+) : Closeable {
+
+    companion object {
+        private val logger: Logger = LogManager.getLogger<PICSCache>()
+
+        private const val INDEX_FILE = "index.bin"
+
+        private const val INDEX_MAGIC = 0x50494353 // "PICS"
+
+        private const val INDEX_VERSION = 1
+
+        private const val DEFAULT_BATCH_SIZE = 500
+    }
+
+    /**
+     * One cached app or package, as recorded in the index.
+     */
+    private class Entry(val changeNumber: Int, val shaHash: ByteArray?, val accessToken: Long)
+
+    internal enum class Kind(val folder: String, val isBinary: Boolean) {
+        APP("apps", false),
+        PACKAGE("packages", true),
+    }
+
+    /**
+     * Maximum number of ids fetched with a single product info request.
+     */
+    var batchSize: Int = DEFAULT_BATCH_SIZE
+
+    /**
+     * The PICS change number the cache was last brought up to date with, or 0 if it never was.
+     */
+    @Volatile
+    var lastChangeNumber: Int = 0
+        private set
+
+    private val apps = ConcurrentHashMap<Int, Entry>()
+
+    private val packages = ConcurrentHashMap<Int, Entry>()
+
+    // Serializes refreshes, and fetches with them, so a refresh never races a fetch of the same id.
+    private val updateLock = Mutex()
+
+    private var refreshJob: Job? = null
+
+    // A child of the given scope, so closing the cache does not cancel the caller's other coroutines.
+    private val scope = CoroutineScope(scope.coroutineContext + SupervisorJob(scope.coroutineContext[Job]))
+
+    init {
+        Kind.entries.forEach { Files.createDirectories(directory.resolve(it.folder)) }
+        loadIndex()
+    }
+
+    /**
+     * Ids of all cached apps.
+     */
+    val appIds: Set<Int>
+        get() = apps.keys
+
+    /**
+     * Ids of all cached packages.
+     */
+    val packageIds: Set<Int>
+        get() = packages.keys
+
+    /**
+     * Gets the cached info of an app without contacting Steam.
+     *
+     * @param id The app id.
+     * @return The cached info, or null if the app is not cached.
+     */
+    fun getCachedApp(id: Int): PICSProductInfo? = load(Kind.APP, id)
+
+    /**
+     * Gets the cached info of a package without contacting Steam.
+     *
+     * @param id The package id.
+     * @return The cached info, or null if the package is not cached.
+     */
+    fun getCachedPackage(id: Int): PICSProductInfo? = load(Kind.PACKAGE, id)
+
+    /**
+     * Gets product info for the given apps and packages, fetching and caching the ones that are not cached yet.
+     * Ids unknown to Steam, or that could not be fetched, are missing from the result.
+     *
+     * @param apps Requests for apps.
+     * @param packages Requests for packages.
+     * @return The product info by id.
+     */
+    suspend fun getProductInfo(
+        apps: Iterable<PICSRequest>,
+        packages: Iterable<PICSRequest>,
+    ): ProductInfo {
+        if (apps.any { !this.apps.containsKey(it.id) } || packages.any { !this.packages.containsKey(it.id) }) {
+            updateLock.withLock {
+                // checked again, another caller may have fetched some of them while this one waited for the lock
+                val missingApps = apps.filter { !this.apps.containsKey(it.id) }
+                val missingPackages = packages.filter { !this.packages.containsKey(it.id) }
+
+                if (missingApps.isNotEmpty() || missingPackages.isNotEmpty()) {
+                    fetch(missingApps, missingPackages)
+                    writeIndex()
+                }
+            }
+        }
+
+        return ProductInfo(
+            apps = apps.mapNotNull { request -> getCachedApp(request.id)?.let { request.id to it } }.toMap(),
+            packages = packages.mapNotNull { request -> getCachedPackage(request.id)?.let { request.id to it } }.toMap(),
+        )
+    }
+
+    /**
+     * Gets product info for the given apps and packages, fetching and caching the ones that are not cached yet.
+     * @see getProductInfo
+     */
+    fun getProductInfoFuture(
+        apps: Iterable<PICSRequest>,
+        packages: Iterable<PICSRequest>,
+    ): CompletableFuture<ProductInfo> = scope.future { getProductInfo(apps, packages) }
+
+    /**
+     * Brings the cache up to date by re-fetching the cached apps and packages that changed since [lastChangeNumber].
+     * Everything cached is re-fetched if Steam asks for a full update, or if the cache was never refreshed before.
+     * Ids Steam answers for without info that can be cached, for example because their access token is no longer
+     * valid, are dropped from the cache.
+     *
+     * @return The number of apps and packages that were re-fetched.
+     */
+    suspend fun refresh(): Int = updateLock.withLock {
+        val since = lastChangeNumber
+        val changes = steamApps.picsGetChangesSince(since, sendAppChangeList = true, sendPackageChangelist = true).await()
+
+        if (changes.currentChangeNumber == since) {
+            return@withLock 0
+        }
+
+        val fullAppUpdate = since == 0 || changes.isRequiresFullUpdate || changes.isRequiresFullAppUpdate
+        val fullPackageUpdate = since == 0 || changes.isRequiresFullUpdate || changes.isRequiresFullPackageUpdate
+
+        val staleApps = stale(apps, changes.appChanges, fullAppUpdate)
+        val stalePackages = stale(packages, changes.packageChanges, fullPackageUpdate)
+
+        logger.debug(
+            "PICS changes $since -> ${changes.currentChangeNumber}: " +
+                "re-fetching ${staleApps.size} apps and ${stalePackages.size} packages"
+        )
+
+        val fetched = fetch(staleApps, stalePackages, dropUncached = true)
+
+        // Only move forward when Steam answered for every stale entry, so a failed batch is retried next time.
+        if (fetched.unanswered == 0) {
+            lastChangeNumber = changes.currentChangeNumber
+        }
+        writeIndex()
+
+        fetched.stored
+    }
+
+    /**
+     * Brings the cache up to date.
+     * @see refresh
+     */
+    fun refreshFuture(): CompletableFuture<Int> = scope.future { refresh() }
+
+    /**
+     * Starts refreshing the cache every [interval] in the background until [stopRefreshing] or [close] is called.
+     * Failed refreshes are logged and retried on the next tick.
+     *
+     * @param interval Time between refreshes.
+     */
+    @JvmOverloads
+    @Synchronized
+    fun startRefreshing(interval: Duration = Duration.ofMinutes(1)) {
+        refreshJob?.cancel()
+        refreshJob = scope.launch {
+            while (isActive) {
+                try {
+                    refresh()
+                } catch (e: Exception) {
+                    if (!isActive) {
+                        break
+                    }
+                    logger.error("Failed to refresh PICS cache", e)
+                }
+                delay(interval.toMillis())
+            }
+        }
+    }
+
+    /**
+     * Stops the background refreshes started by [startRefreshing].
+     */
+    @Synchronized
+    fun stopRefreshing() {
+        refreshJob?.cancel()
+        refreshJob = null
+    }
+
+    /**
+     * Stops refreshing and cancels the fetches and refreshes started by the cache. The cache on disk is left in place.
+     */
+    override fun close() {
+        stopRefreshing()
+        scope.cancel()
+    }
+
+    /**
+     * The product info returned by [getProductInfo].
+     *
+     * @property apps App info by app id.
+     * @property packages Package info by package id.
+     */
+    class ProductInfo(val apps: Map<Int, PICSProductInfo>, val packages: Map<Int, PICSProductInfo>)
+
+    private fun stale(
+        cached: Map<Int, Entry>,
+        changes: Map<Int, PICSChangeData>,
+        full: Boolean,
+    ): List<PICSRequest> {
+        if (full) {
+            return cached.map { (id, entry) -> PICSRequest(id, entry.accessToken) }
+        }
+
+        return changes.values.mapNotNull { change ->
+            val entry = cached[change.id] ?: return@mapNotNull null
+            if (entry.changeNumber == change.changeNumber) null else PICSRequest(change.id, entry.accessToken)
+        }
+    }
+
+    /**
+     * Outcome of [fetch].
+     *
+     * @property stored The number of ids that were stored.
+     * @property unanswered The number of ids Steam gave no answer for, because their batch failed.
+     */
+    private class Fetched(val stored: Int, val unanswered: Int)
+
+    /**
+     * Fetches the given ids in batches and stores the results.
+     *
+     * @param dropUncached Whether to drop the cached entries of ids that were answered without info that could be
+     * stored, so they are not fetched again by every refresh.
+     */
+    private suspend fun fetch(
+        apps: List<PICSRequest>,
+        packages: List<PICSRequest>,
+        dropUncached: Boolean = false,
+    ): Fetched {
+        val appTokens = apps.associate { it.id to it.accessToken }
+        val packageTokens = packages.associate { it.id to it.accessToken }
+
+        var stored = 0
+        var unanswered = 0
+        val batches = apps.map { it to Kind.APP } + packages.map { it to Kind.PACKAGE }
+        batches.chunked(batchSize.coerceAtLeast(1)).forEach { batch ->
+            val result = steamApps.picsGetProductInfo(
+                apps = batch.filter { it.second == Kind.APP }.map { it.first },
+                packages = batch.filter { it.second == Kind.PACKAGE }.map { it.first },
+            ).await()
+
+            if (result.failed) {
+                logger.debug("PICS product info request for ${batch.size} ids failed, keeping partial results")
+            }
+
+            val answered = hashSetOf<Pair<Kind, Int>>()
+            val uncached = mutableListOf<Pair<Kind, Int>>()
+
+            fun answer(kind: Kind, id: Int, info: PICSProductInfo?, tokens: Map<Int, Long>) {
+                answered.add(kind to id)
+                if (info != null && store(kind, info, tokens[id] ?: 0L)) {
+                    stored++
+                } else {
+                    uncached.add(kind to id)
+                }
+            }
+
+            result.results.forEach { callback ->
+                callback.apps.values.forEach { answer(Kind.APP, it.id, it, appTokens) }
+                callback.packages.values.forEach { answer(Kind.PACKAGE, it.id, it, packageTokens) }
+                callback.unknownApps.forEach { answer(Kind.APP, it, null, appTokens) }
+                callback.unknownPackages.forEach { answer(Kind.PACKAGE, it, null, packageTokens) }
+            }
+
+            unanswered += batch.count { (request, kind) -> (kind to request.id) !in answered }
+
+            if (dropUncached) {
+                uncached.forEach { (kind, id) -> drop(kind, id) }
+            }
+        }
+
+        return Fetched(stored, unanswered)
+    }
+
+    private fun drop(kind: Kind, id: Int) {
+        if (entries(kind).remove(id) == null) {
+            return
+        }
+
+        logger.debug("Dropping ${kind.name.lowercase()} $id from the PICS cache, Steam returned no info to cache")
+
+        try {
+            Files.deleteIfExists(dataFile(kind, id))
+        } catch (e: IOException) {
+            logger.error("Failed to delete cached ${kind.name.lowercase()} $id", e)
+        }
+    }
+
+    /**
+     * Writes the buffer of [info] to disk and records it in the index kept in memory.
+     * Infos without a buffer, such as ones that were missing an access token, are not cached.
+     */
+    internal fun store(kind: Kind, info: PICSProductInfo, accessToken: Long): Boolean {
+        val buffer = info.buffer ?: return false
+
+        try {
+            val file = dataFile(kind, info.id)
+            val temp = file.resolveSibling("${file.fileName}.tmp")
+            Files.newOutputStream(temp).use { buffer.writeTo(it) }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            logger.error("Failed to cache ${kind.name.lowercase()} ${info.id}", e)
+            return false
+        }
+
+        entries(kind)[info.id] = Entry(info.changeNumber, info.shaHash, accessToken)
+        return true
+    }
+
+    private fun load(kind: Kind, id: Int): PICSProductInfo? {
+        val entry = entries(kind)[id] ?: return null
+
+        val data = try {
+            Files.readAllBytes(dataFile(kind, id))
+        } catch (e: IOException) {
+            logger.error("Failed to read cached ${kind.name.lowercase()} $id", e)
+            entries(kind).remove(id)
+            return null
+        }
+
+        return PICSProductInfo(id, entry.changeNumber, entry.shaHash, UnsafeByteOperations.unsafeWrap(data), kind.isBinary)
+    }
+
+    private fun entries(kind: Kind): ConcurrentHashMap<Int, Entry> = when (kind) {
+        Kind.APP -> apps
+        Kind.PACKAGE -> packages
+    }
+
+    private fun dataFile(kind: Kind, id: Int): Path = directory.resolve(kind.folder).resolve("$id.bin")
+
+    private fun loadIndex() {
+        try {
+            DataInputStream(Files.newInputStream(directory.resolve(INDEX_FILE)).buffered()).use { input ->
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                    logger.debug("Ignoring PICS cache index with an unknown format")
+                    return
+                }
+
+                lastChangeNumber = input.readInt()
+
+                Kind.entries.forEach { kind ->
+                    val entries = entries(kind)
+                    repeat(input.readInt()) {
+                        val id = input.readInt()
+                        val changeNumber = input.readInt()
+                        val accessToken = input.readLong()
+                        val shaLength = input.readUnsignedShort()
+                        val sha = if (shaLength == 0) null else ByteArray(shaLength).also { input.readFully(it) }
+                        entries[id] = Entry(changeNumber, sha, accessToken)
+                    }
+                }
+            }
+        } catch (e: NoSuchFileException) {
+            logger.debug("No PICS cache index in $directory")
+        } catch (e: IOException) {
+            logger.error("Failed to read PICS cache index, starting empty", e)
+            lastChangeNumber = 0
+            apps.clear()
+            packages.clear()
+        }
+    }
+
+    internal fun writeIndex() {
+        val file = directory.resolve(INDEX_FILE)
+        val temp = directory.resolve("$INDEX_FILE.tmp")
+
+        try {
+            DataOutputStream(Files.newOutputStream(temp).buffered()).use { output ->
+                output.writeInt(INDEX_MAGIC)
+                output.writeInt(INDEX_VERSION)
+                output.writeInt(lastChangeNumber)
+
+                Kind.entries.forEach { kind ->
+                    val snapshot = entries(kind).entries.toList()
+                    output.writeInt(snapshot.size)
+                    snapshot.forEach { (id, entry) ->
+                        output.writeInt(id)
+                        output.writeInt(entry.changeNumber)
+                        output.writeLong(entry.accessToken)
+                        val sha = entry.shaHash ?: ByteArray(0)
+                        output.writeShort(sha.size)
+                        output.write(sha)
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            logger.error("Failed to write PICS cache index", e)
+        }
+    }
+}
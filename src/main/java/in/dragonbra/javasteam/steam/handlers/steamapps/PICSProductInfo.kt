@@ -1,15 +1,18 @@
 package `in`.dragonbra.javasteam.steam.handlers.steamapps
 
+import com.google.protobuf.ByteString
 import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoResponse
 import `in`.dragonbra.javasteam.steam.steamclient.callbackmgr.CallbackMsg
+import `in`.dragonbra.javasteam.types.BinaryKeyValueReader
+import `in`.dragonbra.javasteam.types.KVTextReader
 import `in`.dragonbra.javasteam.types.KeyValue
+import `in`.dragonbra.javasteam.types.KeyValuePathFinder
 import `in`.dragonbra.javasteam.util.Strings
 import `in`.dragonbra.javasteam.util.log.LogManager
-import `in`.dragonbra.javasteam.util.stream.BinaryReader
-import `in`.dragonbra.javasteam.util.stream.MemoryStream
-import java.io.ByteArrayInputStream
+import java.io.EOFException
 import java.io.IOException
 import java.net.URI
+import java.nio.ByteBuffer
 import java.util.*
 
 /**
@@ -44,8 +47,17 @@ class PICSProductInfo : CallbackMsg {
 
     /**
      * Gets the KeyValue info.
+     * The raw buffer is only parsed the first time this is accessed.
      */
     val keyValues: KeyValue
+        get() = lazyKeyValues.value
+
+    // The raw KeyValue document and how it is encoded, kept so the tree can be built or a path looked up on demand.
+    internal val buffer: ByteString?
+
+    internal val isBinary: Boolean
+
+    private val lazyKeyValues: Lazy<KeyValue> = lazy { parseKeyValues() }
 
     /**
      * Gets for an app request, returns if only the public information was requested.
@@ -89,18 +101,9 @@ class PICSProductInfo : CallbackMsg {
         isMissingToken = appInfo.missingToken
         shaHash = appInfo.sha.toByteArray()
 
-        keyValues = KeyValue()
-
-        if (appInfo.hasBuffer() && !appInfo.buffer.isEmpty) {
-            try {
-                // we don't want to read the trailing null byte
-                MemoryStream(appInfo.buffer.toByteArray(), 0, appInfo.buffer.size() - 1).use { ms ->
-                    keyValues.readAsText(ms)
-                }
-            } catch (e: IOException) {
-                logger.error("failed to read buffer", e)
-            }
-        }
+        // we don't want to read the trailing null byte
+        buffer = if (appInfo.hasBuffer() && !appInfo.buffer.isEmpty) appInfo.buffer.substring(0, appInfo.buffer.size() - 1) else null
+        isBinary = false
 
         isOnlyPublic = appInfo.onlyPublic
         httpHost = parentResponse.httpHost
@@ -113,22 +116,85 @@ class PICSProductInfo : CallbackMsg {
         isMissingToken = packageInfo.missingToken
         shaHash = packageInfo.sha.toByteArray()
 
-        keyValues = KeyValue()
+        // steamclient checks the leading int32 == 1 before it attempts to read the KV from the buffer
+        // see: CPackageInfo::UpdateFromBuffer(CSHA const&,uint,CUtlBuffer &)
+        // todo: (SK) we've apparently ignored this with zero ill effects, but perhaps we want to respect it?
+        buffer = if (packageInfo.hasBuffer()) packageInfo.buffer else null
+        isBinary = true
+    }
 
-        if (packageInfo.hasBuffer()) {
-            // we don't want to read the trailing null byte
-            try {
-                // TODO memory stream like SK?
-                BinaryReader(ByteArrayInputStream(packageInfo.buffer.toByteArray())).use { br ->
-                    // steamclient checks this value == 1 before it attempts to read the KV from the buffer
-                    // see: CPackageInfo::UpdateFromBuffer(CSHA const&,uint,CUtlBuffer &)
-                    // todo: (SK) we've apparently ignored this with zero ill effects, but perhaps we want to respect it?
-                    br.readInt()
-                    keyValues.tryReadAsBinary(br)
+    /**
+     * Restores product info kept by a [PICSCache].
+     */
+    internal constructor(id: Int, changeNumber: Int, shaHash: ByteArray?, buffer: ByteString, isBinary: Boolean) {
+        this.id = id
+        this.changeNumber = changeNumber
+        this.isMissingToken = false
+        this.shaHash = shaHash
+        this.buffer = buffer
+        this.isBinary = isBinary
+    }
+
+    /**
+     * Gets a single value from the KeyValue info without building the whole tree, for example
+     * `depots/731/manifests/public/gid` for the public manifest of a depot in an app.
+     *
+     * The result is the same as following the path through [keyValues] with [KeyValue.get]: names are matched ignoring
+     * case and the path starts below the root. If [keyValues] has already been accessed, the tree is used instead.
+     *
+     * @param path The path to the value, with names separated by `/`.
+     * @return The value, or null if the path does not exist or does not end at a value.
+     */
+    fun findValue(path: String): String? {
+        val names = path.split('/').filter { it.isNotEmpty() }
+
+        if (lazyKeyValues.isInitialized()) {
+            return KeyValuePathFinder.find(keyValues, names)
+        }
+
+        val buffer = buffer ?: return null
+
+        if (isBinary) {
+            return try {
+                KeyValuePathFinder.find(names) { visitor ->
+                    BinaryKeyValueReader.accept(packageBuffer(buffer), visitor)
                 }
+            } catch (e: IOException) {
+                logger.error("failed to read buffer", e)
+                null
+            }
+        }
+
+        val data = buffer.toByteArray()
+        return KeyValuePathFinder.find(names) { visitor ->
+            KVTextReader.accept(data, 0, data.size, visitor)
+        }
+    }
+
+    private fun parseKeyValues(): KeyValue {
+        val keyValues = KeyValue()
+        val buffer = buffer ?: return keyValues
+
+        if (isBinary) {
+            try {
+                keyValues.tryReadAsBinary(packageBuffer(buffer))
             } catch (e: IOException) {
                 logger.error("failed to read buffer", e)
             }
+        } else {
+            val data = buffer.toByteArray()
+            keyValues.readAsText(data, 0, data.size)
+        }
+
+        return keyValues
+    }
+
+    private fun packageBuffer(buffer: ByteString): ByteBuffer {
+        val byteBuffer = buffer.asReadOnlyByteBuffer()
+        if (byteBuffer.remaining() < 4) {
+            throw EOFException()
         }
+        byteBuffer.position(byteBuffer.position() + 4)
+        return byteBuffer
     }
 }
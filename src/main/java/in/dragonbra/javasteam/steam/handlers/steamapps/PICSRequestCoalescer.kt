@@ -0,0 +1,277 @@
+package `in`.dragonbra.javasteam.steam.handlers.steamapps
+
+import `in`.dragonbra.javasteam.steam.steamclient.AsyncJobFailedException
+import `in`.dragonbra.javasteam.util.JavaSteamAddition
+import `in`.dragonbra.javasteam.util.log.LogManager
+import `in`.dragonbra.javasteam.util.log.Logger
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.future.future
+import kotlinx.coroutines.launch
+import java.io.Closeable
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+
+/**
+ * Merges concurrent PICS product info requests into fewer, larger ones.
+ *
+ * Ids requested within [window] of each other are sent together in a single [SteamApps.picsGetProductInfo] call, and a
+ * batch is sent right away once it holds [maxBatchSize] ids. An id that is already queued or waiting for a response is
+ * not requested again, the callers asking for it share the same result.
+ *
+ * If an id is queued without an access token and another caller supplies one before the batch is sent, the token is
+ * used. Once the request was sent, later tokens are not, and the caller gets the info marked as missing a token.
+ *
+ * @param steamApps The handler used to send the requests.
+ * @param scope The scope batches are sent from and the [CompletableFuture] variants run in. [close] only cancels the
+ * coroutines the coalescer started, a scope passed in stays active.
+ */
+@JavaSteamAddition
+@Suppress("MemberVisibilityCanBePrivate", "unused")
+class PICSRequestCoalescer @JvmOverloads constructor(
+    private val steamApps: SteamApps,
+    scope: CoroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob()),
+) : Closeable {
+
+    companion object {
+        private val logger: Logger = LogManager.getLogger<PICSRequestCoalescer>()
+    }
+
+    /**
+     * How long a batch waits for more ids after the first one was queued.
+     */
+    var window: Duration = Duration.ofMillis(20)
+
+    /**
+     * Maximum number of apps and packages sent in a single request.
+     */
+    var maxBatchSize: Int = 500
+
+    private data class Key(val isPackage: Boolean, val id: Int, val metaDataOnly: Boolean)
+
+    private class Batch(val metaDataOnly: Boolean) {
+        val requests = LinkedHashMap<Key, PICSRequest>()
+        val results = HashMap<Key, CompletableDeferred<PICSProductInfo?>>()
+        var flushJob: Job? = null
+    }
+
+    // A child of the given scope, so closing the coalescer does not cancel the caller's other coroutines.
+    private val scope = CoroutineScope(scope.coroutineContext + SupervisorJob(scope.coroutineContext[Job]))
+
+    private val lock = Any()
+
+    // Every id that is queued or waiting for a response, guarded by lock.
+    private val inFlight = HashMap<Key, CompletableDeferred<PICSProductInfo?>>()
+
+    // The batch currently filling up for each value of metaDataOnly, guarded by lock.
+    private val pending = HashMap<Boolean, Batch>()
+
+    /**
+     * Requests product info for the given apps and packages, sharing the request with other callers.
+     *
+     * @param apps Requests for apps.
+     * @param packages Requests for packages.
+     * @param metaDataOnly Whether to request metadata only.
+     * @return The product info of every requested id that Steam knows about.
+     * @throws AsyncJobFailedException If the request failed or timed out before Steam answered for every id.
+     */
+    suspend fun getProductInfo(
+        apps: Iterable<PICSRequest> = emptyList(),
+        packages: Iterable<PICSRequest> = emptyList(),
+        metaDataOnly: Boolean = false,
+    ): Result {
+        val waits = mutableListOf<Pair<Key, CompletableDeferred<PICSProductInfo?>>>()
+        val full = mutableListOf<Batch>()
+
+        synchronized(lock) {
+            enqueue(apps, false, metaDataOnly, waits, full)
+            enqueue(packages, true, metaDataOnly, waits, full)
+        }
+
+        full.forEach { batch -> scope.launch { send(batch) } }
+
+        val infos = waits.map { it.second }.awaitAll()
+
+        val appInfos = mutableMapOf<Int, PICSProductInfo>()
+        val packageInfos = mutableMapOf<Int, PICSProductInfo>()
+        val unknownApps = mutableListOf<Int>()
+        val unknownPackages = mutableListOf<Int>()
+
+        waits.forEachIndexed { i, (key, _) ->
+            val info = infos[i]
+            when {
+                info == null && key.isPackage -> unknownPackages.add(key.id)
+                info == null -> unknownApps.add(key.id)
+                key.isPackage -> packageInfos[key.id] = info
+                else -> appInfos[key.id] = info
+            }
+        }
+
+        return Result(appInfos, packageInfos, unknownApps, unknownPackages)
+    }
+
+    /**
+     * Requests product info for the given apps and packages, sharing the request with other callers.
+     * @see getProductInfo
+     */
+    @JvmOverloads
+    fun getProductInfoFuture(
+        apps: Iterable<PICSRequest>,
+        packages: Iterable<PICSRequest>,
+        metaDataOnly: Boolean = false,
+    ): CompletableFuture<Result> = scope.future { getProductInfo(apps, packages, metaDataOnly) }
+
+    /**
+     * Fails every queued request and cancels the batches started by the coalescer, including requests that were sent
+     * and are awaiting a response.
+     */
+    override fun close() {
+        val cause = CancellationException("PICS request coalescer was closed")
+
+        val batches = synchronized(lock) {
+            pending.values.toList().also {
+                pending.clear()
+                inFlight.clear()
+            }
+        }
+
+        batches.forEach { batch ->
+            batch.flushJob?.cancel()
+            batch.results.values.forEach { it.completeExceptionally(cause) }
+        }
+
+        scope.cancel(cause)
+    }
+
+    /**
+     * The product info returned by [getProductInfo].
+     *
+     * @property apps App info by app id.
+     * @property packages Package info by package id.
+     * @property unknownApps Requested app ids Steam returned no info for.
+     * @property unknownPackages Requested package ids Steam returned no info for.
+     */
+    class Result(
+        val apps: Map<Int, PICSProductInfo>,
+        val packages: Map<Int, PICSProductInfo>,
+        val unknownApps: List<Int>,
+        val unknownPackages: List<Int>,
+    )
+
+    private fun enqueue(
+        requests: Iterable<PICSRequest>,
+        isPackage: Boolean,
+        metaDataOnly: Boolean,
+        waits: MutableList<Pair<Key, CompletableDeferred<PICSProductInfo?>>>,
+        full: MutableList<Batch>,
+    ) {
+        requests.forEach { request ->
+            val key = Key(isPackage, request.id, metaDataOnly)
+
+            val existing = inFlight[key]
+            if (existing != null) {
+                if (request.accessToken != 0L) {
+                    pending[metaDataOnly]?.requests?.get(key)?.let { queued ->
+                        if (queued.accessToken == 0L) {
+                            queued.accessToken = request.accessToken
+                        }
+                    }
+                }
+
+                waits.add(key to existing)
+                return@forEach
+            }
+
+            val deferred = CompletableDeferred<PICSProductInfo?>()
+            inFlight[key] = deferred
+
+            val batch = pending.getOrPut(metaDataOnly) {
+                Batch(metaDataOnly).also { batch ->
+                    batch.flushJob = scope.launch {
+                        delay(window.toMillis())
+                        flush(batch)
+                    }
+                }
+            }
+
+            // copied, since the caller's request may be changed while it is queued
+            batch.requests[key] = PICSRequest(request.id, request.accessToken)
+            batch.results[key] = deferred
+
+            if (batch.requests.size >= maxBatchSize) {
+                pending.remove(metaDataOnly)
+                batch.flushJob?.cancel()
+                full.add(batch)
+            }
+
+            waits.add(key to deferred)
+        }
+    }
+
+    private suspend fun flush(batch: Batch) {
+        synchronized(lock) {
+            // already sent because it filled up
+            if (pending[batch.metaDataOnly] !== batch) {
+                return
+            }
+            pending.remove(batch.metaDataOnly)
+        }
+
+        send(batch)
+    }
+
+    private suspend fun send(batch: Batch) {
+        val apps = batch.requests.filterKeys { !it.isPackage }.values
+        val packages = batch.requests.filterKeys { it.isPackage }.values
+
+        logger.debug("Requesting PICS product info for ${apps.size} apps and ${packages.size} packages")
+
+        try {
+            val result = steamApps.picsGetProductInfo(apps, packages, batch.metaDataOnly).await()
+
+            result.results.forEach { callback ->
+                callback.apps.forEach { (id, info) -> complete(batch, Key(false, id, batch.metaDataOnly), info) }
+                callback.packages.forEach { (id, info) -> complete(batch, Key(true, id, batch.metaDataOnly), info) }
+            }
+
+            if (result.complete) {
+                // whatever is left was unknown
+                batch.results.keys.forEach { complete(batch, it, null) }
+            } else {
+                // the job failed or timed out part way, so the rest may well exist
+                fail(batch, AsyncJobFailedException("PICS product info job ended before every response arrived"))
+            }
+        } catch (e: Exception) {
+            fail(batch, e)
+
+            if (e is CancellationException) {
+                throw e
+            }
+        }
+    }
+
+    private fun complete(batch: Batch, key: Key, info: PICSProductInfo?) {
+        val deferred = batch.results[key] ?: return
+
+        synchronized(lock) {
+            inFlight.remove(key, deferred)
+        }
+
+        deferred.complete(info)
+    }
+
+    private fun fail(batch: Batch, cause: Throwable) {
+        synchronized(lock) {
+            batch.results.forEach { (key, deferred) -> inFlight.remove(key, deferred) }
+        }
+
+        batch.results.values.forEach { it.completeExceptionally(cause) }
+    }
+}
@@ -469,6 +469,25 @@ class SteamApps : ClientMsgHandler() {
         client.send(request)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientLicenseList,
+        EMsg.ClientRequestFreeLicenseResponse,
+        EMsg.ClientPurchaseResponse,
+        EMsg.ClientRedeemGuestPassResponse,
+        EMsg.ClientGameConnectTokens,
+        EMsg.ClientVACBanStatus,
+        EMsg.ClientGetAppOwnershipTicketResponse,
+        EMsg.ClientGetDepotDecryptionKeyResponse,
+        EMsg.ClientGetLegacyGameKeyResponse,
+        EMsg.ClientPICSAccessTokenResponse,
+        EMsg.ClientPICSChangesSinceResponse,
+        EMsg.ClientPICSProductInfoResponse,
+        EMsg.ClientUpdateGuestPassesList,
+        EMsg.ClientCheckAppBetaPasswordResponse,
+        EMsg.ClientPICSPrivateBetaResponse,
+        EMsg.ClientRequestEncryptedAppTicketResponse,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      *
@@ -8,7 +8,6 @@ import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserver2
 import `in`.dragonbra.javasteam.steam.steamclient.callbackmgr.CallbackMsg
 import `in`.dragonbra.javasteam.types.KeyValue
 import `in`.dragonbra.javasteam.util.log.LogManager
-import `in`.dragonbra.javasteam.util.stream.MemoryStream
 
 /**
  * This callback is received in a response to activating a Steam key.
@@ -49,8 +48,7 @@ class PurchaseResponseCallback(packetMsg: IPacketMsg) : CallbackMsg() {
 
         if (msg.purchaseReceiptInfo != null) {
             try {
-                val ms = MemoryStream(msg.purchaseReceiptInfo.toByteArray())
-                purchaseReceiptInfo.tryReadAsBinary(ms)
+                purchaseReceiptInfo.tryReadAsBinary(msg.purchaseReceiptInfo.asReadOnlyByteBuffer())
             } catch (e: Exception) {
                 logger.error("Failed to read purchase receipt info", e)
             }
@@ -258,6 +258,8 @@ class SteamAuthTicket : ClientMsgHandler() {
         return AsyncJobSingle(client, auth.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = dispatchMap.keys
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -2,6 +2,7 @@ package `in`.dragonbra.javasteam.steam.handlers.steamclientcommunication
 
 import `in`.dragonbra.javasteam.base.IPacketMsg
 import `in`.dragonbra.javasteam.enums.EGamingDeviceType
+import `in`.dragonbra.javasteam.enums.EMsg
 import `in`.dragonbra.javasteam.enums.EOSType
 import `in`.dragonbra.javasteam.enums.EResult
 import `in`.dragonbra.javasteam.enums.ESteamRealm
@@ -315,6 +316,8 @@ class SteamClientCommunication : ClientMsgHandler() {
         )
     }
 
+    override val handledMessages: Set<EMsg> = emptySet()
+
     /**
      * Handles a client message. This should not be called directly.
      *
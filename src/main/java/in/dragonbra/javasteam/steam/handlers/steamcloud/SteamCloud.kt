@@ -2,6 +2,7 @@ package `in`.dragonbra.javasteam.steam.handlers.steamcloud
 
 import com.google.protobuf.ByteString
 import `in`.dragonbra.javasteam.base.IPacketMsg
+import `in`.dragonbra.javasteam.enums.EMsg
 import `in`.dragonbra.javasteam.enums.EOSType
 import `in`.dragonbra.javasteam.enums.EPlatformType
 import `in`.dragonbra.javasteam.enums.EResult
@@ -550,6 +551,8 @@ class SteamCloud : ClientMsgHandler() {
         cloudService.externalStorageTransferReport(request.build())
     }
 
+    override val handledMessages: Set<EMsg> = emptySet()
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
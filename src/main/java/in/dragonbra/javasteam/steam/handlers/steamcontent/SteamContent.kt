@@ -1,6 +1,7 @@
 package `in`.dragonbra.javasteam.steam.handlers.steamcontent
 
 import `in`.dragonbra.javasteam.base.IPacketMsg
+import `in`.dragonbra.javasteam.enums.EMsg
 import `in`.dragonbra.javasteam.enums.EResult
 import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesContentsystemSteamclient.CContentServerDirectory_GetCDNAuthToken_Request
 import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesContentsystemSteamclient.CContentServerDirectory_GetDepotPatchInfo_Request
@@ -246,6 +247,8 @@ class SteamContent : ClientMsgHandler() {
         )
     }
 
+    override val handledMessages: Set<EMsg> = emptySet()
+
     /**
      * Handles a client message. This should not be called directly.
      *
@@ -725,6 +725,29 @@ class SteamFriends : ClientMsgHandler() {
         return chatID
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientClanState,
+        EMsg.ClientFriendMsgIncoming,
+        EMsg.ClientFriendMsgEchoToSender,
+        EMsg.ClientAddFriendResponse,
+        EMsg.ClientChatEnter,
+        EMsg.ClientChatMsg,
+        EMsg.ClientChatMemberInfo,
+        EMsg.ClientChatRoomInfo,
+        EMsg.ClientChatActionResult,
+        EMsg.ClientChatInvite,
+        EMsg.ClientSetIgnoreFriendResponse,
+        EMsg.ClientFriendProfileInfoResponse,
+        EMsg.ClientAMGetPersonaNameHistoryResponse,
+        EMsg.ClientPlayerNicknameList,
+        EMsg.AMClientSetPlayerNicknameResponse,
+        EMsg.ClientPersonaState,
+        EMsg.ClientFriendsList,
+        EMsg.ClientChatGetFriendMessageHistoryResponse,
+        EMsg.ClientAccountInfo,
+        EMsg.ClientPersonaChangeResponse,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -33,6 +33,8 @@ class SteamGameCoordinator : ClientMsgHandler() {
         client.send(clientMsg)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(EMsg.ClientFromGC)
+
     /**
      * Handles a client message. This should not be called directly.
      *
@@ -148,6 +148,11 @@ class SteamGameServer : ClientMsgHandler() {
         client.send(status)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.GSStatusReply,
+        EMsg.ClientTicketAuthComplete,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -46,6 +46,8 @@ class SteamMasterServer : ClientMsgHandler() {
         return AsyncJobSingle(this.client, query.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(EMsg.GMSClientServerQueryResponse)
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -5,6 +5,7 @@ import `in`.dragonbra.javasteam.enums.ELobbyType
 import `in`.dragonbra.javasteam.types.KeyValue
 import `in`.dragonbra.javasteam.types.SteamID
 import `in`.dragonbra.javasteam.util.stream.MemoryStream
+import java.nio.ByteBuffer
 
 /**
  * Represents a Steam lobby.
@@ -66,10 +67,8 @@ class Lobby(
 
             val keyValue = KeyValue()
 
-            MemoryStream(buffer).use { ms ->
-                if (!keyValue.tryReadAsBinary(ms)) {
-                    throw NumberFormatException("Lobby metadata is of an unexpected format")
-                }
+            if (!keyValue.tryReadAsBinary(ByteBuffer.wrap(buffer))) {
+                throw NumberFormatException("Lobby metadata is of an unexpected format")
             }
 
             val metadata = mutableMapOf<String, String>()
@@ -374,6 +374,18 @@ class SteamMatchmaking : ClientMsgHandler() {
         client.send(msg)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientMMSCreateLobbyResponse,
+        EMsg.ClientMMSSetLobbyDataResponse,
+        EMsg.ClientMMSSetLobbyOwnerResponse,
+        EMsg.ClientMMSLobbyData,
+        EMsg.ClientMMSGetLobbyListResponse,
+        EMsg.ClientMMSJoinLobbyResponse,
+        EMsg.ClientMMSLeaveLobbyResponse,
+        EMsg.ClientMMSUserJoinedLobby,
+        EMsg.ClientMMSUserLeftLobby,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
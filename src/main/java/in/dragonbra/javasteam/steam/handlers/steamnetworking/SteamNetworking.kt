@@ -40,6 +40,8 @@ class SteamNetworking : ClientMsgHandler() {
         return AsyncJobSingle(this.client, msg.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(EMsg.ClientNetworkingCertRequestResponse)
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
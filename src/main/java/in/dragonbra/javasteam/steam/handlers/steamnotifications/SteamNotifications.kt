@@ -51,6 +51,13 @@ class SteamNotifications : ClientMsgHandler() {
         ).also(client::send)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientUserNotifications,
+        EMsg.ClientChatOfflineMessageNotification,
+        EMsg.ClientCommentNotifications,
+        EMsg.ClientItemAnnouncements,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -48,6 +48,8 @@ class SteamScreenshots : ClientMsgHandler() {
         return AsyncJobSingle(this.client, msg.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(EMsg.ClientUCMAddScreenshotResponse)
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -127,6 +127,11 @@ class SteamUnifiedMessages : ClientMsgHandler() {
         client.send(msg)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ServiceMethod,
+        EMsg.ServiceMethodResponse,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
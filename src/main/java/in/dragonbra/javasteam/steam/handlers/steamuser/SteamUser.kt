@@ -41,6 +41,19 @@ class SteamUser : ClientMsgHandler() {
     val steamID: SteamID?
         get() = client.steamID
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientLogOnResponse,
+        EMsg.ClientLoggedOff,
+        EMsg.ClientSessionToken,
+        EMsg.ClientAccountInfo,
+        EMsg.ClientEmailAddrInfo,
+        EMsg.ClientWalletInfoUpdate,
+        EMsg.ClientRequestWebAPIAuthenticateUserNonceResponse,
+        EMsg.ClientVanityURLChangedNotification,
+        EMsg.ClientMarketingMessageUpdate2,
+        EMsg.ClientPlayingSessionState,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -211,6 +211,13 @@ class SteamUserStats : ClientMsgHandler() {
         return AsyncJobSingle(this.client, msg.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(
+        EMsg.ClientGetNumberOfCurrentPlayersDPResponse,
+        EMsg.ClientLBSFindOrCreateLBResponse,
+        EMsg.ClientLBSGetLBEntriesResponse,
+        EMsg.ClientGetUserStatsResponse,
+    )
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
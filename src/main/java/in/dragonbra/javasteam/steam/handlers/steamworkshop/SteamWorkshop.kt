@@ -39,6 +39,8 @@ class SteamWorkshop : ClientMsgHandler() {
         return AsyncJobSingle(this.client, enumRequest.sourceJobID)
     }
 
+    override val handledMessages: Set<EMsg> = setOf(EMsg.ClientUCMEnumeratePublishedFilesByUserActionResponse)
+
     /**
      * Handles a client message. This should not be called directly.
      * @param packetMsg The packet message that contains the data.
@@ -3,10 +3,8 @@ package `in`.dragonbra.javasteam.steam.steamclient
 import `in`.dragonbra.javasteam.steam.steamclient.callbackmgr.CallbackMsg
 import `in`.dragonbra.javasteam.types.AsyncJob
 import `in`.dragonbra.javasteam.types.JobID
-import `in`.dragonbra.javasteam.util.event.ScheduledFunction
+import `in`.dragonbra.javasteam.util.ConcurrentLongMap
 import `in`.dragonbra.javasteam.util.log.LogManager
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ConcurrentMap
 
 /**
  * @author Lossy
@@ -18,16 +16,28 @@ class AsyncJobManager {
         private val logger = LogManager.getLogger(AsyncJobManager::class.java)
     }
 
-    val asyncJobs: ConcurrentMap<JobID, AsyncJob> = ConcurrentHashMap()
+    // keyed by the raw job id, so inbound packets can be matched without creating JobID objects
+    internal val asyncJobs = ConcurrentLongMap<AsyncJob>()
 
-    private val jobTimeoutFunc: ScheduledFunction = ScheduledFunction(this::cancelTimedOutJobs, 1000)
+    /**
+     * A snapshot of the jobs currently tracked by this manager.
+     */
+    val jobs: Collection<AsyncJob>
+        get() = asyncJobs.values()
+
+    @Volatile
+    private var timeoutsEnabled: Boolean = false
 
     /**
      * Tracks a job with this manager.
      * @param asyncJob The asynchronous job to track
      */
     fun startJob(asyncJob: AsyncJob) {
-        asyncJobs[asyncJob.jobID] = asyncJob
+        asyncJobs.put(asyncJob.jobID.value, asyncJob)
+
+        if (timeoutsEnabled) {
+            JobTimeoutWheel.schedule(this, asyncJob)
+        }
     }
 
     /**
@@ -37,6 +47,16 @@ class AsyncJobManager {
      * @param callback the callback.
      */
     fun tryCompleteJob(jobID: JobID, callback: CallbackMsg) {
+        tryCompleteJob(jobID.value, callback)
+    }
+
+    /**
+     * Passes a callback to a pending async job.
+     * If the given callback completes the job, the job is removed from this manager.
+     * @param jobID    the raw job id.
+     * @param callback the callback.
+     */
+    fun tryCompleteJob(jobID: Long, callback: CallbackMsg) {
         // if not a job we are tracking ourselves, can ignore it
         val asyncJob = getJob(jobID) ?: return
 
@@ -46,7 +66,9 @@ class AsyncJobManager {
 
         if (jobFinished) {
             // if the job is finished, we can stop tracking it
-            asyncJobs.remove(jobID)
+            if (asyncJobs.remove(jobID, asyncJob)) {
+                JobTimeoutWheel.cancel(asyncJob)
+            }
         }
     }
 
@@ -55,6 +77,14 @@ class AsyncJobManager {
      * @param jobID The job identifier.
      */
     fun heartbeatJob(jobID: JobID) {
+        heartbeatJob(jobID.value)
+    }
+
+    /**
+     * Extends the lifetime of a job.
+     * @param jobID The raw job identifier.
+     */
+    fun heartbeatJob(jobID: Long) {
         // ignore heartbeats for jobs we're not tracking
         val asyncJob: AsyncJob = getJob(jobID) ?: return
 
@@ -66,10 +96,19 @@ class AsyncJobManager {
      * @param jobID The job identifier.
      */
     fun failJob(jobID: JobID) {
+        failJob(jobID.value)
+    }
+
+    /**
+     * Marks a certain job as remotely failed.
+     * @param jobID The raw job identifier.
+     */
+    fun failJob(jobID: Long) {
         logger.debug("Failing job id: $jobID")
 
         // ignore remote failures for jobs we're not tracking
         val asyncJob: AsyncJob = getJob(jobID, true) ?: return
+        JobTimeoutWheel.cancel(asyncJob)
 
         asyncJob.setFailed(true)
     }
@@ -78,11 +117,12 @@ class AsyncJobManager {
      * Cancels and clears all jobs being tracked.
      */
     fun cancelPendingJobs() {
-        asyncJobs.values.forEach { job ->
-            job.setFailed(false)
+        asyncJobs.values().forEach { job ->
+            if (asyncJobs.remove(job.jobID.value, job)) {
+                JobTimeoutWheel.cancel(job)
+                job.setFailed(false)
+            }
         }
-
-        asyncJobs.clear()
     }
 
     /**
@@ -90,22 +130,37 @@ class AsyncJobManager {
      * @param enable Whether the job timeout checks should be enabled.
      */
     fun setTimeoutsEnabled(enable: Boolean) {
+        timeoutsEnabled = enable
+
         if (enable) {
-            jobTimeoutFunc.start()
-        } else {
-            jobTimeoutFunc.stop()
+            // jobs that came due while timeouts were disabled were dropped from the wheel
+            asyncJobs.values().forEach { job -> JobTimeoutWheel.schedule(this, job) }
         }
     }
 
     /**
-     * This is called periodically to cancel and clear out any jobs that have timed out (no response from Steam).
+     * Called by the [JobTimeoutWheel] once the deadline a job was scheduled with has passed.
+     * Cancels and clears out the job if it has timed out (no response from Steam).
      */
-    private fun cancelTimedOutJobs() {
-        asyncJobs.values.forEach { job ->
-            if (job.isTimedOut) {
-                job.setFailed(false)
-                asyncJobs.remove(job.jobID)
-            }
+    internal fun onJobDeadline(job: AsyncJob) {
+        // completed or failed in the meantime
+        if (asyncJobs[job.jobID.value] !== job) {
+            return
+        }
+
+        // scheduled again once timeouts are enabled
+        if (!timeoutsEnabled) {
+            return
+        }
+
+        // the deadline moved, for instance by a heartbeat
+        if (!job.isTimedOut) {
+            JobTimeoutWheel.schedule(this, job)
+            return
+        }
+
+        if (asyncJobs.remove(job.jobID.value, job)) {
+            job.setFailed(false)
         }
     }
 
@@ -115,6 +170,6 @@ class AsyncJobManager {
      * @param andRemove If set to <c>true</c>, this job is removed from tracking.
      * @return The [AsyncJob] for the given [jobID], or null if not tracked.
      */
-    private fun getJob(jobID: JobID, andRemove: Boolean = false): AsyncJob? =
+    private fun getJob(jobID: Long, andRemove: Boolean = false): AsyncJob? =
         if (andRemove) asyncJobs.remove(jobID) else asyncJobs[jobID]
 }
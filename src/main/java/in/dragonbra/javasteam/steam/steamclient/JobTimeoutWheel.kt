@@ -0,0 +1,180 @@
+package `in`.dragonbra.javasteam.steam.steamclient
+
+import `in`.dragonbra.javasteam.types.AsyncJob
+import `in`.dragonbra.javasteam.util.log.LogManager
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Hashed timer wheel that times out the [AsyncJob]s of every [AsyncJobManager] in the process.
+ *
+ * Jobs are placed in the slot of the tick their deadline falls on, so each tick only looks at the jobs due around it
+ * instead of every job in flight. A job whose deadline moved later, such as after a heartbeat, is not touched until
+ * its old tick comes up, at which point it is moved to its new one. A deadline that moves earlier is scheduled again
+ * right away, unlinking the old entry. Jobs that complete or fail are unlinked through [cancel], so an entry left in
+ * its slot does not keep the job alive until its tick comes up.
+ *
+ * A single daemon thread drives the wheel while any job is scheduled.
+ */
+internal object JobTimeoutWheel {
+
+    private val logger = LogManager.getLogger(JobTimeoutWheel::class.java)
+
+    /**
+     * Value of [AsyncJob.timeoutTick] for jobs that are not in the wheel.
+     */
+    const val UNSCHEDULED = Long.MAX_VALUE
+
+    private val TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+
+    private const val WHEEL_SIZE = 512
+
+    private const val WHEEL_MASK = WHEEL_SIZE - 1L
+
+    /**
+     * An entry in a slot of the wheel. [job] is cleared once the entry no longer times the job out, the entry itself
+     * is only dropped from its slot when its tick comes up.
+     */
+    internal class Node(val manager: AsyncJobManager, var job: AsyncJob?, val tick: Long)
+
+    private val lock = Any()
+
+    private val origin = System.nanoTime()
+
+    private val slots = Array(WHEEL_SIZE) { ArrayList<Node>() }
+
+    // The first tick that has not been expired yet.
+    private var currentTick = 0L
+
+    private var size = 0
+
+    private var ticker: ScheduledFuture<*>? = null
+
+    private val executor: ScheduledExecutorService by lazy {
+        Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "JavaSteam job timeouts").apply { isDaemon = true }
+        }
+    }
+
+    /**
+     * Schedules [job] to be handed back to [manager] once its deadline passes. Does nothing if it is already scheduled.
+     */
+    fun schedule(manager: AsyncJobManager, job: AsyncJob) {
+        synchronized(lock) {
+            if (job.timeoutTick == UNSCHEDULED) {
+                add(manager, job)
+            }
+        }
+    }
+
+    /**
+     * Takes [job] out of the wheel, for jobs that are no longer tracked by their manager.
+     */
+    fun cancel(job: AsyncJob) {
+        if (job.timeoutTick == UNSCHEDULED) {
+            return
+        }
+
+        synchronized(lock) {
+            job.timeoutNode?.job = null
+            job.timeoutNode = null
+            job.timeoutManager = null
+            job.timeoutTick = UNSCHEDULED
+        }
+    }
+
+    /**
+     * Called when the deadline of [job] changed.
+     */
+    fun deadlineChanged(job: AsyncJob) {
+        // later deadlines are picked up when the current entry expires
+        if (tickOf(job.deadlineNanos) >= job.timeoutTick) {
+            return
+        }
+
+        synchronized(lock) {
+            val manager = job.timeoutManager ?: return
+            if (tickOf(job.deadlineNanos) < job.timeoutTick) {
+                add(manager, job)
+            }
+        }
+    }
+
+    private fun add(manager: AsyncJobManager, job: AsyncJob) {
+        val tick = maxOf(tickOf(job.deadlineNanos), currentTick)
+
+        val node = Node(manager, job, tick)
+        slots[(tick and WHEEL_MASK).toInt()].add(node)
+
+        // an entry replaced by an earlier deadline is skipped
+        job.timeoutNode?.job = null
+        job.timeoutNode = node
+        job.timeoutManager = manager
+        job.timeoutTick = tick
+        size++
+
+        if (ticker == null) {
+            ticker = executor.scheduleAtFixedRate(::advance, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS)
+        }
+    }
+
+    /**
+     * The first tick at or after [nanos].
+     */
+    private fun tickOf(nanos: Long): Long = Math.floorDiv(nanos - origin + TICK_NANOS - 1, TICK_NANOS)
+
+    private fun advance() {
+        val expired = ArrayList<Pair<AsyncJobManager, AsyncJob>>()
+
+        synchronized(lock) {
+            val lastTick = Math.floorDiv(System.nanoTime() - origin, TICK_NANOS)
+            if (lastTick < currentTick) {
+                return
+            }
+
+            if (lastTick - currentTick >= WHEEL_SIZE) {
+                // fell behind by a full turn, every slot may hold due entries
+                slots.forEach { drain(it, lastTick, expired) }
+            } else {
+                for (tick in currentTick..lastTick) {
+                    drain(slots[(tick and WHEEL_MASK).toInt()], lastTick, expired)
+                }
+            }
+
+            currentTick = lastTick + 1
+
+            if (size == 0) {
+                ticker?.cancel(false)
+                ticker = null
+            }
+        }
+
+        expired.forEach { (manager, job) ->
+            try {
+                manager.onJobDeadline(job)
+            } catch (e: Exception) {
+                logger.error("Failed to time out job ${job.jobID}", e)
+            }
+        }
+    }
+
+    private fun drain(slot: ArrayList<Node>, lastTick: Long, expired: MutableList<Pair<AsyncJobManager, AsyncJob>>) {
+        slot.removeIf { node ->
+            if (node.tick > lastTick) {
+                return@removeIf false
+            }
+
+            size--
+
+            // skip entries that were unlinked
+            val job = node.job ?: return@removeIf true
+            job.timeoutNode = null
+            job.timeoutTick = UNSCHEDULED
+            expired.add(node.manager to job)
+
+            true
+        }
+    }
+}
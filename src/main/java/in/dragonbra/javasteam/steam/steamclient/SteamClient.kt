@@ -27,7 +27,6 @@ import `in`.dragonbra.javasteam.steam.steamclient.callbacks.DisconnectedCallback
 import `in`.dragonbra.javasteam.steam.steamclient.configuration.SteamConfiguration
 import `in`.dragonbra.javasteam.types.AsyncJob
 import `in`.dragonbra.javasteam.types.JobID
-import `in`.dragonbra.javasteam.types.JobID.Companion.toJobID
 import `in`.dragonbra.javasteam.util.JavaSteamAddition
 import `in`.dragonbra.javasteam.util.log.LogManager
 import `in`.dragonbra.javasteam.util.log.Logger
@@ -53,12 +52,19 @@ class SteamClient @JvmOverloads constructor(
 ) : CMClient(configuration),
     Closeable {
 
-    private val handlers = HashMap<Class<out ClientMsgHandler>, ClientMsgHandler>(HANDLERS_COUNT)
+    private val handlers = LinkedHashMap<Class<out ClientMsgHandler>, ClientMsgHandler>(HANDLERS_COUNT)
+
+    // Handlers to pass each message type to, indexed by EMsg ordinal. Rebuilt whenever the handlers change.
+    @Volatile
+    private var routes: Array<Array<ClientMsgHandler>> = emptyArray()
 
     private val currentJobId = AtomicLong(0L)
 
     private val processStartTime: Date
 
+    // every part of the job ids handed out by getNextJobID but the sequential count
+    private val jobIDBase: Long
+
     private val callbackQueue = Channel<CallbackMsg>(Channel.UNLIMITED)
 
     internal val jobManager: AsyncJobManager // What does this even do now?
@@ -95,6 +101,13 @@ class SteamClient @JvmOverloads constructor(
 
         processStartTime = Date()
 
+        jobIDBase = JobID().apply {
+            boxID = 0L
+            processID = 0L
+            sequentialCount = 0L
+            startTime = processStartTime
+        }.value
+
         jobManager = AsyncJobManager()
     }
 
@@ -125,6 +138,7 @@ class SteamClient @JvmOverloads constructor(
     private fun addHandlerCore(handler: ClientMsgHandler) {
         handler.setup(this)
         handlers[handler.javaClass] = handler
+        rebuildRoutes()
     }
 
     /**
@@ -132,7 +146,9 @@ class SteamClient @JvmOverloads constructor(
      * @param handler The handler name to remove.
      */
     fun removeHandler(handler: Class<out ClientMsgHandler>) {
-        handlers.remove(handler)
+        if (handlers.remove(handler) != null) {
+            rebuildRoutes()
+        }
     }
 
     /**
@@ -271,7 +287,7 @@ class SteamClient @JvmOverloads constructor(
         }
 
         callbackQueue.trySend(msg)
-        jobManager.tryCompleteJob(msg.jobID, msg)
+        jobManager.tryCompleteJob(msg.jobID.value, msg)
     }
 //endregion
 
@@ -281,12 +297,7 @@ class SteamClient @JvmOverloads constructor(
      * Returns the next available JobID for job based messages.
      * @return The next available JobID.
      */
-    fun getNextJobID(): JobID = JobID().apply {
-        boxID = 0L
-        processID = 0L
-        sequentialCount = currentJobId.incrementAndGet()
-        startTime = processStartTime
-    }
+    fun getNextJobID(): JobID = JobID(jobIDBase or (currentJobId.incrementAndGet() and 0xFFFFFL))
 
     fun startJob(job: AsyncJob) {
         if (!isConnected) {
@@ -315,12 +326,20 @@ class SteamClient @JvmOverloads constructor(
             else -> Unit
         }
 
-        // pass along the clientMsg to all registered handlers
-        handlers.forEach { (key, value) ->
+        return dispatchToHandlers(packetMsg)
+    }
+
+    /**
+     * Passes a message to the registered handlers that consume its type, in the order they were added.
+     * @param packetMsg The packet message.
+     * @return false if a handler threw and the client was disconnected.
+     */
+    internal fun dispatchToHandlers(packetMsg: IPacketMsg): Boolean {
+        routes[packetMsg.msgType.ordinal].forEach { handler ->
             try {
-                value.handleMsg(packetMsg)
+                handler.handleMsg(packetMsg)
             } catch (e: Exception) {
-                logger.debug("Unhandled exception from ${key.name} handlers", e)
+                logger.debug("Unhandled exception from ${handler.javaClass.name} handlers", e)
                 disconnect()
                 return false
             }
@@ -329,6 +348,26 @@ class SteamClient @JvmOverloads constructor(
         return true
     }
 
+    /**
+     * Builds the table used by [dispatchToHandlers] from the [ClientMsgHandler.handledMessages] of every handler.
+     * Message types no handler declares share the list of handlers that consume everything.
+     */
+    private fun rebuildRoutes() {
+        val declared = handlers.values.map { it to it.handledMessages }
+
+        val catchAll = declared.filter { it.second == null }.map { it.first }.toTypedArray()
+        val table = Array(EMsg.entries.size) { catchAll }
+
+        declared.mapNotNull { it.second }.flatten().toSet().forEach { msgType ->
+            table[msgType.ordinal] = declared
+                .filter { (_, msgTypes) -> msgTypes == null || msgType in msgTypes }
+                .map { it.first }
+                .toTypedArray()
+        }
+
+        routes = table
+    }
+
     /**
      * Called when the client is securely connected to Steam3.
      */
@@ -361,11 +400,11 @@ class SteamClient @JvmOverloads constructor(
     }
 
     private fun handleJobHeartbeat(packetMsg: IPacketMsg) {
-        jobManager.heartbeatJob(packetMsg.targetJobID.toJobID())
+        jobManager.heartbeatJob(packetMsg.targetJobID)
     }
 
     private fun handleJobFailed(packetMsg: IPacketMsg) {
-        jobManager.failJob(packetMsg.targetJobID.toJobID())
+        jobManager.failJob(packetMsg.targetJobID)
     }
 
     /**
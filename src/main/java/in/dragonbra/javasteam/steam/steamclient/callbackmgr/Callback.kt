@@ -1,22 +1,44 @@
 package `in`.dragonbra.javasteam.steam.steamclient.callbackmgr
 
 import `in`.dragonbra.javasteam.types.JobID
-import `in`.dragonbra.javasteam.util.compat.Consumer
 import java.io.Closeable
 
 @Suppress("unused")
-class Callback<TCall : CallbackMsg> @JvmOverloads constructor(
+class Callback<TCall : CallbackMsg> private constructor(
     override val callbackType: Class<out TCall>,
     val onRun: suspend (TCall) -> Unit,
-    private var mgr: CallbackManager? = null,
-    val jobID: JobID = JobID.INVALID,
+    private var mgr: CallbackManager?,
+    val jobID: JobID,
+    private val onRunSync: ((TCall) -> Unit)?,
 ) : CallbackBase(),
     Closeable {
 
+    @JvmOverloads
+    constructor(
+        callbackType: Class<out TCall>,
+        onRun: suspend (TCall) -> Unit,
+        mgr: CallbackManager? = null,
+        jobID: JobID = JobID.INVALID,
+    ) : this(callbackType, onRun, mgr, jobID, null)
+
+    /**
+     * Creates a callback around a non-suspending function, which is invoked directly by the blocking
+     * [CallbackManager] run methods instead of through a coroutine.
+     */
+    internal constructor(
+        callbackType: Class<out TCall>,
+        mgr: CallbackManager?,
+        jobID: JobID,
+        onRun: (TCall) -> Unit,
+    ) : this(callbackType, { onRun(it) }, mgr, jobID, onRun)
+
     init {
         mgr?.register(this)
     }
 
+    override val filterJobID: JobID
+        get() = jobID
+
     override fun close() {
         mgr?.unregister(this)
         mgr = null
@@ -29,4 +51,14 @@ class Callback<TCall : CallbackMsg> @JvmOverloads constructor(
             onRun(cb)
         }
     }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun runSync(callback: Any) {
+        val direct = onRunSync ?: return super.runSync(callback)
+
+        val cb = callback as? TCall ?: return
+        if (cb.jobID == jobID || jobID == JobID.INVALID) {
+            direct(cb)
+        }
+    }
 }
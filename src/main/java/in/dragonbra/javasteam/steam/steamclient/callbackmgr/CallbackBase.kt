@@ -1,5 +1,8 @@
 package `in`.dragonbra.javasteam.steam.steamclient.callbackmgr
 
+import `in`.dragonbra.javasteam.types.JobID
+import kotlinx.coroutines.runBlocking
+
 /**
  * This is the base class for the utility [Callback] class.
  * This is for internal use only, and shouldn't be used directly.
@@ -7,4 +10,25 @@ package `in`.dragonbra.javasteam.steam.steamclient.callbackmgr
 abstract class CallbackBase {
     internal abstract val callbackType: Class<*>
     internal abstract suspend fun run(callback: Any)
+
+    /**
+     * The [JobID] this callback is filtered on, or [JobID.INVALID] to receive every callback of [callbackType].
+     */
+    internal open val filterJobID: JobID
+        get() = JobID.INVALID
+
+    /**
+     * Order in which this callback was registered with its [CallbackManager], used to keep dispatch order stable.
+     */
+    internal var registrationOrder: Long = 0
+
+    @Volatile
+    internal var isRegistered: Boolean = false
+
+    /**
+     * Runs the callback on the calling thread, blocking on it if it suspends.
+     */
+    internal open fun runSync(callback: Any) {
+        runBlocking { run(callback) }
+    }
 }
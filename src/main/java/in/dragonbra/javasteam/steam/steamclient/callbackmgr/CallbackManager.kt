@@ -8,7 +8,6 @@ import `in`.dragonbra.javasteam.steam.handlers.steamunifiedmessages.callback.Ser
 import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
 import `in`.dragonbra.javasteam.types.JobID
 import `in`.dragonbra.javasteam.util.compat.Consumer
-import kotlinx.coroutines.runBlocking
 import java.io.Closeable
 import java.util.*
 import java.util.concurrent.*
@@ -22,7 +21,14 @@ import java.util.concurrent.*
  */
 class CallbackManager(private val steamClient: SteamClient) {
 
-    private val registeredCallbacks: MutableSet<CallbackBase> = Collections.newSetFromMap(ConcurrentHashMap())
+    private val registeredCallbacks: MutableSet<CallbackBase> = LinkedHashSet()
+
+    private var nextRegistrationOrder: Long = 0
+
+    // Subscribers resolved per concrete callback class. Replaced wholesale whenever a subscription changes, so a
+    // lookup racing with (un)subscribe can only ever populate the discarded map.
+    @Volatile
+    private var dispatchIndex: ConcurrentHashMap<Class<*>, Subscribers> = ConcurrentHashMap()
 
     private val steamUnifiedMessages: SteamUnifiedMessages = steamClient.getHandler(SteamUnifiedMessages::class.java)!!
 
@@ -108,7 +114,7 @@ class CallbackManager(private val steamClient: SteamClient) {
         callbackType: Class<out TCallback>,
         jobID: JobID,
         callbackFunc: Consumer<TCallback>,
-    ): Closeable = Callback(callbackType, callbackFunc::accept, this, jobID)
+    ): Closeable = Callback(callbackType, this, jobID, callbackFunc::accept)
 
     /**
      * Subscribes to all callbacks of type [TCallback].
@@ -176,12 +182,10 @@ class CallbackManager(private val steamClient: SteamClient) {
 
         // All ServiceMethodNotification<*> erase to the same class at runtime, so without this
         // check every subscriber would fire for every notification regardless of body type.
-        return Callback(
-            callbackType = ServiceMethodNotification::class.java as Class<out ServiceMethodNotification<TNotification>>,
-            onRun = { notification -> if (notificationClass.isInstance(notification.body)) callbackFunc.accept(notification) },
-            mgr = this,
-            jobID = JobID.INVALID
-        )
+        val callbackType = ServiceMethodNotification::class.java as Class<out ServiceMethodNotification<TNotification>>
+        return Callback(callbackType, this, JobID.INVALID) { notification ->
+            if (notificationClass.isInstance(notification.body)) callbackFunc.accept(notification)
+        }
     }
 
     /**
@@ -204,12 +208,10 @@ class CallbackManager(private val steamClient: SteamClient) {
 
         // All ServiceMethodResponse<*> erase to the same class at runtime, so without this
         // check every subscriber would fire for every response regardless of body type.
-        return Callback(
-            callbackType = ServiceMethodResponse::class.java as Class<out ServiceMethodResponse<TNotification>>,
-            onRun = { notification -> if (notificationClass.isInstance(notification.body)) callbackFunc.accept(notification) },
-            mgr = this,
-            jobID = JobID.INVALID,
-        )
+        val callbackType = ServiceMethodResponse::class.java as Class<out ServiceMethodResponse<TNotification>>
+        return Callback(callbackType, this, JobID.INVALID) { notification ->
+            if (notificationClass.isInstance(notification.body)) callbackFunc.accept(notification)
+        }
     }
 
     //region Kotlin-Helpers
@@ -245,34 +247,107 @@ class CallbackManager(private val steamClient: SteamClient) {
     //endregion
 
     internal fun register(callback: CallbackBase) {
-        if (registeredCallbacks.contains(callback)) {
-            return
-        }
+        synchronized(registeredCallbacks) {
+            if (!registeredCallbacks.add(callback)) {
+                return
+            }
 
-        registeredCallbacks.add(callback)
+            callback.registrationOrder = nextRegistrationOrder++
+            callback.isRegistered = true
+            dispatchIndex = ConcurrentHashMap()
+        }
     }
 
     internal fun unregister(callback: CallbackBase) {
-        registeredCallbacks.remove(callback)
+        synchronized(registeredCallbacks) {
+            if (!registeredCallbacks.remove(callback)) {
+                return
+            }
+
+            callback.isRegistered = false
+            dispatchIndex = ConcurrentHashMap()
+        }
     }
 
     private fun handle(call: CallbackMsg) {
-        val callbacks = registeredCallbacks
-        val type = call.javaClass
-        callbacks.forEach { callback ->
-            if (callback.callbackType.isAssignableFrom(type)) {
-                runBlocking { callback.run(call) }
-            }
+        forEachSubscriber(call) { callback ->
+            // Consumers are invoked in place, only suspending subscribers need an event loop to block on.
+            callback.runSync(call)
         }
     }
 
     private suspend fun handleAsync(call: CallbackMsg) {
-        val callbacks = registeredCallbacks
-        val type = call.javaClass
-        callbacks.forEach { callback ->
-            if (callback.callbackType.isAssignableFrom(type)) {
-                callback.run(call)
+        forEachSubscriber(call) { callback ->
+            callback.run(call)
+        }
+    }
+
+    /**
+     * Invokes [action] for every subscriber of [call] in registration order. Subscribers filtered on a different
+     * [JobID] are never visited, and subscribers removed by an earlier subscriber of the same call are skipped.
+     */
+    private inline fun forEachSubscriber(call: CallbackMsg, action: (CallbackBase) -> Unit) {
+        val subscribers = resolve(call.javaClass)
+        val untargeted = subscribers.untargeted
+        val targeted = if (call.jobID == JobID.INVALID) EMPTY else subscribers.byJobID[call.jobID] ?: EMPTY
+
+        // Both lists are sorted by registration order, merge them so the interleaving is preserved.
+        var i = 0
+        var j = 0
+        while (i < untargeted.size || j < targeted.size) {
+            val callback = if (j >= targeted.size ||
+                (i < untargeted.size && untargeted[i].registrationOrder < targeted[j].registrationOrder)
+            ) {
+                untargeted[i++]
+            } else {
+                targeted[j++]
+            }
+
+            if (callback.isRegistered) {
+                action(callback)
             }
         }
     }
+
+    private fun resolve(type: Class<*>): Subscribers {
+        val index = dispatchIndex
+        index[type]?.let { return it }
+
+        val subscribers = synchronized(registeredCallbacks) {
+            val untargeted = ArrayList<CallbackBase>()
+            val byJobID = HashMap<JobID, ArrayList<CallbackBase>>()
+
+            registeredCallbacks.forEach { callback ->
+                if (!callback.callbackType.isAssignableFrom(type)) {
+                    return@forEach
+                }
+
+                val jobID = callback.filterJobID
+                if (jobID == JobID.INVALID) {
+                    untargeted.add(callback)
+                } else {
+                    byJobID.getOrPut(jobID) { ArrayList() }.add(callback)
+                }
+            }
+
+            Subscribers(
+                untargeted = untargeted.toTypedArray(),
+                byJobID = byJobID.mapValues { it.value.toTypedArray() },
+            )
+        }
+
+        return index.putIfAbsent(type, subscribers) ?: subscribers
+    }
+
+    /**
+     * The subscribers of one callback class, split by their [JobID] filter.
+     */
+    private class Subscribers(
+        val untargeted: Array<CallbackBase>,
+        val byJobID: Map<JobID, Array<CallbackBase>>,
+    )
+
+    private companion object {
+        private val EMPTY = emptyArray<CallbackBase>()
+    }
 }
@@ -32,6 +32,8 @@ class SteamConfiguration internal constructor(private val state: SteamConfigurat
      * }));
      * ```
      *
+     * Use [IConnectionFactory.NIO] to serve TCP connections from a few shared selector threads,
+     * which is preferable when running many clients in the same process.
      */
     val connectionFactory: IConnectionFactory
         get() = state.connectionFactory
@@ -1,8 +1,10 @@
 package `in`.dragonbra.javasteam.types
 
+import `in`.dragonbra.javasteam.steam.steamclient.AsyncJobManager
+import `in`.dragonbra.javasteam.steam.steamclient.JobTimeoutWheel
 import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
 import `in`.dragonbra.javasteam.steam.steamclient.callbackmgr.CallbackMsg
-import java.time.Instant
+import java.util.concurrent.TimeUnit
 
 /**
  * The base class for awaitable versions of a [JobID].
@@ -13,12 +15,32 @@ import java.time.Instant
  */
 abstract class AsyncJob(val client: SteamClient, val jobID: JobID) {
 
-    @Volatile private var jobStart = Instant.now()
+    private val jobStart = System.nanoTime()
+
+    /**
+     * The [System.nanoTime] at which this job times out.
+     */
+    @Volatile
+    internal var deadlineNanos: Long = jobStart + TimeUnit.MILLISECONDS.toNanos(10000)
+        private set
+
+    // Bookkeeping of the JobTimeoutWheel, only written under its lock.
+    @Volatile
+    internal var timeoutTick: Long = JobTimeoutWheel.UNSCHEDULED
+
+    internal var timeoutManager: AsyncJobManager? = null
+
+    internal var timeoutNode: JobTimeoutWheel.Node? = null
 
     @Volatile var timeout: Long = 10000 // 10 Seconds
+        set(value) {
+            field = value
+            deadlineNanos = jobStart + TimeUnit.MILLISECONDS.toNanos(value)
+            JobTimeoutWheel.deadlineChanged(this)
+        }
 
     val isTimedOut: Boolean
-        get() = Instant.now() >= jobStart.plusMillis(timeout)
+        get() = System.nanoTime() - deadlineNanos >= 0
 
     protected fun registerJob(client: SteamClient) {
         client.startJob(this)
@@ -0,0 +1,186 @@
+package `in`.dragonbra.javasteam.types
+
+import `in`.dragonbra.javasteam.util.log.LogManager
+import `in`.dragonbra.javasteam.util.log.Logger
+import java.io.EOFException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.charset.StandardCharsets
+
+/**
+ * Reads binary [KeyValue] documents straight out of a [ByteBuffer].
+ *
+ * Unlike [KeyValue.tryReadAsBinary] with an [java.io.InputStream], strings are located by scanning the buffer for their
+ * terminator and decoded in one step, without going through the stream a byte at a time. Heap, direct and memory mapped
+ * buffers are all supported, and the caller's byte order is left untouched.
+ *
+ * Reading starts at the position of the buffer. On success the position is advanced past the document, so documents
+ * that are stored back to back, as in `appinfo.vdf`, can be read in sequence.
+ */
+object BinaryKeyValueReader {
+
+    private val logger: Logger = LogManager.getLogger<BinaryKeyValueReader>()
+
+    /**
+     * Reads a binary document into [target], replacing its name, value and children.
+     *
+     * @param buffer The buffer to read from.
+     * @param target The [KeyValue] to populate.
+     * @return `true` if the read was successful, `false` if the document holds an unsupported entry type.
+     * @throws EOFException if the document is truncated.
+     */
+    @JvmStatic
+    @Throws(EOFException::class)
+    fun read(buffer: ByteBuffer, target: KeyValue): Boolean {
+        target.children.clear()
+        return accept(buffer, KeyValueTreeBuilder(target))
+    }
+
+    /**
+     * Reads a binary document, reporting every entry to [visitor] instead of building a tree.
+     *
+     * @param buffer The buffer to read from.
+     * @param visitor The visitor to report entries to.
+     * @return `true` if the read was successful, `false` if the document holds an unsupported entry type.
+     * @throws EOFException if the document is truncated.
+     */
+    @JvmStatic
+    @Throws(EOFException::class)
+    fun accept(buffer: ByteBuffer, visitor: KeyValueVisitor): Boolean {
+        val cursor = Cursor(buffer)
+        if (!cursor.readEntries(visitor)) {
+            return false
+        }
+
+        buffer.position(cursor.position)
+        return true
+    }
+
+    private class Cursor(buffer: ByteBuffer) {
+
+        private val view: ByteBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+
+        private val array: ByteArray? = if (buffer.hasArray()) buffer.array() else null
+
+        private val arrayOffset: Int = if (buffer.hasArray()) buffer.arrayOffset() else 0
+
+        private val limit: Int = buffer.limit()
+
+        private var scratch = ByteArray(64)
+
+        var position: Int = buffer.position()
+
+        fun readEntries(visitor: KeyValueVisitor): Boolean {
+            while (true) {
+                val type = KeyValue.Companion.Type.from(readByte())
+
+                if (type == KeyValue.Companion.Type.END || type == KeyValue.Companion.Type.ALTERNATEEND) {
+                    return true
+                }
+
+                val name = readName()
+
+                when (type) {
+                    KeyValue.Companion.Type.NONE -> {
+                        visitor.startObject(name)
+                        if (!readEntries(visitor)) {
+                            return false
+                        }
+                        visitor.endObject()
+                    }
+
+                    KeyValue.Companion.Type.STRING -> visitor.visitString(name, readString())
+
+                    KeyValue.Companion.Type.INT32,
+                    KeyValue.Companion.Type.COLOR,
+                    KeyValue.Companion.Type.POINTER,
+                    -> visitor.visitInt32(name, view.getInt(advance(4)))
+
+                    KeyValue.Companion.Type.UINT64 -> visitor.visitUInt64(name, view.getLong(advance(8)))
+
+                    KeyValue.Companion.Type.FLOAT32 -> visitor.visitFloat32(name, view.getFloat(advance(4)))
+
+                    KeyValue.Companion.Type.INT64 -> visitor.visitInt64(name, view.getLong(advance(8)))
+
+                    KeyValue.Companion.Type.WIDESTRING -> {
+                        logger.debug("Encountered WideString type when parsing binary KeyValue, which is unsupported. Returning false.")
+                        return false
+                    }
+
+                    else -> return false
+                }
+            }
+        }
+
+        private fun readByte(): Byte = view.get(advance(1))
+
+        /**
+         * Moves past [count] bytes and returns the index they start at.
+         */
+        private fun advance(count: Int): Int {
+            val start = position
+            if (limit - start < count) {
+                position = limit
+                throw EOFException()
+            }
+            position = start + count
+            return start
+        }
+
+        /**
+         * Moves past the next null terminated string and returns its length, excluding the terminator.
+         */
+        private fun scanString(): Int {
+            val start = position
+            var end = start
+            if (array != null) {
+                val base = arrayOffset
+                while (end < limit && array[base + end].toInt() != 0) {
+                    end++
+                }
+            } else {
+                while (end < limit && view.get(end).toInt() != 0) {
+                    end++
+                }
+            }
+
+            if (end == limit) {
+                position = limit
+                throw EOFException()
+            }
+
+            position = end + 1
+            return end - start
+        }
+
+        private fun readName(): String {
+            val start = position
+            val length = scanString()
+
+            if (array != null) {
+                return KeyNameCache.intern(array, arrayOffset + start, length)
+            }
+
+            return KeyNameCache.intern(copyToScratch(start, length), 0, length)
+        }
+
+        private fun readString(): String {
+            val start = position
+            val length = scanString()
+
+            if (array != null) {
+                return String(array, arrayOffset + start, length, StandardCharsets.UTF_8)
+            }
+
+            return String(copyToScratch(start, length), 0, length, StandardCharsets.UTF_8)
+        }
+
+        private fun copyToScratch(start: Int, length: Int): ByteArray {
+            if (scratch.size < length) {
+                scratch = ByteArray(Integer.highestOneBit(length) shl 1)
+            }
+            view.get(start, scratch, 0, length)
+            return scratch
+        }
+    }
+}
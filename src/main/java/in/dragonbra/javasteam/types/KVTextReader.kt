@@ -3,21 +3,25 @@ package `in`.dragonbra.javasteam.types
 import `in`.dragonbra.javasteam.util.Passable
 import java.io.IOException
 import java.io.InputStream
-import java.io.InputStreamReader
-import java.lang.IllegalStateException
-import java.lang.StringBuilder
 import java.nio.charset.StandardCharsets
 
 /**
+ * Tokenizer and parser for text [KeyValue] documents.
+ *
+ * The UTF-8 input is scanned as raw bytes: every byte the format cares about is ASCII, and multibyte UTF-8 sequences
+ * never contain ASCII bytes, so tokens are located without decoding anything and only the text of each token is
+ * turned into a [String]. A byte array is parsed in place, while an [InputStream] is read through a buffer that only
+ * has to hold the token currently being scanned, which keeps memory flat for very large documents.
+ *
  * @author lngtr
  * @since 2018-02-26
  */
-class KVTextReader
-@Throws(IllegalStateException::class, IOException::class)
-internal constructor(
-    kv: KeyValue,
-    inputStream: InputStream,
-) : InputStreamReader(inputStream, StandardCharsets.UTF_8) {
+class KVTextReader private constructor(
+    private val input: InputStream?,
+    private var buffer: ByteArray,
+    private var position: Int,
+    private var limit: Int,
+) {
 
     companion object {
         @JvmField
@@ -28,211 +32,378 @@ internal constructor(
             't' to '\t',
             // todo: (SK) any others?
         )
-    }
-
-    private val sb = StringBuilder(128)
 
-    private var peekedChar: Int? = null
+        private const val BUFFER_SIZE = 8192
+
+        /**
+         * Reads a text document from [input], reporting every entry to [visitor] without building a tree.
+         * The stream is read incrementally, so only the token being scanned is held in memory.
+         *
+         * @param input The stream to read from. It is not closed.
+         * @param visitor The visitor to report entries to.
+         * @throws IllegalStateException if the document is malformed.
+         */
+        @JvmStatic
+        @Throws(IllegalStateException::class, IOException::class)
+        fun accept(input: InputStream, visitor: KeyValueVisitor) {
+            KVTextReader(input).accept(visitor)
+        }
 
-    // Mimics C# StreamReader 'Peek()'
-    val peek: Int
-        get() {
-            if (peekedChar == null) {
-                peekedChar = read()
-            }
-            return peekedChar ?: -1
+        /**
+         * Reads a text document from a region of a byte array, reporting every entry to [visitor].
+         *
+         * @param data The UTF-8 encoded document.
+         * @param offset The offset of the document in [data].
+         * @param length The length of the document.
+         * @param visitor The visitor to report entries to.
+         * @throws IllegalStateException if the document is malformed.
+         */
+        @JvmStatic
+        @Throws(IllegalStateException::class)
+        fun accept(data: ByteArray, offset: Int, length: Int, visitor: KeyValueVisitor) {
+            KVTextReader(data, offset, length).accept(visitor)
         }
 
-    // Mimics C# StreamReader 'EndOfStream'
-    val endOfStream: Boolean
-        get() {
-            return try {
-                peek == -1
-            } catch (_: IOException) {
-                true
-            }
+        private fun isWhitespace(b: Int): Boolean = b == ' '.code || b in 0x09..0x0D || b in 0x1C..0x1F
+
+        private fun escape(b: Byte): Byte = when (b.toInt().toChar()) {
+            'n' -> '\n'.code.toByte()
+            'r' -> '\r'.code.toByte()
+            't' -> '\t'.code.toByte()
+            else -> b
         }
+    }
 
-    init {
-        val wasQuoted = Passable(false)
-        val wasConditional = Passable(false)
+    internal constructor(input: InputStream) : this(input, ByteArray(BUFFER_SIZE), 0, 0)
 
-        var currentKey: KeyValue? = kv
+    internal constructor(data: ByteArray, offset: Int, length: Int) : this(null, data, offset, offset + length)
 
+    // Start of the token being scanned, everything from here on is kept when the buffer is refilled.
+    private var tokenStart = -1
+
+    private var wasQuoted = false
+
+    private var wasConditional = false
+
+    private var scratch = ByteArray(128)
+
+    private val endOfStream: Boolean
+        get() = position == limit && !fill()
+
+    /**
+     * Parses the document, reporting every entry to [visitor].
+     */
+    @Throws(IllegalStateException::class, IOException::class)
+    internal fun accept(visitor: KeyValueVisitor) {
         do {
-            var s = readToken(wasQuoted, wasConditional)
+            val name = nextToken(isName = true)
 
-            if (s.isNullOrEmpty()) {
+            if (name.isNullOrEmpty()) {
                 break
             }
 
-            if (currentKey == null) {
-                currentKey = KeyValue(s)
-            } else {
-                currentKey.name = s
-            }
+            var value = nextToken()
 
-            s = readToken(wasQuoted, wasConditional)
-
-            if (wasConditional.value == true) {
+            if (wasConditional) {
                 // Now get the '{'
-                s = readToken(wasQuoted, wasConditional)
+                value = nextToken()
             }
 
-            if (s != null && s.startsWith("{") && wasQuoted.value == false) {
+            if (value != null && value.startsWith("{") && !wasQuoted) {
                 // header is valid so load the file
-                currentKey.recursiveLoadFromBuffer(this)
+                visitor.startObject(name)
+                readObject(visitor)
+                visitor.endObject()
             } else {
                 throw IllegalStateException("LoadFromBuffer: missing {")
             }
-
-            currentKey = null
         } while (!endOfStream)
     }
 
-    // override read() to peek the char.
-    override fun read(): Int {
-        if (peekedChar != null) {
-            val result = peekedChar!!
-            peekedChar = null
-            return result
-        }
-        return super.read()
-    }
+    private fun readObject(visitor: KeyValueVisitor) {
+        while (true) {
+            // get the key name
+            val name = nextToken(isName = true)
 
-    @Throws(IOException::class)
-    private fun eatWhiteSpace() {
-        while (!endOfStream) {
-            if (!peek.toChar().isWhitespace()) {
+            if (name.isNullOrEmpty()) {
+                throw IllegalStateException("RecursiveLoadFromBuffer: got EOF or empty keyname")
+            }
+
+            if (name.startsWith('}') && !wasQuoted) {
+                // top level closed, stop reading
                 break
             }
 
-            read()
-        }
-    }
+            // get the value
+            var value = nextToken()
 
-    @Throws(IOException::class)
-    private fun eatCPPComment(): Boolean {
-        if (!endOfStream) {
-            val next = peek.toChar()
+            if (wasConditional && value != null) {
+                value = nextToken()
+            }
 
-            if (next == '/') {
-                readLine()
-                return true
-                /*
-                 *  As came up in parsing the Dota 2 units.txt file, the reference (Valve) implementation
-                 *  of the KV format considers a single forward slash to be sufficient to comment out the
-                 *  entirety of a line. While they still _tend_ to use two, it's not required, and likely
-                 *  is just done out of habit.
-                 */
+            if (value == null) {
+                throw IllegalStateException("RecursiveLoadFromBuffer: got NULL key")
             }
 
-            return false
-        }
+            if (value.startsWith('}') && !wasQuoted) {
+                throw IllegalStateException("RecursiveLoadFromBuffer: got } in key")
+            }
 
-        return false
-    }
+            if (value.startsWith('{') && !wasQuoted) {
+                visitor.startObject(name)
+                readObject(visitor)
+                visitor.endObject()
+            } else {
+                if (wasConditional) {
+                    throw IllegalStateException("RecursiveLoadFromBuffer: got conditional between key and value")
+                }
 
-    @Throws(IOException::class)
-    private fun readLine() {
-        var c: Char
-        do {
-            c = read().toChar()
-        } while (c != '\n' && !endOfStream)
+                visitor.visitString(name, value)
+            }
+        }
     }
 
+    /**
+     * Reads the next token.
+     *
+     * @param wasQuoted Set to whether the token was quoted.
+     * @param wasConditional Set to whether the token was a conditional such as `[$WIN32]`.
+     * @return The token, or null at the end of the document.
+     */
     @Throws(IOException::class)
     fun readToken(wasQuoted: Passable<Boolean>, wasConditional: Passable<Boolean>): String? {
-        wasQuoted.value = false
-        wasConditional.value = false
+        val token = nextToken()
+        wasQuoted.value = this.wasQuoted
+        wasConditional.value = this.wasConditional
+        return token
+    }
+
+    private fun nextToken(isName: Boolean = false): String? {
+        wasQuoted = false
+        wasConditional = false
 
         while (true) {
-            eatWhiteSpace()
+            skipWhitespace()
 
             if (endOfStream) {
                 return null
             }
 
-            if (!eatCPPComment()) {
+            // The reference implementation treats a single forward slash as the start of a line comment.
+            if (buffer[position] != '/'.code.toByte()) {
                 break
             }
-        }
 
-        if (endOfStream) {
-            return null
+            skipLine()
         }
 
-        var next = peek.toChar()
-        if (next == '"') {
-            wasQuoted.value = true
-
-            // "
-            read()
+        return when (buffer[position].toInt()) {
+            '"'.code -> readQuoted(isName)
+            '{'.code -> {
+                position++
+                "{"
+            }
 
-            sb.clear()
-            while (!endOfStream) {
-                if (peek.toChar() == '\\') {
-                    read()
+            '}'.code -> {
+                position++
+                "}"
+            }
 
-                    val escapedChar = read().toChar()
-                    val replacedChar = ESCAPED_MAPPING[escapedChar] ?: escapedChar
+            else -> readUnquoted(isName)
+        }
+    }
 
-                    sb.append(replacedChar)
+    private fun readQuoted(isName: Boolean): String {
+        wasQuoted = true
 
-                    continue
-                }
+        // "
+        position++
 
-                if (peek.toChar() == '"') {
+        tokenStart = position
+        var escaped = false
+        while (!endOfStream) {
+            val b = buffer[position]
+            if (b == '"'.code.toByte()) {
+                break
+            }
+            if (b == '\\'.code.toByte()) {
+                escaped = true
+                position++
+                if (endOfStream) {
                     break
                 }
-
-                sb.append(read().toChar())
             }
+            position++
+        }
+
+        val start = tokenStart
+        val end = position
+        tokenStart = -1
 
-            // "
-            read()
+        val token = if (escaped) unescape(start, end, isName) else decode(buffer, start, end - start, isName)
 
-            return sb.toString()
+        // "
+        if (position < limit) {
+            position++
         }
 
-        if (next == '{' || next == '}') {
-            read()
-            return next.toString()
+        return token
+    }
+
+    private fun unescape(start: Int, end: Int, isName: Boolean): String {
+        if (scratch.size < end - start) {
+            scratch = ByteArray(end - start)
+        }
+
+        var length = 0
+        var i = start
+        while (i < end) {
+            var b = buffer[i++]
+            if (b == '\\'.code.toByte()) {
+                if (i == end) {
+                    break
+                }
+                b = escape(buffer[i++])
+            }
+            scratch[length++] = b
         }
 
-        var bConditionalStart = false
-        val count = 0
-        sb.clear()
+        return decode(scratch, 0, length, isName)
+    }
+
+    private fun readUnquoted(isName: Boolean): String {
+        var conditionalStart = false
+
+        tokenStart = position
         while (!endOfStream) {
-            next = peek.toChar()
+            val b = buffer[position].toInt() and 0xFF
 
-            if (next == '"' || next == '{' || next == '}') {
+            if (b == '"'.code || b == '{'.code || b == '}'.code) {
                 break
             }
 
-            if (next == '[') {
-                bConditionalStart = true
+            if (b == '['.code) {
+                conditionalStart = true
             }
 
-            if (next == ']' && bConditionalStart) {
-                wasConditional.value = true
+            if (b == ']'.code && conditionalStart) {
+                wasConditional = true
             }
 
-            if (next.isWhitespace()) {
+            if (isWhitespace(b) || (b >= 0x80 && nonAsciiWhitespaceLength() > 0)) {
                 break
             }
 
-            // count isn't used anymore, but still defined in SK.
-            @Suppress("KotlinConstantConditions")
-            if (count < 1023) {
-                sb.append(next)
-            } else {
-                throw IOException("ReadToken overflow")
+            position++
+        }
+
+        val start = tokenStart
+        tokenStart = -1
+
+        return decode(buffer, start, position - start, isName)
+    }
+
+    private fun skipWhitespace() {
+        while (!endOfStream) {
+            val b = buffer[position].toInt() and 0xFF
+
+            if (isWhitespace(b)) {
+                position++
+                continue
+            }
+
+            if (b >= 0x80) {
+                val length = nonAsciiWhitespaceLength()
+                if (length > 0) {
+                    position += length
+                    continue
+                }
+            }
+
+            break
+        }
+    }
+
+    private fun skipLine() {
+        while (!endOfStream) {
+            if (buffer[position++] == '\n'.code.toByte()) {
+                break
+            }
+        }
+    }
+
+    /**
+     * Decodes the UTF-8 sequence at the current position and returns its length if it is a whitespace character,
+     * or 0 otherwise. Only needed for the rare non-ASCII spaces, such as a no-break space.
+     */
+    private fun nonAsciiWhitespaceLength(): Int {
+        val lead = buffer[position].toInt() and 0xFF
+        val length = when {
+            lead and 0xE0 == 0xC0 -> 2
+            lead and 0xF0 == 0xE0 -> 3
+            // Four byte sequences are outside the BMP, which holds no whitespace.
+            else -> return 0
+        }
+
+        if (!ensure(length)) {
+            return 0
+        }
+
+        var codePoint = lead and (0xFF shr (length + 1))
+        for (i in 1 until length) {
+            val b = buffer[position + i].toInt() and 0xFF
+            if (b and 0xC0 != 0x80) {
+                return 0
+            }
+            codePoint = (codePoint shl 6) or (b and 0x3F)
+        }
+
+        return if (codePoint.toChar().isWhitespace()) length else 0
+    }
+
+    private fun decode(bytes: ByteArray, offset: Int, length: Int, isName: Boolean): String = if (isName) {
+        KeyNameCache.intern(bytes, offset, length)
+    } else {
+        String(bytes, offset, length, StandardCharsets.UTF_8)
+    }
+
+    private fun ensure(count: Int): Boolean {
+        while (limit - position < count) {
+            if (!fill()) {
+                return false
             }
+        }
+        return true
+    }
 
-            read()
+    /**
+     * Reads more of the stream into the buffer, keeping the token being scanned.
+     *
+     * @return `false` if the end of the stream was reached, or if a byte array is being parsed.
+     */
+    private fun fill(): Boolean {
+        val input = input ?: return false
+
+        val keep = if (tokenStart >= 0) tokenStart else position
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep)
+            limit -= keep
+            position -= keep
+            if (tokenStart >= 0) {
+                tokenStart = 0
+            }
+        }
+
+        if (limit == buffer.size) {
+            buffer = buffer.copyOf(buffer.size * 2)
+        }
+
+        val read = input.read(buffer, limit, buffer.size - limit)
+        if (read <= 0) {
+            return false
         }
 
-        return sb.toString()
+        limit += read
+        return true
     }
 }
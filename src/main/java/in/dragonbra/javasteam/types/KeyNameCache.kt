@@ -0,0 +1,50 @@
+package `in`.dragonbra.javasteam.types
+
+import java.nio.charset.StandardCharsets
+import java.util.*
+
+/**
+ * Interns the key names of binary [KeyValue] documents.
+ *
+ * PICS app and package info repeat the same few hundred key names across every node and every document, so names are
+ * decoded once and the same [String] is handed out afterward. The cache is a fixed size, direct mapped table of
+ * immutable entries: a collision simply replaces the slot, and racing threads at worst decode a name twice.
+ */
+internal object KeyNameCache {
+
+    private const val SIZE = 4096
+
+    private const val MAX_LENGTH = 64
+
+    private class Entry(val bytes: ByteArray, val hash: Int, val string: String)
+
+    private val entries = arrayOfNulls<Entry>(SIZE)
+
+    /**
+     * Decodes the UTF-8 name in the given region, returning a previously decoded instance when there is one.
+     */
+    fun intern(bytes: ByteArray, offset: Int, length: Int): String {
+        if (length > MAX_LENGTH) {
+            return String(bytes, offset, length, StandardCharsets.UTF_8)
+        }
+
+        var hash = 0
+        for (i in offset until offset + length) {
+            hash = 31 * hash + bytes[i]
+        }
+        hash = hash xor (hash ushr 16)
+
+        val slot = hash and (SIZE - 1)
+        val entry = entries[slot]
+        if (entry != null &&
+            entry.hash == hash &&
+            Arrays.equals(entry.bytes, 0, entry.bytes.size, bytes, offset, offset + length)
+        ) {
+            return entry.string
+        }
+
+        val string = String(bytes, offset, length, StandardCharsets.UTF_8)
+        entries[slot] = Entry(bytes.copyOfRange(offset, offset + length), hash, string)
+        return string
+    }
+}
@@ -1,10 +1,8 @@
 package `in`.dragonbra.javasteam.types
 
-import `in`.dragonbra.javasteam.util.Passable
 import `in`.dragonbra.javasteam.util.log.LogManager
 import `in`.dragonbra.javasteam.util.log.Logger
 import `in`.dragonbra.javasteam.util.stream.BinaryReader
-import java.io.ByteArrayInputStream
 import java.io.EOFException
 import java.io.File
 import java.io.FileInputStream
@@ -14,6 +12,7 @@ import java.io.InputStream
 import java.io.OutputStream
 import java.lang.reflect.InvocationTargetException
 import java.lang.reflect.Modifier
+import java.nio.ByteBuffer
 import java.nio.charset.StandardCharsets
 import java.util.*
 
@@ -27,14 +26,56 @@ import java.util.*
  */
 @Suppress("unused")
 class KeyValue @JvmOverloads constructor(
-    var name: String? = null,
-    var value: String? = null,
+    name: String? = null,
+    value: String? = null,
 ) {
 
+    var name: String? = name
+        set(value) {
+            field = value
+            indexedBy?.childRenamed(this)
+        }
+
+    /**
+     * The child list whose lookup index currently references this instance, if any.
+     */
+    internal var indexedBy: KeyValueChildren? = null
+
+    private var stringValue: String? = value
+
+    // Numbers read from binary documents are kept as raw bits and only formatted when read as a string.
+    private var numericType: Type? = null
+
+    private var numericBits: Long = 0
+
+    var value: String?
+        get() {
+            stringValue?.let { return it }
+
+            val formatted = when (numericType) {
+                null -> return null
+                Type.FLOAT32 -> Float.fromBits(numericBits.toInt()).toString()
+                else -> numericBits.toString()
+            }
+            stringValue = formatted
+            return formatted
+        }
+        set(value) {
+            stringValue = value
+            numericType = null
+        }
+
+    /**
+     * Gets the type the value of this instance is stored as.
+     * [Type.NONE] if there is no value, [Type.STRING] for text, or the numeric type read from a binary document.
+     */
+    val valueType: Type
+        get() = numericType ?: if (stringValue == null) Type.NONE else Type.STRING
+
     /**
      * Gets the children of this instance.
      */
-    var children: MutableList<KeyValue> = ArrayList(4) // Give an initial capacity for optimization.
+    var children: MutableList<KeyValue> = KeyValueChildren()
 
     /**
      * Gets the child [KeyValue] with the specified key.
@@ -42,9 +83,14 @@ class KeyValue @JvmOverloads constructor(
      * @param key key
      * @return the child [KeyValue]
      */
-    operator fun get(key: String): KeyValue = children.find {
-        it.name?.equals(key, ignoreCase = true) == true
-    } ?: INVALID
+    operator fun get(key: String): KeyValue {
+        val list = children
+        if (list is KeyValueChildren) {
+            return list.find(key) ?: INVALID
+        }
+
+        return list.find { it.name?.equals(key, ignoreCase = true) == true } ?: INVALID
+    }
 
     /**
      * Sets the child [KeyValue] with the specified key.
@@ -54,7 +100,9 @@ class KeyValue @JvmOverloads constructor(
      */
     operator fun set(key: String, value: KeyValue) {
         // if the key already exists, remove the old one
-        children.removeIf { c -> c.name?.equals(key, ignoreCase = true) == true }
+        if (get(key) !== INVALID) {
+            children.removeIf { c -> c.name?.equals(key, ignoreCase = true) == true }
+        }
 
         // Ensure the given KV has the correct key assigned
         value.name = key
@@ -62,6 +110,20 @@ class KeyValue @JvmOverloads constructor(
         children.add(value)
     }
 
+    internal fun setNumericValue(type: Type, bits: Long) {
+        stringValue = null
+        numericType = type
+        numericBits = bits
+    }
+
+    /**
+     * The value as a whole number if it was read as one from a binary document, otherwise null.
+     */
+    private fun integralValue(): Long? = when (numericType) {
+        Type.INT32, Type.INT64, Type.UINT64 -> numericBits
+        else -> null
+    }
+
     /**
      * Returns the value of this instance as a string.
      */
@@ -74,7 +136,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as a byte.
      */
     @JvmOverloads
-    fun asByte(defaultValue: Byte = 0): Byte = value?.toByteOrNull() ?: defaultValue
+    fun asByte(defaultValue: Byte = 0): Byte {
+        val number = integralValue() ?: return value?.toByteOrNull() ?: defaultValue
+        return if (number in Byte.MIN_VALUE..Byte.MAX_VALUE) number.toByte() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as an unsigned byte.
@@ -83,7 +148,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as an unsigned byte.
      */
     @JvmOverloads
-    fun asUnsignedByte(defaultValue: UByte = 0u): UByte = value?.toUByteOrNull() ?: defaultValue
+    fun asUnsignedByte(defaultValue: UByte = 0u): UByte {
+        val number = integralValue() ?: return value?.toUByteOrNull() ?: defaultValue
+        return if (number in 0..UByte.MAX_VALUE.toLong()) number.toUByte() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as a short.
@@ -92,7 +160,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as a short.
      */
     @JvmOverloads
-    fun asShort(defaultValue: Short = 0): Short = value?.toShortOrNull() ?: defaultValue
+    fun asShort(defaultValue: Short = 0): Short {
+        val number = integralValue() ?: return value?.toShortOrNull() ?: defaultValue
+        return if (number in Short.MIN_VALUE..Short.MAX_VALUE) number.toShort() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as an unsigned short.
@@ -101,7 +172,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as an unsigned short.
      */
     @JvmOverloads
-    fun asUnsignedShort(defaultValue: UShort = 0u): UShort = value?.toUShortOrNull() ?: defaultValue
+    fun asUnsignedShort(defaultValue: UShort = 0u): UShort {
+        val number = integralValue() ?: return value?.toUShortOrNull() ?: defaultValue
+        return if (number in 0..UShort.MAX_VALUE.toLong()) number.toUShort() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as an integer.
@@ -110,7 +184,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as an integer.
      */
     @JvmOverloads
-    fun asInteger(defaultValue: Int = 0): Int = value?.toIntOrNull() ?: defaultValue
+    fun asInteger(defaultValue: Int = 0): Int {
+        val number = integralValue() ?: return value?.toIntOrNull() ?: defaultValue
+        return if (number in Int.MIN_VALUE..Int.MAX_VALUE) number.toInt() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as an unsigned integer.
@@ -119,7 +196,10 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as an unsigned integer.
      */
     @JvmOverloads
-    fun asUnsignedInteger(defaultValue: UInt = 0u): UInt = value?.toUIntOrNull() ?: defaultValue
+    fun asUnsignedInteger(defaultValue: UInt = 0u): UInt {
+        val number = integralValue() ?: return value?.toUIntOrNull() ?: defaultValue
+        return if (number in 0..UInt.MAX_VALUE.toLong()) number.toUInt() else defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as a long.
@@ -128,7 +208,7 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as a long.
      */
     @JvmOverloads
-    fun asLong(defaultValue: Long = 0L): Long = value?.toLongOrNull() ?: defaultValue
+    fun asLong(defaultValue: Long = 0L): Long = integralValue() ?: value?.toLongOrNull() ?: defaultValue
 
     /**
      * Attempts to convert and return the value of this instance as an unsigned long.
@@ -137,7 +217,14 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as an unsigned long.
      */
     @JvmOverloads
-    fun asUnsignedLong(defaultValue: ULong = 0uL): ULong = value?.toULongOrNull() ?: defaultValue
+    fun asUnsignedLong(defaultValue: ULong = 0uL): ULong {
+        val number = integralValue() ?: return value?.toULongOrNull() ?: defaultValue
+        return when {
+            numericType == Type.UINT64 -> number.toULong()
+            number >= 0 -> number.toULong()
+            else -> defaultValue
+        }
+    }
 
     /**
      * Attempts to convert and return the value of this instance as a float.
@@ -146,7 +233,13 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as a float.
      */
     @JvmOverloads
-    fun asFloat(defaultValue: Float = 0f): Float = value?.toFloatOrNull() ?: defaultValue
+    fun asFloat(defaultValue: Float = 0f): Float {
+        if (numericType == Type.FLOAT32) {
+            return Float.fromBits(numericBits.toInt())
+        }
+
+        return integralValue()?.toFloat() ?: value?.toFloatOrNull() ?: defaultValue
+    }
 
     /**
      * Attempts to convert and return the value of this instance as a boolean.
@@ -155,7 +248,9 @@ class KeyValue @JvmOverloads constructor(
      * @return The value of this instance as a boolean.
      */
     @JvmOverloads
-    fun asBoolean(defaultValue: Boolean = false): Boolean = try {
+    fun asBoolean(defaultValue: Boolean = false): Boolean = integralValue()?.let { number ->
+        if (number in Int.MIN_VALUE..Int.MAX_VALUE) number != 0L else defaultValue
+    } ?: try {
         value!!.toInt() != 0
     } catch (e: Exception) {
         when (value?.lowercase()) {
@@ -252,71 +347,34 @@ class KeyValue @JvmOverloads constructor(
     fun readAsText(input: InputStream): Boolean {
         children.clear()
 
-        KVTextReader(this, input).use { _ -> }
+        input.use { KVTextReader(it).accept(KeyValueTreeBuilder(this)) }
 
         return true
     }
 
     /**
-     * Opens and reads the given filename as text.
-     * @see [readAsText]
-     * @param filename The file to open and read.
+     * Populate this instance from a region of a byte array holding a UTF-8 text [KeyValue].
+     * @param data The input data to read from.
+     * @param offset The offset of the document in [data].
+     * @param length The length of the document.
      * @return <c>true</c> if the read was successful otherwise, <c>false</c>.
      */
-    fun readFileAsText(filename: String): Boolean = FileInputStream(filename).use(::readAsText)
-
-    internal fun recursiveLoadFromBuffer(kvr: KVTextReader) {
-        val wasQuoted = Passable(false)
-        val wasConditional = Passable(false)
-
-        while (true) {
-            // val bAccepted = true
-
-            // get the key name
-            val name = kvr.readToken(wasQuoted = wasQuoted, wasConditional = wasConditional)
-
-            if (name.isNullOrEmpty()) {
-                throw IllegalStateException("RecursiveLoadFromBuffer: got EOF or empty keyname")
-            }
-
-            if (name.startsWith('}') && wasQuoted.value == false) {
-                // top level closed, stop reading
-                break
-            }
-
-            val dat = KeyValue(name)
-            dat.children.clear()
-            this.children.add(dat)
-
-            // get the value
-            var value = kvr.readToken(wasQuoted, wasConditional)
-
-            if (wasConditional.value == true && value != null) {
-                // bAccepted = ( value == "[$WIN32]" )
-                value = kvr.readToken(wasQuoted, wasConditional)
-            }
-
-            if (value == null) {
-                throw IllegalStateException("RecursiveLoadFromBuffer: got NULL key")
-            }
-
-            if (value.startsWith('}') && wasQuoted.value == false) {
-                throw IllegalStateException("RecursiveLoadFromBuffer: got } in key")
-            }
+    fun readAsText(data: ByteArray, offset: Int, length: Int): Boolean {
+        children.clear()
 
-            if (value.startsWith('{') && wasQuoted.value == false) {
-                dat.recursiveLoadFromBuffer(kvr)
-            } else {
-                if (wasConditional.value == true) {
-                    throw IllegalStateException("RecursiveLoadFromBuffer: got conditional between key and value")
-                }
+        KVTextReader(data, offset, length).accept(KeyValueTreeBuilder(this))
 
-                dat.value = value
-                // blahconditionalsdontcare
-            }
-        }
+        return true
     }
 
+    /**
+     * Opens and reads the given filename as text.
+     * @see [readAsText]
+     * @param filename The file to open and read.
+     * @return <c>true</c> if the read was successful otherwise, <c>false</c>.
+     */
+    fun readFileAsText(filename: String): Boolean = FileInputStream(filename).use { readAsText(it) }
+
     /**
      * Saves this instance to file.
      * @param file The file to save to.
@@ -412,6 +470,16 @@ class KeyValue @JvmOverloads constructor(
         tryReadAsBinaryCore(br, this, null)
     }
 
+    /**
+     * Populate this instance from the given [ByteBuffer] as a binary [KeyValue].
+     * Reading starts at the position of the buffer, which is advanced past the document on success.
+     * @see BinaryKeyValueReader
+     * @param buffer The input [ByteBuffer] to read from.
+     * @return <c>true</c> if the read was successful otherwise, <c>false</c>.
+     */
+    @Throws(EOFException::class)
+    fun tryReadAsBinary(buffer: ByteBuffer): Boolean = BinaryKeyValueReader.read(buffer, this)
+
     private fun getNameForSerialization(): String = requireNotNull(name) {
         "Cannot serialise a KeyValue object with a null name!"
     }
@@ -505,14 +573,12 @@ class KeyValue @JvmOverloads constructor(
             val bytes = input.toByteArray(StandardCharsets.UTF_8)
 
             try {
-                ByteArrayInputStream(bytes).use { stream ->
-                    val kv = KeyValue()
+                val kv = KeyValue()
 
-                    if (!kv.readAsText(stream)) {
-                        return null
-                    }
-                    return kv
+                if (!kv.readAsText(bytes, 0, bytes.size)) {
+                    return null
                 }
+                return kv
             } catch (e: Exception) {
                 logger.error(e.message, e)
                 return null
@@ -540,8 +606,17 @@ class KeyValue @JvmOverloads constructor(
             stream.write(bytes)
         }
 
-        private fun tryReadAsBinaryCore(input: BinaryReader, current: KeyValue, parent: KeyValue?): Boolean {
+        private fun tryReadAsBinaryCore(input: BinaryReader, current: KeyValue, parent: KeyValue?): Boolean =
+            tryReadAsBinaryCore(input, current, parent, ByteArray(64))
+
+        private fun tryReadAsBinaryCore(
+            input: BinaryReader,
+            current: KeyValue,
+            parent: KeyValue?,
+            scratch: ByteArray,
+        ): Boolean {
             var localCurrent = current
+            var nameBuffer = scratch
 
             localCurrent.children.clear()
 
@@ -552,12 +627,24 @@ class KeyValue @JvmOverloads constructor(
                     break
                 }
 
-                localCurrent.name = input.readNullTermString(StandardCharsets.UTF_8)
+                // Read the name into the scratch buffer so repeated names resolve to the same interned string.
+                var length = 0
+                while (true) {
+                    val b = input.readByte()
+                    if (b.toInt() == 0) {
+                        break
+                    }
+                    if (length == nameBuffer.size) {
+                        nameBuffer = nameBuffer.copyOf(length * 2)
+                    }
+                    nameBuffer[length++] = b
+                }
+                localCurrent.name = KeyNameCache.intern(nameBuffer, 0, length)
 
                 when (type) {
                     Type.NONE -> {
                         val child = KeyValue()
-                        val didReadChild = tryReadAsBinaryCore(input, child, localCurrent)
+                        val didReadChild = tryReadAsBinaryCore(input, child, localCurrent, nameBuffer)
                         if (!didReadChild) {
                             return false
                         }
@@ -573,13 +660,13 @@ class KeyValue @JvmOverloads constructor(
                     Type.INT32,
                     Type.COLOR,
                     Type.POINTER,
-                    -> localCurrent.value = input.readInt().toString()
+                    -> localCurrent.setNumericValue(Type.INT32, input.readInt().toLong())
 
-                    Type.UINT64 -> localCurrent.value = input.readLong().toString()
+                    Type.UINT64 -> localCurrent.setNumericValue(Type.UINT64, input.readLong())
 
-                    Type.FLOAT32 -> localCurrent.value = input.readFloat().toString()
+                    Type.FLOAT32 -> localCurrent.setNumericValue(Type.FLOAT32, input.readInt().toLong())
 
-                    Type.INT64 -> localCurrent.value = input.readLong().toString()
+                    Type.INT64 -> localCurrent.setNumericValue(Type.INT64, input.readLong())
 
                     else -> return false
                 }
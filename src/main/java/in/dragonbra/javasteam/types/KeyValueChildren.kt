@@ -0,0 +1,197 @@
+package `in`.dragonbra.javasteam.types
+
+import java.util.RandomAccess
+import java.util.function.Predicate
+
+/**
+ * The default child list of a [KeyValue].
+ *
+ * Lookups on wide nodes, such as the depot and branch lists of PICS app info, go through a case-insensitive hash
+ * index instead of scanning every child. The index is kept up to date by the methods that modify the list, including
+ * those of its iterators and sub lists, and by renaming an indexed child, so [find] never writes. Like any list, it is
+ * not safe to modify a tree while other threads read it, but a finished tree can be read from any number of threads.
+ */
+internal class KeyValueChildren : AbstractMutableList<KeyValue>(), RandomAccess {
+
+    companion object {
+        const val INDEX_THRESHOLD = 16
+
+        /**
+         * Hash code consistent with [String.equals] ignoring case.
+         */
+        fun hashIgnoreCase(key: String): Int {
+            var hash = 0
+            for (i in key.indices) {
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(key[i])).code
+            }
+            return hash xor (hash ushr 16)
+        }
+    }
+
+    private val items = ArrayList<KeyValue>(4)
+
+    // Open addressed table of the first child for every distinct name. Replaced as a whole when rebuilt, null while
+    // the list is too short to need one or after another list took over one of the children.
+    @Volatile
+    private var index: Array<KeyValue?>? = null
+
+    // Named children in the index.
+    private var indexed = 0
+
+    override val size: Int
+        get() = items.size
+
+    override fun get(index: Int): KeyValue = items[index]
+
+    override fun add(index: Int, element: KeyValue) {
+        items.add(index, element)
+
+        if (index == items.size - 1) {
+            appendToIndex(element)
+        } else {
+            rebuildIndex()
+        }
+    }
+
+    override fun removeAt(index: Int): KeyValue {
+        val removed = items.removeAt(index)
+        release(removed)
+        rebuildIndex()
+        return removed
+    }
+
+    override fun set(index: Int, element: KeyValue): KeyValue {
+        val previous = items.set(index, element)
+        release(previous)
+        rebuildIndex()
+        return previous
+    }
+
+    override fun clear() {
+        items.forEach { release(it) }
+        items.clear()
+        index = null
+        indexed = 0
+    }
+
+    // One pass and one rebuild, instead of a rebuild for every removed child.
+    override fun removeIf(filter: Predicate<in KeyValue>): Boolean {
+        val removed = items.filter { filter.test(it) }
+        if (removed.isEmpty()) {
+            return false
+        }
+
+        items.removeIf(filter)
+        removed.forEach { release(it) }
+        rebuildIndex()
+        return true
+    }
+
+    /**
+     * Finds the first child named [key], ignoring case.
+     */
+    fun find(key: String): KeyValue? {
+        val table = index ?: return items.firstOrNull { it.name?.equals(key, ignoreCase = true) == true }
+
+        val mask = table.size - 1
+        var slot = hashIgnoreCase(key) and mask
+        while (true) {
+            val child = table[slot] ?: return null
+            if (child.name.equals(key, ignoreCase = true)) {
+                return child
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    /**
+     * Called when [child], which this list indexed, was renamed.
+     */
+    fun childRenamed(child: KeyValue) {
+        if (child.indexedBy === this) {
+            rebuildIndex()
+        }
+    }
+
+    /**
+     * Called when another list indexed one of the children of this one. Lookups scan the list until it is modified.
+     */
+    private fun lostChild() {
+        index = null
+        indexed = 0
+    }
+
+    private fun release(child: KeyValue) {
+        if (child.indexedBy === this) {
+            child.indexedBy = null
+        }
+    }
+
+    private fun claim(child: KeyValue) {
+        val previous = child.indexedBy
+        if (previous != null && previous !== this) {
+            previous.lostChild()
+        }
+        child.indexedBy = this
+    }
+
+    private fun appendToIndex(child: KeyValue) {
+        val table = index
+        if (table == null) {
+            if (items.size >= INDEX_THRESHOLD) {
+                rebuildIndex()
+            }
+            return
+        }
+
+        if ((indexed + 1) * 2 > table.size) {
+            rebuildIndex()
+            return
+        }
+
+        claim(child)
+        if (insert(table, child)) {
+            indexed++
+        }
+    }
+
+    private fun rebuildIndex() {
+        if (items.size < INDEX_THRESHOLD) {
+            index = null
+            indexed = 0
+            return
+        }
+
+        val table = arrayOfNulls<KeyValue>(Integer.highestOneBit(items.size * 2 - 1) shl 1)
+        var count = 0
+
+        items.forEach { child ->
+            claim(child)
+            if (insert(table, child)) {
+                count++
+            }
+        }
+
+        indexed = count
+        index = table
+    }
+
+    private fun insert(table: Array<KeyValue?>, child: KeyValue): Boolean {
+        val name = child.name ?: return false
+        val mask = table.size - 1
+
+        var slot = hashIgnoreCase(name) and mask
+        while (true) {
+            val existing = table[slot]
+            if (existing == null) {
+                table[slot] = child
+                return true
+            }
+            if (existing.name.equals(name, ignoreCase = true)) {
+                // keep the first match, like a linear scan would
+                return false
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+}
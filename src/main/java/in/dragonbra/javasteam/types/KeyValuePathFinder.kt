@@ -0,0 +1,115 @@
+package `in`.dragonbra.javasteam.types
+
+/**
+ * Looks up the value at a path of a [KeyValue] document while it is being read, without building the tree.
+ *
+ * The result is the same as walking the tree with [KeyValue.get]: names are matched ignoring case, the first entry
+ * with a matching name is the only one followed, and the path is relative to the root object. Reading is abandoned
+ * as soon as the outcome is known.
+ *
+ * @param path The names leading to the value, for example `depots`, `731`, `manifests`, `public`, `gid`.
+ */
+internal class KeyValuePathFinder(private val path: List<String>) : KeyValueVisitor {
+
+    companion object {
+        /**
+         * Runs [read] with a finder for [path] and returns the value found, or null.
+         */
+        inline fun find(path: List<String>, read: (KeyValueVisitor) -> Unit): String? {
+            if (path.isEmpty()) {
+                return null
+            }
+
+            val finder = KeyValuePathFinder(path)
+            try {
+                read(finder)
+            } catch (_: Done) {
+                // the outcome was known before the end of the document
+            }
+            return finder.result
+        }
+
+        /**
+         * Walks an already built tree the same way.
+         */
+        fun find(root: KeyValue, path: List<String>): String? {
+            if (path.isEmpty()) {
+                return null
+            }
+
+            var current = root
+            for (name in path) {
+                current = current[name]
+                if (current === KeyValue.INVALID) {
+                    return null
+                }
+            }
+            return current.value
+        }
+    }
+
+    /**
+     * Thrown through the reader to stop reading once the outcome is known. Carries no stack trace.
+     */
+    internal class Done : RuntimeException(null, null, false, false)
+
+    var result: String? = null
+        private set
+
+    // Depth of the object being read, 1 inside the root object.
+    private var depth = 0
+
+    // Number of path segments matched by the enclosing objects.
+    private var matched = 0
+
+    private fun isNext(name: String): Boolean = matched == depth - 1 && name.equals(path[matched], ignoreCase = true)
+
+    override fun startObject(name: String) {
+        if (depth == 0) {
+            depth = 1
+            return
+        }
+
+        if (isNext(name)) {
+            if (matched == path.size - 1) {
+                // the path ends at an object, which has no value
+                throw Done()
+            }
+            matched++
+        }
+
+        depth++
+    }
+
+    override fun endObject() {
+        if (depth == 1 || matched == depth - 1 && matched > 0) {
+            // either the root or the first object matching the path ended without the value being found
+            throw Done()
+        }
+
+        depth--
+    }
+
+    private fun visitValue(name: String, value: () -> String) {
+        if (depth == 0 || !isNext(name)) {
+            return
+        }
+
+        if (matched == path.size - 1) {
+            result = value()
+        }
+
+        // a value where the path needs an object has no children to continue with
+        throw Done()
+    }
+
+    override fun visitString(name: String, value: String) = visitValue(name) { value }
+
+    override fun visitInt32(name: String, value: Int) = visitValue(name) { value.toString() }
+
+    override fun visitInt64(name: String, value: Long) = visitValue(name) { value.toString() }
+
+    override fun visitUInt64(name: String, value: Long) = visitValue(name) { value.toString() }
+
+    override fun visitFloat32(name: String, value: Float) = visitValue(name) { value.toString() }
+}
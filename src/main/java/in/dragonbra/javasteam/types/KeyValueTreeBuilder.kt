@@ -0,0 +1,58 @@
+package `in`.dragonbra.javasteam.types
+
+/**
+ * Builds a [KeyValue] tree from the events of a binary or text reader.
+ *
+ * The first top level entry becomes [root], any further top level entries are read but dropped, which is the shape
+ * both [KeyValue.tryReadAsBinary] and [KeyValue.readAsText] have always produced.
+ */
+internal class KeyValueTreeBuilder(private val root: KeyValue) : KeyValueVisitor {
+
+    private val stack = ArrayList<KeyValue>()
+
+    private var rootAssigned = false
+
+    private fun newEntry(name: String): KeyValue {
+        if (stack.isEmpty()) {
+            if (rootAssigned) {
+                return KeyValue(name)
+            }
+
+            rootAssigned = true
+            root.name = name
+            return root
+        }
+
+        val entry = KeyValue(name)
+        stack[stack.size - 1].children.add(entry)
+        return entry
+    }
+
+    override fun startObject(name: String) {
+        stack.add(newEntry(name))
+    }
+
+    override fun endObject() {
+        stack.removeAt(stack.size - 1)
+    }
+
+    override fun visitString(name: String, value: String) {
+        newEntry(name).value = value
+    }
+
+    override fun visitInt32(name: String, value: Int) {
+        newEntry(name).setNumericValue(KeyValue.Companion.Type.INT32, value.toLong())
+    }
+
+    override fun visitInt64(name: String, value: Long) {
+        newEntry(name).setNumericValue(KeyValue.Companion.Type.INT64, value)
+    }
+
+    override fun visitUInt64(name: String, value: Long) {
+        newEntry(name).setNumericValue(KeyValue.Companion.Type.UINT64, value)
+    }
+
+    override fun visitFloat32(name: String, value: Float) {
+        newEntry(name).setNumericValue(KeyValue.Companion.Type.FLOAT32, value.toRawBits().toLong())
+    }
+}
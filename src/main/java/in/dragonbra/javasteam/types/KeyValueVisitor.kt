@@ -0,0 +1,49 @@
+package `in`.dragonbra.javasteam.types
+
+/**
+ * Receives the entries of a [KeyValue] document as they are read, without any [KeyValue] nodes being created.
+ * Binary documents are reported by [BinaryKeyValueReader.accept] and text documents by [KVTextReader.accept].
+ *
+ * Text documents carry no types, so their values are only ever reported through [visitString], even when they hold
+ * a number. The numeric methods are only called for binary documents.
+ *
+ * Every method does nothing by default, so implementations only override the events they care about.
+ * Key names handed to the visitor are interned and may be compared by reference against previously seen names.
+ */
+interface KeyValueVisitor {
+
+    /**
+     * Called when an object named [name] starts. Its entries follow until the matching [endObject].
+     */
+    fun startObject(name: String) {}
+
+    /**
+     * Called when the most recently started object ends.
+     */
+    fun endObject() {}
+
+    /**
+     * Called for a string entry.
+     */
+    fun visitString(name: String, value: String) {}
+
+    /**
+     * Called for a 32-bit integer entry, which includes color and pointer entries.
+     */
+    fun visitInt32(name: String, value: Int) {}
+
+    /**
+     * Called for a 64-bit signed integer entry.
+     */
+    fun visitInt64(name: String, value: Long) {}
+
+    /**
+     * Called for a 64-bit unsigned integer entry. The bits are passed as is in a signed [Long].
+     */
+    fun visitUInt64(name: String, value: Long) {}
+
+    /**
+     * Called for a 32-bit floating point entry.
+     */
+    fun visitFloat32(name: String, value: Float) {}
+}
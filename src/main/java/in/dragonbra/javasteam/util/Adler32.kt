@@ -1,5 +1,8 @@
 package `in`.dragonbra.javasteam.util
 
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
 // See https://www.rfc-editor.org/rfc/rfc1950.html
 object Adler32 {
 
@@ -13,6 +16,16 @@ object Adler32 {
      */
     private const val NMAX = 5552
 
+    /**
+     * Selects bytes 0, 2, 4 and 6 of a little endian word into four 16-bit lanes
+     */
+    private const val LANE_MASK = 0x00FF00FF00FF00FFL
+
+    /**
+     * Words summed into the 16-bit lanes before they are folded, 255 * 256 still fits in 16 bits
+     */
+    private const val WORDS_PER_FOLD = 256
+
     /**
      * Calculates the Adler32 checksum with the bytes taken from the span using `one` as the initial seed.
      */
@@ -26,64 +39,144 @@ object Adler32 {
      * @return The updated Adler-32 checksum
      */
     @JvmStatic
-    fun calculate(adler: Int, buffer: ByteArray): Int {
+    fun calculate(adler: Int, buffer: ByteArray): Int = calculate(adler, buffer, 0, buffer.size)
+
+    /**
+     * Calculates the Adler32 checksum with the bytes taken from a range of the [ByteArray]
+     * @param adler The input Adler32 value. (use 1 for initial calculation)
+     * @param buffer The byte array to process
+     * @param start The offset of the first byte to process
+     * @param count The amount of bytes to process
+     * @return The updated Adler-32 checksum
+     */
+    @JvmStatic
+    fun calculate(adler: Int, buffer: ByteArray, start: Int, count: Int): Int {
+        require(start >= 0 && count >= 0 && start <= buffer.size - count) {
+            "Range [$start, ${start + count}) is out of bounds for length ${buffer.size}"
+        }
+
+        return update(adler, ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN), start, start + count)
+    }
+
+    /**
+     * Calculates the Adler32 checksum with the remaining bytes of a [ByteBuffer], without copying them.
+     * Heap, direct and memory mapped buffers are supported. The position of the buffer is left unchanged.
+     * @param adler The input Adler32 value. (use 1 for initial calculation)
+     * @param buffer The buffer to process, from its position up to its limit
+     * @return The updated Adler-32 checksum
+     */
+    @JvmStatic
+    fun calculate(adler: Int, buffer: ByteBuffer): Int {
+        // a view, so the byte order of the caller's buffer is left alone
+        val view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        return update(adler, view, view.position(), view.limit())
+    }
+
+    /**
+     * Combines the checksums of two consecutive ranges, so the ranges of a large buffer can be checksummed in parallel.
+     * @param adler1 The checksum of the first range
+     * @param adler2 The checksum of the second range, calculated with a seed of 0
+     * @param length2 The amount of bytes in the second range
+     * @return The checksum of both ranges, as if calculated over them in one go with the seed of [adler1]
+     */
+    @JvmStatic
+    fun combine(adler1: Int, adler2: Int, length2: Long): Int {
+        require(length2 >= 0) { "length2 must not be negative" }
+
+        val a1 = (adler1 and 0xFFFF).toLong()
+        val b1 = ((adler1 ushr 16) and 0xFFFF).toLong()
+        val a2 = (adler2 and 0xFFFF).toLong()
+        val b2 = ((adler2 ushr 16) and 0xFFFF).toLong()
+
+        // every byte of the second range adds the first range's sum to s2 once more
+        val s1 = (a1 + a2) % BASE
+        val s2 = (b1 + b2 + (length2 % BASE) * a1) % BASE
+
+        return ((s2 shl 16) or s1).toInt()
+    }
+
+    /**
+     * Processes the bytes in [start, end) of a little endian [buffer] a 64-bit word at a time.
+     *
+     * For a run of 8 bytes, s2 grows by 8 times s1 before the run plus each byte weighted by its distance from the end
+     * of the run. The bytes are summed into 16-bit lanes, the even and odd bytes of a word separately, and only
+     * weighted once per block, which leaves s1 as the only value carried from word to word.
+     */
+    private fun update(adler: Int, buffer: ByteBuffer, start: Int, end: Int): Int {
         var s1 = (adler and 0xFFFF).toLong()
         var s2 = ((adler ushr 16) and 0xFFFF).toLong()
 
-        var offset = 0
-        val length = buffer.size
+        var offset = start
 
-        while (offset < length) {
-            val k = minOf(length - offset, NMAX)
-            val chunkEnd = offset + k
-            var remaining = k
+        while (offset < end) {
+            val blockEnd = offset + minOf(end - offset, NMAX)
 
-            // Unroll by 16 bytes for maximum performance
-            while (remaining >= 16) {
-                s1 += (buffer[offset].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 1].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 2].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 3].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 4].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 5].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 6].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 7].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 8].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 9].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 10].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 11].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 12].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 13].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 14].toInt() and 0xFF).toLong()
-                s2 += s1
-                s1 += (buffer[offset + 15].toInt() and 0xFF).toLong()
-                s2 += s1
+            // sum of s1 before every word of the block
+            var s1Sum = 0L
+
+            // per byte position totals, 0 to 7, folded out of the lanes
+            var t0 = 0L
+            var t1 = 0L
+            var t2 = 0L
+            var t3 = 0L
+            var t4 = 0L
+            var t5 = 0L
+            var t6 = 0L
+            var t7 = 0L
+
+            var even = 0L
+            var odd = 0L
+            var words = 0
+
+            while (offset + 8 <= blockEnd) {
+                val word = buffer.getLong(offset)
+                val e = word and LANE_MASK
+                val o = (word ushr 8) and LANE_MASK
 
-                offset += 16
-                remaining -= 16
+                s1Sum += s1
+
+                var sum = e + o
+                sum += sum ushr 16
+                sum += sum ushr 32
+                s1 += sum and 0xFFFF
+
+                even += e
+                odd += o
+                offset += 8
+
+                if (++words == WORDS_PER_FOLD) {
+                    t0 += even and 0xFFFF
+                    t2 += (even ushr 16) and 0xFFFF
+                    t4 += (even ushr 32) and 0xFFFF
+                    t6 += even ushr 48
+                    t1 += odd and 0xFFFF
+                    t3 += (odd ushr 16) and 0xFFFF
+                    t5 += (odd ushr 32) and 0xFFFF
+                    t7 += odd ushr 48
+
+                    even = 0L
+                    odd = 0L
+                    words = 0
+                }
             }
 
-            for (i in 0 until remaining) {
-                s1 += (buffer[offset + i].toInt() and 0xFF).toLong()
+            t0 += even and 0xFFFF
+            t2 += (even ushr 16) and 0xFFFF
+            t4 += (even ushr 32) and 0xFFFF
+            t6 += even ushr 48
+            t1 += odd and 0xFFFF
+            t3 += (odd ushr 16) and 0xFFFF
+            t5 += (odd ushr 32) and 0xFFFF
+            t7 += odd ushr 48
+
+            s2 += 8 * s1Sum + 8 * t0 + 7 * t1 + 6 * t2 + 5 * t3 + 4 * t4 + 3 * t5 + 2 * t6 + t7
+
+            while (offset < blockEnd) {
+                s1 += (buffer.get(offset).toInt() and 0xFF).toLong()
                 s2 += s1
+                offset++
             }
 
-            offset = chunkEnd
-
             s1 %= BASE
             s2 %= BASE
         }
@@ -0,0 +1,243 @@
+package `in`.dragonbra.javasteam.util
+
+/**
+ * Thread safe map from primitive longs to objects, so lookups on hot paths need neither boxing nor key objects.
+ *
+ * Entries are spread over independently locked segments by the high bits of a mixed hash. Each segment is an open
+ * addressing table with linear probing, its low bits pick the slot.
+ *
+ * @param V The value type.
+ * @param segmentCount Number of segments, rounded up to a power of two.
+ */
+internal class ConcurrentLongMap<V : Any>(segmentCount: Int = 16) {
+
+    private companion object {
+        const val INITIAL_CAPACITY = 16
+
+        // marks a removed entry, so probing continues past it
+        val TOMBSTONE = Any()
+
+        fun mix(key: Long): Long {
+            var h = key
+            h = (h xor (h ushr 33)) * -0xae502812aa7333L
+            h = (h xor (h ushr 33)) * -0x3b314601e57a13adL
+            return h xor (h ushr 33)
+        }
+    }
+
+    private class Segment {
+        var keys = LongArray(INITIAL_CAPACITY)
+
+        var values = arrayOfNulls<Any>(INITIAL_CAPACITY)
+
+        var size = 0
+
+        // live entries plus tombstones
+        var used = 0
+    }
+
+    private val segmentShift: Int
+
+    private val segments: Array<Segment>
+
+    init {
+        require(segmentCount > 0) { "segmentCount must be positive" }
+
+        val count = Integer.highestOneBit((segmentCount - 1).coerceAtLeast(1)) shl 1
+        segmentShift = 64 - Integer.numberOfTrailingZeros(count)
+        segments = Array(count) { Segment() }
+    }
+
+    /**
+     * Number of entries.
+     */
+    val size: Int
+        get() = segments.sumOf { synchronized(it) { it.size } }
+
+    fun isEmpty(): Boolean = size == 0
+
+    operator fun get(key: Long): V? {
+        val hash = mix(key)
+        val segment = segmentFor(hash)
+
+        synchronized(segment) {
+            val index = find(segment, key, hash)
+
+            @Suppress("UNCHECKED_CAST")
+            return if (index < 0) null else segment.values[index] as V
+        }
+    }
+
+    fun containsKey(key: Long): Boolean = get(key) != null
+
+    /**
+     * Associates [value] with [key].
+     * @return The value previously associated with [key], or null.
+     */
+    fun put(key: Long, value: V): V? {
+        val hash = mix(key)
+        val segment = segmentFor(hash)
+
+        synchronized(segment) {
+            val index = find(segment, key, hash)
+            if (index >= 0) {
+                @Suppress("UNCHECKED_CAST")
+                val previous = segment.values[index] as V
+                segment.values[index] = value
+                return previous
+            }
+
+            if ((segment.used + 1) * 4 > segment.values.size * 3) {
+                rehash(segment)
+            }
+
+            insert(segment, key, value, hash)
+            return null
+        }
+    }
+
+    /**
+     * Removes the entry for [key].
+     * @return The removed value, or null if there was none.
+     */
+    fun remove(key: Long): V? {
+        val hash = mix(key)
+        val segment = segmentFor(hash)
+
+        synchronized(segment) {
+            val index = find(segment, key, hash)
+            if (index < 0) {
+                return null
+            }
+
+            @Suppress("UNCHECKED_CAST")
+            val previous = segment.values[index] as V
+            removeAt(segment, index)
+            return previous
+        }
+    }
+
+    /**
+     * Removes the entry for [key] only if it is mapped to [value], compared by identity.
+     * @return Whether the entry was removed.
+     */
+    fun remove(key: Long, value: V): Boolean {
+        val hash = mix(key)
+        val segment = segmentFor(hash)
+
+        synchronized(segment) {
+            val index = find(segment, key, hash)
+            if (index < 0 || segment.values[index] !== value) {
+                return false
+            }
+
+            removeAt(segment, index)
+            return true
+        }
+    }
+
+    /**
+     * A snapshot of all values. Segments are copied one at a time, so concurrent changes may be partially reflected.
+     */
+    fun values(): List<V> {
+        val result = ArrayList<V>()
+
+        segments.forEach { segment ->
+            synchronized(segment) {
+                segment.values.forEach { value ->
+                    if (value != null && value !== TOMBSTONE) {
+                        @Suppress("UNCHECKED_CAST")
+                        result.add(value as V)
+                    }
+                }
+            }
+        }
+
+        return result
+    }
+
+    fun clear() {
+        segments.forEach { segment ->
+            synchronized(segment) {
+                segment.keys = LongArray(INITIAL_CAPACITY)
+                segment.values = arrayOfNulls(INITIAL_CAPACITY)
+                segment.size = 0
+                segment.used = 0
+            }
+        }
+    }
+
+    private fun segmentFor(hash: Long): Segment = segments[(hash ushr segmentShift).toInt()]
+
+    private fun find(segment: Segment, key: Long, hash: Long): Int {
+        val keys = segment.keys
+        val values = segment.values
+        val mask = values.size - 1
+
+        var index = hash.toInt() and mask
+        while (true) {
+            val value = values[index] ?: return -1
+            if (value !== TOMBSTONE && keys[index] == key) {
+                return index
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun insert(segment: Segment, key: Long, value: Any, hash: Long) {
+        val values = segment.values
+        val mask = values.size - 1
+
+        var index = hash.toInt() and mask
+        while (true) {
+            val existing = values[index]
+            if (existing == null || existing === TOMBSTONE) {
+                segment.keys[index] = key
+                values[index] = value
+                segment.size++
+                if (existing == null) {
+                    segment.used++
+                }
+                return
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun removeAt(segment: Segment, index: Int) {
+        val values = segment.values
+        val next = (index + 1) and (values.size - 1)
+
+        // a slot followed by an empty one ends every probe sequence through it, so it can be emptied outright
+        if (values[next] == null) {
+            values[index] = null
+            segment.used--
+        } else {
+            values[index] = TOMBSTONE
+        }
+
+        segment.size--
+    }
+
+    private fun rehash(segment: Segment) {
+        val oldKeys = segment.keys
+        val oldValues = segment.values
+
+        // only grow when live entries need it, otherwise the same capacity is reused to drop the tombstones
+        var capacity = oldValues.size
+        while ((segment.size + 1) * 2 > capacity) {
+            capacity = capacity shl 1
+        }
+
+        segment.keys = LongArray(capacity)
+        segment.values = arrayOfNulls(capacity)
+        segment.size = 0
+        segment.used = 0
+
+        oldValues.forEachIndexed { i, value ->
+            if (value != null && value !== TOMBSTONE) {
+                insert(segment, oldKeys[i], value, mix(oldKeys[i]))
+            }
+        }
+    }
+}
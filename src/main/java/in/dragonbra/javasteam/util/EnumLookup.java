@@ -0,0 +1,218 @@
+package in.dragonbra.javasteam.util;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Constant time code to constant lookup used by the generated steamd enums.
+ * <p>
+ * Codes that are close together are resolved with a dense array indexed by {@code code - min}, sparse codes with an
+ * open addressing table keyed on the primitive code. When several constants share a code the first declared one wins,
+ * the same as a linear scan over {@code values()}.
+ *
+ * @param <E> the enum type
+ */
+public final class EnumLookup<E extends Enum<E>> {
+
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final Class<E> type;
+
+    private final E[] values;
+
+    private final ToLongFunction<E> code;
+
+    private final long min;
+
+    private final E[] dense;
+
+    private final long[] keys;
+
+    private final E[] slots;
+
+    private final int shift;
+
+    private volatile Flags<E> flags;
+
+    /**
+     * @param type   the enum class
+     * @param values the enum constants in declaration order
+     * @param code   extracts the code of a constant, only used while building the tables
+     */
+    public EnumLookup(Class<E> type, E[] values, ToLongFunction<E> code) {
+        this.type = type;
+        this.values = values;
+        this.code = code;
+
+        long lo = Long.MAX_VALUE;
+        long hi = Long.MIN_VALUE;
+        for (E e : values) {
+            long c = code.applyAsLong(e);
+            lo = Math.min(lo, c);
+            hi = Math.max(hi, c);
+        }
+
+        long span = hi - lo;
+        if (values.length > 0 && span >= 0 && span < 4L * values.length + 64) {
+            min = lo;
+            dense = newArray((int) span + 1);
+            for (E e : values) {
+                int index = (int) (code.applyAsLong(e) - lo);
+                if (dense[index] == null) {
+                    dense[index] = e;
+                }
+            }
+
+            keys = null;
+            slots = null;
+            shift = 0;
+        } else {
+            min = 0;
+            dense = null;
+
+            int capacity = Integer.highestOneBit(Math.max(values.length, 1) * 2 + 1) << 1;
+            keys = new long[capacity];
+            slots = newArray(capacity);
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+
+            int mask = capacity - 1;
+            for (E e : values) {
+                long c = code.applyAsLong(e);
+                int index = slot(c);
+                while (slots[index] != null && keys[index] != c) {
+                    index = (index + 1) & mask;
+                }
+                if (slots[index] == null) {
+                    keys[index] = c;
+                    slots[index] = e;
+                }
+            }
+        }
+    }
+
+    private int slot(long code) {
+        return (int) ((code * MIX) >>> shift);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E[] newArray(int length) {
+        return (E[]) Array.newInstance(type, length);
+    }
+
+    /**
+     * Gets the constant with the given code.
+     *
+     * @param code the code
+     * @return the constant, or null if there is none.
+     */
+    public E get(long code) {
+        if (dense != null) {
+            long index = code - min;
+            return index >= 0 && index < dense.length ? dense[(int) index] : null;
+        }
+
+        int mask = slots.length - 1;
+        int index = slot(code);
+        E e;
+        while ((e = slots[index]) != null) {
+            if (keys[index] == code) {
+                return e;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a flag value into the set of constants whose bits are all present in it.
+     *
+     * @param code the flag value
+     * @return a new mutable set
+     */
+    public EnumSet<E> getFlags(long code) {
+        Flags<E> f = flags;
+        if (f == null) {
+            f = new Flags<>(this);
+            flags = f;
+        }
+
+        EnumSet<E> set = EnumSet.noneOf(type);
+
+        for (E e : f.zero) {
+            set.add(e);
+        }
+
+        long bits = code;
+        while (bits != 0) {
+            E[] atBit = f.singleBit[Long.numberOfTrailingZeros(bits)];
+            bits &= bits - 1;
+
+            if (atBit != null) {
+                for (E e : atBit) {
+                    set.add(e);
+                }
+            }
+        }
+
+        for (int i = 0; i < f.multiBitCodes.length; i++) {
+            long c = f.multiBitCodes[i];
+            if ((c & code) == c) {
+                set.add(f.multiBit[i]);
+            }
+        }
+
+        return set;
+    }
+
+    /**
+     * Flag constants bucketed by bit: code 0 always matches, single bit codes are found by walking the set bits of the
+     * input, the rest are tested individually.
+     */
+    private static final class Flags<E extends Enum<E>> {
+
+        private final E[] zero;
+
+        private final E[][] singleBit;
+
+        private final E[] multiBit;
+
+        private final long[] multiBitCodes;
+
+        @SuppressWarnings("unchecked")
+        Flags(EnumLookup<E> lookup) {
+            List<E> zeroList = new ArrayList<>();
+            List<E> multiList = new ArrayList<>();
+            List<E>[] bitLists = new List[64];
+
+            for (E e : lookup.values) {
+                long c = lookup.code.applyAsLong(e);
+                if (c == 0) {
+                    zeroList.add(e);
+                } else if (Long.bitCount(c) == 1) {
+                    int bit = Long.numberOfTrailingZeros(c);
+                    if (bitLists[bit] == null) {
+                        bitLists[bit] = new ArrayList<>();
+                    }
+                    bitLists[bit].add(e);
+                } else {
+                    multiList.add(e);
+                }
+            }
+
+            zero = zeroList.toArray(lookup.newArray(0));
+            multiBit = multiList.toArray(lookup.newArray(0));
+            multiBitCodes = new long[multiBit.length];
+            for (int i = 0; i < multiBit.length; i++) {
+                multiBitCodes[i] = lookup.code.applyAsLong(multiBit[i]);
+            }
+
+            singleBit = (E[][]) Array.newInstance(lookup.type, 64, 0);
+            for (int bit = 0; bit < 64; bit++) {
+                singleBit[bit] = bitLists[bit] == null ? null : bitLists[bit].toArray(lookup.newArray(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package `in`.dragonbra.javasteam.util
+
+import java.io.EOFException
+import java.io.IOException
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.DataFormatException
+import java.util.zip.Inflater
+
+/**
+ * Decompresses gzip streams that are already in memory.
+ *
+ * Every thread keeps a single [Inflater] that is reset between streams, instead of allocating a new one with its native
+ * state for each stream.
+ */
+object GzipUtil {
+
+    private const val MAGIC: Short = 0x8B1F.toShort()
+
+    private const val METHOD_DEFLATE: Byte = 8
+
+    private const val FHCRC = 2
+    private const val FEXTRA = 4
+    private const val FNAME = 8
+    private const val FCOMMENT = 16
+
+    private val inflaters = ThreadLocal.withInitial { Inflater(true) }
+
+    /**
+     * Decompresses a single member gzip stream into [destination].
+     *
+     * @param source The compressed stream, read from its position up to its limit. Its position is left unchanged.
+     * @param destination The buffer to decompress into. It has to be large enough to hold all the decompressed data.
+     * @return The number of bytes written to [destination].
+     * @throws IOException If the stream is malformed or truncated, does not fit [destination] or fails the checksum.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun decompress(source: ByteBuffer, destination: ByteArray): Int {
+        val input = source.slice().order(ByteOrder.LITTLE_ENDIAN)
+
+        val inflater = inflaters.get()
+
+        try {
+            skipHeader(input)
+
+            inflater.setInput(input)
+
+            var written = 0
+            while (!inflater.finished()) {
+                val count = if (written < destination.size) {
+                    inflater.inflate(destination, written, destination.size - written)
+                } else {
+                    // the destination is full, anything that still comes out means it was too small
+                    if (inflater.inflate(ByteArray(1)) > 0) {
+                        throw IOException("The destination buffer is smaller than the decompressed data size.")
+                    }
+                    0
+                }
+
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw EOFException("Unexpected end of gzip stream")
+                }
+
+                written += count
+            }
+
+            val crc = input.int.toLong() and 0xFFFFFFFFL
+            val size = input.int.toLong() and 0xFFFFFFFFL
+
+            if (crc != Utils.crc32(destination, 0, written)) {
+                throw IOException("Checksum validation failed for gzip stream")
+            }
+
+            if (size != written.toLong() and 0xFFFFFFFFL) {
+                throw IOException("Size mismatch for gzip stream, expected $size bytes but got $written")
+            }
+
+            return written
+        } catch (e: BufferUnderflowException) {
+            throw EOFException("Unexpected end of gzip stream")
+        } catch (e: IllegalArgumentException) {
+            throw EOFException("Unexpected end of gzip stream")
+        } catch (e: DataFormatException) {
+            throw IOException("Malformed deflate data in gzip stream", e)
+        } finally {
+            // also drops the reference to the input
+            inflater.reset()
+        }
+    }
+
+    private fun skipHeader(input: ByteBuffer) {
+        if (input.short != MAGIC) {
+            throw IOException("Expecting gzip magic at start of stream")
+        }
+
+        if (input.get() != METHOD_DEFLATE) {
+            throw IOException("Unsupported gzip compression method")
+        }
+
+        val flags = input.get().toInt()
+
+        // modification time, extra flags and operating system
+        input.position(input.position() + 6)
+
+        if (flags and FEXTRA != 0) {
+            val length = input.short.toInt() and 0xFFFF
+            input.position(input.position() + length)
+        }
+
+        if (flags and FNAME != 0) {
+            skipZeroTerminated(input)
+        }
+
+        if (flags and FCOMMENT != 0) {
+            skipZeroTerminated(input)
+        }
+
+        if (flags and FHCRC != 0) {
+            input.position(input.position() + 2)
+        }
+    }
+
+    private fun skipZeroTerminated(input: ByteBuffer) {
+        while (input.get() != 0.toByte()) continue
+    }
+}
@@ -19,22 +19,37 @@ object VZstdUtil {
     @Throws(IOException::class, IllegalArgumentException::class)
     @JvmStatic
     @JvmOverloads
-    fun decompress(buffer: ByteArray, destination: ByteArray, verifyChecksum: Boolean = false): Int {
-        if (buffer.size < HEADER_SIZE + FOOTER_SIZE) {
+    fun decompress(buffer: ByteArray, destination: ByteArray, verifyChecksum: Boolean = false): Int =
+        decompress(buffer, 0, buffer.size, destination, verifyChecksum)
+
+    /**
+     * Decompresses VZstd data read from a range of [buffer], without copying it first.
+     * @param buffer The buffer holding the compressed data
+     * @param offset The offset of the VZstd header in [buffer]
+     * @param length The length of the compressed data, including header and footer
+     * @param destination The buffer to receive the decompressed data
+     * @param verifyChecksum Whether to verify the CRC32 of the decompressed data
+     * @return The amount of bytes written to [destination]
+     */
+    @Throws(IOException::class, IllegalArgumentException::class)
+    @JvmStatic
+    fun decompress(buffer: ByteArray, offset: Int, length: Int, destination: ByteArray, verifyChecksum: Boolean): Int {
+        if (length < HEADER_SIZE + FOOTER_SIZE) {
             throw IOException("Buffer too small to contain VZstd header and footer")
         }
 
         val byteBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN) // Convert the buffer.
 
-        val header = byteBuffer.getInt(0)
+        val header = byteBuffer.getInt(offset)
         if (header != VZSTD_HEADER) {
             throw IOException("Expecting VZstdHeader at start of stream")
         }
 
-        // val crc32 = byteBuffer.getInt(4)
+        // val crc32 = byteBuffer.getInt(offset + 4)
 
         // Read footer
-        val footerOffset = buffer.size - FOOTER_SIZE
+        val end = offset + length
+        val footerOffset = end - FOOTER_SIZE
         val crc32Footer = byteBuffer.getInt(footerOffset)
         val sizeDecompressed = byteBuffer.getInt(footerOffset + 4)
 
@@ -44,9 +59,9 @@ object VZstdUtil {
         //     logger.debug("CRC32 appears to be written twice in the data")
         // }
 
-        if (buffer[buffer.size - 3] != 'z'.code.toByte() ||
-            buffer[buffer.size - 2] != 's'.code.toByte() ||
-            buffer[buffer.size - 1] != 'v'.code.toByte()
+        if (buffer[end - 3] != 'z'.code.toByte() ||
+            buffer[end - 2] != 's'.code.toByte() ||
+            buffer[end - 1] != 'v'.code.toByte()
         ) {
             throw IOException("Expecting VZstdFooter at end of stream")
         }
@@ -60,19 +75,19 @@ object VZstdUtil {
             var totalDecompressed = 0
 
             // Use direct ByteArrayInputStream with offset to avoid copying compressed data
-            ByteArrayInputStream(buffer, HEADER_SIZE, buffer.size - FOOTER_SIZE).use { byteStream ->
+            ByteArrayInputStream(buffer, offset + HEADER_SIZE, length - HEADER_SIZE - FOOTER_SIZE).use { byteStream ->
                 ZstdInputStream(byteStream).use { zstdStream ->
                     var bytesRead: Int
-                    var offset = 0
+                    var written = 0
 
                     // Read in chunks to break up JNI locks
-                    while (offset < sizeDecompressed) {
-                        val toRead = minOf(STREAM_CHUNK_SIZE, sizeDecompressed - offset)
-                        bytesRead = zstdStream.read(destination, offset, toRead)
+                    while (written < sizeDecompressed) {
+                        val toRead = minOf(STREAM_CHUNK_SIZE, sizeDecompressed - written)
+                        bytesRead = zstdStream.read(destination, written, toRead)
 
                         if (bytesRead == -1) break
 
-                        offset += bytesRead
+                        written += bytesRead
                         totalDecompressed += bytesRead
                     }
                 }
@@ -0,0 +1,342 @@
+package in.dragonbra.javasteam.util.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Reusable AES session cipher for the channel encryption used by Steam.
+ * <p>
+ * Produces the same format as {@link CryptoHelper#symmetricEncrypt(byte[], byte[])} and
+ * {@link CryptoHelper#symmetricEncryptWithHMACIV(byte[], byte[], byte[])}: a 16 byte AES/ECB encrypted IV followed
+ * by the AES/CBC/PKCS7 ciphertext. The ciphers and the MAC are created and keyed once, so encrypting or decrypting a
+ * packet does not go through the provider lookup.
+ * <p>
+ * Encryption and decryption use separate contexts, so one thread may encrypt while another decrypts, but each
+ * direction is serialized. Input and output regions must not overlap.
+ */
+public class SymmetricCipher {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final int HMAC_RANDOM_LENGTH = 3;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Direction encryptor;
+
+    private final Direction decryptor;
+
+    private final boolean useHmac;
+
+    /**
+     * Creates a cipher that prepends a random IV.
+     *
+     * @param key the AES session key
+     * @throws CryptoException if the ciphers could not be created
+     */
+    public SymmetricCipher(byte[] key) throws CryptoException {
+        this(key, null);
+    }
+
+    /**
+     * Creates a cipher. If a HMAC secret is given, the IV is made of the HMAC-SHA1 of 3 random bytes and the plain
+     * text, followed by those 3 random bytes, and is validated when decrypting.
+     *
+     * @param key        the AES session key
+     * @param hmacSecret the HMAC secret, or null to use a random IV
+     * @throws CryptoException if the ciphers could not be created
+     */
+    public SymmetricCipher(byte[] key, byte[] hmacSecret) throws CryptoException {
+        if (key == null) {
+            throw new IllegalArgumentException("key is null");
+        }
+
+        useHmac = hmacSecret != null;
+
+        try {
+            encryptor = new Direction(Cipher.ENCRYPT_MODE, key, hmacSecret);
+            decryptor = new Direction(Cipher.DECRYPT_MODE, key, hmacSecret);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("failed to initialize symmetric cipher", e);
+        }
+    }
+
+    /**
+     * @param plainTextLength the length of the plain text
+     * @return the exact length of the encrypted output
+     */
+    public static int getEncryptedLength(int plainTextLength) {
+        return BLOCK_SIZE + (plainTextLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    /**
+     * @param encryptedLength the length of the encrypted input
+     * @return the maximum length of the decrypted output
+     */
+    public static int getMaxDecryptedLength(int encryptedLength) {
+        return Math.max(0, encryptedLength - BLOCK_SIZE);
+    }
+
+    /**
+     * Encrypts the input into a new array.
+     *
+     * @param input array to encrypt
+     * @return encrypted message
+     * @throws CryptoException exception while encrypting
+     */
+    public byte[] encrypt(byte[] input) throws CryptoException {
+        byte[] output = new byte[getEncryptedLength(input.length)];
+        encrypt(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Encrypts a region of an array into a region of another one.
+     *
+     * @param input        the input array
+     * @param inputOffset  the offset of the plain text in the input
+     * @param inputLength  the length of the plain text
+     * @param output       the output array, must have room for {@link #getEncryptedLength(int)} bytes
+     * @param outputOffset the offset in the output to write at
+     * @return the amount of bytes written
+     * @throws CryptoException exception while encrypting
+     */
+    public int encrypt(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset)
+            throws CryptoException {
+        synchronized (encryptor) {
+            try {
+                byte[] iv = encryptor.nextIv(input, inputOffset, inputLength);
+
+                encryptor.ecb.doFinal(iv, 0, BLOCK_SIZE, output, outputOffset);
+                encryptor.cbc.init(Cipher.ENCRYPT_MODE, encryptor.key, new IvParameterSpec(iv));
+                return BLOCK_SIZE + encryptor.cbc.doFinal(input, inputOffset, inputLength, output, outputOffset + BLOCK_SIZE);
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException("failed to symmetric encrypt", e);
+            }
+        }
+    }
+
+    /**
+     * Encrypts the remaining bytes of the input buffer into the output buffer. Both buffers are advanced.
+     *
+     * @param input  the plain text
+     * @param output the destination, must have room for {@link #getEncryptedLength(int)} bytes
+     * @return the amount of bytes written
+     * @throws CryptoException exception while encrypting
+     */
+    public int encrypt(ByteBuffer input, ByteBuffer output) throws CryptoException {
+        synchronized (encryptor) {
+            try {
+                byte[] iv = encryptor.nextIv(input.duplicate());
+
+                encryptor.ecb.doFinal(ByteBuffer.wrap(iv), output);
+                encryptor.cbc.init(Cipher.ENCRYPT_MODE, encryptor.key, new IvParameterSpec(iv));
+                return BLOCK_SIZE + encryptor.cbc.doFinal(input, output);
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException("failed to symmetric encrypt", e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts the input into a new array.
+     *
+     * @param input array to decrypt
+     * @return decrypted message
+     * @throws CryptoException exception while decrypting, or if the HMAC does not match
+     */
+    public byte[] decrypt(byte[] input) throws CryptoException {
+        if (input.length < BLOCK_SIZE) {
+            throw new CryptoException("failed to symmetric decrypt: input is shorter than the IV");
+        }
+
+        synchronized (decryptor) {
+            try {
+                decryptor.decryptIv(input, 0);
+                byte[] plainText = decryptor.cbc.doFinal(input, BLOCK_SIZE, input.length - BLOCK_SIZE);
+                decryptor.validate(plainText, 0, plainText.length);
+                return plainText;
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException("failed to symmetric decrypt", e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts a region of an array into a region of another one.
+     *
+     * @param input        the input array
+     * @param inputOffset  the offset of the encrypted data in the input
+     * @param inputLength  the length of the encrypted data
+     * @param output       the output array, must have room for {@link #getMaxDecryptedLength(int)} bytes
+     * @param outputOffset the offset in the output to write at
+     * @return the length of the plain text
+     * @throws CryptoException exception while decrypting, or if the HMAC does not match
+     */
+    public int decrypt(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset)
+            throws CryptoException {
+        if (inputLength < BLOCK_SIZE) {
+            throw new CryptoException("failed to symmetric decrypt: input is shorter than the IV");
+        }
+
+        synchronized (decryptor) {
+            try {
+                decryptor.decryptIv(input, inputOffset);
+                int written = decryptor.cbc.doFinal(
+                        input, inputOffset + BLOCK_SIZE, inputLength - BLOCK_SIZE, output, outputOffset
+                );
+                decryptor.validate(output, outputOffset, written);
+                return written;
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException("failed to symmetric decrypt", e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of the input buffer into the output buffer. Both buffers are advanced.
+     *
+     * @param input  the encrypted data
+     * @param output the destination, must have room for {@link #getMaxDecryptedLength(int)} bytes
+     * @return the length of the plain text
+     * @throws CryptoException exception while decrypting, or if the HMAC does not match
+     */
+    public int decrypt(ByteBuffer input, ByteBuffer output) throws CryptoException {
+        if (input.remaining() < BLOCK_SIZE) {
+            throw new CryptoException("failed to symmetric decrypt: input is shorter than the IV");
+        }
+
+        synchronized (decryptor) {
+            try {
+                ByteBuffer cryptedIv = input.duplicate();
+                cryptedIv.limit(cryptedIv.position() + BLOCK_SIZE);
+                input.position(input.position() + BLOCK_SIZE);
+
+                decryptor.ecb.doFinal(cryptedIv, ByteBuffer.wrap(decryptor.iv));
+                decryptor.cbc.init(Cipher.DECRYPT_MODE, decryptor.key, new IvParameterSpec(decryptor.iv));
+
+                int start = output.position();
+                int written = decryptor.cbc.doFinal(input, output);
+
+                if (useHmac) {
+                    ByteBuffer plainText = output.duplicate();
+                    plainText.position(start).limit(start + written);
+                    decryptor.validate(plainText);
+                }
+
+                return written;
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException("failed to symmetric decrypt", e);
+            }
+        }
+    }
+
+    /**
+     * Cipher and MAC state for one direction.
+     */
+    private static final class Direction {
+
+        private final SecretKeySpec key;
+
+        private final Cipher ecb;
+
+        private final Cipher cbc;
+
+        private final Mac mac;
+
+        private final byte[] iv = new byte[BLOCK_SIZE];
+
+        private final byte[] random = new byte[HMAC_RANDOM_LENGTH];
+
+        private final byte[] hash;
+
+        Direction(int mode, byte[] key, byte[] hmacSecret) throws GeneralSecurityException {
+            this.key = new SecretKeySpec(key, "AES");
+
+            ecb = Cipher.getInstance("AES/ECB/NoPadding", CryptoHelper.SEC_PROV);
+            ecb.init(mode, this.key);
+
+            cbc = Cipher.getInstance("AES/CBC/PKCS7Padding", CryptoHelper.SEC_PROV);
+
+            if (hmacSecret != null) {
+                mac = Mac.getInstance("HmacSHA1");
+                mac.init(new SecretKeySpec(hmacSecret, "HmacSHA1"));
+                hash = new byte[mac.getMacLength()];
+            } else {
+                mac = null;
+                hash = null;
+            }
+        }
+
+        // IV is HMAC-SHA1(Random(3) + Plaintext) + Random(3), or 16 random bytes without HMAC
+        byte[] nextIv(byte[] input, int offset, int length) throws ShortBufferException {
+            if (mac == null) {
+                RANDOM.nextBytes(iv);
+                return iv;
+            }
+
+            fillRandomTail();
+            mac.update(iv, BLOCK_SIZE - HMAC_RANDOM_LENGTH, HMAC_RANDOM_LENGTH);
+            mac.update(input, offset, length);
+            mac.doFinal(hash, 0);
+            System.arraycopy(hash, 0, iv, 0, BLOCK_SIZE - HMAC_RANDOM_LENGTH);
+            return iv;
+        }
+
+        byte[] nextIv(ByteBuffer input) throws ShortBufferException {
+            if (mac == null) {
+                RANDOM.nextBytes(iv);
+                return iv;
+            }
+
+            fillRandomTail();
+            mac.update(iv, BLOCK_SIZE - HMAC_RANDOM_LENGTH, HMAC_RANDOM_LENGTH);
+            mac.update(input);
+            mac.doFinal(hash, 0);
+            System.arraycopy(hash, 0, iv, 0, BLOCK_SIZE - HMAC_RANDOM_LENGTH);
+            return iv;
+        }
+
+        private void fillRandomTail() {
+            RANDOM.nextBytes(random);
+            System.arraycopy(random, 0, iv, BLOCK_SIZE - HMAC_RANDOM_LENGTH, HMAC_RANDOM_LENGTH);
+        }
+
+        void decryptIv(byte[] input, int offset) throws GeneralSecurityException {
+            ecb.doFinal(input, offset, BLOCK_SIZE, iv, 0);
+            cbc.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+        }
+
+        void validate(byte[] plainText, int offset, int length) throws GeneralSecurityException, CryptoException {
+            if (mac == null) {
+                return;
+            }
+
+            mac.update(iv, BLOCK_SIZE - HMAC_RANDOM_LENGTH, HMAC_RANDOM_LENGTH);
+            mac.update(plainText, offset, length);
+            mac.doFinal(hash, 0);
+            compareHash();
+        }
+
+        void validate(ByteBuffer plainText) throws GeneralSecurityException, CryptoException {
+            mac.update(iv, BLOCK_SIZE - HMAC_RANDOM_LENGTH, HMAC_RANDOM_LENGTH);
+            mac.update(plainText);
+            mac.doFinal(hash, 0);
+            compareHash();
+        }
+
+        private void compareHash() throws CryptoException {
+            for (int i = 0; i < BLOCK_SIZE - HMAC_RANDOM_LENGTH; i++) {
+                if (hash[i] != iv[i]) {
+                    throw new CryptoException("NetFilterEncryption was unable to decrypt packet: HMAC from server did not match computed HMAC.");
+                }
+            }
+        }
+    }
+}
@@ -19,11 +19,21 @@ public class BinaryReader extends FilterInputStream {
         super(in);
     }
 
-    public int readInt() throws IOException {
-        int n = in.read(readBuffer, 0, 4);
-        if (n < 4) {
-            throw new EOFException();
+    private void fillReadBuffer(int len) throws IOException {
+        int totalRead = 0;
+
+        // inflating and network streams may hand out fewer bytes than requested
+        while (totalRead < len) {
+            int read = in.read(readBuffer, totalRead, len - totalRead);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            totalRead += read;
         }
+    }
+
+    public int readInt() throws IOException {
+        fillReadBuffer(4);
         position += 4;
 
         return ((readBuffer[3] & 0xFF) << 24) |
@@ -66,20 +76,14 @@ public class BinaryReader extends FilterInputStream {
     }
 
     public short readShort() throws IOException {
-        int n = in.read(readBuffer, 0, 2);
-        if (n < 2) {
-            throw new EOFException();
-        }
+        fillReadBuffer(2);
         position += 2;
 
         return (short) (((readBuffer[1] & 0xFF) << 8) | (readBuffer[0] & 0xFF));
     }
 
     public long readLong() throws IOException {
-        int n = in.read(readBuffer, 0, 8);
-        if (n < 8) {
-            throw new EOFException();
-        }
+        fillReadBuffer(8);
         position += 8;
 
         return ((long) (readBuffer[7] & 0xFF) << 56) |
@@ -0,0 +1,52 @@
+package in.dragonbra.javasteam.base;
+
+import in.dragonbra.javasteam.enums.EMsg;
+import in.dragonbra.javasteam.enums.EResult;
+import in.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverLogin.CMsgClientLogonResponse;
+import in.dragonbra.javasteam.steam.CMClient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientMsgProtobufTest {
+
+    @Test
+    public void builderIsCreatedWithoutReflection() {
+        ClientMsgProtobuf<CMsgClientLogonResponse.Builder> msg =
+                new ClientMsgProtobuf<>(CMsgClientLogonResponse.class, EMsg.ClientLogOnResponse);
+
+        assertNotNull(msg.getBody());
+        assertSame(
+                ProtobufFactory.getDefaultInstance(CMsgClientLogonResponse.class),
+                CMsgClientLogonResponse.getDefaultInstance()
+        );
+    }
+
+    @Test
+    public void bodyIsParsedFromPacket() {
+        ClientMsgProtobuf<CMsgClientLogonResponse.Builder> msg =
+                new ClientMsgProtobuf<>(CMsgClientLogonResponse.class, EMsg.ClientLogOnResponse);
+        msg.getProtoHeader().setJobidSource(123L);
+        msg.getProtoHeader().setJobidTarget(456L);
+        msg.getBody().setEresult(EResult.OK.code());
+        msg.getBody().setHeartbeatSeconds(9);
+
+        IPacketMsg packet = CMClient.getPacketMsg(msg.serialize());
+        assertInstanceOf(PacketClientMsgProtobuf.class, packet);
+
+        ClientMsgProtobuf<CMsgClientLogonResponse.Builder> parsed =
+                new ClientMsgProtobuf<>(CMsgClientLogonResponse.class, packet);
+
+        assertEquals(EMsg.ClientLogOnResponse, parsed.getMsgType());
+        assertEquals(123L, parsed.getProtoHeader().getJobidSource());
+        assertEquals(456L, parsed.getProtoHeader().getJobidTarget());
+        assertEquals(EResult.OK.code(), parsed.getBody().getEresult());
+        assertEquals(9, parsed.getBody().getHeartbeatSeconds());
+
+        // the slice path and the stream path must agree
+        ClientMsgProtobuf<CMsgClientLogonResponse.Builder> streamed =
+                new ClientMsgProtobuf<>(CMsgClientLogonResponse.class, EMsg.ClientLogOnResponse);
+        streamed.deserialize(packet.getData());
+        assertEquals(streamed.getBody().build(), parsed.getBody().build());
+    }
+}
@@ -0,0 +1,143 @@
+package in.dragonbra.javasteam.networking.steam3;
+
+import in.dragonbra.javasteam.TestBase;
+import in.dragonbra.javasteam.util.stream.BinaryReader;
+import in.dragonbra.javasteam.util.stream.BinaryWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioTcpConnectionTest extends TestBase {
+
+    private static final int MAGIC = 0x31305456;
+
+    private static final int ROUND_TRIPS = 20;
+
+    private ServerSocket server;
+
+    private Thread serverThread;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+
+        // fake CM that echoes every framed packet back, splitting the frame in two writes to exercise reassembly
+        serverThread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    BinaryReader reader = new BinaryReader(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    BinaryWriter writer = new BinaryWriter(out);
+
+                    while (true) {
+                        int length = reader.readInt();
+                        int magic = reader.readInt();
+                        byte[] data = reader.readBytes(length);
+
+                        writer.writeInt(length);
+                        out.flush();
+                        writer.writeInt(magic);
+                        writer.write(data);
+                        out.flush();
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException, InterruptedException {
+        server.close();
+        serverThread.join(1000);
+    }
+
+    @Test
+    public void receivesFramedPackets() throws InterruptedException {
+        NioTcpConnection connection = new NioTcpConnection();
+        BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        CountDownLatch disconnected = new CountDownLatch(1);
+
+        connection.getNetMsgReceived().addEventHandler((sender, e) -> received.add(e.getData()));
+        connection.getDisconnected().addEventHandler((sender, e) -> {
+            assertTrue(e.isUserInitiated());
+            disconnected.countDown();
+        });
+
+        connection.connect(endPoint());
+
+        byte[] big = new byte[1 << 20];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = (byte) i;
+        }
+
+        connection.send(new byte[]{1, 2, 3});
+        connection.send(new byte[0]);
+        connection.send(big);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, received.poll(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[0], received.poll(5, TimeUnit.SECONDS));
+        assertArrayEquals(big, received.poll(5, TimeUnit.SECONDS));
+
+        connection.disconnect(true);
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+        assertNull(connection.getLocalIP());
+    }
+
+    @Test
+    public void failedConnectRaisesDisconnected() throws IOException, InterruptedException {
+        InetSocketAddress endPoint = endPoint();
+        server.close();
+
+        NioTcpConnection connection = new NioTcpConnection();
+        CountDownLatch disconnected = new CountDownLatch(1);
+        connection.getDisconnected().addEventHandler((sender, e) -> {
+            assertFalse(e.isUserInitiated());
+            disconnected.countDown();
+        });
+
+        connection.connect(endPoint, 1000);
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void roundTripsLikePollingConnection() throws InterruptedException {
+        assertRoundTrips(new TcpConnection());
+        assertRoundTrips(new NioTcpConnection());
+    }
+
+    private void assertRoundTrips(Connection connection) throws InterruptedException {
+        BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        connection.getNetMsgReceived().addEventHandler((sender, e) -> received.add(e.getData()));
+        connection.connect(endPoint());
+
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            byte[] payload = new byte[256];
+            payload[0] = (byte) i;
+
+            connection.send(payload);
+            assertArrayEquals(payload, received.poll(5, TimeUnit.SECONDS));
+        }
+
+        connection.disconnect(true);
+    }
+
+    private InetSocketAddress endPoint() {
+        return new InetSocketAddress("127.0.0.1", server.getLocalPort());
+    }
+}
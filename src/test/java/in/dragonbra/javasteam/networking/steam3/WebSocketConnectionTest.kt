@@ -0,0 +1,105 @@
+package `in`.dragonbra.javasteam.networking.steam3
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class WebSocketConnectionTest {
+
+    @Test
+    fun writesFramesInOrderAcrossBatches() = runBlocking {
+        val connection = WebSocketConnection()
+        val queue = connection.openSendQueue()
+
+        val count = WebSocketConnection.MAX_SEND_BATCH * 3 + 5
+        repeat(count) { connection.send(byteArrayOf((it shr 8).toByte(), it.toByte())) }
+        queue.close()
+
+        Assertions.assertEquals(count, connection.sendQueueDepth)
+
+        val written = mutableListOf<ByteArray>()
+        val batches = mutableListOf<Int>()
+        var pending = 0
+
+        connection.runWriter(
+            queue = queue,
+            write = {
+                written.add(it)
+                pending++
+            },
+            flush = {
+                batches.add(pending)
+                pending = 0
+            },
+        )
+
+        Assertions.assertEquals(count, written.size)
+        written.forEachIndexed { i, data ->
+            Assertions.assertArrayEquals(byteArrayOf((i shr 8).toByte(), i.toByte()), data)
+        }
+
+        // everything was queued before the writer started, so every batch but the last one is full
+        val max = WebSocketConnection.MAX_SEND_BATCH
+        Assertions.assertEquals(listOf(max, max, max, 5), batches)
+
+        Assertions.assertEquals(0, connection.sendQueueDepth)
+        Assertions.assertEquals(count.toLong(), connection.sentFrameCount)
+        Assertions.assertTrue(connection.averageSendLatencyNanos > 0)
+    }
+
+    @Test
+    fun metricsStartEmpty() {
+        val connection = WebSocketConnection()
+
+        Assertions.assertEquals(0, connection.sendQueueDepth)
+        Assertions.assertEquals(0L, connection.sentFrameCount)
+        Assertions.assertEquals(0L, connection.averageSendLatencyNanos)
+    }
+
+    @Test
+    fun sendWithoutSessionIsNotCounted() {
+        val connection = WebSocketConnection()
+        connection.send(byteArrayOf(1))
+
+        Assertions.assertEquals(0, connection.sendQueueDepth)
+    }
+
+    @Test
+    fun disconnectDropsQueuedFramesWhileOneIsInFlight() = runBlocking {
+        val connection = WebSocketConnection()
+        val queue = connection.openSendQueue()
+
+        val disconnected = CountDownLatch(1)
+        connection.disconnected.addEventHandler { _, _ -> disconnected.countDown() }
+
+        val writing = CompletableDeferred<Unit>()
+        val blocked = CompletableDeferred<Unit>()
+
+        // the first frame never finishes writing, the rest stay queued behind it
+        val writer = launch {
+            connection.runWriter(
+                queue = queue,
+                write = {
+                    writing.complete(Unit)
+                    blocked.await()
+                },
+                flush = {},
+            )
+        }
+
+        repeat(10) { connection.send(byteArrayOf(it.toByte())) }
+        writing.await()
+
+        connection.disconnect(false)
+        Assertions.assertTrue(disconnected.await(5, TimeUnit.SECONDS))
+
+        Assertions.assertEquals(0, connection.sendQueueDepth)
+        Assertions.assertEquals(0L, connection.sentFrameCount)
+
+        writer.cancel()
+    }
+}
@@ -1,6 +1,8 @@
 package in.dragonbra.javasteam.steam;
 
+import com.google.protobuf.ByteString;
 import in.dragonbra.javasteam.TestBase;
+import in.dragonbra.javasteam.base.ClientMsgProtobuf;
 import in.dragonbra.javasteam.base.IPacketMsg;
 import in.dragonbra.javasteam.base.ISteamSerializableHeader;
 import in.dragonbra.javasteam.base.PacketClientMsgProtobuf;
@@ -8,11 +10,17 @@ import in.dragonbra.javasteam.base.PacketMsg;
 import in.dragonbra.javasteam.enums.EMsg;
 import in.dragonbra.javasteam.generated.MsgHdr;
 import in.dragonbra.javasteam.generated.MsgHdrProtoBuf;
+import in.dragonbra.javasteam.protobufs.steamclient.SteammessagesBase.CMsgMulti;
+import in.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverFriends.CMsgClientPersonaState;
+import in.dragonbra.javasteam.steam.steamclient.configuration.SteamConfiguration;
 import in.dragonbra.javasteam.util.stream.BinaryWriter;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -71,6 +79,114 @@ public class CMClientTest extends TestBase {
         assertNull(packetMsg);
     }
 
+    @Test
+    public void getPacketMsgParsesRegionInPlace() {
+        byte[] message = personaState(76561197960287930L, "first");
+
+        byte[] data = new byte[message.length + 16];
+        System.arraycopy(message, 0, data, 7, message.length);
+
+        IPacketMsg packetMsg = CMClient.getPacketMsg(data, 7, message.length);
+        assertInstanceOf(PacketClientMsgProtobuf.class, packetMsg);
+        assertEquals(EMsg.ClientPersonaState, packetMsg.getMsgType());
+        assertArrayEquals(message, packetMsg.getData());
+
+        var msg = new ClientMsgProtobuf<CMsgClientPersonaState.Builder>(CMsgClientPersonaState.class, packetMsg);
+        assertEquals("first", msg.getBody().getFriends(0).getPlayerName());
+    }
+
+    @Test
+    public void handleMultiDispatchesCompressedSubMessages() throws IOException {
+        List<IPacketMsg> received = new ArrayList<>();
+        CMClient client = recordingClient(received);
+
+        client.receiveTestPacketMsg(multi(true, personaState(1L, "first"), personaState(2L, "second")));
+
+        assertEquals(2, received.size());
+        assertEquals("first", personaName(received.get(0)));
+        assertEquals("second", personaName(received.get(1)));
+        assertArrayEquals(personaState(2L, "second"), received.get(1).getData());
+    }
+
+    @Test
+    public void handleMultiDispatchesUncompressedSubMessages() throws IOException {
+        List<IPacketMsg> received = new ArrayList<>();
+        CMClient client = recordingClient(received);
+
+        client.receiveTestPacketMsg(multi(false, personaState(1L, "first"), personaState(2L, "second")));
+
+        assertEquals(2, received.size());
+        assertEquals("first", personaName(received.get(0)));
+        assertEquals("second", personaName(received.get(1)));
+    }
+
+    @Test
+    public void handleMultiStopsAtTruncatedSubMessage() throws IOException {
+        List<IPacketMsg> received = new ArrayList<>();
+        CMClient client = recordingClient(received);
+
+        byte[] first = personaState(1L, "first");
+        byte[] second = personaState(2L, "second");
+        IPacketMsg packetMsg = multi(false, first, second);
+
+        // cut the second sub message short
+        var msgMulti = new ClientMsgProtobuf<CMsgMulti.Builder>(CMsgMulti.class, packetMsg);
+        ByteString body = msgMulti.getBody().getMessageBody();
+        msgMulti.getBody().setMessageBody(body.substring(0, body.size() - 3));
+
+        client.receiveTestPacketMsg(CMClient.getPacketMsg(msgMulti.serialize()));
+
+        assertEquals(1, received.size());
+        assertEquals("first", personaName(received.get(0)));
+    }
+
+    private static CMClient recordingClient(List<IPacketMsg> received) {
+        return new CMClient(SteamConfiguration.createDefault()) {
+            @Override
+            protected boolean onClientMsgReceived(IPacketMsg packetMsg) {
+                if (packetMsg != null && packetMsg.getMsgType() != EMsg.Multi) {
+                    received.add(packetMsg);
+                }
+                return super.onClientMsgReceived(packetMsg);
+            }
+        };
+    }
+
+    private static byte[] personaState(long steamId, String name) {
+        var msg = new ClientMsgProtobuf<CMsgClientPersonaState.Builder>(CMsgClientPersonaState.class, EMsg.ClientPersonaState);
+        msg.getBody().addFriends(CMsgClientPersonaState.Friend.newBuilder().setFriendid(steamId).setPlayerName(name));
+        return msg.serialize();
+    }
+
+    private static String personaName(IPacketMsg packetMsg) {
+        var msg = new ClientMsgProtobuf<CMsgClientPersonaState.Builder>(CMsgClientPersonaState.class, packetMsg);
+        return msg.getBody().getFriends(0).getPlayerName();
+    }
+
+    private static IPacketMsg multi(boolean compressed, byte[]... messages) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        BinaryWriter bw = new BinaryWriter(payload);
+        for (byte[] message : messages) {
+            bw.writeInt(message.length);
+            bw.write(message);
+        }
+
+        var msg = new ClientMsgProtobuf<CMsgMulti.Builder>(CMsgMulti.class, EMsg.Multi);
+
+        if (compressed) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (var gzip = new GZIPOutputStream(baos)) {
+                gzip.write(payload.toByteArray());
+            }
+            msg.getBody().setSizeUnzipped(payload.size());
+            msg.getBody().setMessageBody(ByteString.copyFrom(baos.toByteArray()));
+        } else {
+            msg.getBody().setMessageBody(ByteString.copyFrom(payload.toByteArray()));
+        }
+
+        return CMClient.getPacketMsg(msg.serialize());
+    }
+
     private static byte[] serialize(ISteamSerializableHeader hdr) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         hdr.serialize(baos);
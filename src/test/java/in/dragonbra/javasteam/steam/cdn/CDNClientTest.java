@@ -5,6 +5,8 @@ import in.dragonbra.javasteam.steam.steamclient.configuration.SteamConfiguration
 import in.dragonbra.javasteam.types.ChunkData;
 import in.dragonbra.javasteam.util.SteamKitWebRequestException;
 import okhttp3.*;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -12,6 +14,9 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import java.net.InetAddress;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -150,6 +155,81 @@ public class CDNClientTest {
         }
     }
 
+    static class BodyInterceptor implements Interceptor {
+        private final byte[] body;
+
+        BodyInterceptor(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public @NotNull Response intercept(Chain chain) {
+            return new Response.Builder()
+                    .code(200)
+                    .protocol(Protocol.HTTP_1_1)
+                    .message("OK")
+                    .request(chain.request())
+                    .body(ResponseBody.create(body, null))
+                    .build();
+        }
+    }
+
+    @Test
+    public void downloadsChunkIntoLongerDestination() throws Exception {
+        byte[] body = new byte[48];
+        new Random(7).nextBytes(body);
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(new BodyInterceptor(body))
+                .build();
+
+        var configuration = SteamConfiguration.create(x -> x.withHttpClient(httpClient));
+        var steam = new SteamClient(configuration);
+        try (var client = new Client(steam)) {
+            var server = Server.fromHostAndPort("localhost", 80);
+            var chunk = new ChunkData(new byte[]{(byte) 0xFF}, 0, 0, body.length, 64);
+
+            var destination = new byte[128];
+            int written = client.downloadDepotChunkFuture(0, chunk, server, destination).get();
+
+            Assertions.assertEquals(body.length, written);
+            Assertions.assertArrayEquals(body, Arrays.copyOf(destination, written));
+        }
+    }
+
+    @Test
+    public void downloadsAndProcessesChunkWhileStreaming() throws Exception {
+        byte[] body;
+        try (var stream = getClass().getClassLoader()
+                .getResourceAsStream("depot/depot_3441461_chunk_9e72678e305540630a665b93e1463bc3983eb55a.bin")) {
+            body = IOUtils.toByteArray(stream);
+        }
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(new BodyInterceptor(body))
+                .build();
+
+        var configuration = SteamConfiguration.create(x -> x.withHttpClient(httpClient));
+        var steam = new SteamClient(configuration);
+        try (var client = new Client(steam)) {
+            var server = Server.fromHostAndPort("localhost", 80);
+            var chunk = new ChunkData(new byte[]{(byte) 0xFF}, Integer.parseUnsignedInt("3753325726"), 0, 176, 156);
+
+            var depotKey = new byte[32];
+            for (int i = 0; i < depotKey.length; i++) {
+                depotKey[i] = (byte) (i + 1);
+            }
+
+            var destination = new byte[chunk.getUncompressedLength()];
+            int written = client.downloadDepotChunkFuture(0, chunk, server, destination, depotKey).get();
+
+            Assertions.assertEquals(chunk.getUncompressedLength(), written);
+
+            var hash = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(destination), false);
+            Assertions.assertEquals("9E72678E305540630A665B93E1463BC3983EB55A", hash);
+        }
+    }
+
     @ParameterizedTest
     @CsvSource({
             "10.0.0.1, true",      // Private IPv4 (10.0.0.0/8)
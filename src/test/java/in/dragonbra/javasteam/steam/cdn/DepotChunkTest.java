@@ -8,9 +8,12 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.apache.commons.codec.binary.Hex;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 public class DepotChunkTest extends TestBase {
 
@@ -130,4 +133,96 @@ public class DepotChunkTest extends TestBase {
 
         Assertions.assertEquals("9E72678E305540630A665B93E1463BC3983EB55A", hash);
     }
+
+    @Test
+    public void decryptsAndDecompressesDepotChunkFromRange() throws IOException, NoSuchAlgorithmException {
+        var stream = getClass().getClassLoader()
+                .getResourceAsStream("depot/depot_3441461_chunk_9e72678e305540630a665b93e1463bc3983eb55a.bin");
+
+        var ms = new MemoryStream();
+        IOUtils.copy(stream, ms.asOutputStream());
+
+        var chunkData = ms.toByteArray();
+
+        // surround the chunk with garbage to make sure only the given range is read
+        var padded = new byte[chunkData.length + 37];
+        Arrays.fill(padded, (byte) 0x5A);
+        System.arraycopy(chunkData, 0, padded, 13, chunkData.length);
+
+        var chunk = new ChunkData(
+                new byte[0], // id is not needed here
+                Integer.parseUnsignedInt("3753325726"),
+                0,
+                176,
+                156
+        );
+
+        var depotKey = new byte[]{
+                (byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x04, (byte) 0x05, (byte) 0x06, (byte) 0x07, (byte) 0x08,
+                (byte) 0x09, (byte) 0x0A, (byte) 0x0B, (byte) 0x0C, (byte) 0x0D, (byte) 0x0E, (byte) 0x0F, (byte) 0x10,
+                (byte) 0x11, (byte) 0x12, (byte) 0x13, (byte) 0x14, (byte) 0x15, (byte) 0x16, (byte) 0x17, (byte) 0x18,
+                (byte) 0x19, (byte) 0x1A, (byte) 0x1B, (byte) 0x1C, (byte) 0x1D, (byte) 0x1E, (byte) 0x1F, (byte) 0x20
+        };
+
+        // process twice so the second run goes through the reused thread local cipher and scratch buffer
+        for (int i = 0; i < 2; i++) {
+            var destination = new byte[chunk.getUncompressedLength()];
+            var writtenLength = DepotChunk.process(chunk, padded, 13, chunkData.length, destination, depotKey);
+
+            Assertions.assertEquals(chunk.getUncompressedLength(), writtenLength);
+
+            var hash = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(destination), false);
+
+            Assertions.assertEquals("9E72678E305540630A665B93E1463BC3983EB55A", hash);
+        }
+    }
+
+    @Test
+    public void decryptsAndDecompressesDepotChunkFromStream() throws IOException, NoSuchAlgorithmException {
+        var stream = getClass().getClassLoader()
+                .getResourceAsStream("depot/depot_232250_chunk_7b8567d9b3c09295cdbf4978c32b348d8e76c750.bin");
+
+        var ms = new MemoryStream();
+        IOUtils.copy(stream, ms.asOutputStream());
+
+        var chunkData = ms.toByteArray();
+
+        var chunk = new ChunkData(
+                new byte[0], // id is not needed here
+                Integer.parseUnsignedInt("2894626744"),
+                0,
+                304,
+                798
+        );
+
+        var depotKey = new byte[]{
+                (byte) 0xE5, (byte) 0xF6, (byte) 0xAE, (byte) 0xD5, (byte) 0x5E, (byte) 0x9E, (byte) 0xCE, (byte) 0x42,
+                (byte) 0x9E, (byte) 0x56, (byte) 0xB8, (byte) 0x13, (byte) 0xFB, (byte) 0xF6, (byte) 0xBF, (byte) 0xE9,
+                (byte) 0x24, (byte) 0xF3, (byte) 0xCF, (byte) 0x72, (byte) 0x97, (byte) 0x2F, (byte) 0xDB, (byte) 0xD0,
+                (byte) 0x57, (byte) 0x1F, (byte) 0xFC, (byte) 0xAD, (byte) 0x9F, (byte) 0x2F, (byte) 0x7D, (byte) 0xAA,
+        };
+
+        // hand out a few bytes per read, like a slow network stream would
+        var trickle = new FilterInputStream(new ByteArrayInputStream(chunkData)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+
+        var destination = new byte[chunk.getUncompressedLength()];
+        var writtenLength = DepotChunk.process(chunk, trickle, chunkData.length, destination, depotKey);
+
+        Assertions.assertEquals(chunk.getUncompressedLength(), writtenLength);
+        Assertions.assertEquals(-1, trickle.read());
+
+        var hash = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(destination), false);
+
+        Assertions.assertEquals("7B8567D9B3C09295CDBF4978C32B348D8E76C750", hash);
+
+        var truncated = new ByteArrayInputStream(chunkData, 0, chunkData.length - 20);
+        Assertions.assertThrows(IOException.class, () ->
+                DepotChunk.process(chunk, truncated, chunkData.length, new byte[chunk.getUncompressedLength()], depotKey)
+        );
+    }
 }
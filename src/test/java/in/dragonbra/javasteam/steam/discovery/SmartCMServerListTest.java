@@ -7,13 +7,21 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author lngtr
@@ -292,4 +300,102 @@ public class SmartCMServerListTest extends TestBase {
 
         Assertions.assertFalse(result);
     }
+
+    @Test
+    public void getNextServerCandidate_PrefersLowestLatency_WhenScoringEnabled() throws UnknownHostException {
+        serverList.getAllEndPoints();
+        serverList.setProbeInterval(ChronoUnit.FOREVER.getDuration());
+
+        var farRecord = ServerRecord.createSocketServer(new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 27017));
+        var unmeasuredRecord = ServerRecord.createSocketServer(new InetSocketAddress(InetAddress.getByName("10.0.0.2"), 27017));
+        var nearRecord = ServerRecord.createSocketServer(new InetSocketAddress(InetAddress.getByName("10.0.0.3"), 27017));
+
+        serverList.replaceList(List.of(farRecord, unmeasuredRecord, nearRecord));
+
+        serverList.recordConnectTime(farRecord.getEndpoint(), ProtocolTypes.TCP, Duration.ofMillis(300));
+        serverList.recordConnectTime(nearRecord.getEndpoint(), ProtocolTypes.TCP, Duration.ofMillis(40));
+
+        // Scoring is opt-in, list order wins by default
+        Assertions.assertEquals(farRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.TCP).getEndpoint());
+
+        serverList.setLatencyScoringEnabled(true);
+        Assertions.assertEquals(nearRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.TCP).getEndpoint());
+
+        // Heartbeat round trips take precedence over the connect time
+        serverList.recordHeartbeatRtt(nearRecord.getEndpoint(), ProtocolTypes.TCP, Duration.ofMillis(500));
+        Assertions.assertEquals(farRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.TCP).getEndpoint());
+
+        // Health still comes before latency
+        serverList.tryMark(farRecord.getEndpoint(), ProtocolTypes.TCP, ServerQuality.BAD);
+        Assertions.assertEquals(nearRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.TCP).getEndpoint());
+
+        // Measurements survive a list refresh
+        serverList.replaceList(List.of(unmeasuredRecord, nearRecord));
+        Assertions.assertEquals(nearRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.TCP).getEndpoint());
+    }
+
+    @Test
+    public void probeServers_RanksFakeEndpointsByInjectedDelay() throws UnknownHostException {
+        serverList.getAllEndPoints();
+        serverList.setLatencyScoringEnabled(true);
+
+        var slowRecord = ServerRecord.createWebSocketServer("10.0.0.1:443");
+        var fastRecord = ServerRecord.createWebSocketServer("10.0.0.2:443");
+        var deadRecord = ServerRecord.createWebSocketServer("10.0.0.3:443");
+
+        serverList.replaceList(List.of(deadRecord, slowRecord, fastRecord));
+
+        var delays = Map.of(slowRecord.getEndpoint(), 200L, fastRecord.getEndpoint(), 20L);
+        var running = new AtomicInteger();
+        var peak = new AtomicInteger();
+
+        serverList.setProber((server, timeout) -> {
+            var delay = delays.get(server.getEndpoint());
+            if (delay == null) {
+                throw new ConnectException("Connection refused");
+            }
+
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } finally {
+                running.decrementAndGet();
+            }
+
+            return Duration.ofMillis(delay);
+        });
+
+        Assertions.assertEquals(2, serverList.probeServers(EnumSet.of(ProtocolTypes.WEB_SOCKET)));
+        Assertions.assertTrue(peak.get() > 1, "Probes should run in parallel");
+
+        Assertions.assertEquals(fastRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.WEB_SOCKET).getEndpoint());
+
+        // The unreachable server was marked bad and sorts last
+        serverList.tryMark(fastRecord.getEndpoint(), ProtocolTypes.WEB_SOCKET, ServerQuality.BAD);
+        Assertions.assertEquals(slowRecord.getEndpoint(), serverList.getNextServerCandidate(ProtocolTypes.WEB_SOCKET).getEndpoint());
+    }
+
+    @Test
+    public void probeServers_MeasuresLocalTcpHandshake() throws IOException {
+        serverList.getAllEndPoints();
+
+        var loopback = InetAddress.getLoopbackAddress();
+
+        int closedPort;
+        try (var closed = new ServerSocket(0, 50, loopback)) {
+            closedPort = closed.getLocalPort();
+        }
+
+        try (var listening = new ServerSocket(0, 50, loopback)) {
+            var openRecord = ServerRecord.createSocketServer(new InetSocketAddress(loopback, listening.getLocalPort()));
+            var closedRecord = ServerRecord.createSocketServer(new InetSocketAddress(loopback, closedPort));
+
+            serverList.replaceList(List.of(openRecord, closedRecord));
+            serverList.setProbeTimeout(Duration.ofSeconds(1));
+
+            Assertions.assertEquals(1, serverList.probeServers(EnumSet.of(ProtocolTypes.TCP)));
+        }
+    }
 }
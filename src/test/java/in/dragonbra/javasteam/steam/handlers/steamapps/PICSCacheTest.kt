@@ -0,0 +1,284 @@
+package `in`.dragonbra.javasteam.steam.handlers.steamapps
+
+import com.google.protobuf.ByteString
+import `in`.dragonbra.javasteam.base.ClientMsgProtobuf
+import `in`.dragonbra.javasteam.base.IClientMsg
+import `in`.dragonbra.javasteam.enums.EMsg
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSChangesSinceResponse
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoRequest
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoResponse
+import `in`.dragonbra.javasteam.steam.CMClient
+import `in`.dragonbra.javasteam.steam.handlers.steamapps.callback.PICSChangesCallback
+import `in`.dragonbra.javasteam.steam.handlers.steamapps.callback.PICSProductInfoCallback
+import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
+import `in`.dragonbra.javasteam.types.AsyncJob
+import `in`.dragonbra.javasteam.types.JobID
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.mock
+import java.nio.file.Path
+import org.mockito.Mockito.`when` as whenever
+
+class PICSCacheTest {
+
+    @TempDir
+    lateinit var directory: Path
+
+    private val client: SteamClient = mock(SteamClient::class.java)
+
+    private val steamApps = SteamApps()
+
+    // What the mocked client answers to PICS requests.
+    private var changes = CMsgClientPICSChangesSinceResponse.newBuilder()
+
+    private var appChangeNumber = 0
+
+    // Apps answered without a buffer, like ones whose access token is no longer valid.
+    private val appsWithoutBuffer = mutableSetOf<Int>()
+
+    // Apps whose product info request fails after the rest of its batch was answered.
+    private val failingApps = mutableSetOf<Int>()
+
+    // The app ids of every product info request, in the order they were sent.
+    private val productInfoBatches = mutableListOf<List<Int>>()
+
+    @BeforeEach
+    fun setUp() {
+        steamApps.setup(client)
+        whenever(client.getNextJobID()).thenReturn(JobID(916351965))
+
+        // requests are sent right before their job is started, so the job can be answered right away
+        val sent = mutableListOf<IClientMsg>()
+        doAnswer { sent.add(it.getArgument(0)) }.`when`(client).send(any())
+        doAnswer { answer(sent.removeAt(sent.lastIndex), it.getArgument(0)) }.`when`(client).startJob(any())
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun answer(request: IClientMsg, job: AsyncJob) {
+        when (request.msgType) {
+            EMsg.ClientPICSChangesSinceRequest -> {
+                val msg = ClientMsgProtobuf<CMsgClientPICSChangesSinceResponse.Builder>(
+                    CMsgClientPICSChangesSinceResponse::class.java,
+                    EMsg.ClientPICSChangesSinceResponse
+                )
+                msg.body.mergeFrom(changes.build())
+                job.addResult(PICSChangesCallback(CMClient.getPacketMsg(msg.serialize())))
+            }
+
+            EMsg.ClientPICSProductInfoRequest -> {
+                val body = (request as ClientMsgProtobuf<CMsgClientPICSProductInfoRequest.Builder>).body
+                val ids = body.appsList.map { it.appid }
+                productInfoBatches.add(ids)
+
+                val failed = ids.any { it in failingApps }
+
+                val msg = ClientMsgProtobuf<CMsgClientPICSProductInfoResponse.Builder>(
+                    CMsgClientPICSProductInfoResponse::class.java,
+                    EMsg.ClientPICSProductInfoResponse
+                )
+                ids.filter { it !in failingApps }.forEach { id ->
+                    val app = CMsgClientPICSProductInfoResponse.AppInfo.newBuilder()
+                        .setAppid(id)
+                        .setChangeNumber(appChangeNumber)
+                    if (id !in appsWithoutBuffer) {
+                        app.buffer = ByteString.copyFromUtf8("\"appinfo\"\n{\n\t\"appid\"\t\t\"$id\"\n}\n\u0000")
+                    }
+                    msg.body.addApps(app)
+                }
+                msg.body.responsePending = failed
+
+                job.addResult(PICSProductInfoCallback(CMClient.getPacketMsg(msg.serialize())))
+                if (failed) {
+                    job.setFailed(true)
+                }
+            }
+
+            else -> Assertions.fail<Unit>("Unexpected request ${request.msgType}")
+        }
+    }
+
+    private fun appInfo(id: Int, changeNumber: Int, name: String): PICSProductInfo {
+        val text = "\"appinfo\"\n{\n\t\"appid\"\t\t\"$id\"\n\t\"common\"\n\t{\n\t\t\"name\"\t\t\"$name\"\n\t}\n}\n\u0000"
+        val response = CMsgClientPICSProductInfoResponse.newBuilder()
+        val app = CMsgClientPICSProductInfoResponse.AppInfo.newBuilder()
+            .setAppid(id)
+            .setChangeNumber(changeNumber)
+            .setSha(ByteString.copyFrom(ByteArray(20) { it.toByte() }))
+            .setBuffer(ByteString.copyFromUtf8(text))
+            .build()
+        return PICSProductInfo(response, app)
+    }
+
+    @Test
+    fun storedEntriesSurviveReopen() {
+        PICSCache(directory, steamApps).use { cache ->
+            Assertions.assertTrue(cache.store(PICSCache.Kind.APP, appInfo(440, 100, "Team Fortress 2"), 1234L))
+            Assertions.assertTrue(cache.store(PICSCache.Kind.APP, appInfo(730, 101, "Counter-Strike 2"), 0L))
+            cache.writeIndex()
+        }
+
+        PICSCache(directory, steamApps).use { cache ->
+            Assertions.assertEquals(setOf(440, 730), cache.appIds)
+            Assertions.assertTrue(cache.packageIds.isEmpty())
+            Assertions.assertNull(cache.getCachedApp(570))
+
+            val app = cache.getCachedApp(440)!!
+            Assertions.assertEquals(440, app.id)
+            Assertions.assertEquals(100, app.changeNumber)
+            Assertions.assertArrayEquals(ByteArray(20) { it.toByte() }, app.shaHash)
+            Assertions.assertEquals("Team Fortress 2", app.findValue("common/name"))
+            Assertions.assertEquals("Team Fortress 2", app.keyValues["common"]["name"].value)
+        }
+    }
+
+    @Test
+    fun storeReplacesOlderChangeNumber() {
+        PICSCache(directory, steamApps).use { cache ->
+            cache.store(PICSCache.Kind.APP, appInfo(440, 100, "Team Fortress 2"), 0L)
+            cache.store(PICSCache.Kind.APP, appInfo(440, 200, "Team Fortress 3"), 0L)
+
+            val app = cache.getCachedApp(440)!!
+            Assertions.assertEquals(200, app.changeNumber)
+            Assertions.assertEquals("Team Fortress 3", app.findValue("common/name"))
+        }
+    }
+
+    @Test
+    fun unreadableIndexStartsEmpty() {
+        directory.resolve("index.bin").toFile().writeText("not an index")
+
+        PICSCache(directory, steamApps).use { cache ->
+            Assertions.assertEquals(0, cache.lastChangeNumber)
+            Assertions.assertTrue(cache.appIds.isEmpty())
+        }
+    }
+
+    @Test
+    fun closeLeavesCallerScopeActive() {
+        val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+
+        PICSCache(directory, steamApps, scope).use { cache ->
+            cache.startRefreshing()
+        }
+
+        Assertions.assertTrue(scope.isActive)
+        scope.cancel()
+    }
+
+    private fun appChange(id: Int, changeNumber: Int) =
+        CMsgClientPICSChangesSinceResponse.AppChange.newBuilder().setAppid(id).setChangeNumber(changeNumber)
+
+    private fun cacheApps(cache: PICSCache, ids: IntRange) {
+        ids.forEach { cache.store(PICSCache.Kind.APP, appInfo(it, 10, "App $it"), 0L) }
+    }
+
+    @Test
+    fun firstRefreshRefetchesEverythingInBatches() {
+        PICSCache(directory, steamApps).use { cache ->
+            cacheApps(cache, 1..5)
+            cache.batchSize = 2
+
+            changes.currentChangeNumber = 100
+            appChangeNumber = 20
+
+            Assertions.assertEquals(5, runBlocking { cache.refresh() })
+
+            Assertions.assertEquals(listOf(2, 2, 1), productInfoBatches.map { it.size })
+            Assertions.assertEquals((1..5).toList(), productInfoBatches.flatten().sorted())
+            Assertions.assertEquals(100, cache.lastChangeNumber)
+            Assertions.assertEquals(20, cache.getCachedApp(3)!!.changeNumber)
+        }
+    }
+
+    @Test
+    fun refreshRefetchesOnlyChangedIds() {
+        PICSCache(directory, steamApps).use { cache ->
+            cacheApps(cache, 1..5)
+            changes.currentChangeNumber = 100
+            appChangeNumber = 20
+            runBlocking { cache.refresh() }
+            productInfoBatches.clear()
+
+            // app 2 changed, app 4 is at the cached change number and app 9 is not cached
+            changes = CMsgClientPICSChangesSinceResponse.newBuilder()
+                .setCurrentChangeNumber(110)
+                .addAppChanges(appChange(2, 30))
+                .addAppChanges(appChange(4, 20))
+                .addAppChanges(appChange(9, 30))
+            appChangeNumber = 30
+
+            Assertions.assertEquals(1, runBlocking { cache.refresh() })
+
+            Assertions.assertEquals(listOf(listOf(2)), productInfoBatches)
+            Assertions.assertEquals(110, cache.lastChangeNumber)
+            Assertions.assertEquals(30, cache.getCachedApp(2)!!.changeNumber)
+            Assertions.assertEquals(20, cache.getCachedApp(4)!!.changeNumber)
+            Assertions.assertFalse(9 in cache.appIds)
+        }
+    }
+
+    @Test
+    fun fullAppUpdateRefetchesEveryApp() {
+        PICSCache(directory, steamApps).use { cache ->
+            cacheApps(cache, 1..5)
+            changes.currentChangeNumber = 100
+            runBlocking { cache.refresh() }
+            productInfoBatches.clear()
+
+            changes = CMsgClientPICSChangesSinceResponse.newBuilder()
+                .setCurrentChangeNumber(110)
+                .setForceFullAppUpdate(true)
+
+            Assertions.assertEquals(5, runBlocking { cache.refresh() })
+            Assertions.assertEquals((1..5).toList(), productInfoBatches.flatten().sorted())
+            Assertions.assertEquals(110, cache.lastChangeNumber)
+        }
+    }
+
+    @Test
+    fun failedBatchKeepsChangeNumber() {
+        PICSCache(directory, steamApps).use { cache ->
+            cacheApps(cache, 1..4)
+            cache.batchSize = 2
+
+            changes.currentChangeNumber = 100
+            appChangeNumber = 20
+            failingApps.add(3)
+
+            // the answered apps are stored, but the change number stays so app 3 is retried
+            Assertions.assertEquals(3, runBlocking { cache.refresh() })
+            Assertions.assertEquals(0, cache.lastChangeNumber)
+            Assertions.assertEquals(10, cache.getCachedApp(3)!!.changeNumber)
+
+            failingApps.clear()
+
+            Assertions.assertEquals(4, runBlocking { cache.refresh() })
+            Assertions.assertEquals(100, cache.lastChangeNumber)
+            Assertions.assertEquals(20, cache.getCachedApp(3)!!.changeNumber)
+        }
+    }
+
+    @Test
+    fun refreshDropsIdsThatCannotBeCached() {
+        PICSCache(directory, steamApps).use { cache ->
+            cacheApps(cache, 1..3)
+
+            changes.currentChangeNumber = 100
+            appsWithoutBuffer.add(2)
+
+            Assertions.assertEquals(2, runBlocking { cache.refresh() })
+            Assertions.assertEquals(100, cache.lastChangeNumber)
+            Assertions.assertEquals(setOf(1, 3), cache.appIds)
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package in.dragonbra.javasteam.steam.handlers.steamapps;
+
+import in.dragonbra.javasteam.base.ClientMsgProtobuf;
+import in.dragonbra.javasteam.base.IClientMsg;
+import in.dragonbra.javasteam.enums.EMsg;
+import in.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoRequest;
+import in.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverAppinfo.CMsgClientPICSProductInfoResponse;
+import in.dragonbra.javasteam.steam.CMClient;
+import in.dragonbra.javasteam.steam.handlers.HandlerTestBase;
+import in.dragonbra.javasteam.steam.handlers.steamapps.callback.PICSProductInfoCallback;
+import in.dragonbra.javasteam.steam.steamclient.AsyncJobFailedException;
+import in.dragonbra.javasteam.types.AsyncJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PICSRequestCoalescerTest extends HandlerTestBase<SteamApps> {
+
+    private PICSRequestCoalescer coalescer;
+
+    @Override
+    protected SteamApps createHandler() {
+        return new SteamApps();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareOneJob() throws Exception {
+        coalescer = new PICSRequestCoalescer(handler);
+        coalescer.setWindow(Duration.ofMillis(100));
+
+        CompletableFuture<PICSRequestCoalescer.Result> first = coalescer.getProductInfoFuture(
+                List.of(new PICSRequest(440), new PICSRequest(730)), List.of()
+        );
+        CompletableFuture<PICSRequestCoalescer.Result> second = coalescer.getProductInfoFuture(
+                List.of(new PICSRequest(730), new PICSRequest(570)), List.of(new PICSRequest(0))
+        );
+
+        ArgumentCaptor<IClientMsg> sent = ArgumentCaptor.forClass(IClientMsg.class);
+        verify(steamClient, timeout(2000)).send(sent.capture());
+
+        @SuppressWarnings("unchecked")
+        CMsgClientPICSProductInfoRequest.Builder request =
+                ((ClientMsgProtobuf<CMsgClientPICSProductInfoRequest.Builder>) sent.getValue()).getBody();
+        assertEquals(3, request.getAppsCount());
+        assertEquals(1, request.getPackagesCount());
+
+        ArgumentCaptor<AsyncJob> job = ArgumentCaptor.forClass(AsyncJob.class);
+        verify(steamClient, timeout(2000)).startJob(job.capture());
+        job.getValue().addResult(response(List.of(440, 730), List.of(570)));
+
+        PICSRequestCoalescer.Result firstResult = first.get(2, TimeUnit.SECONDS);
+        assertEquals(2, firstResult.getApps().size());
+        assertEquals(730, firstResult.getApps().get(730).getId());
+        assertTrue(firstResult.getUnknownApps().isEmpty());
+
+        PICSRequestCoalescer.Result secondResult = second.get(2, TimeUnit.SECONDS);
+        assertSame(firstResult.getApps().get(730), secondResult.getApps().get(730));
+        assertEquals(List.of(570), secondResult.getUnknownApps());
+        assertEquals(0, secondResult.getPackages().get(0).getId());
+
+        verify(steamClient, times(1)).send(any());
+    }
+
+    @Test
+    public void fullBatchIsSentImmediately() {
+        coalescer = new PICSRequestCoalescer(handler);
+        coalescer.setWindow(Duration.ofMinutes(1));
+        coalescer.setMaxBatchSize(2);
+
+        coalescer.getProductInfoFuture(List.of(new PICSRequest(440)), List.of());
+        coalescer.getProductInfoFuture(List.of(new PICSRequest(730), new PICSRequest(570)), List.of());
+
+        ArgumentCaptor<IClientMsg> sent = ArgumentCaptor.forClass(IClientMsg.class);
+        verify(steamClient, timeout(2000)).send(sent.capture());
+
+        @SuppressWarnings("unchecked")
+        CMsgClientPICSProductInfoRequest.Builder request =
+                ((ClientMsgProtobuf<CMsgClientPICSProductInfoRequest.Builder>) sent.getValue()).getBody();
+        assertEquals(2, request.getAppsCount());
+        verify(steamClient, times(1)).send(any());
+    }
+
+    @Test
+    public void closeFailsQueuedRequests() {
+        coalescer = new PICSRequestCoalescer(handler);
+        coalescer.setWindow(Duration.ofMinutes(1));
+
+        CompletableFuture<PICSRequestCoalescer.Result> future =
+                coalescer.getProductInfoFuture(List.of(new PICSRequest(440)), List.of());
+
+        coalescer.close();
+
+        assertThrows(Exception.class, () -> future.get(2, TimeUnit.SECONDS));
+        verify(steamClient, never()).send(any());
+    }
+
+    @Test
+    public void failedJobFailsIdsWithoutResponse() throws Exception {
+        coalescer = new PICSRequestCoalescer(handler);
+        coalescer.setWindow(Duration.ofMillis(100));
+
+        CompletableFuture<PICSRequestCoalescer.Result> answered =
+                coalescer.getProductInfoFuture(List.of(new PICSRequest(440)), List.of());
+        CompletableFuture<PICSRequestCoalescer.Result> unanswered =
+                coalescer.getProductInfoFuture(List.of(new PICSRequest(730)), List.of());
+
+        ArgumentCaptor<AsyncJob> job = ArgumentCaptor.forClass(AsyncJob.class);
+        verify(steamClient, timeout(2000)).startJob(job.capture());
+
+        job.getValue().addResult(response(List.of(440), List.of(), true));
+        job.getValue().setFailed(true);
+
+        assertEquals(440, answered.get(2, TimeUnit.SECONDS).getApps().get(440).getId());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> unanswered.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(AsyncJobFailedException.class, e.getCause());
+    }
+
+    private static PICSProductInfoCallback response(List<Integer> apps, List<Integer> unknownApps) {
+        return response(apps, unknownApps, false);
+    }
+
+    private static PICSProductInfoCallback response(
+            List<Integer> apps,
+            List<Integer> unknownApps,
+            boolean responsePending
+    ) {
+        ClientMsgProtobuf<CMsgClientPICSProductInfoResponse.Builder> msg = new ClientMsgProtobuf<>(
+                CMsgClientPICSProductInfoResponse.class, EMsg.ClientPICSProductInfoResponse
+        );
+
+        for (int app : apps) {
+            msg.getBody().addApps(CMsgClientPICSProductInfoResponse.AppInfo.newBuilder().setAppid(app));
+        }
+        msg.getBody().addPackages(CMsgClientPICSProductInfoResponse.PackageInfo.newBuilder().setPackageid(0));
+        msg.getBody().addAllUnknownAppids(unknownApps);
+        msg.getBody().setResponsePending(responsePending);
+
+        return new PICSProductInfoCallback(CMClient.getPacketMsg(msg.serialize()));
+    }
+}
@@ -258,6 +258,31 @@ public class SteamAppsTest extends HandlerTestBase<SteamApps> {
         assertNotNull(callback.getPackages().get(0).getKeyValues());
     }
 
+    @Test
+    public void handlePICSProductInfoResponseFindsValues() {
+        IPacketMsg msg = getPacket(EMsg.ClientPICSProductInfoResponse, true);
+
+        handler.handleMsg(msg);
+
+        PICSProductInfoCallback callback = verifyCallback();
+
+        PICSProductInfo app = callback.getApps().get(440);
+        assertEquals("Team Fortress 2", app.findValue("common/name"));
+        assertEquals("440", app.findValue("APPID"));
+        assertNull(app.findValue("common/languages"));
+        assertNull(app.findValue("common/name/nested"));
+        assertNull(app.findValue("missing/name"));
+
+        // the same results once the tree has been built
+        assertEquals(app.getKeyValues().get("common").get("name").getValue(), app.findValue("common/name"));
+        assertEquals("1", app.findValue("common/languages/english"));
+
+        PICSProductInfo pkg = callback.getPackages().get(0);
+        String packageID = pkg.findValue("packageid");
+        assertNotNull(packageID);
+        assertEquals(pkg.getKeyValues().get("packageid").getValue(), packageID);
+    }
+
     @Test
     public void handleGuestPassList() {
         IPacketMsg msg = getPacket(EMsg.ClientUpdateGuestPassesList, true);
@@ -0,0 +1,163 @@
+package `in`.dragonbra.javasteam.steam.steamclient
+
+import `in`.dragonbra.javasteam.TestPackets
+import `in`.dragonbra.javasteam.base.ClientMsgProtobuf
+import `in`.dragonbra.javasteam.base.IPacketMsg
+import `in`.dragonbra.javasteam.enums.EMsg
+import `in`.dragonbra.javasteam.enums.EUniverse
+import `in`.dragonbra.javasteam.protobufs.steamclient.SteammessagesClientserverLogin.CMsgClientHeartBeat
+import `in`.dragonbra.javasteam.steam.CMClient
+import `in`.dragonbra.javasteam.steam.handlers.ClientMsgHandler
+import `in`.dragonbra.javasteam.steam.handlers.steamapps.SteamApps
+import `in`.dragonbra.javasteam.steam.handlers.steamauthticket.SteamAuthTicket
+import `in`.dragonbra.javasteam.steam.handlers.steamclientcommunication.SteamClientCommunication
+import `in`.dragonbra.javasteam.steam.handlers.steamcloud.SteamCloud
+import `in`.dragonbra.javasteam.steam.handlers.steamcontent.SteamContent
+import `in`.dragonbra.javasteam.steam.handlers.steamfriends.SteamFriends
+import `in`.dragonbra.javasteam.steam.handlers.steamgamecoordinator.SteamGameCoordinator
+import `in`.dragonbra.javasteam.steam.handlers.steamgameserver.SteamGameServer
+import `in`.dragonbra.javasteam.steam.handlers.steammasterserver.SteamMasterServer
+import `in`.dragonbra.javasteam.steam.handlers.steammatchmaking.SteamMatchmaking
+import `in`.dragonbra.javasteam.steam.handlers.steamnetworking.SteamNetworking
+import `in`.dragonbra.javasteam.steam.handlers.steamnotifications.SteamNotifications
+import `in`.dragonbra.javasteam.steam.handlers.steamscreenshots.SteamScreenshots
+import `in`.dragonbra.javasteam.steam.handlers.steamunifiedmessages.SteamUnifiedMessages
+import `in`.dragonbra.javasteam.steam.handlers.steamuser.SteamUser
+import `in`.dragonbra.javasteam.steam.handlers.steamuserstats.SteamUserStats
+import `in`.dragonbra.javasteam.steam.handlers.steamworkshop.SteamWorkshop
+import `in`.dragonbra.javasteam.steam.steamclient.configuration.SteamConfiguration
+import `in`.dragonbra.javasteam.types.JobID
+import `in`.dragonbra.javasteam.types.SteamID
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
+import java.net.InetAddress
+import org.mockito.Mockito.`when` as whenever
+
+class HandlerRoutingTest {
+
+    private class RecordingHandler(override val handledMessages: Set<EMsg>?) : ClientMsgHandler() {
+        val received = mutableListOf<EMsg>()
+
+        override fun handleMsg(packetMsg: IPacketMsg) {
+            received.add(packetMsg.msgType)
+        }
+    }
+
+    private fun allHandlers(): List<ClientMsgHandler> = listOf(
+        SteamFriends(),
+        SteamUser(),
+        SteamApps(),
+        SteamGameCoordinator(),
+        SteamGameServer(),
+        SteamUserStats(),
+        SteamMasterServer(),
+        SteamCloud(),
+        SteamWorkshop(),
+        SteamUnifiedMessages(),
+        SteamScreenshots(),
+        SteamMatchmaking(),
+        SteamNetworking(),
+        SteamContent(),
+        SteamAuthTicket(),
+        SteamNotifications(),
+        SteamClientCommunication(),
+    )
+
+    private fun mockClient(): SteamClient =
+        mock(SteamClient::class.java).also {
+            whenever(it.steamID).thenReturn(SteamID(123L))
+            whenever(it.configuration).thenReturn(SteamConfiguration.createDefault())
+            whenever(it.isConnected).thenReturn(true)
+            whenever(it.getNextJobID()).thenReturn(JobID(916351965))
+            whenever(it.universe).thenReturn(EUniverse.Public)
+            whenever(it.localIP).thenReturn(InetAddress.getLoopbackAddress())
+        }
+
+    private fun emptyPacket(msgType: EMsg): IPacketMsg =
+        CMClient.getPacketMsg(ClientMsgProtobuf<CMsgClientHeartBeat.Builder>(CMsgClientHeartBeat::class.java, msgType).serialize())
+
+    @Test
+    fun handlersIgnoreUndeclaredMessages() {
+        // filtered by the parsed type below, since some EMsg names share a value
+        val packets = EMsg.entries.filter { it != EMsg.Invalid }.map { emptyPacket(it) }
+
+        allHandlers().forEach { handler ->
+            val declared = handler.handledMessages ?: return@forEach
+            val client = mockClient()
+            handler.setup(client)
+
+            packets.forEach { packet ->
+                if (packet.msgType !in declared) {
+                    handler.handleMsg(packet)
+                }
+            }
+
+            verify(client, never()).postCallback(any())
+            verify(client, never()).send(any())
+        }
+    }
+
+    @Test
+    fun routesToDeclaredAndCatchAllHandlers() {
+        val client = SteamClient()
+        allHandlers().forEach { client.removeHandler(it) }
+
+        val catchAll = RecordingHandler(null)
+        val persona = RecordingHandler(setOf(EMsg.ClientPersonaState))
+        val none = RecordingHandler(emptySet())
+
+        client.addHandler(persona)
+        client.addHandler(catchAll)
+        client.addHandler(none)
+
+        Assertions.assertTrue(client.dispatchToHandlers(emptyPacket(EMsg.ClientPersonaState)))
+        Assertions.assertTrue(client.dispatchToHandlers(emptyPacket(EMsg.ClientFriendsList)))
+
+        Assertions.assertEquals(listOf(EMsg.ClientPersonaState), persona.received)
+        Assertions.assertEquals(listOf(EMsg.ClientPersonaState, EMsg.ClientFriendsList), catchAll.received)
+        Assertions.assertTrue(none.received.isEmpty())
+
+        client.removeHandler(persona)
+        client.dispatchToHandlers(emptyPacket(EMsg.ClientPersonaState))
+
+        Assertions.assertEquals(1, persona.received.size)
+        Assertions.assertEquals(3, catchAll.received.size)
+    }
+
+    @Test
+    fun dispatchesRecordedTraffic() {
+        val consumed = listOf(
+            EMsg.ClientPersonaState,
+            EMsg.ClientFriendsList,
+            EMsg.ClientClanState,
+            EMsg.ClientLicenseList,
+            EMsg.ClientPICSChangesSinceResponse,
+            EMsg.ClientUpdateGuestPassesList,
+            EMsg.ClientVACBanStatus,
+            EMsg.ClientWalletInfoUpdate,
+            EMsg.ClientGetUserStatsResponse,
+        ).map { CMClient.getPacketMsg(TestPackets.getPacket(it, true)) }
+
+        // traffic no handler consumes
+        val ignored = listOf(
+            EMsg.ClientHeartBeat,
+            EMsg.ClientServersAvailable,
+            EMsg.ClientFriendsGroupsList,
+            EMsg.ClientIsLimitedAccount,
+        ).map { emptyPacket(it) }
+
+        val client = SteamClient()
+        val mocked = mockClient()
+        allHandlers().forEach { handler ->
+            client.removeHandler(handler)
+            client.addHandler(handler)
+            handler.setup(mocked)
+        }
+
+        (ignored + consumed).forEach { Assertions.assertTrue(client.dispatchToHandlers(it)) }
+    }
+}
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -417,6 +418,55 @@ public class CallbackManagerTest extends TestBase {
         }
     }
 
+    @Test
+    public void jobFilteredSubscribersRunInRegistrationOrder() throws IOException {
+        var jobID = new JobID(123456);
+        var callback = new CallbackForTest();
+        callback.setJobID(jobID);
+
+        var order = new StringBuilder();
+
+        try (
+                var s1 = mgr.subscribe(CallbackForTest.class, cb -> order.append('a'));
+                var s2 = mgr.subscribe(CallbackForTest.class, jobID, cb -> order.append('b'));
+                var s3 = mgr.subscribe(CallbackForTest.class, new JobID(123), cb -> order.append('x'));
+                var s4 = mgr.subscribe(CallbackMsg.class, cb -> order.append('c'))
+        ) {
+            postAndRunCallback(callback);
+        }
+
+        Assertions.assertEquals("abc", order.toString());
+    }
+
+    @Test
+    public void dispatchWithThousandSubscribers() throws IOException {
+        int subscriberCount = 1000;
+        int rounds = 100;
+
+        var numCallbacksRun = new AtomicInteger(0);
+        var subscriptions = new ArrayList<Closeable>();
+
+        // One catch-all subscriber and one subscriber per job, as with many outstanding requests.
+        subscriptions.add(mgr.subscribe(CallbackForTest.class, cb -> numCallbacksRun.incrementAndGet()));
+        for (int i = 1; i < subscriberCount; i++) {
+            subscriptions.add(mgr.subscribe(CallbackForTest.class, new JobID(i), cb -> numCallbacksRun.incrementAndGet()));
+        }
+
+        var callback = new CallbackForTest();
+        callback.setJobID(new JobID(subscriberCount / 2));
+
+        for (int i = 0; i < rounds; i++) {
+            postAndRunCallback(callback);
+        }
+
+        for (var subscription : subscriptions) {
+            subscription.close();
+        }
+
+        // only the catch-all subscriber and the one for the callback's job run
+        Assertions.assertEquals(rounds * 2, numCallbacksRun.get());
+    }
+
     private void postAndRunCallback(CallbackMsg callback) {
         client.postCallback(callback);
         mgr.runCallbacks();
@@ -2,6 +2,7 @@ package `in`.dragonbra.javasteam.types
 
 import `in`.dragonbra.javasteam.ConnectedSteamClient
 import `in`.dragonbra.javasteam.steam.steamclient.AsyncJobFailedException
+import `in`.dragonbra.javasteam.steam.steamclient.JobTimeoutWheel
 import `in`.dragonbra.javasteam.steam.steamclient.SteamClient
 import `in`.dragonbra.javasteam.steam.steamclient.callbackmgr.CallbackMsg
 import kotlinx.coroutines.CancellationException
@@ -35,14 +36,16 @@ class AsyncJobTest {
         val asyncJob = AsyncJobSingle<Callback>(client, JobID(123))
 
         Assertions.assertTrue(
-            client.jobManager.asyncJobs.containsKey(asyncJob.jobID),
+            client.jobManager.asyncJobs.containsKey(asyncJob.jobID.value),
             "Async job dictionary should contain the jobid key"
         )
 
         Assertions.assertTrue(
-            client.jobManager.asyncJobs.containsKey(JobID(123)),
+            client.jobManager.asyncJobs.containsKey(JobID(123).value),
             "Async job dictionary should contain jobid key as a value type"
         )
+
+        Assertions.assertTrue(client.jobManager.jobs.contains(asyncJob), "Tracked jobs should contain the async job")
     }
 
     @Test
@@ -70,15 +73,35 @@ class AsyncJobTest {
         client.postCallback(callback)
 
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(asyncJob.jobID),
+            client.jobManager.asyncJobs.containsKey(asyncJob.jobID.value),
             "Async job dictionary should no longer contain jobid key after callback is posted"
         )
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(JobID(123)),
+            client.jobManager.asyncJobs.containsKey(JobID(123).value),
             "Async job dictionary should no longer contain jobid key (as value type) after callback is posted"
         )
     }
 
+    @Test
+    fun asyncJobLeavesTimeoutWheelOnCompletion() {
+        val client = ConnectedSteamClient.get().apply {
+            jobManager.setTimeoutsEnabled(true)
+        }
+
+        val asyncJob = AsyncJobSingle<Callback>(client, JobID(123))
+        val node = asyncJob.timeoutNode
+
+        Assertions.assertNotNull(node, "Async job should be scheduled when timeouts are enabled")
+
+        val callback = Callback()
+        callback.jobID = JobID(123)
+        client.postCallback(callback)
+
+        Assertions.assertNull(node!!.job, "Timeout wheel should no longer reference the job after callback is posted")
+        Assertions.assertNull(asyncJob.timeoutNode, "Async job should no longer be scheduled after callback is posted")
+        Assertions.assertEquals(JobTimeoutWheel.UNSCHEDULED, asyncJob.timeoutTick)
+    }
+
     @Test
     fun asyncJobClearsOnTimeout() {
         val client = ConnectedSteamClient.get().apply {
@@ -91,11 +114,11 @@ class AsyncJobTest {
         Thread.sleep(5000)
 
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(asyncJob.jobID),
+            client.jobManager.asyncJobs.containsKey(asyncJob.jobID.value),
             "Async job dictionary should no longer contain jobid key after timeout"
         )
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(JobID(123)),
+            client.jobManager.asyncJobs.containsKey(JobID(123).value),
             "Async job dictionary should no longer contain jobid key (as value type) after timeout"
         )
     }
@@ -270,11 +293,11 @@ class AsyncJobTest {
         )
 
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(asyncJob.jobID),
+            client.jobManager.asyncJobs.containsKey(asyncJob.jobID.value),
             "Async job dictionary should not contain jobid key for AsyncJobMultiple on completion"
         )
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(JobID(123)),
+            client.jobManager.asyncJobs.containsKey(JobID(123).value),
             "Async job dictionary should not contain jobid key (as value type) for AsyncJobMultiple on completion"
         )
     }
@@ -291,11 +314,11 @@ class AsyncJobTest {
         runBlocking { delay(5000) }
 
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(asyncJob.jobID),
+            client.jobManager.asyncJobs.containsKey(asyncJob.jobID.value),
             "Async job dictionary should no longer contain jobid key after timeout"
         )
         Assertions.assertFalse(
-            client.jobManager.asyncJobs.containsKey(JobID(123)),
+            client.jobManager.asyncJobs.containsKey(JobID(123).value),
             "Async job dictionary should no longer contain jobid key (as value type) after timeout"
         )
     }
@@ -516,4 +539,34 @@ class AsyncJobTest {
 
 //    @Test
 //    fun AsyncJobMultipleContinuesAsynchronously()
+
+    @Test
+    fun manyJobsTimeOutAcrossClients() {
+        val clients = List(2) {
+            ConnectedSteamClient.get().apply {
+                jobManager.setTimeoutsEnabled(true)
+            }
+        }
+
+        val tasks = clients.flatMap { client ->
+            List(5000) { i ->
+                AsyncJobSingle<Callback>(client, JobID(i.toLong())).apply {
+                    timeout = 500
+                }.toFuture()
+            }
+        }
+
+        // one job that keeps being extended
+        val extended = AsyncJobMultiple<Callback>(clients[0], JobID(10000)) { _ -> false }.apply {
+            timeout = 500
+        }
+        extended.heartbeat()
+
+        runBlocking { delay(2000) }
+
+        Assertions.assertTrue(tasks.all { it.isCancelled }, "Every job should be canceled after its timeout")
+        Assertions.assertEquals(1, clients[0].jobManager.asyncJobs.size)
+        Assertions.assertTrue(clients[1].jobManager.asyncJobs.isEmpty())
+        Assertions.assertFalse(extended.toFuture().isDone, "A heartbeat should extend the job past its timeout")
+    }
 }
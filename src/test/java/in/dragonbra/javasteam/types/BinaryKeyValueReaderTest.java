@@ -0,0 +1,135 @@
+package in.dragonbra.javasteam.types;
+
+import in.dragonbra.javasteam.TestBase;
+import in.dragonbra.javasteam.util.stream.MemoryStream;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryKeyValueReaderTest extends TestBase {
+
+    private static final String TEST_OBJECT_HEX = KeyValueTest.TEST_OBJECT_HEX;
+
+    @Test
+    public void readsFromHeapBufferSlice() throws IOException, DecoderException {
+        byte[] object = Hex.decodeHex(TEST_OBJECT_HEX);
+        byte[] data = new byte[object.length + 10];
+        System.arraycopy(object, 0, data, 3, object.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, 3, object.length + 7).slice();
+
+        KeyValue kv = new KeyValue();
+        Assertions.assertTrue(kv.tryReadAsBinary(buffer));
+        Assertions.assertEquals(object.length, buffer.position());
+
+        Assertions.assertEquals("TestObject", kv.getName());
+        Assertions.assertEquals(1, kv.getChildren().size());
+        Assertions.assertEquals("value", kv.get("key").getValue());
+    }
+
+    @Test
+    public void readsFromDirectBuffer() throws IOException, DecoderException {
+        byte[] object = Hex.decodeHex(TEST_OBJECT_HEX);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(object.length);
+        buffer.put(object).flip();
+
+        KeyValue kv = new KeyValue();
+        Assertions.assertTrue(kv.tryReadAsBinary(buffer));
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        Assertions.assertEquals("TestObject", kv.getName());
+        Assertions.assertEquals("value", kv.get("key").getValue());
+    }
+
+    @Test
+    public void failsToReadTruncatedBuffer() throws DecoderException {
+        byte[] object = Hex.decodeHex(TEST_OBJECT_HEX);
+
+        for (int i = 0; i < object.length; i++) {
+            ByteBuffer buffer = ByteBuffer.wrap(object, 0, i);
+            Assertions.assertThrows(EOFException.class, () -> new KeyValue().tryReadAsBinary(buffer));
+        }
+    }
+
+    @Test
+    public void matchesStreamReader() throws IOException {
+        byte[] document = createDocument(50, 20);
+
+        KeyValue fromStream = new KeyValue();
+        Assertions.assertTrue(fromStream.tryReadAsBinary(new MemoryStream(document)));
+
+        KeyValue fromBuffer = new KeyValue();
+        Assertions.assertTrue(fromBuffer.tryReadAsBinary(ByteBuffer.wrap(document)));
+
+        assertSameTree(fromStream, fromBuffer);
+    }
+
+    @Test
+    public void visitorReceivesEntries() throws IOException, DecoderException {
+        var hex = "00546573744F626A656374000A6B6579000102030405060708" +
+                "00696E6E657200016E616D650076616C7565000808" + "08";
+        var events = new ArrayList<String>();
+
+        boolean read = BinaryKeyValueReader.accept(ByteBuffer.wrap(Hex.decodeHex(hex)), new KeyValueVisitor() {
+            @Override
+            public void startObject(@NotNull String name) {
+                events.add("start " + name);
+            }
+
+            @Override
+            public void endObject() {
+                events.add("end");
+            }
+
+            @Override
+            public void visitString(@NotNull String name, @NotNull String value) {
+                events.add(name + "=" + value);
+            }
+
+            @Override
+            public void visitInt64(@NotNull String name, long value) {
+                events.add(name + "=" + Long.toHexString(value));
+            }
+        });
+
+        Assertions.assertTrue(read);
+        Assertions.assertEquals(
+                List.of("start TestObject", "key=807060504030201", "start inner", "name=value", "end", "end"),
+                events
+        );
+    }
+
+    private static byte[] createDocument(int objects, int valuesPerObject) throws IOException {
+        KeyValue root = new KeyValue("appinfo");
+        for (int i = 0; i < objects; i++) {
+            KeyValue depot = new KeyValue(String.valueOf(i));
+            for (int j = 0; j < valuesPerObject; j++) {
+                depot.getChildren().add(new KeyValue("key" + j, "value " + i + " " + j));
+            }
+            root.getChildren().add(depot);
+        }
+
+        var out = new ByteArrayOutputStream();
+        root.saveToStream(out, true);
+        return out.toByteArray();
+    }
+
+    private static void assertSameTree(KeyValue expected, KeyValue actual) {
+        Assertions.assertEquals(expected.getName(), actual.getName());
+        Assertions.assertEquals(expected.getValue(), actual.getValue());
+        Assertions.assertEquals(expected.getChildren().size(), actual.getChildren().size());
+
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameTree(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package in.dragonbra.javasteam.types;
+
+import in.dragonbra.javasteam.TestBase;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class KVTextReaderTest extends TestBase {
+
+    private static final String DOCUMENT = "// leading comment\n" +
+            "\"appinfo\"\n" +
+            "{\n" +
+            "\t\"appid\"\t\t\"440\"\n" +
+            "\tcommon / single slash comment\n" +
+            "\t{\n" +
+            "\t\tname\t\t\"Team Fortress 2\"\n" +
+            "\t\t\"escaped\"\t\t\"tab\\there \\\"quoted\\\" \\\\ back\\nslash\"\n" +
+            "\t\t\"platform\" [$WIN32] \"windows\"\n" +
+            "\t\t\"ünïcödé\"\t\t\"日本語\"\n" +
+            "\t}\n" +
+            "\t\"empty\"\t\t\"\"\n" +
+            " \"nbsp\" \"value\"\n" +
+            "}\n";
+
+    @Test
+    public void parsesDocumentFromBytes() {
+        byte[] data = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        KeyValue kv = new KeyValue();
+
+        Assertions.assertTrue(kv.readAsText(data, 0, data.length));
+
+        assertDocument(kv);
+    }
+
+    @Test
+    public void parsesDocumentFromStreamAcrossReads() {
+        byte[] data = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        KeyValue kv = new KeyValue();
+
+        // every read returns a single byte, so every token spans a refill of the buffer
+        Assertions.assertTrue(kv.readAsText(new SingleByteInputStream(new ByteArrayInputStream(data))));
+
+        assertDocument(kv);
+    }
+
+    @Test
+    public void parsesTokenLongerThanBuffer() {
+        String longValue = "x".repeat(100_000);
+        byte[] data = ("\"root\" { \"key\" \"" + longValue + "\" }").getBytes(StandardCharsets.UTF_8);
+
+        KeyValue kv = new KeyValue();
+        Assertions.assertTrue(kv.readAsText(new ByteArrayInputStream(data)));
+
+        Assertions.assertEquals(longValue, kv.get("key").getValue());
+    }
+
+    @Test
+    public void rejectsMissingBrace() {
+        byte[] data = "\"root\" \"value\"".getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> new KeyValue().readAsText(data, 0, data.length));
+    }
+
+    @Test
+    public void visitorStreamsEntries() throws IOException {
+        byte[] data = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        var events = new ArrayList<String>();
+
+        KVTextReader.accept(new ByteArrayInputStream(data), new KeyValueVisitor() {
+            @Override
+            public void startObject(@NotNull String name) {
+                events.add("start " + name);
+            }
+
+            @Override
+            public void endObject() {
+                events.add("end");
+            }
+
+            @Override
+            public void visitString(@NotNull String name, @NotNull String value) {
+                events.add(name);
+            }
+        });
+
+        Assertions.assertEquals(
+                List.of("start appinfo", "appid", "start common", "name", "escaped", "platform", "ünïcödé", "end",
+                        "empty", "nbsp", "end"),
+                events
+        );
+    }
+
+    @Test
+    public void parsesLargeDocumentFromStreamAndBytes() {
+        var sb = new StringBuilder("\"apps\"\n{\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append("\t\"").append(i).append("\"\n\t{\n");
+            for (int j = 0; j < 10; j++) {
+                sb.append("\t\t\"key").append(j).append("\"\t\t\"value ").append(i).append(' ').append(j).append("\"\n");
+            }
+            sb.append("\t}\n");
+        }
+        sb.append("}\n");
+
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        KeyValue fromStream = new KeyValue();
+        Assertions.assertTrue(fromStream.readAsText(new ByteArrayInputStream(data)));
+
+        KeyValue fromBytes = new KeyValue();
+        Assertions.assertTrue(fromBytes.readAsText(data, 0, data.length));
+
+        for (KeyValue kv : List.of(fromStream, fromBytes)) {
+            Assertions.assertEquals(5000, kv.getChildren().size());
+            Assertions.assertEquals("value 4999 9", kv.get("4999").get("key9").getValue());
+        }
+    }
+
+    private static void assertDocument(KeyValue kv) {
+        Assertions.assertEquals("appinfo", kv.getName());
+        Assertions.assertEquals(4, kv.getChildren().size());
+        Assertions.assertEquals(440, kv.get("appid").asInteger());
+
+        KeyValue common = kv.get("common");
+        Assertions.assertEquals("Team Fortress 2", common.get("name").getValue());
+        Assertions.assertEquals("tab\there \"quoted\" \\ back\nslash", common.get("escaped").getValue());
+        Assertions.assertEquals("windows", common.get("platform").getValue());
+        Assertions.assertEquals("日本語", common.get("ünïcödé").getValue());
+
+        Assertions.assertEquals("", kv.get("empty").getValue());
+        Assertions.assertEquals("value", kv.get("nbsp").getValue());
+    }
+
+    private static class SingleByteInputStream extends FilterInputStream {
+        SingleByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.EnumSet;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author lngtr
@@ -620,6 +621,150 @@ public class KeyValueTest extends TestBase {
         Assertions.assertEquals(0x0807060504030201L, kv.get("key").asLong());
     }
 
+    @Test
+    public void keyValueIndexerFindsChildrenOfWideNodes() {
+        KeyValue kv = new KeyValue("depots");
+
+        for (int i = 0; i < 100; i++) {
+            kv.getChildren().add(new KeyValue("Depot" + i, String.valueOf(i)));
+        }
+        kv.getChildren().add(new KeyValue("depot5", "duplicate"));
+
+        Assertions.assertEquals("42", kv.get("depot42").getValue());
+        Assertions.assertEquals("5", kv.get("DEPOT5").getValue());
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot100"));
+
+        kv.getChildren().add(new KeyValue("depot100", "100"));
+        Assertions.assertEquals("100", kv.get("depot100").getValue());
+
+        kv.get("depot7").setName("renamed");
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot7"));
+        Assertions.assertEquals("7", kv.get("renamed").getValue());
+
+        kv.set("depot9", new KeyValue(null, "replaced"));
+        Assertions.assertEquals("replaced", kv.get("depot9").getValue());
+        Assertions.assertEquals(102, kv.getChildren().size());
+
+        kv.getChildren().set(0, new KeyValue("first", "0"));
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot0"));
+        Assertions.assertEquals("0", kv.get("first").getValue());
+    }
+
+    @Test
+    public void keyValueIndexFollowsSubListsAndIterators() {
+        KeyValue kv = new KeyValue("depots");
+
+        for (int i = 0; i < 100; i++) {
+            kv.getChildren().add(new KeyValue("depot" + i, String.valueOf(i)));
+        }
+
+        kv.getChildren().subList(10, 20).set(0, new KeyValue("replaced", "10"));
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot10"));
+        Assertions.assertEquals("10", kv.get("replaced").getValue());
+
+        kv.getChildren().subList(20, 30).clear();
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot25"));
+        Assertions.assertEquals("30", kv.get("depot30").getValue());
+
+        var iterator = kv.getChildren().listIterator();
+        while (iterator.hasNext()) {
+            KeyValue child = iterator.next();
+            if ("depot50".equals(child.getName())) {
+                iterator.set(new KeyValue("fifty", "50"));
+            } else if ("depot60".equals(child.getName())) {
+                iterator.remove();
+            }
+        }
+
+        Assertions.assertEquals("50", kv.get("fifty").getValue());
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot50"));
+        Assertions.assertEquals(KeyValue.INVALID, kv.get("depot60"));
+        Assertions.assertEquals("99", kv.get("depot99").getValue());
+    }
+
+    @Test
+    public void keyValueLookupsOnSharedTreeFromManyThreads() throws InterruptedException {
+        KeyValue kv = new KeyValue("depots");
+        for (int i = 0; i < 1000; i++) {
+            kv.getChildren().add(new KeyValue("depot" + i, String.valueOf(i)));
+        }
+
+        var failures = new AtomicInteger();
+        var threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (!String.valueOf(i).equals(kv.get("DEPOT" + i).getValue())) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void keyValuesKeepBinaryNumbersNative() throws IOException {
+        var hex = "00546573744F626A6563740002696E7400FEFFFFFF03666C6F61740000002040" +
+                "0775696E743634000100000000000080" + "0808";
+        var kv = new KeyValue();
+        try (var ms = new MemoryStream(Hex.decodeHex(hex))) {
+            Assertions.assertTrue(kv.tryReadAsBinary(ms));
+        } catch (DecoderException e) {
+            Assertions.fail(e);
+        }
+
+        var int32 = kv.get("int");
+        Assertions.assertEquals(KeyValue.Companion.Type.INT32, int32.getValueType());
+        Assertions.assertEquals("-2", int32.getValue());
+        Assertions.assertEquals(-2, int32.asInteger());
+        Assertions.assertEquals(-2L, int32.asLong());
+        Assertions.assertEquals(-2f, int32.asFloat());
+        Assertions.assertEquals((byte) -2, int32.asByte());
+        Assertions.assertTrue(int32.asBoolean());
+
+        var float32 = kv.get("float");
+        Assertions.assertEquals(KeyValue.Companion.Type.FLOAT32, float32.getValueType());
+        Assertions.assertEquals(2.5f, float32.asFloat());
+        Assertions.assertEquals("2.5", float32.getValue());
+        Assertions.assertEquals(3, float32.asInteger(3));
+
+        var uint64 = kv.get("uint64");
+        Assertions.assertEquals(KeyValue.Companion.Type.UINT64, uint64.getValueType());
+        Assertions.assertEquals(0x8000000000000001L, uint64.asLong());
+        Assertions.assertEquals(5, uint64.asInteger(5));
+
+        uint64.setValue("text");
+        Assertions.assertEquals(KeyValue.Companion.Type.STRING, uint64.getValueType());
+        Assertions.assertEquals(0L, uint64.asLong());
+    }
+
+    @Test
+    public void wideNodeLookupFindsEveryChild() {
+        int width = 5000;
+
+        KeyValue kv = new KeyValue("depots");
+        String[] keys = new String[width];
+        for (int i = 0; i < width; i++) {
+            keys[i] = "depot" + i;
+            kv.getChildren().add(new KeyValue(keys[i], String.valueOf(i)));
+        }
+
+        long found = 0;
+        for (String key : keys) {
+            found += kv.get(key).asInteger();
+        }
+
+        Assertions.assertEquals((long) width * (width - 1) / 2, found);
+    }
+
     @Test
     public void keyValuesHandlesEnum() {
         KeyValue kv = KeyValue.loadFromString("" +
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Random;
@@ -56,6 +57,60 @@ public class Adler32Test {
         Assertions.assertEquals(expected, actual);
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 15, 16, 17, 5552, 5552 * 2 + 3})
+    void rangeMatchesSlice(int length) {
+        var data = new byte[length + 20];
+        new Random(length).nextBytes(data);
+
+        var expected = referenceImplementation(0, Arrays.copyOfRange(data, 7, 7 + length));
+        var actual = Adler32.calculate(0, data, 7, length);
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 15, 16, 17, 5552, 5552 * 2 + 3})
+    void byteBufferMatchesArray(int length) {
+        var data = new byte[length + 20];
+        new Random(length).nextBytes(data);
+
+        var expected = referenceImplementation(0, Arrays.copyOfRange(data, 7, 7 + length));
+
+        var heap = ByteBuffer.wrap(data, 7, length);
+        Assertions.assertEquals(expected, Adler32.calculate(0, heap));
+        Assertions.assertEquals(7, heap.position());
+
+        var direct = ByteBuffer.allocateDirect(data.length).put(data);
+        direct.position(7).limit(7 + length);
+        Assertions.assertEquals(expected, Adler32.calculate(0, direct));
+        Assertions.assertEquals(7, direct.position());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 7, 8, 9, 2048, 5552, 5552 * 3 + 5})
+    void combineMatchesWhole(int split) {
+        var data = new byte[5552 * 4];
+        new Random(split).nextBytes(data);
+
+        var expected = Adler32.calculate(1, data);
+
+        var first = Adler32.calculate(1, data, 0, split);
+        var second = Adler32.calculate(0, data, split, data.length - split);
+
+        Assertions.assertEquals(expected, Adler32.combine(first, second, data.length - split));
+    }
+
+    @Test
+    void matchesReferenceWithAllBytesSet() {
+        // the byte lanes hold the most before they are folded
+        var data = new byte[5552 * 3 + 13];
+        Arrays.fill(data, (byte) 0xFF);
+
+        Assertions.assertEquals(referenceImplementation(0, data), Adler32.calculate(0, data));
+        Assertions.assertEquals(referenceImplementation(0, data), Adler32.calculate(0, ByteBuffer.wrap(data)));
+    }
+
     @Test
     void noOverflowWithMaxBytes() {
         var data = new byte[5552]; // NMAX value
@@ -0,0 +1,77 @@
+package `in`.dragonbra.javasteam.util
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class ConcurrentLongMapTest {
+
+    @Test
+    fun putGetRemove() {
+        val map = ConcurrentLongMap<String>()
+
+        Assertions.assertNull(map.put(1L, "a"))
+        Assertions.assertNull(map.put(Long.MAX_VALUE, "b"))
+        Assertions.assertNull(map.put(0L, "c"))
+        Assertions.assertEquals("a", map.put(1L, "d"))
+
+        Assertions.assertEquals("d", map[1L])
+        Assertions.assertEquals("b", map[Long.MAX_VALUE])
+        Assertions.assertEquals("c", map[0L])
+        Assertions.assertNull(map[2L])
+        Assertions.assertEquals(3, map.size)
+
+        Assertions.assertFalse(map.remove(1L, "a"))
+        Assertions.assertTrue(map.remove(1L, map[1L]!!))
+        Assertions.assertEquals("b", map.remove(Long.MAX_VALUE))
+        Assertions.assertNull(map.remove(Long.MAX_VALUE))
+        Assertions.assertEquals(listOf("c"), map.values())
+
+        map.clear()
+        Assertions.assertTrue(map.isEmpty())
+        Assertions.assertNull(map[0L])
+    }
+
+    @Test
+    fun matchesHashMapUnderChurn() {
+        val map = ConcurrentLongMap<Long>(segmentCount = 4)
+        val expected = HashMap<Long, Long>()
+        val random = Random(42)
+
+        repeat(200_000) {
+            // a narrow key range keeps colliding with removed entries
+            val key = random.nextLong(5_000)
+            if (random.nextBoolean()) {
+                Assertions.assertEquals(expected.put(key, it.toLong()), map.put(key, it.toLong()))
+            } else {
+                Assertions.assertEquals(expected.remove(key), map.remove(key))
+            }
+        }
+
+        Assertions.assertEquals(expected.size, map.size)
+        expected.forEach { (key, value) -> Assertions.assertEquals(value, map[key]) }
+        Assertions.assertEquals(expected.values.sorted(), map.values().sorted())
+    }
+
+    @Test
+    fun concurrentWriters() {
+        val map = ConcurrentLongMap<Long>()
+
+        val threads = List(8) { t ->
+            Thread {
+                for (i in 0 until 10_000) {
+                    val key = t * 1_000_000L + i
+                    map.put(key, key)
+                    if (i % 2 == 0) {
+                        map.remove(key)
+                    }
+                }
+            }.apply { start() }
+        }
+        threads.forEach { it.join() }
+
+        Assertions.assertEquals(8 * 5_000, map.size)
+        Assertions.assertEquals(1_000_001L, map[1_000_001L])
+        Assertions.assertNull(map[1_000_000L])
+    }
+}
@@ -0,0 +1,95 @@
+package in.dragonbra.javasteam.util;
+
+import in.dragonbra.javasteam.enums.EClientPersonaStateFlag;
+import in.dragonbra.javasteam.enums.EMsg;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+public class EnumLookupTest {
+
+    private enum Dense {
+        A(-1), B(0), C(1), ALIAS(1), D(5);
+
+        private final int code;
+
+        Dense(int code) {
+            this.code = code;
+        }
+    }
+
+    private enum Sparse {
+        A(Integer.MIN_VALUE), B(-7), C(1_000_000), ALIAS(1_000_000), D(Long.MAX_VALUE);
+
+        private final long code;
+
+        Sparse(long code) {
+            this.code = code;
+        }
+    }
+
+    private enum Flags {
+        NONE(0), ONE(1), TWO(2), ALSO_TWO(2), THREE(3), HIGH(0x80000000);
+
+        private final int code;
+
+        Flags(int code) {
+            this.code = code;
+        }
+    }
+
+    @Test
+    public void denseLookup() {
+        var lookup = new EnumLookup<>(Dense.class, Dense.values(), e -> e.code);
+        Assertions.assertEquals(Dense.A, lookup.get(-1));
+        Assertions.assertEquals(Dense.B, lookup.get(0));
+        Assertions.assertEquals(Dense.C, lookup.get(1));
+        Assertions.assertEquals(Dense.D, lookup.get(5));
+        Assertions.assertNull(lookup.get(2));
+        Assertions.assertNull(lookup.get(6));
+        Assertions.assertNull(lookup.get(-2));
+    }
+
+    @Test
+    public void sparseLookup() {
+        var lookup = new EnumLookup<>(Sparse.class, Sparse.values(), e -> e.code);
+        Assertions.assertEquals(Sparse.A, lookup.get(Integer.MIN_VALUE));
+        Assertions.assertEquals(Sparse.B, lookup.get(-7));
+        Assertions.assertEquals(Sparse.C, lookup.get(1_000_000));
+        Assertions.assertEquals(Sparse.D, lookup.get(Long.MAX_VALUE));
+        Assertions.assertNull(lookup.get(0));
+        Assertions.assertNull(lookup.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void flagLookupMatchesLinearScan() {
+        var lookup = new EnumLookup<>(Flags.class, Flags.values(), e -> e.code);
+
+        int[] codes = {0, 1, 2, 3, 4, 7, 0x80000000, 0x80000003, -1};
+        for (int code : codes) {
+            EnumSet<Flags> expected = EnumSet.noneOf(Flags.class);
+            for (Flags e : Flags.values()) {
+                if ((e.code & code) == e.code) {
+                    expected.add(e);
+                }
+            }
+
+            Assertions.assertEquals(expected, lookup.getFlags(code), "code " + code);
+        }
+    }
+
+    @Test
+    public void generatedEMsgLookup() {
+        for (EMsg e : EMsg.values()) {
+            Assertions.assertEquals(e.code(), EMsg.from(e.code()).code());
+        }
+        Assertions.assertNull(EMsg.from(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void generatedFlagLookup() {
+        var flags = EnumSet.of(EClientPersonaStateFlag.PlayerName, EClientPersonaStateFlag.Presence);
+        Assertions.assertTrue(EClientPersonaStateFlag.from(EClientPersonaStateFlag.code(flags)).containsAll(flags));
+    }
+}
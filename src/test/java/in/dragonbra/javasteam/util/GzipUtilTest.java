@@ -0,0 +1,118 @@
+package in.dragonbra.javasteam.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipUtilTest {
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        var baos = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(baos)) {
+            gzip.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] sample() {
+        var data = new byte[100_000];
+        var random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            // compressible, but not trivially so
+            data[i] = (byte) (random.nextInt(16) + 'a');
+        }
+        return data;
+    }
+
+    @Test
+    public void decompress() throws IOException {
+        var data = sample();
+        var compressed = gzip(data);
+
+        var destination = new byte[data.length];
+        var source = ByteBuffer.wrap(compressed);
+        int written = GzipUtil.decompress(source, destination);
+
+        Assertions.assertEquals(data.length, written);
+        Assertions.assertArrayEquals(data, destination);
+        Assertions.assertEquals(0, source.position());
+    }
+
+    @Test
+    public void decompressFromReadOnlyRegion() throws IOException {
+        var data = sample();
+        var compressed = gzip(data);
+
+        var padded = new byte[compressed.length + 10];
+        System.arraycopy(compressed, 0, padded, 5, compressed.length);
+        var source = ByteBuffer.wrap(padded, 5, compressed.length).asReadOnlyBuffer();
+
+        var destination = new byte[data.length + 8];
+        int written = GzipUtil.decompress(source, destination);
+
+        Assertions.assertEquals(data.length, written);
+        Assertions.assertArrayEquals(data, Arrays.copyOf(destination, written));
+    }
+
+    @Test
+    public void decompressWithOptionalHeaderFields() throws IOException {
+        var data = "test_string".getBytes();
+        var compressed = gzip(data);
+
+        // same stream with FEXTRA, FNAME and FCOMMENT set
+        var baos = new ByteArrayOutputStream();
+        baos.write(compressed, 0, 3);
+        baos.write(4 | 8 | 16);
+        baos.write(compressed, 4, 6);
+        baos.write(new byte[]{3, 0, 1, 2, 3});
+        baos.write("name\0comment\0".getBytes());
+        baos.write(compressed, 10, compressed.length - 10);
+
+        var destination = new byte[data.length];
+        Assertions.assertEquals(data.length, GzipUtil.decompress(ByteBuffer.wrap(baos.toByteArray()), destination));
+        Assertions.assertArrayEquals(data, destination);
+    }
+
+    @Test
+    public void decompressFailsWhenDestinationIsTooSmall() throws IOException {
+        var data = sample();
+        var compressed = gzip(data);
+
+        Assertions.assertThrows(IOException.class,
+                () -> GzipUtil.decompress(ByteBuffer.wrap(compressed), new byte[data.length - 1]));
+    }
+
+    @Test
+    public void decompressFailsOnChecksumMismatch() throws IOException {
+        var data = sample();
+        var compressed = gzip(data);
+        compressed[compressed.length - 8] ^= 1;
+
+        Assertions.assertThrows(IOException.class,
+                () -> GzipUtil.decompress(ByteBuffer.wrap(compressed), new byte[data.length]));
+    }
+
+    @Test
+    public void decompressFailsOnTruncatedStream() throws IOException {
+        var data = sample();
+        var compressed = gzip(data);
+
+        Assertions.assertThrows(EOFException.class,
+                () -> GzipUtil.decompress(ByteBuffer.wrap(compressed, 0, compressed.length - 4), new byte[data.length]));
+        Assertions.assertThrows(EOFException.class,
+                () -> GzipUtil.decompress(ByteBuffer.wrap(compressed, 0, compressed.length / 2), new byte[data.length]));
+    }
+
+    @Test
+    public void decompressFailsOnWrongMagic() {
+        Assertions.assertThrows(IOException.class,
+                () -> GzipUtil.decompress(ByteBuffer.wrap(new byte[20]), new byte[10]));
+    }
+}
@@ -0,0 +1,94 @@
+package in.dragonbra.javasteam.util.crypto;
+
+import in.dragonbra.javasteam.TestBase;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymmetricCipherTest extends TestBase {
+
+    private static final byte[] KEY = CryptoHelper.generateRandomBlock(32);
+
+    private static final byte[] HMAC_SECRET = Arrays.copyOf(KEY, 16);
+
+    private static final int[] PACKET_SIZES = {0, 1, 15, 16, 17, 200, 1400, 16 * 1024, 256 * 1024};
+
+    @Test
+    public void interopWithCryptoHelper() throws CryptoException {
+        SymmetricCipher cipher = new SymmetricCipher(KEY);
+
+        for (int size : PACKET_SIZES) {
+            byte[] plainText = CryptoHelper.generateRandomBlock(size);
+
+            byte[] encrypted = cipher.encrypt(plainText);
+            assertEquals(SymmetricCipher.getEncryptedLength(size), encrypted.length);
+            assertArrayEquals(plainText, CryptoHelper.symmetricDecrypt(encrypted, KEY));
+
+            assertArrayEquals(plainText, cipher.decrypt(CryptoHelper.symmetricEncrypt(plainText, KEY)));
+        }
+    }
+
+    @Test
+    public void interopWithCryptoHelperHMAC() throws CryptoException {
+        SymmetricCipher cipher = new SymmetricCipher(KEY, HMAC_SECRET);
+
+        for (int size : PACKET_SIZES) {
+            byte[] plainText = CryptoHelper.generateRandomBlock(size);
+
+            byte[] encrypted = cipher.encrypt(plainText);
+            assertArrayEquals(plainText, CryptoHelper.symmetricDecryptHMACIV(encrypted, KEY, HMAC_SECRET));
+
+            byte[] legacy = CryptoHelper.symmetricEncryptWithHMACIV(plainText, KEY, HMAC_SECRET);
+            assertArrayEquals(plainText, cipher.decrypt(legacy));
+        }
+    }
+
+    @Test
+    public void tamperedPacketFailsHMAC() throws CryptoException {
+        SymmetricCipher cipher = new SymmetricCipher(KEY, HMAC_SECRET);
+        SymmetricCipher other = new SymmetricCipher(KEY, CryptoHelper.generateRandomBlock(16));
+
+        byte[] encrypted = cipher.encrypt(CryptoHelper.generateRandomBlock(100));
+
+        assertThrows(CryptoException.class, () -> other.decrypt(encrypted));
+    }
+
+    @Test
+    public void arraySlices() throws CryptoException {
+        SymmetricCipher cipher = new SymmetricCipher(KEY, HMAC_SECRET);
+        byte[] plainText = CryptoHelper.generateRandomBlock(1000);
+
+        byte[] encrypted = new byte[SymmetricCipher.getEncryptedLength(900) + 7];
+        int encryptedLength = cipher.encrypt(plainText, 50, 900, encrypted, 7);
+        assertEquals(SymmetricCipher.getEncryptedLength(900), encryptedLength);
+
+        byte[] decrypted = new byte[SymmetricCipher.getMaxDecryptedLength(encryptedLength) + 3];
+        int decryptedLength = cipher.decrypt(encrypted, 7, encryptedLength, decrypted, 3);
+
+        assertEquals(900, decryptedLength);
+        assertArrayEquals(Arrays.copyOfRange(plainText, 50, 950), Arrays.copyOfRange(decrypted, 3, 903));
+    }
+
+    @Test
+    public void byteBuffers() throws CryptoException {
+        SymmetricCipher cipher = new SymmetricCipher(KEY, HMAC_SECRET);
+        byte[] plainText = CryptoHelper.generateRandomBlock(1400);
+
+        ByteBuffer input = ByteBuffer.allocateDirect(plainText.length);
+        input.put(plainText).flip();
+
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(SymmetricCipher.getEncryptedLength(plainText.length));
+        cipher.encrypt(input, encrypted);
+        encrypted.flip();
+        assertFalse(input.hasRemaining());
+
+        ByteBuffer decrypted = ByteBuffer.allocate(SymmetricCipher.getMaxDecryptedLength(encrypted.remaining()));
+        int length = cipher.decrypt(encrypted, decrypted);
+
+        assertEquals(plainText.length, length);
+        assertArrayEquals(plainText, Arrays.copyOf(decrypted.array(), length));
+    }
+}